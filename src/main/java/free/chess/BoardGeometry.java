@@ -0,0 +1,275 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+/**
+ * Precomputed, immutable tables of the squares reachable from each square of the board by the
+ * chess pieces: knight and king jumps, pawn captures and the rays along which the sliding pieces
+ * move. The tables are indexed by {@link Square#getIndex()} and are built when the class is loaded,
+ * so all queries are plain array lookups, safe to make from any thread without locking. The arrays
+ * returned by the methods of this class are shared and must not be modified.
+ */
+public final class BoardGeometry {
+
+  /**
+   * The direction towards the 1st rank.
+   */
+  public static final int SOUTH = 0;
+
+  /**
+   * The direction towards the a-file.
+   */
+  public static final int WEST = 1;
+
+  /**
+   * The direction towards the h-file.
+   */
+  public static final int EAST = 2;
+
+  /**
+   * The direction towards the 8th rank.
+   */
+  public static final int NORTH = 3;
+
+  /**
+   * The direction towards a1.
+   */
+  public static final int SOUTH_WEST = 4;
+
+  /**
+   * The direction towards h1.
+   */
+  public static final int SOUTH_EAST = 5;
+
+  /**
+   * The direction towards a8.
+   */
+  public static final int NORTH_WEST = 6;
+
+  /**
+   * The direction towards h8.
+   */
+  public static final int NORTH_EAST = 7;
+
+  /**
+   * The file and rank deltas of the directions, indexed by direction.
+   */
+  private static final int[][] DIRECTION_DELTAS =
+      new int[][] {
+        new int[] {0, -1},
+        new int[] {-1, 0},
+        new int[] {1, 0},
+        new int[] {0, 1},
+        new int[] {-1, -1},
+        new int[] {1, -1},
+        new int[] {-1, 1},
+        new int[] {1, 1}
+      };
+
+  /**
+   * Knight move offsets.
+   */
+  private static final int[][] KNIGHT_DELTAS =
+      new int[][] {
+        new int[] {-1, -2},
+        new int[] {1, -2},
+        new int[] {-2, -1},
+        new int[] {2, -1},
+        new int[] {-2, 1},
+        new int[] {2, 1},
+        new int[] {-1, 2},
+        new int[] {1, 2}
+      };
+
+  /**
+   * The squares a knight can jump to, indexed by square.
+   */
+  private static final Square[][] KNIGHT_TARGETS = new Square[64][];
+
+  /**
+   * The squares a king can step to (not counting castling), indexed by square.
+   */
+  private static final Square[][] KING_TARGETS = new Square[64][];
+
+  /**
+   * The squares a pawn attacks, indexed by color index (0 for white, 1 for black) and square.
+   */
+  private static final Square[][][] PAWN_ATTACKS = new Square[2][64][];
+
+  /**
+   * The rays, indexed by square and direction. Each ray lists the squares in the direction,
+   * starting with the adjacent one and ending at the edge of the board.
+   */
+  private static final Square[][][] RAYS = new Square[64][8][];
+
+  static {
+    for (int index = 0; index < 64; index++) {
+      int file = index & 7;
+      int rank = index >> 3;
+
+      KNIGHT_TARGETS[index] = getSquares(file, rank, KNIGHT_DELTAS);
+      KING_TARGETS[index] = getSquares(file, rank, DIRECTION_DELTAS);
+      PAWN_ATTACKS[0][index] = getSquares(file, rank, new int[][] {{-1, 1}, {1, 1}});
+      PAWN_ATTACKS[1][index] = getSquares(file, rank, new int[][] {{-1, -1}, {1, -1}});
+
+      for (int direction = 0; direction < 8; direction++) {
+        int fileDelta = DIRECTION_DELTAS[direction][0];
+        int rankDelta = DIRECTION_DELTAS[direction][1];
+        int length = 0;
+        while (Square.isValid(file + (length + 1) * fileDelta, rank + (length + 1) * rankDelta))
+          length++;
+
+        Square[] ray = new Square[length];
+        for (int i = 0; i < length; i++)
+          ray[i] = Square.getInstance(file + (i + 1) * fileDelta, rank + (i + 1) * rankDelta);
+        RAYS[index][direction] = ray;
+      }
+    }
+  }
+
+  /**
+   * Returns the squares at the specified offsets from the square with the specified file and rank
+   * which are on the board.
+   */
+  private static Square[] getSquares(int file, int rank, int[][] deltas) {
+    int count = 0;
+    Square[] squares = new Square[deltas.length];
+    for (int i = 0; i < deltas.length; i++) {
+      Square square = Square.getInstanceNonStrict(file + deltas[i][0], rank + deltas[i][1]);
+      if (square != null) squares[count++] = square;
+    }
+
+    if (count == squares.length) return squares;
+
+    Square[] result = new Square[count];
+    System.arraycopy(squares, 0, result, 0, count);
+    return result;
+  }
+
+  /**
+   * No instances.
+   */
+  private BoardGeometry() {}
+
+  /**
+   * Returns the index of the specified piece color in the tables indexed by color.
+   */
+  private static int colorIndex(int color) {
+    return (color == Piece.WHITE) ? 0 : 1;
+  }
+
+  /**
+   * Returns the squares a knight standing on the specified square can jump to.
+   */
+  public static Square[] getKnightTargets(Square square) {
+    return KNIGHT_TARGETS[square.getIndex()];
+  }
+
+  /**
+   * Returns the squares a king standing on the specified square can step to, not counting castling.
+   */
+  public static Square[] getKingTargets(Square square) {
+    return KING_TARGETS[square.getIndex()];
+  }
+
+  /**
+   * Returns the squares a pawn of the specified color standing on the specified square attacks.
+   */
+  public static Square[] getPawnAttacks(int color, Square square) {
+    return PAWN_ATTACKS[colorIndex(color)][square.getIndex()];
+  }
+
+  /**
+   * Returns the square a pawn of the specified color standing on the specified square advances to,
+   * or <code>null</code> if the pawn is on the last rank.
+   */
+  public static Square getPawnAdvance(int color, Square square) {
+    Square[] ray = RAYS[square.getIndex()][(color == Piece.WHITE) ? NORTH : SOUTH];
+    return (ray.length == 0) ? null : ray[0];
+  }
+
+  /**
+   * Returns the squares in the specified direction from the specified square, nearest first.
+   *
+   * @param direction One of the direction constants, such as {@link #NORTH}.
+   */
+  public static Square[] getRay(Square square, int direction) {
+    return RAYS[square.getIndex()][direction];
+  }
+
+  /**
+   * Returns the rays from the specified square in all 8 directions, indexed by direction.
+   */
+  public static Square[][] getRays(Square square) {
+    return RAYS[square.getIndex()];
+  }
+
+  /**
+   * Returns whether the specified direction is orthogonal (along a rank or a file) as opposed to
+   * diagonal.
+   */
+  public static boolean isOrthogonal(int direction) {
+    return direction < SOUTH_WEST;
+  }
+
+  /**
+   * Returns whether the specified square is attacked by a chess piece of the specified color in the
+   * specified position, assuming the pieces move as in classic chess. Unlike the target squares
+   * reported by <code>WildVariant</code>s, this does not depend on whose turn it is to move, and
+   * counts attacks by pawns on empty squares.
+   */
+  public static boolean isAttacked(Position pos, Square square, int color) {
+    int index = square.getIndex();
+
+    Square[] pawnSources = PAWN_ATTACKS[1 - colorIndex(color)][index];
+    for (int i = 0; i < pawnSources.length; i++)
+      if (isPiece(pos.getPieceAt(pawnSources[i]), color, ChessPiece.PAWN)) return true;
+
+    Square[] knightSources = KNIGHT_TARGETS[index];
+    for (int i = 0; i < knightSources.length; i++)
+      if (isPiece(pos.getPieceAt(knightSources[i]), color, ChessPiece.KNIGHT)) return true;
+
+    Square[] kingSources = KING_TARGETS[index];
+    for (int i = 0; i < kingSources.length; i++)
+      if (isPiece(pos.getPieceAt(kingSources[i]), color, ChessPiece.KING)) return true;
+
+    Square[][] rays = RAYS[index];
+    for (int direction = 0; direction < 8; direction++) {
+      int sliderType = isOrthogonal(direction) ? ChessPiece.ROOK : ChessPiece.BISHOP;
+      Square[] ray = rays[direction];
+      for (int i = 0; i < ray.length; i++) {
+        Piece piece = pos.getPieceAt(ray[i]);
+        if (piece == null) continue;
+
+        if (isPiece(piece, color, sliderType) || isPiece(piece, color, ChessPiece.QUEEN))
+          return true;
+        break;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns whether the specified piece is a chess piece of the specified color and type.
+   */
+  private static boolean isPiece(Piece piece, int color, int type) {
+    return (piece instanceof ChessPiece)
+        && (piece.getColor() == color)
+        && (piece.getType() == type);
+  }
+}
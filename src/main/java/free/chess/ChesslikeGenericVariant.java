@@ -16,6 +16,7 @@
  */
 package free.chess;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -613,6 +614,16 @@ public class ChesslikeGenericVariant implements WildVariant {
     return piece.toShortString();
   }
 
+  /**
+   * Returns whether the pieces in this variant move (and therefore attack) like the pieces of
+   * classic chess. If so, attacks can be looked up in the precomputed {@link BoardGeometry} tables
+   * instead of being found by generating target squares. Subclasses which change the way the pieces
+   * move must override this method to return <code>false</code>.
+   */
+  public boolean hasChessPieceMovement() {
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -711,25 +722,61 @@ public class ChesslikeGenericVariant implements WildVariant {
   }
 
   /**
-   * King move offsets.
+   * Returns the target squares for a piece which jumps to one of the specified squares (king and
+   * knight), as looked up in the {@link BoardGeometry} tables.
    */
-  private static final int[][] KING_OFFSETS =
-      new int[][] {
-        new int[] {-1, -1},
-        new int[] {0, -1},
-        new int[] {1, -1},
-        new int[] {-1, 0},
-        new int[] {1, 0},
-        new int[] {-1, 1},
-        new int[] {0, 1},
-        new int[] {1, 1}
-      };
+  private static Collection getJumpingTargetSquares(Position pos, Square square, Square[] targets) {
+    List targetSquares = new ArrayList(targets.length);
+
+    int color = pos.getPieceAt(square).getColor();
+
+    // See getJumpingTargetSquares(Position, Square, int[][])
+    boolean isMyTurn = pos.getCurrentPlayer().getPieceColor() == color;
+
+    for (int i = 0; i < targets.length; i++) {
+      Square targetSquare = targets[i];
+      Piece piece = pos.getPieceAt(targetSquare);
+      if ((piece == null) || (piece.getColor() != color) || !isMyTurn)
+        targetSquares.add(targetSquare);
+    }
+
+    return targetSquares;
+  }
+
+  /**
+   * Returns the target squares for a piece which slides to its destination along the
+   * {@link BoardGeometry} rays in the specified directions (queen, rook, bishop).
+   */
+  private static Collection getRayTargetSquares(Position pos, Square square, int[] directions) {
+    List targetSquares = new ArrayList();
+
+    int color = pos.getPieceAt(square).getColor();
+
+    // See getSlidingTargetSquares(Position, Square, int[][])
+    boolean isMyTurn = pos.getCurrentPlayer().getPieceColor() == color;
+
+    Square[][] rays = BoardGeometry.getRays(square);
+    for (int i = 0; i < directions.length; i++) {
+      Square[] ray = rays[directions[i]];
+      for (int j = 0; j < ray.length; j++) {
+        Square targetSquare = ray[j];
+        Piece piece = pos.getPieceAt(targetSquare);
+        if ((piece == null) || (piece.getColor() != color) || !isMyTurn)
+          targetSquares.add(targetSquare);
+
+        if ((piece != null) && isMyTurn) break;
+      }
+    }
+
+    return targetSquares;
+  }
 
   /**
    * Returns target squares for a king.
    */
   protected Collection getKingTargetSquares(Position pos, Square square) {
-    Collection targetSquares = getJumpingTargetSquares(pos, square, KING_OFFSETS);
+    Collection targetSquares =
+        getJumpingTargetSquares(pos, square, BoardGeometry.getKingTargets(square));
 
     // Attempt castling.
     for (int file = 0; file < 8; file++) {
@@ -744,78 +791,68 @@ public class ChesslikeGenericVariant implements WildVariant {
   /**
    * Queen move directions.
    */
-  private static final int[][] QUEEN_DIRECTIONS =
-      new int[][] {
-        new int[] {-1, -1},
-        new int[] {0, -1},
-        new int[] {1, -1},
-        new int[] {-1, 0},
-        new int[] {1, 0},
-        new int[] {-1, 1},
-        new int[] {0, 1},
-        new int[] {1, 1}
+  private static final int[] QUEEN_DIRECTIONS =
+      new int[] {
+        BoardGeometry.SOUTH_WEST,
+        BoardGeometry.SOUTH,
+        BoardGeometry.SOUTH_EAST,
+        BoardGeometry.WEST,
+        BoardGeometry.EAST,
+        BoardGeometry.NORTH_WEST,
+        BoardGeometry.NORTH,
+        BoardGeometry.NORTH_EAST
       };
 
   /**
    * Returns target squares for a queen.
    */
   protected Collection getQueenTargetSquares(Position pos, Square square) {
-    return getSlidingTargetSquares(pos, square, QUEEN_DIRECTIONS);
+    return getRayTargetSquares(pos, square, QUEEN_DIRECTIONS);
   }
 
   /**
    * Rook move directions.
    */
-  private static final int[][] ROOK_DIRECTIONS =
-      new int[][] {new int[] {0, -1}, new int[] {-1, 0}, new int[] {1, 0}, new int[] {0, 1}};
+  private static final int[] ROOK_DIRECTIONS =
+      new int[] {BoardGeometry.SOUTH, BoardGeometry.WEST, BoardGeometry.EAST, BoardGeometry.NORTH};
 
   /**
    * Returns target squares for a rook.
    */
   protected Collection getRookTargetSquares(Position pos, Square square) {
-    return getSlidingTargetSquares(pos, square, ROOK_DIRECTIONS);
+    return getRayTargetSquares(pos, square, ROOK_DIRECTIONS);
   }
 
   /**
    * Bishop move directions.
    */
-  private static final int[][] BISHOP_DIRECTIONS =
-      new int[][] {new int[] {-1, -1}, new int[] {1, -1}, new int[] {-1, 1}, new int[] {1, 1}};
+  private static final int[] BISHOP_DIRECTIONS =
+      new int[] {
+        BoardGeometry.SOUTH_WEST,
+        BoardGeometry.SOUTH_EAST,
+        BoardGeometry.NORTH_WEST,
+        BoardGeometry.NORTH_EAST
+      };
 
   /**
    * Returns target squares for a bishop.
    */
   protected Collection getBishopTargetSquares(Position pos, Square square) {
-    return getSlidingTargetSquares(pos, square, BISHOP_DIRECTIONS);
+    return getRayTargetSquares(pos, square, BISHOP_DIRECTIONS);
   }
 
-  /**
-   * Knight move offsets.
-   */
-  private static final int[][] KNIGHT_OFFSETS =
-      new int[][] {
-        new int[] {-1, -2},
-        new int[] {1, -2},
-        new int[] {-2, -1},
-        new int[] {2, -1},
-        new int[] {-2, 1},
-        new int[] {2, 1},
-        new int[] {-1, 2},
-        new int[] {1, 2},
-      };
-
   /**
    * Returns target squares for a knight.
    */
   protected Collection getKnightTargetSquares(Position pos, Square square) {
-    return getJumpingTargetSquares(pos, square, KNIGHT_OFFSETS);
+    return getJumpingTargetSquares(pos, square, BoardGeometry.getKnightTargets(square));
   }
 
   /**
    * Returns target squares for a pawn.
    */
   protected Collection getPawnTargetSquares(Position pos, Square square) {
-    List targetSquares = new LinkedList();
+    List targetSquares = new ArrayList(4);
 
     int file = square.getFile();
     int rank = square.getRank();
@@ -833,8 +870,8 @@ public class ChesslikeGenericVariant implements WildVariant {
     Square targetSquare;
 
     // Move forward
-    targetSquare = Square.getInstanceNonStrict(file, rank + rankMoveDirection);
-    if (((targetSquare != null) && (pos.getPieceAt(targetSquare) == null)) || !isMyTurn) {
+    targetSquare = BoardGeometry.getPawnAdvance(color, square);
+    if ((targetSquare != null) && ((pos.getPieceAt(targetSquare) == null) || !isMyTurn)) {
       targetSquares.add(targetSquare);
 
       // Double pawn push
@@ -845,18 +882,14 @@ public class ChesslikeGenericVariant implements WildVariant {
     }
 
     // Capture or en-passant
-    int[] fileMoveDirections = new int[] {-1, 1};
-    for (int i = 0; i < fileMoveDirections.length; i++) {
-      int fileMoveDirection = fileMoveDirections[i];
-      targetSquare =
-          Square.getInstanceNonStrict(file + fileMoveDirection, rank + rankMoveDirection);
-      if (targetSquare != null) {
-        Piece targetPiece = pos.getPieceAt(targetSquare);
-        if (((targetPiece != null) && (targetPiece.getColor() != color)) || !isMyTurn)
-          targetSquares.add(targetSquare);
-        else if (isEnPassantRank && isEnPassant(pos, square, targetSquare, null))
-          targetSquares.add(targetSquare);
-      }
+    Square[] attackedSquares = BoardGeometry.getPawnAttacks(color, square);
+    for (int i = 0; i < attackedSquares.length; i++) {
+      targetSquare = attackedSquares[i];
+      Piece targetPiece = pos.getPieceAt(targetSquare);
+      if (((targetPiece != null) && (targetPiece.getColor() != color)) || !isMyTurn)
+        targetSquares.add(targetSquare);
+      else if (isEnPassantRank && isEnPassant(pos, square, targetSquare, null))
+        targetSquares.add(targetSquare);
     }
 
     return targetSquares;
@@ -49,6 +49,7 @@ import free.chess.event.MoveEvent;
 import free.chess.event.MoveListener;
 import free.chess.event.MoveProgressEvent;
 import free.chess.event.MoveProgressListener;
+import free.chess.event.PositionChangeEvent;
 import free.util.MathUtilities;
 import free.util.PaintHook;
 import free.util.PlatformUtils;
@@ -200,7 +201,10 @@ public class JBoard extends JComponent {
             return;
           }
 
-          updateBoard(positionCopy, position);
+          if ((evt instanceof PositionChangeEvent) && (slideStartSquare == null))
+            updateBoard(
+                positionCopy, position, ((PositionChangeEvent) evt).getChangedSquaresMask());
+          else updateBoard(positionCopy, position);
         }
       };
 
@@ -209,6 +213,15 @@ public class JBoard extends JComponent {
    * the required areas to be repainted.
    */
   private void updateBoard(Position startPosition, Position endPosition) {
+    updateBoard(startPosition, endPosition, -1L);
+  }
+
+  /**
+   * Updates the board from the specified current position to the specified target position, causing
+   * the required areas to be repainted. Only the squares whose bits (<code>rank * 8 + file</code>)
+   * are set in the specified mask are checked for changes.
+   */
+  private void updateBoard(Position startPosition, Position endPosition, long squaresMask) {
     // Repaint only the parts that really need to be repainted by checking
     // which squares changed.
     boolean checkMovingPieceSquare = (movedPieceSquare != null);
@@ -219,6 +232,8 @@ public class JBoard extends JComponent {
 
     for (int file = 0; file < 8; file++) {
       for (int rank = 0; rank < 8; rank++) {
+        if ((squaresMask & (1L << ((rank << 3) | file))) == 0) continue;
+
         Piece oldPiece = startPosition.getPieceAt(file, rank);
         Piece newPiece = endPosition.getPieceAt(file, rank);
 
@@ -0,0 +1,247 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Generates legal moves on top of the target squares reported by {@link WildVariant}s. The variant
+ * determines how pieces move; this class adds the rules common to the chess-like variants: a move
+ * may not leave the moving side's king capturable, castling requires the castling right, may not
+ * be done out of check and may not pass through an attacked square, and an en passant capture is
+ * only possible on the position's en passant square. Variants without a king for the moving side
+ * get no king safety checks.
+ */
+public final class MoveGenerator {
+
+  /**
+   * No instances.
+   */
+  private MoveGenerator() {}
+
+  /**
+   * Returns the square of the king of the specified player, or <code>null</code> if there is no
+   * such (single) king.
+   */
+  public static Square findKing(Position pos, Player player) {
+    Square kingSquare = null;
+    int color = player.getPieceColor();
+    for (int file = 0; file < 8; file++) {
+      for (int rank = 0; rank < 8; rank++) {
+        Piece piece = pos.getPieceAt(file, rank);
+        if ((piece instanceof ChessPiece)
+            && ((ChessPiece) piece).isKing()
+            && (piece.getColor() == color)) {
+          if (kingSquare != null) return null;
+          kingSquare = Square.getInstance(file, rank);
+        }
+      }
+    }
+
+    return kingSquare;
+  }
+
+  /**
+   * Returns whether the player to move in the specified position has a piece that can move to the
+   * specified square (capturing what stands there).
+   */
+  private static boolean isTargetOfPlayerToMove(Position pos, Square target) {
+    WildVariant variant = pos.getVariant();
+    int color = pos.getCurrentPlayer().getPieceColor();
+    for (int file = 0; file < 8; file++) {
+      for (int rank = 0; rank < 8; rank++) {
+        Piece piece = pos.getPieceAt(file, rank);
+        if ((piece == null) || (piece.getColor() != color)) continue;
+
+        Collection targets = variant.getTargetSquares(pos, Square.getInstance(file, rank));
+        if (targets.contains(target)) return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns whether the specified square is attacked by the specified player in the specified
+   * position.
+   */
+  public static boolean isAttacked(Position pos, Square square, Player attacker) {
+    WildVariant variant = pos.getVariant();
+    if ((variant instanceof ChesslikeGenericVariant)
+        && ((ChesslikeGenericVariant) variant).hasChessPieceMovement())
+      return BoardGeometry.isAttacked(pos, square, attacker.getPieceColor());
+
+    if (pos.getCurrentPlayer() == attacker) return isTargetOfPlayerToMove(pos, square);
+
+    // Target squares are only computed accurately for the player to move
+    Position attackerToMove = new Position(pos);
+    attackerToMove.setCurrentPlayer(attacker);
+    return isTargetOfPlayerToMove(attackerToMove, square);
+  }
+
+  /**
+   * Returns whether the player to move in the specified position is in check.
+   */
+  public static boolean isInCheck(Position pos) {
+    Player player = pos.getCurrentPlayer();
+    Square kingSquare = findKing(pos, player);
+    return (kingSquare != null) && isAttacked(pos, kingSquare, player.getOpponent());
+  }
+
+  /**
+   * Returns whether the player to move in the specified position can capture the opponent's king,
+   * which means that the move that led to the position was illegal.
+   */
+  private static boolean isKingCapturable(Position pos) {
+    Square kingSquare = findKing(pos, pos.getCurrentPlayer().getOpponent());
+    return (kingSquare != null) && isAttacked(pos, kingSquare, pos.getCurrentPlayer());
+  }
+
+  /**
+   * Returns whether the specified move, made in the specified position, is legal as far as king
+   * safety and castling rules are concerned. The move itself is assumed to be one of the moves the
+   * variant allows for the moving piece. The specified scratch position is used for trying the move
+   * out; it must be of the same variant and its state is overwritten.
+   */
+  public static boolean isLegal(Position pos, Move move, Position scratch) {
+    Player player = move.getPlayer();
+    if (player != pos.getCurrentPlayer()) return false;
+
+    // The variant only looks for an enemy pawn next to the capturing one; the capture is only
+    // possible right after that pawn's double push, which the position records.
+    if ((move instanceof ChessMove) && ((ChessMove) move).isEnPassant())
+      if (!move.getEndingSquare().equals(pos.getEnPassantSquare())) return false;
+
+    if ((move instanceof ChessMove) && ((ChessMove) move).isCastling()) {
+      ChessMove cmove = (ChessMove) move;
+      int right;
+      if (player.isWhite())
+        right =
+            cmove.isShortCastling() ? Position.WHITE_SHORT_CASTLING : Position.WHITE_LONG_CASTLING;
+      else
+        right =
+            cmove.isShortCastling() ? Position.BLACK_SHORT_CASTLING : Position.BLACK_LONG_CASTLING;
+      if ((pos.getCastlingRights() & right) == 0) return false;
+
+      // The king may not castle out of or through check
+      Square start = cmove.getStartingSquare();
+      int endFile = cmove.getEndingSquare().getFile();
+      int dir = (endFile > start.getFile()) ? 1 : -1;
+      Player opponent = player.getOpponent();
+      for (int file = start.getFile(); file != endFile; file += dir) {
+        if (isAttacked(pos, Square.getInstance(file, start.getRank()), opponent)) return false;
+      }
+    }
+
+    scratch.copyFrom(pos);
+    try {
+      scratch.makeMove(move);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+
+    return !isKingCapturable(scratch);
+  }
+
+  /**
+   * Returns whether the specified move, made in the specified position, is legal.
+   *
+   * @see #isLegal(Position, Move, Position)
+   */
+  public static boolean isLegal(Position pos, Move move) {
+    return isLegal(pos, move, new Position(pos));
+  }
+
+  /**
+   * Adds the moves the piece at the specified square may make (without checking their legality) to
+   * the specified list. Promotions yield one move per promotion target.
+   */
+  public static void addPieceMoves(Position pos, Square square, List moves) {
+    WildVariant variant = pos.getVariant();
+    Collection targets = variant.getTargetSquares(pos, square);
+    for (Iterator i = targets.iterator(); i.hasNext(); ) {
+      Square target = (Square) i.next();
+      try {
+        Piece[] promotionTargets = variant.getPromotionTargets(pos, square, target);
+        if (promotionTargets == null)
+          moves.add(variant.createMove(pos, square, target, null, null));
+        else {
+          for (int j = 0; j < promotionTargets.length; j++)
+            moves.add(variant.createMove(pos, square, target, promotionTargets[j], null));
+        }
+      } catch (IllegalArgumentException e) {
+        // The variant can't represent this move; skip it.
+      }
+    }
+  }
+
+  /**
+   * Returns a list of the legal moves for the player to move in the specified position.
+   */
+  public static List getLegalMoves(Position pos) {
+    List candidates = new ArrayList();
+    int color = pos.getCurrentPlayer().getPieceColor();
+    for (int file = 0; file < 8; file++) {
+      for (int rank = 0; rank < 8; rank++) {
+        Piece piece = pos.getPieceAt(file, rank);
+        if ((piece != null) && (piece.getColor() == color))
+          addPieceMoves(pos, Square.getInstance(file, rank), candidates);
+      }
+    }
+
+    Position scratch = new Position(pos);
+    List legalMoves = new ArrayList(candidates.size());
+    for (int i = 0; i < candidates.size(); i++) {
+      Move move = (Move) candidates.get(i);
+      if (isLegal(pos, move, scratch)) legalMoves.add(move);
+    }
+
+    return legalMoves;
+  }
+
+  /**
+   * Returns whether the player to move in the specified position has any legal move.
+   */
+  public static boolean hasLegalMoves(Position pos) {
+    Position scratch = new Position(pos);
+    List moves = new ArrayList();
+    int color = pos.getCurrentPlayer().getPieceColor();
+    for (int file = 0; file < 8; file++) {
+      for (int rank = 0; rank < 8; rank++) {
+        Piece piece = pos.getPieceAt(file, rank);
+        if ((piece == null) || (piece.getColor() != color)) continue;
+
+        moves.clear();
+        addPieceMoves(pos, Square.getInstance(file, rank), moves);
+        for (int i = 0; i < moves.size(); i++)
+          if (isLegal(pos, (Move) moves.get(i), scratch)) return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns whether the player to move in the specified position is checkmated.
+   */
+  public static boolean isCheckmate(Position pos) {
+    return isInCheck(pos) && !hasLegalMoves(pos);
+  }
+}
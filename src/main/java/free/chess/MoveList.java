@@ -0,0 +1,461 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import java.util.Vector;
+
+/**
+ * A compact list of the moves made from some initial position. Each {@link ChessMove} is packed
+ * into a single <code>int</code> holding its starting square, ending square, promotion target type
+ * and castling flags, and {@link Move} objects (including their SAN representation) are only
+ * recreated, by replaying the game, when they are actually requested. Moves which can't be packed
+ * (drops, Kriegspiel moves and the like) are kept as objects. <P>
+ * Positions are recreated from lazily taken snapshots, one every <code>snapshotInterval</code>
+ * plies, so obtaining the position (or move) at any ply costs at most
+ * <code>snapshotInterval - 1</code> replayed moves once the game has been traversed once, while
+ * {@link #add(Move)} stays a single array store. <P>
+ * <B>IMPORTANT:</B> This class is not thread safe. Code which needs the same list on several
+ * threads (for example the connection thread and the UI thread) should keep a list per thread.
+ */
+public final class MoveList {
+
+  /**
+   * The default number of plies between two consecutive snapshots.
+   */
+  public static final int DEFAULT_SNAPSHOT_INTERVAL = 16;
+
+  /**
+   * The mask of the starting square index in an encoded move.
+   */
+  private static final int FROM_MASK = 0x3f;
+
+  /**
+   * The shift of the ending square index in an encoded move.
+   */
+  private static final int TO_SHIFT = 6;
+
+  /**
+   * The shift of the promotion target type in an encoded move.
+   */
+  private static final int PROMOTION_SHIFT = 12;
+
+  /**
+   * The flag marking a short castling.
+   */
+  private static final int SHORT_CASTLING_FLAG = 1 << 16;
+
+  /**
+   * The flag marking a long castling.
+   */
+  private static final int LONG_CASTLING_FLAG = 1 << 17;
+
+  /**
+   * The flag marking a move kept as an object. The rest of the bits hold the index of the move in
+   * <code>objects</code>.
+   */
+  private static final int OBJECT_FLAG = 1 << 31;
+
+  /**
+   * The promotion targets, indexed by <code>(isWhite ? 0 : 8) + type</code>. We use the shared
+   * <code>ChessPiece</code> instances because some code compares pieces by identity.
+   */
+  private static final ChessPiece[] PROMOTION_TARGETS = new ChessPiece[16];
+
+  static {
+    ChessPiece[] pieces =
+        new ChessPiece[] {
+          ChessPiece.WHITE_PAWN, ChessPiece.WHITE_KNIGHT, ChessPiece.WHITE_BISHOP,
+          ChessPiece.WHITE_ROOK, ChessPiece.WHITE_QUEEN, ChessPiece.WHITE_KING,
+          ChessPiece.BLACK_PAWN, ChessPiece.BLACK_KNIGHT, ChessPiece.BLACK_BISHOP,
+          ChessPiece.BLACK_ROOK, ChessPiece.BLACK_QUEEN, ChessPiece.BLACK_KING
+        };
+    for (int i = 0; i < pieces.length; i++) {
+      ChessPiece piece = pieces[i];
+      PROMOTION_TARGETS[(piece.isWhite() ? 0 : 8) + piece.getType()] = piece;
+    }
+  }
+
+  /**
+   * The approximate amount of memory, in bytes, taken by a position snapshot - the object itself
+   * and its board array. The pieces themselves are shared.
+   */
+  private static final int APPROXIMATE_SNAPSHOT_SIZE = 48 + 16 + 64 * 4;
+
+  /**
+   * The approximate amount of memory, in bytes, taken by a move we couldn't encode.
+   */
+  private static final int APPROXIMATE_MOVE_OBJECT_SIZE = 64;
+
+  /**
+   * The number of plies between two consecutive snapshots.
+   */
+  private final int snapshotInterval;
+
+  /**
+   * The encoded moves.
+   */
+  private int[] moves = new int[16];
+
+  /**
+   * The number of moves in the list.
+   */
+  private int size = 0;
+
+  /**
+   * The moves we couldn't encode, or <code>null</code> if there are none.
+   */
+  private Vector objects = null;
+
+  /**
+   * The snapshots taken so far. The snapshot at index <code>i</code>, if not <code>null</code>, is
+   * the position after <code>i * snapshotInterval</code> plies. The snapshot at index 0 is the
+   * initial position and is always present.
+   */
+  private PositionSnapshot[] snapshots = new PositionSnapshot[4];
+
+  /**
+   * Creates a new, empty <code>MoveList</code> starting at the specified position and using the
+   * default snapshot interval.
+   */
+  public MoveList(PositionSnapshot initialPosition) {
+    this(initialPosition, DEFAULT_SNAPSHOT_INTERVAL);
+  }
+
+  /**
+   * Creates a new, empty <code>MoveList</code> starting at the specified position and taking a
+   * snapshot every <code>snapshotInterval</code> plies.
+   */
+  public MoveList(PositionSnapshot initialPosition, int snapshotInterval) {
+    if (initialPosition == null)
+      throw new IllegalArgumentException("The initial position may not be null");
+    if (snapshotInterval < 1)
+      throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+
+    this.snapshotInterval = snapshotInterval;
+    this.snapshots[0] = initialPosition;
+  }
+
+  /**
+   * Discards all the moves and sets the initial position to the specified one.
+   */
+  public void reset(PositionSnapshot initialPosition) {
+    if (initialPosition == null)
+      throw new IllegalArgumentException("The initial position may not be null");
+
+    clear();
+    snapshots[0] = initialPosition;
+  }
+
+  /**
+   * Discards all the moves, keeping the initial position.
+   */
+  public void clear() {
+    size = 0;
+    objects = null;
+    for (int i = 1; i < snapshots.length; i++) snapshots[i] = null;
+  }
+
+  /**
+   * Returns the initial position.
+   */
+  public PositionSnapshot getInitialPosition() {
+    return snapshots[0];
+  }
+
+  /**
+   * Returns the number of moves (plies) in the list.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether the list contains no moves.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the player who makes the move at the specified ply (0-based).
+   */
+  public Player getPlayer(int ply) {
+    Player firstPlayer = getInitialPosition().getCurrentPlayer();
+    return (ply % 2 == 0) ? firstPlayer : firstPlayer.getOpponent();
+  }
+
+  /**
+   * Appends the specified move, which must have been made in the position after the current last
+   * move.
+   */
+  public void add(Move move) {
+    if (size == moves.length) {
+      int[] newMoves = new int[size * 2];
+      System.arraycopy(moves, 0, newMoves, 0, size);
+      moves = newMoves;
+    }
+
+    moves[size++] = encode(move);
+  }
+
+  /**
+   * Removes the specified amount of moves from the end of the list, as happens on a takeback.
+   */
+  public void removeLast(int count) {
+    if ((count < 0) || (count > size))
+      throw new IllegalArgumentException("Bad amount of moves to remove: " + count);
+
+    int newSize = size - count;
+    if (objects != null) {
+      int removedObjects = 0;
+      for (int i = newSize; i < size; i++) if ((moves[i] & OBJECT_FLAG) != 0) removedObjects++;
+      objects.setSize(objects.size() - removedObjects);
+      if (objects.isEmpty()) objects = null;
+    }
+    size = newSize;
+
+    for (int i = size / snapshotInterval + 1; i < snapshots.length; i++) snapshots[i] = null;
+  }
+
+  /**
+   * Returns the move made at the specified ply (0-based). If the move is recreated, its string
+   * representation is its SAN.
+   */
+  public Move getMove(int ply) {
+    checkPly(ply, size - 1);
+
+    if ((moves[ply] & OBJECT_FLAG) != 0) return getObject(moves[ply]);
+
+    Position pos = new Position(getInitialPosition().getVariant());
+    getPosition(ply, pos);
+    return decode(moves[ply], pos, true);
+  }
+
+  /**
+   * Returns the move made at the specified ply (0-based), recreating it in the specified position,
+   * which must be the position before the move, rather than replaying the game to it. The string
+   * representation of the recreated move is not its SAN.
+   */
+  public Move getMove(int ply, Position pos) {
+    checkPly(ply, size - 1);
+
+    return decode(moves[ply], pos, false);
+  }
+
+  /**
+   * Returns the moves made at plies <code>[start, end)</code>, replaying the game only once. The
+   * string representation of the recreated moves is their SAN.
+   */
+  public Move[] getMoves(int start, int end) {
+    if ((start < 0) || (end > size) || (start > end))
+      throw new IllegalArgumentException("Bad range: [" + start + ", " + end + ")");
+
+    Move[] result = new Move[end - start];
+    if (start == end) return result;
+
+    Position pos = new Position(getInitialPosition().getVariant());
+    getPosition(start, pos);
+    for (int ply = start; ply < end; ply++) {
+      Move move = decode(moves[ply], pos, true);
+      result[ply - start] = move;
+      pos.makeMove(move);
+      takeSnapshot(ply + 1, pos);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the SAN of the move made at the specified ply (0-based), or its string representation
+   * if it is not a chess move.
+   */
+  public String getSAN(int ply) {
+    return getMove(ply).toString();
+  }
+
+  /**
+   * Sets the specified position to the position after the specified amount of plies. The target
+   * position fires a single change event (or none, if it's in a batch) no matter how many moves had
+   * to be replayed.
+   */
+  public void getPosition(int ply, Position target) {
+    checkPly(ply, size);
+
+    int snapshotIndex = Math.min(ply / snapshotInterval, snapshots.length - 1);
+    while (snapshots[snapshotIndex] == null) snapshotIndex--;
+
+    PositionSnapshot snapshot = snapshots[snapshotIndex];
+    int firstPly = snapshotIndex * snapshotInterval;
+    if (firstPly == ply) target.copyFrom(snapshot);
+    else {
+      Position pos = new Position(snapshot);
+      for (int i = firstPly; i < ply; i++) {
+        pos.makeMove(decode(moves[i], pos, false));
+        takeSnapshot(i + 1, pos);
+      }
+      target.copyFrom(pos);
+    }
+  }
+
+  /**
+   * Returns a new position equal to the position after the specified amount of plies.
+   */
+  public Position getPosition(int ply) {
+    Position pos = new Position(getInitialPosition().getVariant());
+    getPosition(ply, pos);
+    return pos;
+  }
+
+  /**
+   * Returns the approximate amount of memory, in bytes, taken by this <code>MoveList</code>,
+   * including its snapshots but not the initial position, which is usually shared with the game.
+   * Since the result is only an estimate, this method may be invoked while the list is being
+   * modified by another thread.
+   */
+  public long getApproximateSize() {
+    PositionSnapshot[] snapshots = this.snapshots;
+    Vector objects = this.objects;
+
+    long bytes = 32 + (16 + 4L * moves.length) + (16 + 4L * snapshots.length);
+    for (int i = 1; i < snapshots.length; i++)
+      if (snapshots[i] != null) bytes += APPROXIMATE_SNAPSHOT_SIZE;
+    if (objects != null)
+      bytes += 24 + objects.size() * (4L + APPROXIMATE_MOVE_OBJECT_SIZE);
+
+    return bytes;
+  }
+
+  /**
+   * Releases all the memory not needed to hold the moves - trims the list to its size and discards
+   * the snapshots, which are recreated as needed. Useful for lists which are kept, but rarely looked
+   * at, such as those of ended games.
+   */
+  public void compact() {
+    if (moves.length > size) {
+      int[] newMoves = new int[Math.max(size, 1)];
+      System.arraycopy(moves, 0, newMoves, 0, size);
+      moves = newMoves;
+    }
+
+    if (snapshots.length > 1) {
+      PositionSnapshot[] newSnapshots = new PositionSnapshot[1];
+      newSnapshots[0] = snapshots[0];
+      snapshots = newSnapshots;
+    }
+
+    if (objects != null) objects.trimToSize();
+  }
+
+  /**
+   * Remembers the specified position as the position after the specified amount of plies, if a
+   * snapshot is due there.
+   */
+  private void takeSnapshot(int ply, Position pos) {
+    if (ply % snapshotInterval != 0) return;
+
+    int snapshotIndex = ply / snapshotInterval;
+    if (snapshotIndex >= snapshots.length) {
+      PositionSnapshot[] newSnapshots = new PositionSnapshot[snapshotIndex * 2];
+      System.arraycopy(snapshots, 0, newSnapshots, 0, snapshots.length);
+      snapshots = newSnapshots;
+    }
+
+    if (snapshots[snapshotIndex] == null) snapshots[snapshotIndex] = pos.snapshot();
+  }
+
+  /**
+   * Throws an <code>IllegalArgumentException</code> if the specified ply is not in
+   * <code>[0, max]</code>.
+   */
+  private static void checkPly(int ply, int max) {
+    if ((ply < 0) || (ply > max)) throw new IllegalArgumentException("Ply out of range: " + ply);
+  }
+
+  /**
+   * Encodes the specified move, adding it to <code>objects</code> if it can't be packed.
+   */
+  private int encode(Move move) {
+    if ((move.getClass() == ChessMove.class)
+        && (move.getStartingSquare() != null)
+        && (move.getEndingSquare() != null)) {
+      ChessMove cmove = (ChessMove) move;
+      int code =
+          cmove.getStartingSquare().getIndex() | (cmove.getEndingSquare().getIndex() << TO_SHIFT);
+      if (cmove.isShortCastling()) code |= SHORT_CASTLING_FLAG;
+      else if (cmove.isLongCastling()) code |= LONG_CASTLING_FLAG;
+      else if (cmove.isPromotion())
+        code |= cmove.getPromotionTarget().getType() << PROMOTION_SHIFT;
+      return code;
+    }
+
+    if (objects == null) objects = new Vector();
+    objects.addElement(move);
+    return OBJECT_FLAG | (objects.size() - 1);
+  }
+
+  /**
+   * Returns the move kept as an object for the specified encoded move.
+   */
+  private Move getObject(int code) {
+    return (Move) objects.elementAt(code & ~OBJECT_FLAG);
+  }
+
+  /**
+   * Recreates the specified encoded move, made in the specified position, optionally setting its
+   * string representation to its SAN.
+   */
+  private Move decode(int code, Position pos, boolean withSAN) {
+    if ((code & OBJECT_FLAG) != 0) return getObject(code);
+
+    WildVariant variant = pos.getVariant();
+    Move move;
+    if ((code & SHORT_CASTLING_FLAG) != 0) move = variant.createShortCastling(pos);
+    else if ((code & LONG_CASTLING_FLAG) != 0) move = variant.createLongCastling(pos);
+    else {
+      Square startingSquare = Square.getInstance(code & FROM_MASK);
+      Square endingSquare = Square.getInstance((code >> TO_SHIFT) & FROM_MASK);
+      int promotionType = (code >> PROMOTION_SHIFT) & 0xf;
+      Piece promotionTarget =
+          promotionType == 0
+              ? null
+              : PROMOTION_TARGETS[(pos.getCurrentPlayer().isWhite() ? 0 : 8) + promotionType];
+      move = variant.createMove(pos, startingSquare, endingSquare, promotionTarget, null);
+    }
+
+    if (!withSAN || !(move instanceof ChessMove)) return move;
+
+    String san;
+    try {
+      san = SanNotation.toSAN(pos, move);
+    } catch (IllegalArgumentException e) {
+      return move;
+    }
+
+    ChessMove cmove = (ChessMove) move;
+    return new ChessMove(
+        cmove.getStartingSquare(),
+        cmove.getEndingSquare(),
+        cmove.getPlayer(),
+        cmove.isEnPassant(),
+        cmove.isShortCastling(),
+        cmove.isLongCastling(),
+        cmove.getCapturedPiece(),
+        cmove.getDoublePawnPushFile(),
+        cmove.getPromotionTarget(),
+        san);
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import java.util.List;
+
+/**
+ * A commandline perft check of {@link MoveGenerator}: counts the leaf nodes of the legal move tree
+ * of a position to a given depth and compares the counts to the published ones. Without arguments,
+ * the standard perft positions (the initial position, "Kiwipete" and positions 3 to 5) are checked
+ * and the exit status is nonzero if any count is wrong. Usage: <code>Perft [fen depth]</code>
+ * prints the counts for the specified position instead.
+ */
+public class Perft {
+
+  /**
+   * The standard positions, in FEN.
+   */
+  private static final String[] POSITIONS = {
+    "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+  };
+
+  /**
+   * The expected node counts of the standard positions, starting at depth 1.
+   */
+  private static final long[][] EXPECTED_COUNTS = {
+    {20, 400, 8902, 197281},
+    {48, 2039, 97862},
+    {14, 191, 2812, 43238},
+    {6, 264, 9467, 422333},
+    {44, 1486, 62379},
+  };
+
+  /**
+   * The main method.
+   */
+  public static void main(String[] args) {
+    if (args.length == 2) {
+      Position pos = createPosition(args[0]);
+      int depth = Integer.parseInt(args[1]);
+      for (int i = 1; i <= depth; i++) System.out.println("Depth " + i + ": " + perft(pos, i));
+      return;
+    }
+
+    int failures = 0;
+    for (int i = 0; i < POSITIONS.length; i++) {
+      Position pos = createPosition(POSITIONS[i]);
+      for (int depth = 1; depth <= EXPECTED_COUNTS[i].length; depth++) {
+        long expected = EXPECTED_COUNTS[i][depth - 1];
+        long count = perft(pos, depth);
+        boolean ok = count == expected;
+        if (!ok) failures++;
+        System.out.println(
+            (ok ? "OK    " : "WRONG ")
+                + POSITIONS[i]
+                + " depth "
+                + depth
+                + ": "
+                + count
+                + (ok ? "" : " (expected " + expected + ")"));
+      }
+    }
+
+    if (failures != 0) System.exit(1);
+  }
+
+  /**
+   * Creates a standard chess position from the specified FEN.
+   */
+  private static Position createPosition(String fen) {
+    Position pos = new Position(Chess.getInstance());
+    pos.setFEN(fen);
+    return pos;
+  }
+
+  /**
+   * Returns the amount of leaf nodes of the legal move tree of the specified position at the
+   * specified depth.
+   */
+  public static long perft(Position pos, int depth) {
+    List moves = MoveGenerator.getLegalMoves(pos);
+    if (depth == 1) return moves.size();
+
+    long count = 0;
+    Position child = new Position(pos);
+    for (int i = 0; i < moves.size(); i++) {
+      child.copyFrom(pos);
+      child.makeMove((Move) moves.get(i));
+      count += perft(child, depth - 1);
+    }
+
+    return count;
+  }
+}
@@ -17,7 +17,6 @@
 package free.chess;
 
 import java.util.Collection;
-import java.util.StringTokenizer;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -25,6 +24,7 @@ import javax.swing.event.EventListenerList;
 
 import free.chess.event.MoveEvent;
 import free.chess.event.MoveListener;
+import free.chess.event.PositionChangeEvent;
 import free.util.Utilities;
 
 /**
@@ -35,20 +35,63 @@ import free.util.Utilities;
  */
 public final class Position {
 
+  /**
+   * The castling rights flag for White castling short (on the king's side).
+   */
+  public static final int WHITE_SHORT_CASTLING = 1;
+
+  /**
+   * The castling rights flag for White castling long (on the queen's side).
+   */
+  public static final int WHITE_LONG_CASTLING = 2;
+
+  /**
+   * The castling rights flag for Black castling short (on the king's side).
+   */
+  public static final int BLACK_SHORT_CASTLING = 4;
+
+  /**
+   * The castling rights flag for Black castling long (on the queen's side).
+   */
+  public static final int BLACK_LONG_CASTLING = 8;
+
+  /**
+   * All the castling rights flags combined.
+   */
+  public static final int ALL_CASTLING = 15;
+
+  /**
+   * Single character strings for the ASCII characters, so that parsing pieces doesn't require
+   * creating a string per piece.
+   */
+  private static final String[] CHAR_STRINGS = new String[128];
+
+  static {
+    for (int i = 0; i < CHAR_STRINGS.length; i++) CHAR_STRINGS[i] = String.valueOf((char) i);
+  }
+
   /**
    * The WildVariant of this Position.
    */
   private final WildVariant variant;
 
   /**
-   * A matrix to keep references to the pieces.
+   * The pieces on the board, indexed by <code>rank * 8 + file</code>. The array may be shared with
+   * {@link PositionSnapshot}s (and through them, with other positions), in which case
+   * <code>boardShared</code> is set and the array is copied before it is first modified.
+   */
+  private Piece[] board;
+
+  /**
+   * Whether <code>board</code> is shared with a snapshot and must be copied before modification.
    */
-  private final Piece[][] pieces = new Piece[8][8];
+  private boolean boardShared;
 
   /**
-   * The Modifier of this Position.
+   * The Modifier of this Position, created lazily since most positions are never passed to a
+   * WildVariant for making moves.
    */
-  private final Modifier modifier;
+  private Modifier modifier;
 
   /**
    * The Player whose turn it currently is in this Position.
@@ -56,10 +99,37 @@ public final class Position {
   private Player currentPlayer;
 
   /**
-   * A FEN representation of the position.
+   * The castling rights in this position, a combination of the castling rights flags.
+   */
+  private int castlingRights;
+
+  /**
+   * The square over which a pawn has just made a double push, <code>null</code> if none.
+   */
+  private Square enPassantSquare;
+
+  /**
+   * The number of plies since the last pawn move or capture.
+   */
+  private int halfmoveClock;
+
+  /**
+   * The number of the full move, starting at 1 and incremented after Black's move.
+   */
+  private int fullmoveNumber = 1;
+
+  /**
+   * The cached FEN representation of the position, <code>null</code> if it hasn't been computed
+   * since the last modification.
    */
   private String positionFEN;
 
+  /**
+   * The cached snapshot of the position, <code>null</code> if it hasn't been taken since the last
+   * modification.
+   */
+  private PositionSnapshot snapshot;
+
   /**
    * Only one ChangeEvent is needed per model instance since the event's only (read-only) state is
    * the source property. The source of events generated here is always "this".
@@ -67,9 +137,27 @@ public final class Position {
   protected transient ChangeEvent changeEvent = null;
 
   /**
-   * The listeners waiting for model changes.
+   * The listeners waiting for model changes, <code>null</code> until the first listener is added.
+   */
+  protected EventListenerList listenerList = null;
+
+  /**
+   * The nesting depth of batch updates. While it is positive, no events are fired.
+   *
+   * @see #beginBatch()
    */
-  protected EventListenerList listenerList = new EventListenerList();
+  private int batchDepth = 0;
+
+  /**
+   * Whether a change occurred during the current batch update.
+   */
+  private boolean batchChanged = false;
+
+  /**
+   * The squares modified during the current batch update, as a bitmask where bit
+   * <code>rank * 8 + file</code> is set for each modified square.
+   */
+  private long batchChangedSquares = 0;
 
   /**
    * Creates a new Position with the regular WildVariant (normal chess).
@@ -85,17 +173,25 @@ public final class Position {
    */
   public Position(WildVariant variant) {
     this.variant = variant;
-    this.modifier = new Modifier(this);
+    this.board = new Piece[64];
     init();
   }
 
   /**
-   * Creates a new Position which is exactly like the given Position.
+   * Creates a new Position which is exactly like the given Position. The board is shared with the
+   * given position until either of them is modified, so this is cheap.
    */
   public Position(Position source) {
-    this.variant = source.variant;
-    this.modifier = new Modifier(this);
-    copyFrom(source);
+    this(source.snapshot());
+  }
+
+  /**
+   * Creates a new, modifiable Position which is exactly like the given snapshot. The board is
+   * shared with the snapshot until this position is first modified, so this is cheap.
+   */
+  public Position(PositionSnapshot source) {
+    this.variant = source.getVariant();
+    setFromSnapshot(source);
   }
 
   /**
@@ -118,7 +214,7 @@ public final class Position {
    * Returns the piece at the square with the given file and rank.
    */
   public Piece getPieceAt(int file, int rank) {
-    return pieces[file][rank];
+    return board[(rank << 3) | file];
   }
 
   /**
@@ -185,7 +281,7 @@ public final class Position {
     try {
       for (int rank = 7; rank >= 0; rank--) {
         for (int file = 0; file < 8; file++) {
-          setPieceAtImpl(variant.parsePiece("" + pos.charAt(i++)), Square.getInstance(file, rank));
+          setPieceAtImpl(parsePiece(pos.charAt(i++)), Square.getInstance(file, rank));
         }
       }
     } catch (IllegalArgumentException e) {
@@ -193,6 +289,10 @@ public final class Position {
     }
 
     setCurrentPlayerImpl(Player.WHITE_PLAYER);
+    castlingRights = guessCastlingRights();
+    enPassantSquare = null;
+    halfmoveClock = 0;
+    fullmoveNumber = 1;
 
     fireStateChanged();
   }
@@ -219,65 +319,366 @@ public final class Position {
    * FEN format is described at <A
    * HREF="http://www.very-best.de/pgn-spec.htm#16.1">http://www.very-best.de/pgn-spec.htm#16.1</A>.
    * The characters describing pieces aren't limited to the chess set (like in FEN), but are
-   * determined by the WildVariant of this position.
+   * determined by the WildVariant of this position. The castling availability field may also use
+   * the Shredder-FEN/X-FEN file letters used for Fischer random chess. The halfmove clock and
+   * fullmove number fields may be omitted, in which case they default to 0 and 1.
    *
    * @throws PositionFormatException if the given string is not in the expected format.
    */
   public void setFEN(String fen) throws PositionFormatException {
-    StringTokenizer fenTokenizer = new StringTokenizer(fen, " ");
-    if (fenTokenizer.countTokens() != 6)
-      throw new PositionFormatException("Wrong amount of fields");
+    int length = fen.length();
+    int index = parseFENFields(fen);
+    if (index < length) {
+      int end = getFieldEnd(fen, index);
+      halfmoveClock = parseNumber(fen, index, end, "halfmove clock");
+      index = skipSpaces(fen, end);
+    }
+    if (index < length) {
+      int end = getFieldEnd(fen, index);
+      fullmoveNumber = parseNumber(fen, index, end, "fullmove number");
+      index = skipSpaces(fen, end);
+    }
+    if (index != length) throw new PositionFormatException("Wrong amount of fields");
+
+    fireStateChanged();
+  }
+
+  /**
+   * Sets this Position to represent the position described by the given string in EPD format. The
+   * EPD format is described at <A
+   * HREF="http://www.very-best.de/pgn-spec.htm#16.2">http://www.very-best.de/pgn-spec.htm#16.2</A>.
+   * Of the operations, only "hmvc" (halfmove clock) and "fmvn" (fullmove number) are used; the
+   * rest are ignored.
+   *
+   * @throws PositionFormatException if the given string is not in the expected format.
+   */
+  public void setEPD(String epd) throws PositionFormatException {
+    int index = parseFENFields(epd);
+    int length = epd.length();
+    while (index < length) {
+      int opEnd = epd.indexOf(';', index);
+      if (opEnd == -1) opEnd = length;
+
+      int opcodeEnd = getFieldEnd(epd, index);
+      if ((opcodeEnd - index == 4) && (opcodeEnd < opEnd)) {
+        int operandStart = skipSpaces(epd, opcodeEnd);
+        int operandEnd = getFieldEnd(epd, operandStart);
+        if (epd.startsWith("hmvc", index))
+          halfmoveClock = parseNumber(epd, operandStart, operandEnd, "hmvc operand");
+        else if (epd.startsWith("fmvn", index))
+          fullmoveNumber = parseNumber(epd, operandStart, operandEnd, "fmvn operand");
+      }
 
-    String pos = fenTokenizer.nextToken();
-    StringTokenizer ranks = new StringTokenizer(pos, "/");
-    if (ranks.countTokens() != 8) throw new PositionFormatException("Wrong amount of ranks");
+      index = skipSpaces(epd, opEnd + 1);
+    }
 
-    for (int rank = 7; rank >= 0; rank--) {
-      String rankString = ranks.nextToken();
-      int file = 0;
-      for (int i = 0; i < rankString.length(); i++) {
+    fireStateChanged();
+  }
+
+  /**
+   * Parses the board, active color, castling availability and en passant target square fields
+   * common to FEN and EPD, without firing any events. The halfmove clock and fullmove number are
+   * reset to 0 and 1. Returns the index of the first non-space character after the parsed fields.
+   */
+  private int parseFENFields(String fen) throws PositionFormatException {
+    int length = fen.length();
+    int index = skipSpaces(fen, 0);
+
+    // Piece placement
+    int rank = 7;
+    int file = 0;
+    for (; index < length; index++) {
+      char c = fen.charAt(index);
+      if (c == ' ') break;
+      else if (c == '/') {
+        if (file != 8) throw new PositionFormatException("Rank " + rank + " is a few files short");
+        if (--rank < 0) throw new PositionFormatException("Wrong amount of ranks");
+        file = 0;
+      } else if ((c >= '1') && (c <= '8')) {
+        int emptyFiles = c - '0';
+        if (file + emptyFiles > 8)
+          throw new PositionFormatException("Rank " + rank + " extends beyond the board");
+        while (emptyFiles-- > 0) setPieceAtImpl(null, Square.getInstance(file++, rank));
+      } else {
         if (file > 7)
           throw new PositionFormatException("Rank " + rank + " extends beyond the board");
-
-        char c = rankString.charAt(i);
-        if (Character.isDigit(c)) {
-          int emptyFiles = Character.digit(c, 10);
-          while (emptyFiles-- > 0) {
-            setPieceAtImpl(null, Square.getInstance(file, rank));
-            file++;
-          }
-        } else {
-          try {
-            setPieceAtImpl(variant.parsePiece(String.valueOf(c)), Square.getInstance(file, rank));
-            file++;
-          } catch (IllegalArgumentException e) {
-            throw new PositionFormatException(e);
-          }
+        try {
+          setPieceAtImpl(parsePiece(c), Square.getInstance(file++, rank));
+        } catch (IllegalArgumentException e) {
+          throw new PositionFormatException(e);
         }
       }
-      if (file != 8) throw new PositionFormatException("Rank " + rank + " is a few files short");
     }
+    if ((rank != 0) || (file != 8)) throw new PositionFormatException("Wrong amount of ranks");
+
+    // Active color
+    index = skipSpaces(fen, index);
+    if ((index + 1 < length) && (fen.charAt(index + 1) != ' '))
+      throw new PositionFormatException("Wrong amount of characters in active color indicator");
+    char color = (index < length) ? fen.charAt(index) : ' ';
+    if (color == 'w') setCurrentPlayerImpl(Player.WHITE_PLAYER);
+    else if (color == 'b') setCurrentPlayerImpl(Player.BLACK_PLAYER);
+    else throw new PositionFormatException("Wrong active color indicator: " + color);
+    index = skipSpaces(fen, index + 1);
+
+    // Castling availability
+    if (index >= length) throw new PositionFormatException("Wrong amount of fields");
+    int rights = 0;
+    if (fen.charAt(index) == '-') index++;
+    else {
+      for (; (index < length) && (fen.charAt(index) != ' '); index++)
+        rights |= parseCastlingRight(fen.charAt(index));
+    }
+    castlingRights = rights;
+    index = skipSpaces(fen, index);
+
+    // En passant target square
+    if (index >= length) throw new PositionFormatException("Wrong amount of fields");
+    if (fen.charAt(index) == '-') {
+      enPassantSquare = null;
+      index++;
+    } else {
+      if (index + 1 >= length) throw new PositionFormatException("Bad en passant square");
+      Square square =
+          Square.getInstanceNonStrict(fen.charAt(index) - 'a', fen.charAt(index + 1) - '1');
+      if (square == null) throw new PositionFormatException("Bad en passant square");
+      enPassantSquare = square;
+      index += 2;
+    }
+    if ((index < length) && (fen.charAt(index) != ' '))
+      throw new PositionFormatException("Bad en passant square");
+
+    halfmoveClock = 0;
+    fullmoveNumber = 1;
+    invalidateCaches();
+
+    return skipSpaces(fen, index);
+  }
 
-    String colorToMove = fenTokenizer.nextToken();
-    if (colorToMove.length() != 1)
-      throw new PositionFormatException(
-          "Wrong amount of characters in active color indicator: " + colorToMove);
-    if (colorToMove.equals("w")) setCurrentPlayerImpl(Player.WHITE_PLAYER);
-    else if (colorToMove.equals("b")) setCurrentPlayerImpl(Player.BLACK_PLAYER);
-    else throw new PositionFormatException("Wrong active color indicator: " + colorToMove);
+  /**
+   * Parses the non-negative decimal number occupying the specified range of the specified string.
+   */
+  private static int parseNumber(String s, int start, int end, String fieldName)
+      throws PositionFormatException {
+    if (start == end) throw new PositionFormatException("Missing " + fieldName);
+
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if ((c < '0') || (c > '9') || (value > 100000000))
+        throw new PositionFormatException("Bad " + fieldName + ": " + s.substring(start, end));
+      value = value * 10 + (c - '0');
+    }
 
-    this.positionFEN = fen;
+    return value;
   }
 
   /**
-   * Returns the FEN representation of this Position. May return <code>null</code> if the current
-   * position wasn't set via the setFEN method. Note that as soon as the position is changed after
-   * setFEN was called, this method will return <code>null</code>.
+   * Returns the index of the first space or semicolon at or after the specified index, or the
+   * length of the string if there is none.
+   */
+  private static int getFieldEnd(String s, int index) {
+    int length = s.length();
+    while (index < length) {
+      char c = s.charAt(index);
+      if ((c == ' ') || (c == ';')) break;
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the first non-space character at or after the specified index.
+   */
+  private static int skipSpaces(String s, int index) {
+    int length = s.length();
+    while ((index < length) && (s.charAt(index) == ' ')) index++;
+    return index;
+  }
+
+  /**
+   * Returns the castling rights flag specified by the given castling availability character. Both
+   * the standard "KQkq" and the Shredder-FEN file letters (relative to the king's file) are
+   * supported.
+   */
+  private int parseCastlingRight(char c) throws PositionFormatException {
+    switch (c) {
+      case 'K':
+        return WHITE_SHORT_CASTLING;
+      case 'Q':
+        return WHITE_LONG_CASTLING;
+      case 'k':
+        return BLACK_SHORT_CASTLING;
+      case 'q':
+        return BLACK_LONG_CASTLING;
+    }
+
+    boolean isWhite;
+    int rookFile;
+    if ((c >= 'A') && (c <= 'H')) {
+      isWhite = true;
+      rookFile = c - 'A';
+    } else if ((c >= 'a') && (c <= 'h')) {
+      isWhite = false;
+      rookFile = c - 'a';
+    } else throw new PositionFormatException("Bad castling availability character: " + c);
+
+    int kingFile = findKingFile(isWhite ? 0 : 7, isWhite ? Piece.WHITE : Piece.BLACK);
+    if (kingFile == -1) throw new PositionFormatException("No king for castling right: " + c);
+
+    if (rookFile > kingFile) return isWhite ? WHITE_SHORT_CASTLING : BLACK_SHORT_CASTLING;
+    else return isWhite ? WHITE_LONG_CASTLING : BLACK_LONG_CASTLING;
+  }
+
+  /**
+   * Returns the file of the king of the specified color on the specified rank, or -1 if there is
+   * none.
+   */
+  private int findKingFile(int rank, int color) {
+    for (int file = 0; file < 8; file++) {
+      Piece piece = board[(rank << 3) | file];
+      if ((piece instanceof ChessPiece)
+          && ((ChessPiece) piece).isKing()
+          && (piece.getColor() == color)) return file;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the piece represented by the specified character in the wild variant of this position.
+   */
+  private Piece parsePiece(char c) {
+    return variant.parsePiece(c < CHAR_STRINGS.length ? CHAR_STRINGS[c] : String.valueOf(c));
+  }
+
+  /**
+   * Returns the castling rights implied by the placement of the kings and rooks on their
+   * traditional squares. Used when the position is specified in a format that doesn't include
+   * castling availability.
+   */
+  private int guessCastlingRights() {
+    int rights = 0;
+    if (board[4] == ChessPiece.WHITE_KING) {
+      if (board[7] == ChessPiece.WHITE_ROOK) rights |= WHITE_SHORT_CASTLING;
+      if (board[0] == ChessPiece.WHITE_ROOK) rights |= WHITE_LONG_CASTLING;
+    }
+    if (board[60] == ChessPiece.BLACK_KING) {
+      if (board[63] == ChessPiece.BLACK_ROOK) rights |= BLACK_SHORT_CASTLING;
+      if (board[56] == ChessPiece.BLACK_ROOK) rights |= BLACK_LONG_CASTLING;
+    }
+
+    return rights;
+  }
+
+  /**
+   * Returns the FEN representation of this Position. The result is cached until the position is
+   * modified, so repeated calls are cheap.
    */
   public String getFEN() {
+    if (positionFEN == null) {
+      StringBuffer buf = new StringBuffer(90);
+      appendEPDFields(buf);
+      buf.append(' ').append(halfmoveClock);
+      buf.append(' ').append(fullmoveNumber);
+      positionFEN = buf.toString();
+      if (snapshot != null) snapshot.fen = positionFEN;
+    }
+
     return positionFEN;
   }
 
+  /**
+   * Returns the EPD representation of this Position, without any operations.
+   */
+  public String getEPD() {
+    String fen = getFEN();
+    int index = fen.length();
+    for (int i = 0; i < 2; i++) index = fen.lastIndexOf(' ', index - 1);
+
+    return fen.substring(0, index);
+  }
+
+  /**
+   * Appends the board, active color, castling availability and en passant target square fields to
+   * the specified buffer.
+   */
+  private void appendEPDFields(StringBuffer buf) {
+    for (int rank = 7; rank >= 0; rank--) {
+      int emptyFiles = 0;
+      for (int file = 0; file < 8; file++) {
+        Piece piece = board[(rank << 3) | file];
+        if (piece == null) emptyFiles++;
+        else {
+          if (emptyFiles != 0) buf.append((char) ('0' + emptyFiles));
+          emptyFiles = 0;
+          buf.append(piece.toShortColorString());
+        }
+      }
+      if (emptyFiles != 0) buf.append((char) ('0' + emptyFiles));
+      if (rank != 0) buf.append('/');
+    }
+
+    buf.append(currentPlayer.isWhite() ? " w " : " b ");
+
+    if (castlingRights == 0) buf.append('-');
+    else {
+      if ((castlingRights & WHITE_SHORT_CASTLING) != 0) buf.append('K');
+      if ((castlingRights & WHITE_LONG_CASTLING) != 0) buf.append('Q');
+      if ((castlingRights & BLACK_SHORT_CASTLING) != 0) buf.append('k');
+      if ((castlingRights & BLACK_LONG_CASTLING) != 0) buf.append('q');
+    }
+
+    buf.append(' ');
+    if (enPassantSquare == null) buf.append('-');
+    else buf.append(enPassantSquare.getFileChar()).append(enPassantSquare.getRankChar());
+  }
+
+  /**
+   * Returns the castling rights in this position, a combination of {@link #WHITE_SHORT_CASTLING},
+   * {@link #WHITE_LONG_CASTLING}, {@link #BLACK_SHORT_CASTLING} and {@link #BLACK_LONG_CASTLING}.
+   */
+  public int getCastlingRights() {
+    return castlingRights;
+  }
+
+  /**
+   * Sets the castling rights in this position.
+   *
+   * @see #getCastlingRights()
+   */
+  public void setCastlingRights(int castlingRights) {
+    if ((castlingRights & ~ALL_CASTLING) != 0)
+      throw new IllegalArgumentException("Bad castling rights: " + castlingRights);
+
+    this.castlingRights = castlingRights;
+    invalidateCaches();
+    fireStateChanged();
+  }
+
+  /**
+   * Returns the square over which a pawn has just made a double push (the en passant target square
+   * in FEN), or <code>null</code> if the last move wasn't a double pawn push.
+   */
+  public Square getEnPassantSquare() {
+    return enPassantSquare;
+  }
+
+  /**
+   * Returns the number of plies made since the last pawn move or capture.
+   */
+  public int getHalfmoveClock() {
+    return halfmoveClock;
+  }
+
+  /**
+   * Returns the number of the full move in this position. It starts at 1 and is incremented after
+   * each move by Black.
+   */
+  public int getFullmoveNumber() {
+    return fullmoveNumber;
+  }
+
   /**
    * Sets this Position to the initial position.
    */
@@ -293,13 +694,17 @@ public final class Position {
     for (int file = 0; file < 8; file++)
       for (int rank = 0; rank < 8; rank++) setPieceAtImpl(null, Square.getInstance(file, rank));
     setCurrentPlayerImpl(Player.WHITE_PLAYER);
+    castlingRights = 0;
+    enPassantSquare = null;
+    halfmoveClock = 0;
+    fullmoveNumber = 1;
 
     fireStateChanged();
   }
 
   /**
    * Makes the given Move on this position. This method first fires a MoveEvent and then a
-   * ChangeEvent.
+   * ChangeEvent, unless a batch update is in progress.
    *
    * @param move The move to make.
    *
@@ -307,11 +712,71 @@ public final class Position {
    * this Position.
    */
   public void makeMove(Move move) {
+    Square startingSquare = move.getStartingSquare();
+    Square endingSquare = move.getEndingSquare();
+    Piece movingPiece = (startingSquare == null) ? null : getPieceAt(startingSquare);
+    Piece takenPiece = (endingSquare == null) ? null : getPieceAt(endingSquare);
+    int newCastlingRights = castlingRights;
+    if (newCastlingRights != 0) {
+      if ((movingPiece instanceof ChessPiece) && ((ChessPiece) movingPiece).isKing())
+        newCastlingRights &=
+            movingPiece.isWhite()
+                ? ~(WHITE_SHORT_CASTLING | WHITE_LONG_CASTLING)
+                : ~(BLACK_SHORT_CASTLING | BLACK_LONG_CASTLING);
+      newCastlingRights &= ~getLostCastlingRight(startingSquare, movingPiece);
+      newCastlingRights &= ~getLostCastlingRight(endingSquare, takenPiece);
+    }
+
+    if (modifier == null) modifier = new Modifier(this);
     variant.makeMove(move, this, modifier);
+
+    castlingRights = newCastlingRights;
+    enPassantSquare = null;
+    if (move instanceof ChessMove) {
+      ChessMove cmove = (ChessMove) move;
+      int doublePawnPushFile = cmove.getDoublePawnPushFile();
+      if (doublePawnPushFile != -1)
+        enPassantSquare =
+            Square.getInstance(doublePawnPushFile, cmove.getPlayer().isWhite() ? 2 : 5);
+
+      boolean isPawnMove =
+          (movingPiece instanceof ChessPiece) && ((ChessPiece) movingPiece).isPawn();
+      if (cmove.isCapture() || isPawnMove) halfmoveClock = 0;
+      else halfmoveClock++;
+    } else halfmoveClock++;
+    if (move.getPlayer().isBlack()) fullmoveNumber++;
+    invalidateCaches();
+
     fireMoveMade(move);
     fireStateChanged();
   }
 
+  /**
+   * Returns the castling right lost when the specified piece, standing on the specified square,
+   * moves away or is captured. A rook takes the castling right on its side of the king with it, if
+   * it's the outermost rook on that side of the king's rank. Returns 0 if no castling right is
+   * lost.
+   */
+  private int getLostCastlingRight(Square square, Piece piece) {
+    if ((square == null) || !(piece instanceof ChessPiece) || !((ChessPiece) piece).isRook())
+      return 0;
+
+    int rank = square.getRank();
+    int color = piece.getColor();
+    if (rank != ((color == Piece.WHITE) ? 0 : 7)) return 0;
+
+    int kingFile = findKingFile(rank, color);
+    if (kingFile == -1) return 0;
+
+    int file = square.getFile();
+    int dir = (file > kingFile) ? 1 : -1;
+    for (int f = file + dir; (f >= 0) && (f < 8); f += dir)
+      if (board[(rank << 3) | f] == piece) return 0;
+
+    if (color == Piece.WHITE) return (dir == 1) ? WHITE_SHORT_CASTLING : WHITE_LONG_CASTLING;
+    else return (dir == 1) ? BLACK_SHORT_CASTLING : BLACK_LONG_CASTLING;
+  }
+
   /**
    * Makes this position a copy of the given position by setting it to the same state. The
    * WildVariants of the Positions must match.
@@ -322,19 +787,78 @@ public final class Position {
     if (!variant.equals(position.variant))
       throw new IllegalArgumentException("The WildVariants of the positions don't match");
 
-    for (int file = 0; file < pieces.length; file++) {
-      for (int rank = 0; rank < pieces[file].length; rank++) {
-        pieces[file][rank] = position.pieces[file][rank];
-      }
-    }
+    copyFrom(position.snapshot());
+  }
+
+  /**
+   * Makes this position a copy of the given snapshot. The board is shared with the snapshot until
+   * this position is next modified. The WildVariants of the position and the snapshot must match.
+   *
+   * @param source The snapshot to copy.
+   */
+  public void copyFrom(PositionSnapshot source) {
+    if (!variant.equals(source.getVariant()))
+      throw new IllegalArgumentException("The WildVariants of the positions don't match");
 
-    setCurrentPlayerImpl(position.getCurrentPlayer());
+    if (batchDepth > 0) {
+      Piece[] sourceBoard = source.board;
+      for (int i = 0; i < 64; i++)
+        if (board[i] != sourceBoard[i]) batchChangedSquares |= 1L << i;
+    }
 
-    this.positionFEN = position.positionFEN;
+    setFromSnapshot(source);
 
     fireStateChanged();
   }
 
+  /**
+   * Sets the state of this position (but not the variant) to that of the specified snapshot,
+   * sharing its board, without firing any events.
+   */
+  private void setFromSnapshot(PositionSnapshot source) {
+    this.board = source.board;
+    this.boardShared = true;
+    this.currentPlayer = source.getCurrentPlayer();
+    this.castlingRights = source.getCastlingRights();
+    this.enPassantSquare = source.getEnPassantSquare();
+    this.halfmoveClock = source.getHalfmoveClock();
+    this.fullmoveNumber = source.getFullmoveNumber();
+    this.positionFEN = source.fen;
+    this.snapshot = source;
+  }
+
+  /**
+   * Returns an immutable snapshot of the current state of this position. The snapshot shares the
+   * board with this position until the position is next modified, and the same snapshot is
+   * returned until then, so taking a snapshot of a position that is not changing costs nothing.
+   */
+  public PositionSnapshot snapshot() {
+    if (snapshot == null) {
+      boardShared = true;
+      snapshot =
+          new PositionSnapshot(
+              variant,
+              board,
+              currentPlayer,
+              castlingRights,
+              enPassantSquare,
+              halfmoveClock,
+              fullmoveNumber,
+              positionFEN);
+    }
+
+    return snapshot;
+  }
+
+  /**
+   * Discards the cached FEN and snapshot of this position. Must be called whenever the position is
+   * modified.
+   */
+  private void invalidateCaches() {
+    positionFEN = null;
+    snapshot = null;
+  }
+
   /**
    * Puts the given piece at the given square, replacing the piece that was there before. The
    * difference between this and the setPieceAt(Piece,Square) method is that this method does not
@@ -347,8 +871,17 @@ public final class Position {
    * @see #setPieceAt(Piece, Square);
    */
   private void setPieceAtImpl(Piece piece, Square square) {
-    pieces[square.getFile()][square.getRank()] = piece;
-    positionFEN = null;
+    int index = (square.getRank() << 3) | square.getFile();
+    if (board[index] == piece) return;
+
+    if (boardShared) {
+      board = (Piece[]) board.clone();
+      boardShared = false;
+    }
+    board[index] = piece;
+    invalidateCaches();
+
+    if (batchDepth > 0) batchChangedSquares |= 1L << index;
   }
 
   /**
@@ -360,7 +893,60 @@ public final class Position {
    */
   private void setCurrentPlayerImpl(Player player) {
     this.currentPlayer = player;
-    positionFEN = null;
+    invalidateCaches();
+  }
+
+  /**
+   * Begins a batch update. Until the matching call to {@link #endBatch()}, this position doesn't
+   * fire any <code>MoveEvent</code>s or <code>ChangeEvent</code>s. When the outermost batch ends,
+   * a single {@link PositionChangeEvent} is fired if anything changed, carrying the union of the
+   * squares modified during the batch. Batches may be nested. Use this when making a series of
+   * changes, such as replaying a list of moves, which listeners only care about as a whole:
+   *
+   * <pre>
+   * position.beginBatch();
+   * try {
+   *   ...
+   * } finally {
+   *   position.endBatch();
+   * }
+   * </pre>
+   */
+  public void beginBatch() {
+    batchDepth++;
+  }
+
+  /**
+   * Ends a batch update started with {@link #beginBatch()}.
+   *
+   * @throws IllegalStateException if there is no batch update in progress.
+   */
+  public void endBatch() {
+    if (batchDepth == 0) throw new IllegalStateException("No batch update in progress");
+
+    if (--batchDepth > 0) return;
+
+    boolean changed = batchChanged;
+    long changedSquares = batchChangedSquares;
+    batchChanged = false;
+    batchChangedSquares = 0;
+
+    if (changed && (listenerList != null)) {
+      PositionChangeEvent evt = new PositionChangeEvent(this, changedSquares);
+      Object[] listeners = listenerList.getListenerList();
+      for (int i = listeners.length - 2; i >= 0; i -= 2) {
+        if (listeners[i] == ChangeListener.class) {
+          ((ChangeListener) listeners[i + 1]).stateChanged(evt);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether a batch update is currently in progress.
+   */
+  public boolean isInBatch() {
+    return batchDepth > 0;
   }
 
   /**
@@ -370,6 +956,7 @@ public final class Position {
    * @see #removeChangeListener
    */
   public void addChangeListener(ChangeListener l) {
+    if (listenerList == null) listenerList = new EventListenerList();
     listenerList.add(ChangeListener.class, l);
   }
 
@@ -380,13 +967,20 @@ public final class Position {
    * @see #addChangeListener
    */
   public void removeChangeListener(ChangeListener l) {
-    listenerList.remove(ChangeListener.class, l);
+    if (listenerList != null) listenerList.remove(ChangeListener.class, l);
   }
 
   /**
-   * Run each ChangeListeners stateChanged() method.
+   * Run each ChangeListeners stateChanged() method. Does nothing but take note of the change if a
+   * batch update is in progress.
    */
   protected void fireStateChanged() {
+    if (batchDepth > 0) {
+      batchChanged = true;
+      return;
+    }
+    if (listenerList == null) return;
+
     Object[] listeners = listenerList.getListenerList();
     for (int i = listeners.length - 2; i >= 0; i -= 2) {
       if (listeners[i] == ChangeListener.class) {
@@ -405,6 +999,7 @@ public final class Position {
    * @see #removeChangeListener
    */
   public void addMoveListener(MoveListener l) {
+    if (listenerList == null) listenerList = new EventListenerList();
     listenerList.add(MoveListener.class, l);
   }
 
@@ -415,15 +1010,17 @@ public final class Position {
    * @see #addChangeListener
    */
   public void removeMoveListener(MoveListener l) {
-    listenerList.remove(MoveListener.class, l);
+    if (listenerList != null) listenerList.remove(MoveListener.class, l);
   }
 
   /**
-   * Run each MoveListeners moveMade() method.
+   * Run each MoveListeners moveMade() method. Does nothing if a batch update is in progress.
    *
    * @param move The Move that was made.
    */
   protected void fireMoveMade(Move move) {
+    if ((batchDepth > 0) || (listenerList == null)) return;
+
     MoveEvent evt = new MoveEvent(this, move);
     Object[] listeners = listenerList.getListenerList();
     for (int i = listeners.length - 2; i >= 0; i -= 2) {
@@ -461,9 +1058,10 @@ public final class Position {
 
     if (!currentPlayer.equals(pos.currentPlayer)) return false;
 
-    for (int file = 0; file < pieces.length; file++)
-      for (int rank = 0; rank < pieces[file].length; rank++)
-        if (!Utilities.areEqual(pieces[file][rank], pos.pieces[file][rank])) return false;
+    if (board == pos.board) return true;
+
+    for (int i = 0; i < board.length; i++)
+      if (!Utilities.areEqual(board[i], pos.board[i])) return false;
 
     return true;
   }
@@ -487,9 +1085,9 @@ public final class Position {
     int result = 17;
     result = 37 * result + variant.hashCode();
     result = 37 * result + currentPlayer.hashCode();
-    for (int file = 0; file < pieces.length; file++)
-      for (int rank = 0; rank < pieces[file].length; rank++) {
-        Piece piece = pieces[file][rank];
+    for (int file = 0; file < 8; file++)
+      for (int rank = 0; rank < 8; rank++) {
+        Piece piece = board[(rank << 3) | file];
         int c = (piece == null) ? 0 : piece.hashCode();
         result = 37 * result + c;
       }
@@ -0,0 +1,197 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+/**
+ * Keeps the list of moves made from some initial position, together with the position after the
+ * last move. The moves are kept in a {@link MoveList}, so the position after any given ply is
+ * obtained by copying the nearest preceding snapshot and replaying at most
+ * <code>snapshotInterval - 1</code> moves, instead of replaying the whole game from the initial
+ * position. <B>IMPORTANT:</B> This class is not thread safe.
+ */
+public final class PositionHistory {
+
+  /**
+   * The default number of plies between two consecutive snapshots.
+   */
+  public static final int DEFAULT_SNAPSHOT_INTERVAL = 8;
+
+  /**
+   * The moves made, in order.
+   */
+  private final MoveList moves;
+
+  /**
+   * The position after all the moves, kept up to date as moves are added.
+   */
+  private final Position lastPosition;
+
+  /**
+   * The last move, or <code>null</code> if there are no moves.
+   */
+  private Move lastMove = null;
+
+  /**
+   * Creates a new <code>PositionHistory</code> starting at the specified position and using the
+   * default snapshot interval.
+   */
+  public PositionHistory(Position initialPosition) {
+    this(initialPosition, DEFAULT_SNAPSHOT_INTERVAL);
+  }
+
+  /**
+   * Creates a new <code>PositionHistory</code> starting at the specified position and taking a
+   * snapshot every <code>snapshotInterval</code> plies.
+   */
+  public PositionHistory(Position initialPosition, int snapshotInterval) {
+    this.moves = new MoveList(initialPosition.snapshot(), snapshotInterval);
+    this.lastPosition = new Position(initialPosition);
+  }
+
+  /**
+   * Discards all the moves and sets the initial position to the specified one.
+   */
+  public void reset(Position initialPosition) {
+    reset(initialPosition.snapshot());
+  }
+
+  /**
+   * Discards all the moves and sets the initial position to the specified one.
+   */
+  public void reset(PositionSnapshot initialPosition) {
+    moves.reset(initialPosition);
+    lastPosition.copyFrom(initialPosition);
+    lastMove = null;
+  }
+
+  /**
+   * Returns the number of moves (plies) in this history.
+   */
+  public int getMoveCount() {
+    return moves.size();
+  }
+
+  /**
+   * Returns the move made at the specified ply (0-based). The move is recreated from its compact
+   * representation, so prefer {@link #getMoves(int, int)} when retrieving many moves.
+   */
+  public Move getMove(int ply) {
+    return moves.getMove(ply);
+  }
+
+  /**
+   * Returns the last move, or <code>null</code> if there are no moves. Unlike
+   * {@link #getMove(int)}, this doesn't replay any moves, but the string representation of the
+   * returned move is not necessarily its SAN.
+   */
+  public Move getLastMove() {
+    return lastMove;
+  }
+
+  /**
+   * Returns the moves made at plies <code>[start, end)</code>.
+   */
+  public Move[] getMoves(int start, int end) {
+    return moves.getMoves(start, end);
+  }
+
+  /**
+   * Returns the initial position.
+   */
+  public PositionSnapshot getInitialPosition() {
+    return moves.getInitialPosition();
+  }
+
+  /**
+   * Returns the position after the last move. The returned position must not be modified.
+   */
+  public Position getLastPosition() {
+    return lastPosition;
+  }
+
+  /**
+   * Appends the specified move, which must be made in the current last position.
+   */
+  public void addMove(Move move) {
+    lastPosition.makeMove(move);
+    moves.add(move);
+    lastMove = move;
+  }
+
+  /**
+   * Removes the specified amount of moves from the end of the history, as happens on a takeback.
+   */
+  public void removeLastMoves(int count) {
+    moves.removeLast(count);
+    lastMove = replay(moves.size(), lastPosition);
+  }
+
+  /**
+   * Sets the specified position to the position after the specified amount of plies. The target
+   * position fires a single change event (or none, if it's in a batch) no matter how many moves had
+   * to be replayed.
+   */
+  public void getPosition(int ply, Position target) {
+    if (ply == moves.size()) target.copyFrom(lastPosition);
+    else moves.getPosition(ply, target);
+  }
+
+  /**
+   * Sets the specified position to the position after the specified amount of plies and returns
+   * the move that led to it (<code>null</code> for the initial position), replaying the moves only
+   * once. The string representation of the returned move is not necessarily its SAN.
+   */
+  public Move getPositionAndMove(int ply, Position target) {
+    if (ply == moves.size()) {
+      target.copyFrom(lastPosition);
+      return lastMove;
+    }
+
+    return replay(ply, target);
+  }
+
+  /**
+   * Sets the specified position to the position after the specified amount of plies, according to
+   * the move list rather than <code>lastPosition</code>, and returns the move that led to it, or
+   * <code>null</code> for the initial position. The target position fires a single change event.
+   */
+  private Move replay(int ply, Position target) {
+    if (ply == 0) {
+      moves.getPosition(0, target);
+      return null;
+    }
+
+    target.beginBatch();
+    try {
+      moves.getPosition(ply - 1, target);
+      Move move = moves.getMove(ply - 1, target);
+      target.makeMove(move);
+      return move;
+    } finally {
+      target.endBatch();
+    }
+  }
+
+  /**
+   * Returns a new position equal to the position after the specified amount of plies.
+   */
+  public Position getPosition(int ply) {
+    Position pos = new Position(getInitialPosition().getVariant());
+    getPosition(ply, pos);
+    return pos;
+  }
+}
@@ -0,0 +1,221 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import free.util.Utilities;
+
+/**
+ * An immutable snapshot of the state of a {@link Position}. Snapshots are obtained via
+ * {@link Position#snapshot()} and are meant to be handed around (stored in games, carried by
+ * events, kept in histories) instead of defensive copies of mutable positions. A snapshot shares
+ * its board with the position it was taken from (and with positions created from it) - the board
+ * is only copied when one of those positions is modified. A modifiable copy of the snapshot is
+ * obtained via {@link #toPosition()}.
+ */
+public final class PositionSnapshot {
+
+  /**
+   * The WildVariant of the position.
+   */
+  private final WildVariant variant;
+
+  /**
+   * The pieces on the board, indexed by <code>rank * 8 + file</code>. This array is shared and must
+   * never be modified.
+   */
+  final Piece[] board;
+
+  /**
+   * The player whose turn it is.
+   */
+  private final Player currentPlayer;
+
+  /**
+   * The castling rights, a combination of the castling rights flags defined in
+   * <code>Position</code>.
+   */
+  private final int castlingRights;
+
+  /**
+   * The en passant target square, <code>null</code> if none.
+   */
+  private final Square enPassantSquare;
+
+  /**
+   * The halfmove clock.
+   */
+  private final int halfmoveClock;
+
+  /**
+   * The fullmove number.
+   */
+  private final int fullmoveNumber;
+
+  /**
+   * The FEN representation of the position, computed lazily.
+   */
+  String fen;
+
+  /**
+   * Creates a new <code>PositionSnapshot</code> with the specified state. The board array is not
+   * copied.
+   */
+  PositionSnapshot(
+      WildVariant variant,
+      Piece[] board,
+      Player currentPlayer,
+      int castlingRights,
+      Square enPassantSquare,
+      int halfmoveClock,
+      int fullmoveNumber,
+      String fen) {
+    this.variant = variant;
+    this.board = board;
+    this.currentPlayer = currentPlayer;
+    this.castlingRights = castlingRights;
+    this.enPassantSquare = enPassantSquare;
+    this.halfmoveClock = halfmoveClock;
+    this.fullmoveNumber = fullmoveNumber;
+    this.fen = fen;
+  }
+
+  /**
+   * Returns the WildVariant of the position.
+   */
+  public WildVariant getVariant() {
+    return variant;
+  }
+
+  /**
+   * Returns the piece at the specified square.
+   */
+  public Piece getPieceAt(Square square) {
+    return board[(square.getRank() << 3) | square.getFile()];
+  }
+
+  /**
+   * Returns the piece at the square with the specified file and rank.
+   */
+  public Piece getPieceAt(int file, int rank) {
+    return board[(rank << 3) | file];
+  }
+
+  /**
+   * Returns the player whose turn it is.
+   */
+  public Player getCurrentPlayer() {
+    return currentPlayer;
+  }
+
+  /**
+   * Returns the castling rights.
+   *
+   * @see Position#getCastlingRights()
+   */
+  public int getCastlingRights() {
+    return castlingRights;
+  }
+
+  /**
+   * Returns the en passant target square, or <code>null</code> if none.
+   *
+   * @see Position#getEnPassantSquare()
+   */
+  public Square getEnPassantSquare() {
+    return enPassantSquare;
+  }
+
+  /**
+   * Returns the halfmove clock.
+   */
+  public int getHalfmoveClock() {
+    return halfmoveClock;
+  }
+
+  /**
+   * Returns the fullmove number.
+   */
+  public int getFullmoveNumber() {
+    return fullmoveNumber;
+  }
+
+  /**
+   * Returns the FEN representation of the position.
+   *
+   * @see Position#getFEN()
+   */
+  public String getFEN() {
+    if (fen == null) fen = toPosition().getFEN();
+
+    return fen;
+  }
+
+  /**
+   * Returns a new, modifiable <code>Position</code> with the state of this snapshot. This is cheap,
+   * as the board is only copied once the returned position is modified.
+   */
+  public Position toPosition() {
+    return new Position(this);
+  }
+
+  /**
+   * Returns whether the specified snapshot represents the same position as this one, in the sense
+   * of {@link Position#equals(Position)}.
+   */
+  public boolean equals(PositionSnapshot snapshot) {
+    if (snapshot == this) return true;
+
+    if (!variant.equals(snapshot.variant)) return false;
+
+    if (!currentPlayer.equals(snapshot.currentPlayer)) return false;
+
+    if (board == snapshot.board) return true;
+
+    for (int i = 0; i < board.length; i++)
+      if (!Utilities.areEqual(board[i], snapshot.board[i])) return false;
+
+    return true;
+  }
+
+  /**
+   * Returns true iff the specified object is a <code>PositionSnapshot</code> and represents the
+   * same position as this one.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof PositionSnapshot)) return false;
+
+    return equals((PositionSnapshot) obj);
+  }
+
+  /**
+   * Returns the hashcode of this snapshot, which is the same as that of an equal
+   * <code>Position</code>.
+   */
+  @Override
+  public int hashCode() {
+    return toPosition().hashCode();
+  }
+
+  /**
+   * Returns a textual representation of the snapshot.
+   */
+  @Override
+  public String toString() {
+    return toPosition().toString();
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * A commandline benchmark of {@link SanNotation}. Reads the games from the PGN file given as the
+ * argument (or uses a built-in game, if none is given), then repeatedly parses all the moves from
+ * SAN and converts them back to SAN, printing the throughput of each in moves per second. Only
+ * standard chess games starting from the initial position are used; the movetext is tokenized
+ * crudely (comments and variations are skipped).
+ */
+public class SanBenchmark {
+
+  /**
+   * The game used when no PGN file is specified.
+   */
+  private static final String DEFAULT_GAME =
+      "e4 e5 Nf3 Nc6 Bb5 a6 Ba4 Nf6 O-O Be7 Re1 b5 Bb3 d6 c3 O-O h3 Nb8 d4 Nbd7 c4 c6 cxb5 axb5 "
+          + "Nc3 Bb7 Bg5 b4 Nb1 h6 Bh4 c5 dxe5 Nxe4 Bxe7 Qxe7 exd6 Qf6 Nbd2 Nxd6 Nc4 Nxc4 Bxc4 Nb6 "
+          + "Ne5 Rae8 Bxf7+ Rxf7 Nxf7 Rxe1+ Qxe1 Kxf7 Qe3 Qg5 Qxg5 hxg5 b3 Ke6 a3 Kd6 axb4 cxb4 "
+          + "Ra5 Nd5 f3 Bc8 Kf2 Bf5 Ra7 g6 Ra6+ Kc5 Ke1 Nf4 g3 Nxh3 Kd2 Kb5 Rd6 Kc5 Ra6 Nf2 g4 Bd3 "
+          + "Re6";
+
+  /**
+   * The amount of times the whole set of games is processed for each measurement.
+   */
+  private static final int ITERATIONS = 20;
+
+  /**
+   * The main method.
+   */
+  public static void main(String[] args) throws IOException {
+    List games = (args.length == 0) ? createDefaultGames() : readGames(args[0]);
+
+    int moveCount = 0;
+    for (int i = 0; i < games.size(); i++) moveCount += ((String[]) games.get(i)).length;
+    System.out.println(games.size() + " games, " + moveCount + " moves");
+
+    // Warm up
+    runParse(games);
+    runGenerate(games);
+
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < ITERATIONS; i++) runParse(games);
+    report("Parsing", moveCount * (long) ITERATIONS, System.currentTimeMillis() - start);
+
+    start = System.currentTimeMillis();
+    for (int i = 0; i < ITERATIONS; i++) runGenerate(games);
+    report("Generating", moveCount * (long) ITERATIONS, System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Prints the throughput of a measurement.
+   */
+  private static void report(String name, long moves, long millis) {
+    long movesPerSecond = (millis == 0) ? moves * 1000 : moves * 1000 / millis;
+    System.out.println(
+        name + ": " + moves + " moves in " + millis + "ms, " + movesPerSecond + "/s");
+  }
+
+  /**
+   * Parses all the moves of the specified games, making them on a position.
+   */
+  private static void runParse(List games) {
+    Position pos = new Position();
+    for (int i = 0; i < games.size(); i++) {
+      String[] moves = (String[]) games.get(i);
+      pos.init();
+      for (int j = 0; j < moves.length; j++) pos.makeMove(SanNotation.parseSAN(pos, moves[j]));
+    }
+  }
+
+  /**
+   * Parses all the moves of the specified games and converts them back to SAN.
+   */
+  private static void runGenerate(List games) {
+    Position pos = new Position();
+    for (int i = 0; i < games.size(); i++) {
+      String[] moves = (String[]) games.get(i);
+      pos.init();
+      for (int j = 0; j < moves.length; j++) {
+        Move move = SanNotation.parseSAN(pos, moves[j]);
+        SanNotation.toSAN(pos, move);
+        pos.makeMove(move);
+      }
+    }
+  }
+
+  /**
+   * Returns a list of copies of the default game.
+   */
+  private static List createDefaultGames() {
+    List games = new ArrayList();
+    String[] moves = tokenize(DEFAULT_GAME);
+    for (int i = 0; i < 100; i++) games.add(moves);
+    return games;
+  }
+
+  /**
+   * Reads the movetext of the games in the specified PGN file. Games which specify an initial
+   * position are skipped.
+   */
+  private static List readGames(String filename) throws IOException {
+    List games = new ArrayList();
+    BufferedReader in = new BufferedReader(new FileReader(filename));
+    try {
+      StringBuffer movetext = new StringBuffer();
+      boolean hasFEN = false;
+      String line;
+      while ((line = in.readLine()) != null) {
+        line = line.trim();
+        if (line.startsWith("[")) {
+          if (movetext.length() != 0) {
+            if (!hasFEN) games.add(tokenize(movetext.toString()));
+            movetext.setLength(0);
+            hasFEN = false;
+          }
+          if (line.startsWith("[FEN ")) hasFEN = true;
+        } else movetext.append(line).append(' ');
+      }
+      if ((movetext.length() != 0) && !hasFEN) games.add(tokenize(movetext.toString()));
+    } finally {
+      in.close();
+    }
+
+    return games;
+  }
+
+  /**
+   * Splits the specified movetext into SAN moves, dropping move numbers, comments, variations,
+   * NAGs and the game result.
+   */
+  private static String[] tokenize(String movetext) {
+    List moves = new ArrayList();
+    int depth = 0;
+    boolean inComment = false;
+    StringBuffer clean = new StringBuffer(movetext.length());
+    for (int i = 0; i < movetext.length(); i++) {
+      char c = movetext.charAt(i);
+      if (inComment) inComment = (c != '}');
+      else if (c == '{') inComment = true;
+      else if (c == '(') depth++;
+      else if (c == ')') depth--;
+      else if (depth == 0) clean.append(c);
+    }
+
+    StringTokenizer tokenizer = new StringTokenizer(clean.toString(), " .");
+    while (tokenizer.hasMoreTokens()) {
+      String token = tokenizer.nextToken();
+      char first = token.charAt(0);
+      if ((first == '$') || (first == '*') || isMoveNumberOrResult(token)) continue;
+      moves.add(token);
+    }
+
+    return (String[]) moves.toArray(new String[moves.size()]);
+  }
+
+  /**
+   * Returns whether the specified movetext token is a move number or a game result.
+   */
+  private static boolean isMoveNumberOrResult(String token) {
+    if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2")) return true;
+
+    for (int i = 0; i < token.length(); i++) if (!Character.isDigit(token.charAt(i))) return false;
+
+    return true;
+  }
+}
@@ -0,0 +1,295 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+import java.util.Collection;
+
+/**
+ * Converts moves to and from Standard Algebraic Notation (SAN), as described at <A
+ * HREF="http://www.very-best.de/pgn-spec.htm#8.2.3">http://www.very-best.de/pgn-spec.htm#8.2.3</A>.
+ * The conversion works on top of the target squares reported by the position's
+ * {@link WildVariant} (see {@link MoveGenerator}), so it is not limited to standard chess. Piece
+ * letters are those produced by {@link Piece#toShortString()} and accepted by
+ * {@link WildVariant#parsePiece(String)}.
+ */
+public final class SanNotation {
+
+  /**
+   * No instances.
+   */
+  private SanNotation() {}
+
+  /**
+   * Returns the SAN representation of the specified move, made in the specified position. The
+   * position itself is not modified. The result includes the check ('+') or checkmate ('#')
+   * suffix.
+   */
+  public static String toSAN(Position pos, Move move) {
+    StringBuffer buf = new StringBuffer(8);
+
+    Position after = new Position(pos);
+    appendMove(pos, move, after, buf);
+
+    after.copyFrom(pos);
+    after.makeMove(move);
+    if (MoveGenerator.isInCheck(after)) buf.append(MoveGenerator.hasLegalMoves(after) ? '+' : '#');
+
+    return buf.toString();
+  }
+
+  /**
+   * Appends the SAN representation of the specified move, without a check suffix, to the specified
+   * buffer. The scratch position is used for legality checks when disambiguating.
+   */
+  private static void appendMove(Position pos, Move move, Position scratch, StringBuffer buf) {
+    if (move instanceof ChessMove) {
+      ChessMove cmove = (ChessMove) move;
+      if (cmove.isShortCastling()) {
+        buf.append("O-O");
+        return;
+      } else if (cmove.isLongCastling()) {
+        buf.append("O-O-O");
+        return;
+      }
+    }
+
+    Square from = move.getStartingSquare();
+    Square to = move.getEndingSquare();
+    if ((from == null) || (to == null))
+      throw new IllegalArgumentException("Can't represent " + move + " in SAN");
+
+    Piece piece = pos.getPieceAt(from);
+    if (piece == null) throw new IllegalArgumentException("No piece at " + from);
+
+    boolean isCapture;
+    if (move instanceof ChessMove) isCapture = ((ChessMove) move).isCapture();
+    else isCapture = pos.getPieceAt(to) != null;
+
+    if (isPawn(piece)) {
+      if (isCapture) buf.append(from.getFileChar());
+    } else {
+      buf.append(piece.toShortString());
+
+      // Disambiguate against other identical pieces which can legally move to the same square
+      boolean ambiguous = false;
+      boolean sameFile = false;
+      boolean sameRank = false;
+      WildVariant variant = pos.getVariant();
+      for (int file = 0; file < 8; file++) {
+        for (int rank = 0; rank < 8; rank++) {
+          if (((file == from.getFile()) && (rank == from.getRank()))
+              || !piece.equals(pos.getPieceAt(file, rank))) continue;
+
+          Square other = Square.getInstance(file, rank);
+          if (!variant.getTargetSquares(pos, other).contains(to)) continue;
+
+          Move otherMove;
+          try {
+            otherMove = variant.createMove(pos, other, to, null, null);
+          } catch (IllegalArgumentException e) {
+            continue;
+          }
+          if (!MoveGenerator.isLegal(pos, otherMove, scratch)) continue;
+
+          ambiguous = true;
+          if (file == from.getFile()) sameFile = true;
+          if (rank == from.getRank()) sameRank = true;
+        }
+      }
+
+      if (ambiguous) {
+        if (!sameFile) buf.append(from.getFileChar());
+        else if (!sameRank) buf.append(from.getRankChar());
+        else buf.append(from.getFileChar()).append(from.getRankChar());
+      }
+    }
+
+    if (isCapture) buf.append('x');
+    buf.append(to.getFileChar()).append(to.getRankChar());
+
+    if (move instanceof ChessMove) {
+      ChessMove cmove = (ChessMove) move;
+      if (cmove.isPromotion()) buf.append('=').append(cmove.getPromotionTarget().toShortString());
+    }
+  }
+
+  /**
+   * Returns whether the specified piece is a pawn.
+   */
+  private static boolean isPawn(Piece piece) {
+    return (piece instanceof ChessPiece) && ((ChessPiece) piece).isPawn();
+  }
+
+  /**
+   * Parses the specified move in SAN, in the specified position, and returns the corresponding
+   * <code>Move</code> object, whose string representation is the specified string. The position
+   * itself is not modified. Check, checkmate and annotation suffixes ("+#!?") are accepted but not
+   * verified. The parser is lenient about some common deviations from the standard: "0-0" for
+   * castling, a promotion without '=', and long algebraic notation such as "Ng1-f3" or "e2e4".
+   *
+   * @throws MoveFormatException if the string is not a valid SAN move, or doesn't identify a
+   * single move in the position.
+   */
+  public static Move parseSAN(Position pos, String san) throws MoveFormatException {
+    int end = san.length();
+    while ((end > 0) && ("+#!? ".indexOf(san.charAt(end - 1)) != -1)) end--;
+    if (end < 2) throw new MoveFormatException("Bad SAN move: " + san);
+
+    WildVariant variant = pos.getVariant();
+    char first = san.charAt(0);
+    if ((first == 'O') || (first == '0')) {
+      Move castling;
+      try {
+        if (isCastling(san, end, 3)) castling = variant.createLongCastling(pos);
+        else if (isCastling(san, end, 2)) castling = variant.createShortCastling(pos);
+        else throw new MoveFormatException("Bad SAN move: " + san);
+      } catch (IllegalArgumentException e) {
+        throw new MoveFormatException(e, "Castling not possible: " + san);
+      }
+
+      Square kingSquare = castling.getStartingSquare();
+      if (!variant.getTargetSquares(pos, kingSquare).contains(castling.getEndingSquare())
+          || !MoveGenerator.isLegal(pos, castling))
+        throw new MoveFormatException("Castling not possible: " + san);
+
+      return castling;
+    }
+
+    boolean isWhite = pos.getCurrentPlayer().isWhite();
+
+    // Promotion
+    Piece promotionTarget = null;
+    char last = san.charAt(end - 1);
+    if ((last >= 'A') && (last <= 'Z')) {
+      promotionTarget = parsePiece(variant, last, isWhite, san);
+      end--;
+      if ((end > 0) && (san.charAt(end - 1) == '=')) end--;
+    }
+
+    // Target square
+    if (end < 2) throw new MoveFormatException("Bad SAN move: " + san);
+    int toFile = san.charAt(end - 2) - 'a';
+    int toRank = san.charAt(end - 1) - '1';
+    Square to = Square.getInstanceNonStrict(toFile, toRank);
+    if (to == null) throw new MoveFormatException("Bad target square in SAN move: " + san);
+    end -= 2;
+
+    // Moving piece
+    int index = 0;
+    Piece piece;
+    if ((first >= 'A') && (first <= 'Z')) {
+      piece = parsePiece(variant, first, isWhite, san);
+      index++;
+    } else piece = parsePiece(variant, 'P', isWhite, san);
+
+    // Disambiguation, ignoring capture and long algebraic notation separators
+    int fromFile = -1;
+    int fromRank = -1;
+    for (; index < end; index++) {
+      char c = san.charAt(index);
+      if ((c >= 'a') && (c <= 'h')) fromFile = c - 'a';
+      else if ((c >= '1') && (c <= '8')) fromRank = c - '1';
+      else if ((c != 'x') && (c != ':') && (c != '-'))
+        throw new MoveFormatException("Bad SAN move: " + san);
+    }
+
+    // Find the moving piece
+    Move move = null;
+    Position scratch = null;
+    for (int file = 0; file < 8; file++) {
+      if ((fromFile != -1) && (file != fromFile)) continue;
+      for (int rank = 0; rank < 8; rank++) {
+        if ((fromRank != -1) && (rank != fromRank)) continue;
+        if (!piece.equals(pos.getPieceAt(file, rank))) continue;
+
+        Square square = Square.getInstance(file, rank);
+        Collection targets = variant.getTargetSquares(pos, square);
+        if (!targets.contains(to)) continue;
+
+        Move candidate;
+        try {
+          candidate = variant.createMove(pos, square, to, promotionTarget, san);
+        } catch (IllegalArgumentException e) {
+          continue;
+        }
+
+        // Only possible right after the double push the position records
+        if ((candidate instanceof ChessMove)
+            && ((ChessMove) candidate).isEnPassant()
+            && !to.equals(pos.getEnPassantSquare())) continue;
+
+        if (move == null) move = candidate;
+        else { // Ambiguous - look at legality
+          if (scratch == null) scratch = new Position(pos);
+          boolean isFirstLegal = MoveGenerator.isLegal(pos, move, scratch);
+          boolean isCandidateLegal = MoveGenerator.isLegal(pos, candidate, scratch);
+          if (isFirstLegal && isCandidateLegal)
+            throw new MoveFormatException("Ambiguous SAN move: " + san);
+          else if (isCandidateLegal) move = candidate;
+        }
+      }
+    }
+
+    if (move == null) throw new MoveFormatException("No such move: " + san + " in " + pos);
+
+    return move;
+  }
+
+  /**
+   * Returns whether the first <code>end</code> characters of the specified string are a castling
+   * move made of the specified amount of 'O's (or '0's) separated by dashes.
+   */
+  private static boolean isCastling(String san, int end, int count) {
+    if (end != count * 2 - 1) return false;
+
+    char o = san.charAt(0);
+    for (int i = 0; i < end; i++) {
+      char c = san.charAt(i);
+      if ((i % 2 == 0) ? (c != o) : (c != '-')) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Single character strings for the SAN piece letters, so that parsing doesn't create a string
+   * per move.
+   */
+  private static final String[] PIECE_STRINGS = new String[128];
+
+  static {
+    for (char c = 'A'; c <= 'Z'; c++) {
+      PIECE_STRINGS[c] = String.valueOf(c);
+      PIECE_STRINGS[Character.toLowerCase(c)] = String.valueOf(Character.toLowerCase(c));
+    }
+  }
+
+  /**
+   * Returns the piece of the specified color represented by the specified (uppercase) SAN letter.
+   */
+  private static Piece parsePiece(WildVariant variant, char letter, boolean isWhite, String san)
+      throws MoveFormatException {
+    char c = isWhite ? letter : Character.toLowerCase(letter);
+    try {
+      Piece piece = variant.parsePiece(PIECE_STRINGS[c]);
+      if (piece == null) throw new MoveFormatException("Bad piece in SAN move: " + san);
+      return piece;
+    } catch (IllegalArgumentException e) {
+      throw new MoveFormatException(e, "Bad piece in SAN move: " + san);
+    }
+  }
+}
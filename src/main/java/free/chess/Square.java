@@ -22,9 +22,14 @@ package free.chess;
 public class Square {
 
   /**
-   * The pool of unique immutable instances of Square.
+   * The pool of unique immutable instances of Square, indexed by <code>rank * 8 + file</code>. It
+   * is filled when the class is loaded and never modified afterwards, so lookups need no locking.
    */
-  private static final Square[][] POOL = new Square[8][8];
+  private static final Square[] POOL = new Square[64];
+
+  static {
+    for (int i = 0; i < POOL.length; i++) POOL[i] = new Square(i & 7, i >> 3);
+  }
 
   /**
    * The file of the square.
@@ -36,6 +41,11 @@ public class Square {
    */
   private final int rank;
 
+  /**
+   * The string representation of the square, such as "e4".
+   */
+  private final String name;
+
   /**
    * Creates a new Square with the given coordinates.
    *
@@ -45,6 +55,7 @@ public class Square {
   private Square(int file, int rank) {
     this.file = file;
     this.rank = rank;
+    this.name = new String(new char[] {(char) ('a' + file), (char) ('1' + rank)});
   }
 
   /**
@@ -76,12 +87,22 @@ public class Square {
    * Same as {@link #getInstance(int, int)}, but instead of throwing an exception for illegal
    * values, simply returns <code>null</code>.
    */
-  public static synchronized Square getInstanceNonStrict(int file, int rank) {
+  public static Square getInstanceNonStrict(int file, int rank) {
     if (!isValid(file, rank)) return null;
 
-    if (POOL[file][rank] == null) POOL[file][rank] = new Square(file, rank);
+    return POOL[(rank << 3) | file];
+  }
 
-    return POOL[file][rank];
+  /**
+   * Returns the Square with the specified index, as returned by {@link #getIndex()}.
+   *
+   * @throws IllegalArgumentException if the index is not in the range [0-63].
+   */
+  public static Square getInstance(int index) {
+    if ((index < 0) || (index >= POOL.length))
+      throw new IllegalArgumentException("Square index must be in the range [0-63]: " + index);
+
+    return POOL[index];
   }
 
   /**
@@ -118,6 +139,14 @@ public class Square {
     return rank;
   }
 
+  /**
+   * Returns the index of this Square, <code>rank * 8 + file</code>, a value in the range [0-63].
+   * Square indices are used to look up the tables in {@link BoardGeometry}.
+   */
+  public int getIndex() {
+    return (rank << 3) | file;
+  }
+
   /**
    * Returns a character representing the file of this Square. The returned character will be in the
    * range ['a'-'h'].
@@ -140,10 +169,7 @@ public class Square {
    */
   @Override
   public String toString() {
-    char[] buff = new char[2];
-    buff[0] = getFileChar();
-    buff[1] = getRankChar();
-    return new String(buff);
+    return name;
   }
 
   /**
@@ -0,0 +1,130 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess;
+
+/**
+ * Computes 64-bit Zobrist hash keys of positions. The key of a position is the exclusive or of
+ * random numbers for each piece on its square, for each castling right, for the file of the en
+ * passant square (only if the player to move actually has a pawn which can capture en passant)
+ * and for white being the player to move. The layout follows the one used by Polyglot opening
+ * books, but the random numbers themselves are generated from a fixed seed, so keys are stable
+ * between runs (and may be stored in files), but are not compatible with Polyglot books.
+ */
+public final class Zobrist {
+
+  /**
+   * The random numbers for the pieces, indexed by <code>pieceIndex * 64 + squareIndex</code>, where
+   * the piece index is <code>(type - 1) * 2 + (isWhite ? 1 : 0)</code>.
+   */
+  private static final long[] PIECE_KEYS = new long[12 * 64];
+
+  /**
+   * The random numbers for the castling rights, indexed by the bit number of the castling right
+   * flag in {@link Position}.
+   */
+  private static final long[] CASTLING_KEYS = new long[4];
+
+  /**
+   * The random numbers for the file of the en passant square.
+   */
+  private static final long[] EN_PASSANT_KEYS = new long[8];
+
+  /**
+   * The random number for white being the player to move.
+   */
+  private static final long WHITE_TO_MOVE_KEY;
+
+  static {
+    long seed = 0x4A696E4368657373L;
+    for (int i = 0; i < PIECE_KEYS.length; i++) PIECE_KEYS[i] = seed = nextRandom(seed);
+    for (int i = 0; i < CASTLING_KEYS.length; i++) CASTLING_KEYS[i] = seed = nextRandom(seed);
+    for (int i = 0; i < EN_PASSANT_KEYS.length; i++) EN_PASSANT_KEYS[i] = seed = nextRandom(seed);
+    WHITE_TO_MOVE_KEY = nextRandom(seed);
+  }
+
+  /**
+   * No instances.
+   */
+  private Zobrist() {}
+
+  /**
+   * Returns the next value of a SplitMix64 sequence whose previous value is the specified one.
+   */
+  private static long nextRandom(long previous) {
+    long z = previous + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Returns the key of the specified position.
+   */
+  public static long getKey(Position pos) {
+    return getKey(pos.snapshot());
+  }
+
+  /**
+   * Returns the key of the specified position snapshot.
+   */
+  public static long getKey(PositionSnapshot pos) {
+    Piece[] board = pos.board;
+    long key = 0;
+
+    for (int i = 0; i < board.length; i++) {
+      Piece piece = board[i];
+      if (piece != null) key ^= PIECE_KEYS[(getPieceIndex(piece) << 6) | i];
+    }
+
+    int castlingRights = pos.getCastlingRights();
+    for (int i = 0; i < CASTLING_KEYS.length; i++)
+      if ((castlingRights & (1 << i)) != 0) key ^= CASTLING_KEYS[i];
+
+    boolean isWhiteToMove = pos.getCurrentPlayer().isWhite();
+    Square enPassantSquare = pos.getEnPassantSquare();
+    if ((enPassantSquare != null) && canCaptureEnPassant(board, enPassantSquare, isWhiteToMove))
+      key ^= EN_PASSANT_KEYS[enPassantSquare.getFile()];
+
+    if (isWhiteToMove) key ^= WHITE_TO_MOVE_KEY;
+
+    return key;
+  }
+
+  /**
+   * Returns the index of the specified piece in the piece keys table.
+   */
+  private static int getPieceIndex(Piece piece) {
+    return ((piece.getType() - 1) << 1) | (piece.isWhite() ? 1 : 0);
+  }
+
+  /**
+   * Returns whether the player to move has a pawn which can (pseudo-legally) capture en passant on
+   * the specified square.
+   */
+  private static boolean canCaptureEnPassant(
+      Piece[] board, Square enPassantSquare, boolean isWhiteToMove) {
+    int file = enPassantSquare.getFile();
+    int rank = enPassantSquare.getRank() + (isWhiteToMove ? -1 : 1);
+    if ((rank < 0) || (rank > 7)) return false;
+
+    ChessPiece pawn = isWhiteToMove ? ChessPiece.WHITE_PAWN : ChessPiece.BLACK_PAWN;
+    if ((file > 0) && pawn.equals(board[(rank << 3) | (file - 1)])) return true;
+    if ((file < 7) && pawn.equals(board[(rank << 3) | (file + 1)])) return true;
+
+    return false;
+  }
+}
@@ -0,0 +1,411 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.book;
+
+import free.chess.Move;
+import free.chess.MoveFormatException;
+import free.chess.Position;
+import free.chess.PositionFormatException;
+import free.chess.SanNotation;
+import free.chess.Zobrist;
+import free.chess.pgn.PgnGame;
+import free.chess.pgn.PgnReader;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Creates {@link OpeningBook} and {@link EcoTable} files. Books are built from the opening moves
+ * of PGN games, the weight of each move being the number of games it was played in. ECO tables
+ * are built from EPD files, using the <code>eco</code>, <code>opening</code> and
+ * <code>variation</code> operations, or from PGN files, using the <code>ECO</code>,
+ * <code>Opening</code> and <code>Variation</code> tags with the final position of each game. This
+ * class is also a commandline tool - run it without arguments for usage information.
+ */
+public class BookBuilder {
+
+  /**
+   * The default number of plies of each game added to a book.
+   */
+  public static final int DEFAULT_PLY_LIMIT = 24;
+
+  /**
+   * Maps position keys (<code>Long</code>s) to maps of encoded moves (<code>Integer</code>s) to the
+   * amount of times they were played (<code>int[1]</code>).
+   */
+  private final Map bookMoves = new HashMap();
+
+  /**
+   * Maps position keys (<code>Long</code>s) to <code>EcoEntry</code>s.
+   */
+  private final Map ecoEntries = new HashMap();
+
+  /**
+   * The number of plies of each game added to the book.
+   */
+  private final int plyLimit;
+
+  /**
+   * Creates a new <code>BookBuilder</code> which adds the specified number of plies of each game to
+   * the book.
+   */
+  public BookBuilder(int plyLimit) {
+    if (plyLimit < 0) throw new IllegalArgumentException("Negative ply limit: " + plyLimit);
+
+    this.plyLimit = plyLimit;
+  }
+
+  /**
+   * Adds the opening moves of the specified game to the book. Returns whether the game was added;
+   * games with illegal moves or an invalid initial position are only added up to the problematic
+   * move.
+   */
+  public boolean addBookGame(PgnGame game) {
+    Position pos;
+    try {
+      pos = game.getInitialPosition();
+    } catch (PositionFormatException e) {
+      return false;
+    }
+
+    int plies = Math.min(plyLimit, game.getMoveCount());
+    for (int i = 0; i < plies; i++) {
+      Move move;
+      try {
+        move = SanNotation.parseSAN(pos, game.getMove(i));
+      } catch (MoveFormatException e) {
+        return false;
+      }
+
+      Long key = new Long(Zobrist.getKey(pos));
+      Map moves = (Map) bookMoves.get(key);
+      if (moves == null) bookMoves.put(key, moves = new HashMap(4));
+
+      Integer encodedMove = new Integer(OpeningBook.encodeMove(move, pos));
+      int[] count = (int[]) moves.get(encodedMove);
+      if (count == null) moves.put(encodedMove, count = new int[1]);
+      count[0]++;
+
+      pos.makeMove(move);
+    }
+
+    return true;
+  }
+
+  /**
+   * Adds the ECO code and opening name from the tags of the specified game to the ECO table, for
+   * the final position of the game. Returns whether the game was added.
+   */
+  public boolean addEcoGame(PgnGame game) {
+    String code = game.getTag("ECO");
+    if ((code == null) || (code.length() == 0)) return false;
+
+    try {
+      Position pos = game.getInitialPosition();
+      for (int i = 0; i < game.getMoveCount(); i++)
+        pos.makeMove(SanNotation.parseSAN(pos, game.getMove(i)));
+
+      addEcoEntry(pos, code, game.getTag("Opening"), game.getTag("Variation"));
+      return true;
+    } catch (PositionFormatException e) {
+      return false;
+    } catch (MoveFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Adds the ECO code and opening name of the specified EPD line to the ECO table. Returns whether
+   * the line was added.
+   */
+  public boolean addEcoEpd(String epd) {
+    String code = getEpdOperand(epd, "eco");
+    if ((code == null) || (code.length() == 0)) return false;
+
+    try {
+      Position pos = new Position();
+      pos.setEPD(epd);
+      addEcoEntry(pos, code, getEpdOperand(epd, "opening"), getEpdOperand(epd, "variation"));
+      return true;
+    } catch (PositionFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Adds an ECO table entry for the specified position. The first entry added for a position is
+   * kept.
+   */
+  private void addEcoEntry(Position pos, String code, String opening, String variation) {
+    Long key = new Long(Zobrist.getKey(pos));
+    if (ecoEntries.containsKey(key)) return;
+
+    String name = (opening == null) ? "" : opening;
+    if ((variation != null) && (variation.length() != 0))
+      name = (name.length() == 0) ? variation : name + ": " + variation;
+
+    ecoEntries.put(key, new EcoEntry(code, name));
+  }
+
+  /**
+   * Returns the (unquoted) operand of the operation with the specified opcode in the specified EPD
+   * line, or <code>null</code> if there is no such operation.
+   */
+  static String getEpdOperand(String epd, String opcode) {
+    // Skip the four position fields
+    int index = 0;
+    int length = epd.length();
+    for (int field = 0; field < 4; field++) {
+      while ((index < length) && Character.isWhitespace(epd.charAt(index))) index++;
+      while ((index < length) && !Character.isWhitespace(epd.charAt(index))) index++;
+    }
+
+    while (index < length) {
+      while ((index < length) && Character.isWhitespace(epd.charAt(index))) index++;
+      int opcodeStart = index;
+      while ((index < length) && !Character.isWhitespace(epd.charAt(index))) index++;
+      String currentOpcode = epd.substring(opcodeStart, index);
+
+      StringBuffer operand = new StringBuffer();
+      boolean inQuotes = false;
+      while (index < length) {
+        char c = epd.charAt(index++);
+        if (c == '"') inQuotes = !inQuotes;
+        else if ((c == ';') && !inQuotes) break;
+        else operand.append(c);
+      }
+
+      if (currentOpcode.equals(opcode)) return operand.toString().trim();
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the number of distinct positions in the book.
+   */
+  public int getBookPositionCount() {
+    return bookMoves.size();
+  }
+
+  /**
+   * Returns the number of entries in the ECO table.
+   */
+  public int getEcoEntryCount() {
+    return ecoEntries.size();
+  }
+
+  /**
+   * Writes the book to the specified file. Weights larger than what fits into an entry are scaled
+   * down proportionally.
+   */
+  public void writeBook(File file) throws IOException {
+    int entryCount = 0;
+    int maxCount = 1;
+    for (Iterator i = bookMoves.values().iterator(); i.hasNext(); ) {
+      Map moves = (Map) i.next();
+      entryCount += moves.size();
+      for (Iterator j = moves.values().iterator(); j.hasNext(); )
+        maxCount = Math.max(maxCount, ((int[]) j.next())[0]);
+    }
+
+    final long[] keys = new long[entryCount];
+    final int[] moves = new int[entryCount];
+    final int[] weights = new int[entryCount];
+    int index = 0;
+    for (Iterator i = bookMoves.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) i.next();
+      long key = ((Long) entry.getKey()).longValue();
+      Map positionMoves = (Map) entry.getValue();
+      for (Iterator j = positionMoves.entrySet().iterator(); j.hasNext(); ) {
+        Map.Entry moveEntry = (Map.Entry) j.next();
+        int count = ((int[]) moveEntry.getValue())[0];
+        keys[index] = key;
+        moves[index] = ((Integer) moveEntry.getKey()).intValue();
+        weights[index] =
+            (maxCount <= 0xffff) ? count : Math.max(1, (int) (count * 0xffffL / maxCount));
+        index++;
+      }
+    }
+
+    Integer[] order = new Integer[entryCount];
+    for (int i = 0; i < entryCount; i++) order[i] = new Integer(i);
+    Arrays.sort(
+        order,
+        new Comparator() {
+          @Override
+          public int compare(Object o1, Object o2) {
+            int i1 = ((Integer) o1).intValue();
+            int i2 = ((Integer) o2).intValue();
+            int cmp = Long.compareUnsigned(keys[i1], keys[i2]);
+            return (cmp != 0) ? cmp : weights[i2] - weights[i1];
+          }
+        });
+
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      for (int i = 0; i < entryCount; i++) {
+        int j = order[i].intValue();
+        out.writeLong(keys[j]);
+        out.writeShort(moves[j]);
+        out.writeShort(weights[j]);
+        out.writeInt(0);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes the ECO table to the specified file.
+   */
+  public void writeEcoTable(File file) throws IOException {
+    Long[] keys = (Long[]) ecoEntries.keySet().toArray(new Long[ecoEntries.size()]);
+    Arrays.sort(
+        keys,
+        new Comparator() {
+          @Override
+          public int compare(Object o1, Object o2) {
+            return Long.compareUnsigned(((Long) o1).longValue(), ((Long) o2).longValue());
+          }
+        });
+
+    ByteArrayOutputStream stringsBuf = new ByteArrayOutputStream();
+    DataOutputStream strings = new DataOutputStream(stringsBuf);
+    int[] offsets = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      EcoEntry entry = (EcoEntry) ecoEntries.get(keys[i]);
+      byte[] bytes = (entry.getCode() + '\t' + entry.getName()).getBytes("UTF-8");
+      int length = Math.min(bytes.length, 0xffff);
+      offsets[i] = strings.size();
+      strings.writeShort(length);
+      strings.write(bytes, 0, length);
+    }
+    strings.flush();
+
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(EcoTable.MAGIC);
+      out.writeInt(keys.length);
+      for (int i = 0; i < keys.length; i++) {
+        out.writeLong(keys[i].longValue());
+        out.writeInt(offsets[i]);
+      }
+      stringsBuf.writeTo(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Creates a reader for the specified file. PGN and EPD files are assumed to be in ISO-8859-1, as
+   * the PGN standard specifies.
+   */
+  private static Reader createReader(File file) throws IOException {
+    return new InputStreamReader(new FileInputStream(file), "ISO-8859-1");
+  }
+
+  /**
+   * The main method.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      printUsage();
+      return;
+    }
+
+    boolean isBook = "-book".equals(args[0]);
+    if (!isBook && !"-eco".equals(args[0])) {
+      printUsage();
+      return;
+    }
+
+    File outputFile = new File(args[1]);
+    int argIndex = 2;
+    int plyLimit = DEFAULT_PLY_LIMIT;
+    if ("-plies".equals(args[argIndex]) && (argIndex + 2 < args.length)) {
+      plyLimit = Integer.parseInt(args[argIndex + 1]);
+      argIndex += 2;
+    }
+
+    BookBuilder builder = new BookBuilder(plyLimit);
+    int added = 0;
+    int skipped = 0;
+    for (; argIndex < args.length; argIndex++) {
+      File file = new File(args[argIndex]);
+      if (!isBook && file.getName().toLowerCase().endsWith(".epd")) {
+        BufferedReader in = new BufferedReader(createReader(file));
+        try {
+          String line;
+          while ((line = in.readLine()) != null) {
+            if (line.trim().length() == 0) continue;
+            if (builder.addEcoEpd(line)) added++;
+            else skipped++;
+          }
+        } finally {
+          in.close();
+        }
+      } else {
+        PgnReader in = new PgnReader(createReader(file));
+        try {
+          PgnGame game;
+          while ((game = in.readGame()) != null) {
+            if (isBook ? builder.addBookGame(game) : builder.addEcoGame(game)) added++;
+            else skipped++;
+          }
+        } finally {
+          in.close();
+        }
+      }
+    }
+
+    if (isBook) {
+      builder.writeBook(outputFile);
+      System.out.println(
+          added + " games added, " + skipped + " skipped, "
+              + builder.getBookPositionCount() + " positions written to " + outputFile);
+    } else {
+      builder.writeEcoTable(outputFile);
+      System.out.println(
+          added + " entries added, " + skipped + " skipped, "
+              + builder.getEcoEntryCount() + " positions written to " + outputFile);
+    }
+  }
+
+  /**
+   * Prints usage information.
+   */
+  private static void printUsage() {
+    System.out.println("Usage:");
+    System.out.println("  BookBuilder -book <output file> [-plies <n>] <PGN files>");
+    System.out.println("  BookBuilder -eco <output file> <PGN or EPD files>");
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.book;
+
+/**
+ * An entry of an {@link OpeningBook} - a move recommended in a position, with its weight.
+ */
+public final class BookEntry {
+
+  /**
+   * The key of the position.
+   */
+  private final long key;
+
+  /**
+   * The encoded move.
+   */
+  private final int move;
+
+  /**
+   * The weight of the move.
+   */
+  private final int weight;
+
+  /**
+   * The learn value of the entry.
+   */
+  private final int learn;
+
+  /**
+   * Creates a new <code>BookEntry</code> with the specified position key, encoded move, weight
+   * and learn value.
+   */
+  public BookEntry(long key, int move, int weight, int learn) {
+    this.key = key;
+    this.move = move;
+    this.weight = weight;
+    this.learn = learn;
+  }
+
+  /**
+   * Returns the key of the position, as computed by {@link free.chess.Zobrist}.
+   */
+  public long getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the move, encoded as described in {@link OpeningBook#encodeMove}.
+   */
+  public int getMove() {
+    return move;
+  }
+
+  /**
+   * Returns the weight of the move - the higher, the more often it should be played.
+   */
+  public int getWeight() {
+    return weight;
+  }
+
+  /**
+   * Returns the learn value of the entry. This is not used by Jin, and is only kept for
+   * compatibility with the file format.
+   */
+  public int getLearn() {
+    return learn;
+  }
+
+  /**
+   * Returns a textual representation of this entry, for debugging.
+   */
+  @Override
+  public String toString() {
+    return Long.toHexString(key) + " " + Integer.toHexString(move) + " " + weight;
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.book;
+
+/**
+ * An entry of an {@link EcoTable} - the ECO code and name of an opening.
+ */
+public final class EcoEntry {
+
+  /**
+   * The ECO code, such as "B90".
+   */
+  private final String code;
+
+  /**
+   * The name of the opening, such as "Sicilian: Najdorf".
+   */
+  private final String name;
+
+  /**
+   * Creates a new <code>EcoEntry</code> with the specified ECO code and opening name.
+   */
+  public EcoEntry(String code, String name) {
+    if (code == null) throw new IllegalArgumentException("code may not be null");
+    if (name == null) throw new IllegalArgumentException("name may not be null");
+
+    this.code = code;
+    this.name = name;
+  }
+
+  /**
+   * Returns the ECO code.
+   */
+  public String getCode() {
+    return code;
+  }
+
+  /**
+   * Returns the name of the opening.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns true iff the specified object is an <code>EcoEntry</code> with the same code and name.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof EcoEntry)) return false;
+
+    EcoEntry entry = (EcoEntry) o;
+    return code.equals(entry.code) && name.equals(entry.name);
+  }
+
+  /**
+   * Returns the hashcode of this entry.
+   */
+  @Override
+  public int hashCode() {
+    return code.hashCode() ^ name.hashCode();
+  }
+
+  /**
+   * Returns the ECO code followed by the name of the opening.
+   */
+  @Override
+  public String toString() {
+    return code + " " + name;
+  }
+}
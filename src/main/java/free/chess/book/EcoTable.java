@@ -0,0 +1,147 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.book;
+
+import free.chess.Position;
+import free.chess.PositionSnapshot;
+import free.chess.Zobrist;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * A table of ECO codes and opening names, memory-mapped from a file. The file starts with an 8
+ * byte header - the magic number {@link #MAGIC} and the number of entries. It is followed by the
+ * index entries, each consisting of an 8 byte position key (see {@link Zobrist}) and a 4 byte
+ * offset into the string area, sorted by key (compared as unsigned numbers). The string area
+ * follows the index; each string is the ECO code and the opening name, separated by a tab, in
+ * UTF-8, and preceded by its length as a 2 byte number. All numbers are big-endian. Lookups are
+ * done with a binary search, without loading the table into the heap. Tables are created with
+ * {@link BookBuilder}. Instances of this class are immutable and may be used by several threads
+ * concurrently.
+ */
+public class EcoTable {
+
+  /**
+   * The magic number ECO table files start with ("JECO").
+   */
+  public static final int MAGIC = 0x4A45434F;
+
+  /**
+   * The size of the header, in bytes.
+   */
+  static final int HEADER_SIZE = 8;
+
+  /**
+   * The size of an index entry, in bytes.
+   */
+  static final int ENTRY_SIZE = 12;
+
+  /**
+   * The memory-mapped contents of the table.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The number of entries in the table.
+   */
+  private final int entryCount;
+
+  /**
+   * The offset of the string area.
+   */
+  private final int stringsOffset;
+
+  /**
+   * Creates a new <code>EcoTable</code>, memory-mapping the specified file.
+   *
+   * @throws IOException if the file can't be read or is not a valid ECO table.
+   */
+  public EcoTable(File file) throws IOException {
+    this.buffer = OpeningBook.map(file);
+
+    if ((buffer.capacity() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC))
+      throw new IOException("Not an ECO table: " + file);
+
+    this.entryCount = buffer.getInt(4);
+    this.stringsOffset = HEADER_SIZE + entryCount * ENTRY_SIZE;
+
+    if ((entryCount < 0) || (stringsOffset > buffer.capacity()))
+      throw new IOException("Corrupt ECO table: " + file);
+  }
+
+  /**
+   * Returns the number of entries in the table.
+   */
+  public int getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * Returns the entry for the position with the specified key, or <code>null</code> if none.
+   */
+  public EcoEntry lookup(long key) {
+    int low = 0;
+    int high = entryCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int offset = HEADER_SIZE + mid * ENTRY_SIZE;
+      int cmp = Long.compareUnsigned(buffer.getLong(offset), key);
+      if (cmp < 0) low = mid + 1;
+      else if (cmp > 0) high = mid - 1;
+      else return readEntry(stringsOffset + buffer.getInt(offset + 8));
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the entry for the specified position, or <code>null</code> if none.
+   */
+  public EcoEntry lookup(Position pos) {
+    return lookup(Zobrist.getKey(pos));
+  }
+
+  /**
+   * Returns the entry for the specified position, or <code>null</code> if none.
+   */
+  public EcoEntry lookup(PositionSnapshot pos) {
+    return lookup(Zobrist.getKey(pos));
+  }
+
+  /**
+   * Reads the entry whose string is at the specified offset.
+   */
+  private EcoEntry readEntry(int offset) {
+    int length = buffer.getShort(offset) & 0xffff;
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) bytes[i] = buffer.get(offset + 2 + i);
+
+    String s;
+    try {
+      s = new String(bytes, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new InternalError("UTF-8 not supported");
+    }
+
+    int tabIndex = s.indexOf('\t');
+    if (tabIndex == -1) return new EcoEntry(s, "");
+
+    return new EcoEntry(s.substring(0, tabIndex), s.substring(tabIndex + 1));
+  }
+}
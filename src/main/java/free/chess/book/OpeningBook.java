@@ -0,0 +1,271 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.book;
+
+import free.chess.ChessMove;
+import free.chess.ChessPiece;
+import free.chess.Move;
+import free.chess.MoveGenerator;
+import free.chess.Piece;
+import free.chess.Position;
+import free.chess.Square;
+import free.chess.Zobrist;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An opening book, memory-mapped from a file. The file consists of 16 byte, big-endian entries in
+ * the format of Polyglot books: an 8 byte position key (see {@link Zobrist}), a 2 byte move (see
+ * {@link #encodeMove(Move, Position)}), a 2 byte weight and a 4 byte learn value. The entries are
+ * sorted by key (compared as unsigned numbers) and, within the same key, by descending weight, so
+ * the moves in a position are found with a binary search, without loading the book into the heap.
+ * Books are created with {@link BookBuilder}. Instances of this class are immutable and may be
+ * used by several threads concurrently.
+ */
+public class OpeningBook {
+
+  /**
+   * The size of a single entry, in bytes.
+   */
+  public static final int ENTRY_SIZE = 16;
+
+  /**
+   * The memory-mapped contents of the book.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The number of entries in the book.
+   */
+  private final int entryCount;
+
+  /**
+   * Creates a new <code>OpeningBook</code>, memory-mapping the specified file.
+   *
+   * @throws IOException if the file can't be read or is not a valid book.
+   */
+  public OpeningBook(File file) throws IOException {
+    this.buffer = map(file);
+
+    if (buffer.capacity() % ENTRY_SIZE != 0)
+      throw new IOException("Invalid book file size: " + file);
+
+    this.entryCount = buffer.capacity() / ENTRY_SIZE;
+  }
+
+  /**
+   * Memory-maps the specified file, read-only.
+   */
+  static ByteBuffer map(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) throw new IOException("File too large: " + file);
+
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Returns the number of entries in the book.
+   */
+  public int getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * Returns the key of the entry at the specified index.
+   */
+  private long getKey(int index) {
+    return buffer.getLong(index * ENTRY_SIZE);
+  }
+
+  /**
+   * Returns the index of the first entry whose key is not smaller than the specified one.
+   */
+  private int findFirst(long key) {
+    int low = 0;
+    int high = entryCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Long.compareUnsigned(getKey(mid), key) < 0) low = mid + 1;
+      else high = mid;
+    }
+
+    return low;
+  }
+
+  /**
+   * Returns whether the book has any moves for the position with the specified key.
+   */
+  public boolean contains(long key) {
+    int index = findFirst(key);
+    return (index < entryCount) && (getKey(index) == key);
+  }
+
+  /**
+   * Returns whether the book has any moves for the specified position.
+   */
+  public boolean contains(Position pos) {
+    return contains(Zobrist.getKey(pos));
+  }
+
+  /**
+   * Returns the entries for the position with the specified key, sorted by descending weight. The
+   * returned array is empty if there are no such entries.
+   */
+  public BookEntry[] getEntries(long key) {
+    int first = findFirst(key);
+    int last = first;
+    while ((last < entryCount) && (getKey(last) == key)) last++;
+
+    BookEntry[] entries = new BookEntry[last - first];
+    for (int i = first; i < last; i++) {
+      int offset = i * ENTRY_SIZE;
+      entries[i - first] =
+          new BookEntry(
+              key,
+              buffer.getShort(offset + 8) & 0xffff,
+              buffer.getShort(offset + 10) & 0xffff,
+              buffer.getInt(offset + 12));
+    }
+
+    return entries;
+  }
+
+  /**
+   * Returns the entries for the specified position, sorted by descending weight.
+   */
+  public BookEntry[] getEntries(Position pos) {
+    return getEntries(Zobrist.getKey(pos));
+  }
+
+  /**
+   * Returns the book moves in the specified position, sorted by descending weight. Entries whose
+   * moves are not legal in the position (which may happen because of key collisions) are skipped.
+   */
+  public Move[] getMoves(Position pos) {
+    BookEntry[] entries = getEntries(pos);
+    if (entries.length == 0) return new Move[0];
+
+    List legalMoves = MoveGenerator.getLegalMoves(pos);
+    List moves = new ArrayList(entries.length);
+    for (int i = 0; i < entries.length; i++) {
+      Move move = decodeMove(entries[i].getMove(), pos, legalMoves);
+      if (move != null) moves.add(move);
+    }
+
+    return (Move[]) moves.toArray(new Move[moves.size()]);
+  }
+
+  /**
+   * Encodes the specified move, made in the specified position, into the 16 bit representation
+   * used by Polyglot books: bits 0-2 hold the file of the destination square, bits 3-5 its rank,
+   * bits 6-8 the file of the origin square, bits 9-11 its rank and bits 12-14 the promotion piece
+   * (1 for a knight, 2 for a bishop, 3 for a rook and 4 for a queen). Castling is encoded as the
+   * king capturing its own rook.
+   */
+  public static int encodeMove(Move move, Position pos) {
+    Square from = move.getStartingSquare();
+    Square to = move.getEndingSquare();
+    int promotion = 0;
+
+    if (move instanceof ChessMove) {
+      ChessMove chessMove = (ChessMove) move;
+      if (chessMove.isCastling()) to = findCastlingRook(pos, from, chessMove.isShortCastling());
+      else if (chessMove.isPromotion()) promotion = chessMove.getPromotionTarget().getType() - 1;
+    }
+
+    return to.getFile()
+        | (to.getRank() << 3)
+        | (from.getFile() << 6)
+        | (from.getRank() << 9)
+        | (promotion << 12);
+  }
+
+  /**
+   * Returns the square of the rook the king on the specified square castles with.
+   */
+  private static Square findCastlingRook(Position pos, Square kingSquare, boolean isShort) {
+    Piece king = pos.getPieceAt(kingSquare);
+    int rank = kingSquare.getRank();
+    int step = isShort ? 1 : -1;
+    for (int file = kingSquare.getFile() + step; (file >= 0) && (file < 8); file += step) {
+      Piece piece = pos.getPieceAt(file, rank);
+      if ((piece != null)
+          && (piece.getType() == ChessPiece.ROOK)
+          && (king != null)
+          && (piece.isWhite() == king.isWhite())) return Square.getInstance(file, rank);
+    }
+
+    return Square.getInstance(isShort ? 7 : 0, rank);
+  }
+
+  /**
+   * Decodes the specified move (see {@link #encodeMove(Move, Position)}) in the specified position.
+   * Returns <code>null</code> if the move is not legal in the position.
+   */
+  public static Move decodeMove(int move, Position pos) {
+    // Only the moves of the piece on the origin square can match, so only they are generated, and
+    // only the matching one is checked for legality.
+    Square from = Square.getInstance((move >> 6) & 7, (move >> 9) & 7);
+    List pieceMoves = new ArrayList();
+    MoveGenerator.addPieceMoves(pos, from, pieceMoves);
+
+    Move result = decodeMove(move, pos, pieceMoves);
+    return ((result != null) && MoveGenerator.isLegal(pos, result)) ? result : null;
+  }
+
+  /**
+   * Decodes the specified move, looking for it in the specified list of moves in the specified
+   * position.
+   */
+  private static Move decodeMove(int move, Position pos, List legalMoves) {
+    Square to = Square.getInstance(move & 7, (move >> 3) & 7);
+    Square from = Square.getInstance((move >> 6) & 7, (move >> 9) & 7);
+    int promotion = (move >> 12) & 7;
+
+    for (int i = 0; i < legalMoves.size(); i++) {
+      Move legalMove = (Move) legalMoves.get(i);
+      if (!legalMove.getStartingSquare().equals(from)) continue;
+
+      if (legalMove instanceof ChessMove) {
+        ChessMove chessMove = (ChessMove) legalMove;
+        if (chessMove.isCastling()) {
+          if (to.equals(findCastlingRook(pos, from, chessMove.isShortCastling())))
+            return legalMove;
+          continue;
+        }
+
+        int legalPromotion =
+            chessMove.isPromotion() ? chessMove.getPromotionTarget().getType() - 1 : 0;
+        if (legalPromotion != promotion) continue;
+      }
+
+      if (legalMove.getEndingSquare().equals(to)) return legalMove;
+    }
+
+    return null;
+  }
+}
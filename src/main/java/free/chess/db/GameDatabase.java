@@ -0,0 +1,858 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+
+package free.chess.db;
+
+import free.chess.Move;
+import free.chess.MoveFormatException;
+import free.chess.Position;
+import free.chess.PositionFormatException;
+import free.chess.SanNotation;
+import free.chess.Zobrist;
+import free.chess.book.EcoEntry;
+import free.chess.book.EcoTable;
+import free.chess.book.OpeningBook;
+import free.chess.pgn.PgnGame;
+import free.chess.pgn.PgnReader;
+import free.chess.pgn.PgnWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Enumeration;
+
+/**
+ * An embedded, append-only database of games, stored in a directory. The games are kept in a
+ * single data file (<code>games.dat</code>) as binary records, each holding the tag pairs, the
+ * game termination marker and the moves in their 16 bit encoding (see
+ * {@link OpeningBook#encodeMove(free.chess.Move, Position)}). A second file
+ * (<code>games.ofs</code>) holds the offset of each record, so a game is read with a single seek.
+ * Games are numbered by the order they were added, starting with 0.
+ *
+ * <p>The games are indexed by player name, date, result, ECO code and the keys (see
+ * {@link Zobrist}) of all the positions reached in them, each index being a sorted file of keys
+ * and game numbers (see {@link KeyIndex}), so queries such as "all my games against X" or "games
+ * reaching this position" take a few binary searches regardless of the size of the database.
+ * Recently added games are indexed in memory, and written into the index files by {@link #flush()}
+ * (which is also done automatically when enough of them accumulate, and on {@link #close()}). The
+ * data file is always written first, so if the database isn't closed properly, the index entries
+ * of the games that weren't flushed are recreated the next time it is opened.
+ *
+ * <p>The methods of this class are synchronized, so a database may be used by several threads.
+ * This class is also a commandline tool - run it without arguments for usage information.
+ */
+public class GameDatabase {
+
+  /**
+   * The magic number at the start of the data file.
+   */
+  public static final int MAGIC = 0x4A474442;
+
+  /**
+   * The version of the data file format.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * The size of the data file header, in bytes.
+   */
+  private static final int HEADER_SIZE = 8;
+
+  /**
+   * The number of pending index entries after which the indexes are flushed automatically.
+   */
+  private static final int PENDING_LIMIT = 1 << 20;
+
+  /**
+   * The maximum number of characters of a tag name or value stored.
+   */
+  private static final int MAX_TAG_LENGTH = 4096;
+
+  /**
+   * The game termination markers, indexed by the codes they are stored as.
+   */
+  private static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+
+  /**
+   * The data file.
+   */
+  private final File dataFile;
+
+  /**
+   * The offsets file.
+   */
+  private final File offsetsFile;
+
+  /**
+   * The data file, open for reading and appending.
+   */
+  private final RandomAccessFile data;
+
+  /**
+   * The stream appending to the offsets file.
+   */
+  private DataOutputStream offsetsOut;
+
+  /**
+   * The offsets of the records in the data file, by game number.
+   */
+  private long[] offsets = new long[1024];
+
+  /**
+   * The number of games in the database.
+   */
+  private int gameCount = 0;
+
+  /**
+   * The length of the data file.
+   */
+  private long dataLength;
+
+  /**
+   * The index of player names.
+   */
+  private final KeyIndex playerIndex;
+
+  /**
+   * The index of dates, keyed by <code>yyyymmdd</code>.
+   */
+  private final KeyIndex dateIndex;
+
+  /**
+   * The index of results, keyed by the codes results are stored as.
+   */
+  private final KeyIndex resultIndex;
+
+  /**
+   * The index of ECO codes, keyed by the letter (<code>0</code> for <code>A</code>) times 100 plus
+   * the number.
+   */
+  private final KeyIndex ecoIndex;
+
+  /**
+   * The index of positions, keyed by the Zobrist keys.
+   */
+  private final KeyIndex positionIndex;
+
+  /**
+   * All the indexes.
+   */
+  private final KeyIndex[] indexes;
+
+  /**
+   * The ECO table used to classify games without an <code>ECO</code> tag, <code>null</code> if
+   * none.
+   */
+  private EcoTable ecoTable = null;
+
+  /**
+   * The buffer records are serialized into.
+   */
+  private final ByteArrayOutputStream recordBuf = new ByteArrayOutputStream(1024);
+
+  /**
+   * Opens the database in the specified directory, creating it if it doesn't exist.
+   *
+   * @throws IOException if the database can't be opened or created.
+   */
+  public GameDatabase(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs())
+      throw new IOException("Unable to create directory: " + directory);
+
+    this.dataFile = new File(directory, "games.dat");
+    this.offsetsFile = new File(directory, "games.ofs");
+    this.data = new RandomAccessFile(dataFile, "rw");
+
+    boolean success = false;
+    try {
+      openData();
+      loadOffsets();
+
+      playerIndex = new KeyIndex(new File(directory, "player.idx"));
+      dateIndex = new KeyIndex(new File(directory, "date.idx"));
+      resultIndex = new KeyIndex(new File(directory, "result.idx"));
+      ecoIndex = new KeyIndex(new File(directory, "eco.idx"));
+      positionIndex = new KeyIndex(new File(directory, "position.idx"));
+      indexes = new KeyIndex[] {playerIndex, dateIndex, resultIndex, ecoIndex, positionIndex};
+
+      recoverIndexes();
+      success = true;
+    } finally {
+      if (!success) data.close();
+    }
+  }
+
+  /**
+   * Writes or verifies the header of the data file.
+   */
+  private void openData() throws IOException {
+    dataLength = data.length();
+    if (dataLength == 0) {
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      dataLength = HEADER_SIZE;
+    } else if ((dataLength < HEADER_SIZE) || (data.readInt() != MAGIC))
+      throw new IOException("Invalid database file: " + dataFile);
+    else if (data.readInt() != VERSION)
+      throw new IOException("Unsupported database version: " + dataFile);
+  }
+
+  /**
+   * Loads the offsets file, adding the offsets of any records it's missing (which happens if the
+   * database wasn't closed properly) and truncating an incomplete last record from the data file.
+   */
+  private void loadOffsets() throws IOException {
+    boolean isComplete = true;
+    if (offsetsFile.exists()) {
+      DataInputStream in =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(offsetsFile), 65536));
+      try {
+        int count = (int) (offsetsFile.length() / 8);
+        isComplete = (offsetsFile.length() % 8 == 0);
+        long lastOffset = 0;
+        for (int i = 0; i < count; i++) {
+          long offset = in.readLong();
+          if ((offset <= lastOffset) || (offset + 4 > dataLength)) {
+            isComplete = false;
+            break;
+          }
+          addOffset(offset);
+          lastOffset = offset;
+        }
+      } finally {
+        in.close();
+      }
+    }
+
+    // Scan for records written after the last known one
+    long offset = HEADER_SIZE;
+    if (gameCount > 0) {
+      data.seek(offsets[gameCount - 1]);
+      offset = offsets[gameCount - 1] + 4 + data.readInt();
+    }
+    while (offset + 4 <= dataLength) {
+      data.seek(offset);
+      int length = data.readInt();
+      if ((length <= 0) || (offset + 4 + length > dataLength)) break;
+
+      addOffset(offset);
+      offset += 4 + length;
+      isComplete = false;
+    }
+
+    if (offset < dataLength) {
+      data.setLength(offset);
+      dataLength = offset;
+    }
+
+    if (!isComplete) {
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(offsetsFile), 65536));
+      try {
+        for (int i = 0; i < gameCount; i++) out.writeLong(offsets[i]);
+      } finally {
+        out.close();
+      }
+    }
+
+    offsetsOut =
+        new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(offsetsFile, true), 8192));
+  }
+
+  /**
+   * Adds the offset of the next game.
+   */
+  private void addOffset(long offset) {
+    if (gameCount == offsets.length) offsets = Arrays.copyOf(offsets, gameCount * 2);
+
+    offsets[gameCount++] = offset;
+  }
+
+  /**
+   * Brings the indexes up to date with the data file - indexes of more games than there are are
+   * recreated, and games missing from the indexes are added to them.
+   */
+  private void recoverIndexes() throws IOException {
+    int firstUnindexed = gameCount;
+    for (int i = 0; i < indexes.length; i++) {
+      if (indexes[i].getGameCount() > gameCount) indexes[i].clear();
+      firstUnindexed = Math.min(firstUnindexed, indexes[i].getGameCount());
+    }
+
+    for (int game = firstUnindexed; game < gameCount; game++) {
+      GameRecord record = getGame(game);
+      Position initialPos;
+      Move[] moves;
+      try {
+        initialPos = record.getInitialPosition();
+        moves = record.getMoves();
+      } catch (PositionFormatException e) {
+        initialPos = new Position();
+        moves = new Move[0];
+      }
+      indexGame(record, initialPos, moves);
+    }
+
+    flushIndexes();
+  }
+
+  /**
+   * Sets the ECO table used to classify games which have no <code>ECO</code> tag when they are
+   * added, by the last position of the game found in the table. <code>null</code> (the default)
+   * means such games are not classified.
+   */
+  public synchronized void setEcoTable(EcoTable ecoTable) {
+    this.ecoTable = ecoTable;
+  }
+
+  /**
+   * Returns the number of games in the database.
+   */
+  public synchronized int getGameCount() {
+    return gameCount;
+  }
+
+  /**
+   * Adds the specified game to the database, returning its number, or <code>-1</code> if the game
+   * can't be added because its initial position is invalid or it contains an illegal move.
+   */
+  public synchronized int addGame(PgnGame game) throws IOException {
+    Position pos;
+    try {
+      pos = game.getInitialPosition();
+    } catch (PositionFormatException e) {
+      return -1;
+    }
+    Position initialPos = new Position(pos);
+
+    int moveCount = game.getMoveCount();
+    if (moveCount > 0xffff) return -1;
+
+    Move[] moves = new Move[moveCount];
+    int[] encodedMoves = new int[moveCount];
+    for (int i = 0; i < moveCount; i++) {
+      try {
+        moves[i] = SanNotation.parseSAN(pos, game.getMove(i));
+      } catch (MoveFormatException e) {
+        return -1;
+      }
+      encodedMoves[i] = OpeningBook.encodeMove(moves[i], pos);
+      pos.makeMove(moves[i]);
+    }
+
+    int tagCount = 0;
+    for (Enumeration e = game.getTagNames(); e.hasMoreElements(); e.nextElement()) tagCount++;
+    String[] tagNames = new String[tagCount];
+    String[] tagValues = new String[tagCount];
+    Enumeration names = game.getTagNames();
+    for (int i = 0; i < tagCount; i++) {
+      tagNames[i] = truncate((String) names.nextElement());
+      tagValues[i] = truncate(game.getTag(tagNames[i]));
+    }
+
+    String result = RESULTS[getResultCode(game.getResult())];
+    GameRecord record = new GameRecord(gameCount, tagNames, tagValues, result, encodedMoves);
+    writeRecord(record);
+    indexGame(record, initialPos, moves);
+
+    int pendingCount = 0;
+    for (int i = 0; i < indexes.length; i++) pendingCount += indexes[i].getPendingCount();
+    if (pendingCount > PENDING_LIMIT) flushIndexes();
+
+    return record.getNumber();
+  }
+
+  /**
+   * Truncates the specified string to the maximum tag length.
+   */
+  private static String truncate(String s) {
+    return (s.length() > MAX_TAG_LENGTH) ? s.substring(0, MAX_TAG_LENGTH) : s;
+  }
+
+  /**
+   * Appends the specified record to the data file. The record consists of its length, the result
+   * code, the number of tags, the tag names and values, the number of moves and the encoded moves.
+   */
+  private void writeRecord(GameRecord record) throws IOException {
+    recordBuf.reset();
+    DataOutputStream out = new DataOutputStream(recordBuf);
+    out.writeInt(0); // Length placeholder
+    out.writeByte(getResultCode(record.getResult()));
+
+    int tagCount = record.getTagCount();
+    out.writeShort(tagCount);
+    for (int i = 0; i < tagCount; i++) {
+      out.writeUTF(record.getTagName(i));
+      out.writeUTF(record.getTagValue(i));
+    }
+
+    int moveCount = record.getMoveCount();
+    out.writeShort(moveCount);
+    for (int i = 0; i < moveCount; i++) out.writeShort(record.getEncodedMove(i));
+    out.flush();
+
+    byte[] bytes = recordBuf.toByteArray();
+    int length = bytes.length - 4;
+    bytes[0] = (byte) (length >>> 24);
+    bytes[1] = (byte) (length >>> 16);
+    bytes[2] = (byte) (length >>> 8);
+    bytes[3] = (byte) length;
+
+    data.seek(dataLength);
+    data.write(bytes);
+
+    long offset = dataLength;
+    dataLength += bytes.length;
+    addOffset(offset);
+    offsetsOut.writeLong(offset);
+  }
+
+  /**
+   * Adds the index entries of the specified game, whose initial position and (resolved) moves are
+   * also specified, to those indexes which don't have them yet.
+   */
+  private void indexGame(GameRecord record, Position initialPos, Move[] moves) {
+    int game = record.getNumber();
+
+    addEntry(playerIndex, getPlayerKey(record.getWhite()), game);
+    addEntry(playerIndex, getPlayerKey(record.getBlack()), game);
+    addEntry(dateIndex, getDateKey(record.getTag("Date")), game);
+    addEntry(resultIndex, getResultCode(record.getResult()), game);
+
+    EcoTable ecoTable = (record.getTag("ECO") == null) ? this.ecoTable : null;
+    EcoEntry ecoEntry = null;
+    if ((positionIndex.getGameCount() == game) || (ecoTable != null)) {
+      Position pos = new Position(initialPos);
+      long[] keys = new long[moves.length + 1];
+      keys[0] = Zobrist.getKey(pos);
+      for (int i = 0; i < moves.length; i++) {
+        pos.makeMove(moves[i]);
+        keys[i + 1] = Zobrist.getKey(pos);
+        if (ecoTable != null) {
+          EcoEntry entry = ecoTable.lookup(keys[i + 1]);
+          if (entry != null) ecoEntry = entry;
+        }
+      }
+
+      // A position may repeat within a game, but is indexed only once
+      Arrays.sort(keys);
+      for (int i = 0; i < keys.length; i++)
+        if ((i == 0) || (keys[i] != keys[i - 1])) addEntry(positionIndex, keys[i], game);
+    }
+
+    String eco = (ecoEntry == null) ? record.getTag("ECO") : ecoEntry.getCode();
+    addEntry(ecoIndex, getEcoKey(eco), game);
+
+    for (int i = 0; i < indexes.length; i++)
+      if (indexes[i].getGameCount() == game) indexes[i].setGameCount(game + 1);
+  }
+
+  /**
+   * Adds an entry with the specified key for the specified game to the specified index, unless the
+   * key is <code>-1</code> or the index already has the game.
+   */
+  private static void addEntry(KeyIndex index, long key, int game) {
+    if ((key != -1) && (index.getGameCount() == game)) index.add(key, game);
+  }
+
+  /**
+   * Returns the index key for the specified player name - a 64 bit FNV-1a hash of the name,
+   * trimmed and lowercased. Returns <code>-1</code> for an unknown player.
+   */
+  static long getPlayerKey(String name) {
+    if (name == null) return -1;
+
+    name = name.trim().toLowerCase();
+    if ((name.length() == 0) || name.equals("?")) return -1;
+
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < name.length(); i++) {
+      hash ^= name.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+
+    return (hash == -1) ? 0 : hash;
+  }
+
+  /**
+   * Returns the index key for the specified PGN date (<code>yyyy.mm.dd</code>, with unknown parts
+   * replaced by question marks) - <code>yyyymmdd</code>, with unknown parts being 0. Returns
+   * <code>-1</code> if the year is unknown.
+   */
+  static long getDateKey(String date) {
+    if (date == null) return -1;
+
+    String[] parts = date.trim().split("\\.");
+    int year = parseDatePart(parts, 0);
+    if (year <= 0) return -1;
+
+    return year * 10000L + parseDatePart(parts, 1) * 100 + parseDatePart(parts, 2);
+  }
+
+  /**
+   * Parses the date part with the specified index, returning 0 if it's missing or unknown.
+   */
+  private static int parseDatePart(String[] parts, int index) {
+    if (index >= parts.length) return 0;
+
+    try {
+      return Math.max(0, Integer.parseInt(parts[index]));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the code the specified game termination marker is stored as.
+   */
+  private static int getResultCode(String result) {
+    for (int i = 1; i < RESULTS.length; i++) if (RESULTS[i].equals(result)) return i;
+
+    return 0;
+  }
+
+  /**
+   * Returns the index key for the specified ECO code, or <code>-1</code> if it's not a valid one.
+   */
+  static long getEcoKey(String eco) {
+    if ((eco == null) || (eco.length() != 3)) return -1;
+
+    char letter = Character.toUpperCase(eco.charAt(0));
+    if ((letter < 'A') || (letter > 'E')) return -1;
+    if (!Character.isDigit(eco.charAt(1)) || !Character.isDigit(eco.charAt(2))) return -1;
+
+    return (letter - 'A') * 100 + Integer.parseInt(eco.substring(1));
+  }
+
+  /**
+   * Returns the game with the specified number.
+   *
+   * @throws IllegalArgumentException if there is no such game.
+   */
+  public synchronized GameRecord getGame(int number) throws IOException {
+    if ((number < 0) || (number >= gameCount))
+      throw new IllegalArgumentException("No such game: " + number);
+
+    data.seek(offsets[number]);
+    byte[] bytes = new byte[data.readInt()];
+    data.readFully(bytes);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    try {
+      int resultCode = in.readUnsignedByte();
+      int tagCount = in.readUnsignedShort();
+      String[] tagNames = new String[tagCount];
+      String[] tagValues = new String[tagCount];
+      for (int i = 0; i < tagCount; i++) {
+        tagNames[i] = in.readUTF();
+        tagValues[i] = in.readUTF();
+      }
+
+      int[] moves = new int[in.readUnsignedShort()];
+      for (int i = 0; i < moves.length; i++) moves[i] = in.readUnsignedShort();
+
+      String result = (resultCode < RESULTS.length) ? RESULTS[resultCode] : RESULTS[0];
+      return new GameRecord(number, tagNames, tagValues, result, moves);
+    } catch (EOFException e) {
+      throw new IOException("Corrupt record of game " + number + " in " + dataFile);
+    }
+  }
+
+  /**
+   * Returns the numbers of the games the specified player played in, in ascending order. Player
+   * names are compared case insensitively.
+   */
+  public synchronized int[] findGamesByPlayer(String name) throws IOException {
+    long key = getPlayerKey(name);
+    return (key == -1) ? new int[0] : find(playerIndex, key, key);
+  }
+
+  /**
+   * Returns the numbers of the games played between the specified two players, in ascending
+   * order.
+   */
+  public synchronized int[] findGamesBetween(String player, String opponent) throws IOException {
+    return intersect(findGamesByPlayer(player), findGamesByPlayer(opponent));
+  }
+
+  /**
+   * Returns the numbers of the games played between the specified dates (inclusive), in ascending
+   * order. Dates are specified as in PGN (<code>yyyy.mm.dd</code>); unknown or missing month or day
+   * parts match any month or day.
+   */
+  public synchronized int[] findGamesByDate(String from, String to) throws IOException {
+    long fromKey = getDateKey(from);
+    long toKey = getDateKey(to);
+    if ((fromKey == -1) || (toKey == -1)) return new int[0];
+
+    if (toKey % 100 == 0) toKey += 99;
+    if (toKey / 100 % 100 == 0) toKey += 9900;
+
+    return find(dateIndex, fromKey, toKey);
+  }
+
+  /**
+   * Returns the numbers of the games with the specified result (<code>"1-0"</code>,
+   * <code>"0-1"</code>, <code>"1/2-1/2"</code> or <code>"*"</code>), in ascending order.
+   */
+  public synchronized int[] findGamesByResult(String result) throws IOException {
+    long key = getResultCode(result);
+    return find(resultIndex, key, key);
+  }
+
+  /**
+   * Returns the numbers of the games with ECO codes between the specified ones (inclusive), in
+   * ascending order.
+   */
+  public synchronized int[] findGamesByEco(String from, String to) throws IOException {
+    long fromKey = getEcoKey(from);
+    long toKey = getEcoKey(to);
+    if ((fromKey == -1) || (toKey == -1)) return new int[0];
+
+    return find(ecoIndex, fromKey, toKey);
+  }
+
+  /**
+   * Returns the numbers of the games which reached the specified position, in ascending order.
+   */
+  public synchronized int[] findGamesByPosition(Position pos) throws IOException {
+    return findGamesByPosition(Zobrist.getKey(pos));
+  }
+
+  /**
+   * Returns the numbers of the games which reached the position with the specified key, in
+   * ascending order.
+   */
+  public synchronized int[] findGamesByPosition(long key) throws IOException {
+    return find(positionIndex, key, key);
+  }
+
+  /**
+   * Looks up the specified range of keys in the specified index.
+   */
+  private int[] find(KeyIndex index, long fromKey, long toKey) throws IOException {
+    GameNumberBuffer result = new GameNumberBuffer();
+    index.find(fromKey, toKey, result);
+    return result.toSortedArray(gameCount);
+  }
+
+  /**
+   * Returns the game numbers present in both specified arrays, which must be sorted in ascending
+   * order. Useful for combining the results of several queries.
+   */
+  public static int[] intersect(int[] games1, int[] games2) {
+    int[] result = new int[Math.min(games1.length, games2.length)];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while ((i < games1.length) && (j < games2.length)) {
+      if (games1[i] < games2[j]) i++;
+      else if (games1[i] > games2[j]) j++;
+      else {
+        result[count++] = games1[i];
+        i++;
+        j++;
+      }
+    }
+
+    return Arrays.copyOf(result, count);
+  }
+
+  /**
+   * Adds all the games read from the specified PGN source to the database, returning the number of
+   * games added. Games which can't be added (see {@link #addGame(PgnGame)}) are skipped. The
+   * reader is not closed.
+   */
+  public synchronized int importPgn(Reader in) throws IOException {
+    PgnReader reader = new PgnReader(in);
+    int added = 0;
+    PgnGame game;
+    while ((game = reader.readGame()) != null) if (addGame(game) != -1) added++;
+
+    return added;
+  }
+
+  /**
+   * Writes the specified games to the specified writer, in PGN. Returns the number of games
+   * written; games whose initial position is invalid are skipped. The writer is flushed, but not
+   * closed.
+   */
+  public synchronized int exportPgn(int[] games, Writer out) throws IOException {
+    PgnWriter writer = new PgnWriter(out);
+    int written = 0;
+    for (int i = 0; i < games.length; i++) {
+      try {
+        writer.writeGame(getGame(games[i]).toPgnGame());
+        written++;
+      } catch (PositionFormatException e) {
+        // Skip it
+      }
+    }
+    writer.flush();
+
+    return written;
+  }
+
+  /**
+   * Writes all the games in the database to the specified writer, in PGN.
+   */
+  public synchronized int exportPgn(Writer out) throws IOException {
+    int[] games = new int[gameCount];
+    for (int i = 0; i < games.length; i++) games[i] = i;
+
+    return exportPgn(games, out);
+  }
+
+  /**
+   * Writes the offsets of the recently added games and the recent index entries to disk.
+   */
+  public synchronized void flush() throws IOException {
+    offsetsOut.flush();
+    flushIndexes();
+  }
+
+  /**
+   * Writes the recent index entries to disk.
+   */
+  private void flushIndexes() throws IOException {
+    for (int i = 0; i < indexes.length; i++) indexes[i].flush();
+  }
+
+  /**
+   * Flushes and closes the database.
+   */
+  public synchronized void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      for (int i = 0; i < indexes.length; i++) indexes[i].close();
+      offsetsOut.close();
+      data.close();
+    }
+  }
+
+  /**
+   * Creates a reader for the specified PGN file, which is assumed to be in ISO-8859-1, as the PGN
+   * standard specifies.
+   */
+  private static Reader createReader(File file) throws IOException {
+    return new InputStreamReader(new FileInputStream(file), "ISO-8859-1");
+  }
+
+  /**
+   * The main method.
+   */
+  public static void main(String[] args) throws IOException, PositionFormatException {
+    if (args.length < 2) {
+      printUsage();
+      return;
+    }
+
+    GameDatabase db = new GameDatabase(new File(args[0]));
+    try {
+      String command = args[1];
+      long start = System.currentTimeMillis();
+      if ("-import".equals(command)) {
+        int argIndex = 2;
+        if ((argIndex + 1 < args.length) && "-eco".equals(args[argIndex])) {
+          db.setEcoTable(new EcoTable(new File(args[argIndex + 1])));
+          argIndex += 2;
+        }
+
+        int added = 0;
+        for (; argIndex < args.length; argIndex++) {
+          Reader in = createReader(new File(args[argIndex]));
+          try {
+            added += db.importPgn(in);
+          } finally {
+            in.close();
+          }
+        }
+        db.flush();
+        System.out.println(
+            added + " games added in " + (System.currentTimeMillis() - start) + "ms, "
+                + db.getGameCount() + " games in the database");
+      } else if ("-export".equals(command) && (args.length == 3)) {
+        Writer out =
+            new OutputStreamWriter(new FileOutputStream(new File(args[2])), "ISO-8859-1");
+        try {
+          int written = db.exportPgn(out);
+          System.out.println(
+              written + " games written in " + (System.currentTimeMillis() - start) + "ms");
+        } finally {
+          out.close();
+        }
+      } else {
+        int[] games;
+        String last = args[args.length - 1];
+        if ("-player".equals(command) && (args.length == 3)) games = db.findGamesByPlayer(args[2]);
+        else if ("-player".equals(command) && (args.length == 4))
+          games = db.findGamesBetween(args[2], args[3]);
+        else if ("-position".equals(command) && (args.length == 3)) {
+          Position pos = new Position();
+          pos.setFEN(args[2]);
+          games = db.findGamesByPosition(pos);
+        } else if ("-eco".equals(command) && (args.length >= 3))
+          games = db.findGamesByEco(args[2], last);
+        else if ("-date".equals(command) && (args.length >= 3))
+          games = db.findGamesByDate(args[2], last);
+        else if ("-result".equals(command) && (args.length == 3))
+          games = db.findGamesByResult(args[2]);
+        else {
+          printUsage();
+          return;
+        }
+
+        long time = System.currentTimeMillis() - start;
+        for (int i = 0; i < Math.min(games.length, 20); i++)
+          System.out.println(db.getGame(games[i]));
+        if (games.length > 20) System.out.println("...");
+        System.out.println(games.length + " games found in " + time + "ms");
+      }
+    } finally {
+      db.close();
+    }
+  }
+
+  /**
+   * Prints usage information.
+   */
+  private static void printUsage() {
+    System.out.println("Usage:");
+    System.out.println("  GameDatabase <directory> -import [-eco <ECO table>] <PGN files>");
+    System.out.println("  GameDatabase <directory> -export <PGN file>");
+    System.out.println("  GameDatabase <directory> -player <name> [<opponent>]");
+    System.out.println("  GameDatabase <directory> -position <FEN>");
+    System.out.println("  GameDatabase <directory> -eco <code> [<code>]");
+    System.out.println("  GameDatabase <directory> -date <yyyy.mm.dd> [<yyyy.mm.dd>]");
+    System.out.println("  GameDatabase <directory> -result <result>");
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+
+package free.chess.db;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of game numbers, used to collect the results of index lookups.
+ */
+final class GameNumberBuffer {
+
+  /**
+   * The game numbers.
+   */
+  private int[] games = new int[16];
+
+  /**
+   * The number of game numbers in the buffer.
+   */
+  private int size = 0;
+
+  /**
+   * Adds the specified game number.
+   */
+  void add(int game) {
+    if (size == games.length) games = Arrays.copyOf(games, size * 2);
+
+    games[size++] = game;
+  }
+
+  /**
+   * Returns the game numbers in the buffer, sorted and without duplicates, skipping the ones not
+   * smaller than the specified limit. The buffer may not be used afterwards.
+   */
+  int[] toSortedArray(int limit) {
+    Arrays.sort(games, 0, size);
+
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      int game = games[i];
+      if (game >= limit) break;
+      if ((count == 0) || (games[count - 1] != game)) games[count++] = game;
+    }
+
+    return Arrays.copyOf(games, count);
+  }
+}
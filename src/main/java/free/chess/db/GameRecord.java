@@ -0,0 +1,227 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+
+package free.chess.db;
+
+import free.chess.Move;
+import free.chess.Position;
+import free.chess.PositionFormatException;
+import free.chess.SanNotation;
+import free.chess.book.OpeningBook;
+import free.chess.pgn.PgnGame;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * A game stored in a {@link GameDatabase}. The moves are kept in their compact, 16 bit encoding
+ * (see {@link OpeningBook#encodeMove(Move, Position)}) and are only resolved, against the initial
+ * position of the game, when asked for. Instances of this class are immutable.
+ */
+public final class GameRecord {
+
+  /**
+   * The number of the game in the database.
+   */
+  private final int number;
+
+  /**
+   * The names of the tags, in order.
+   */
+  private final String[] tagNames;
+
+  /**
+   * The values of the tags, corresponding to <code>tagNames</code>.
+   */
+  private final String[] tagValues;
+
+  /**
+   * The game termination marker.
+   */
+  private final String result;
+
+  /**
+   * The encoded moves.
+   */
+  private final int[] moves;
+
+  /**
+   * Creates a new <code>GameRecord</code> with the specified game number, tags, game termination
+   * marker and encoded moves. The arrays are not copied.
+   */
+  GameRecord(int number, String[] tagNames, String[] tagValues, String result, int[] moves) {
+    this.number = number;
+    this.tagNames = tagNames;
+    this.tagValues = tagValues;
+    this.result = result;
+    this.moves = moves;
+  }
+
+  /**
+   * Returns the number of the game in the database.
+   */
+  public int getNumber() {
+    return number;
+  }
+
+  /**
+   * Returns the value of the tag with the specified name, or <code>null</code> if there is no such
+   * tag.
+   */
+  public String getTag(String name) {
+    for (int i = 0; i < tagNames.length; i++) if (tagNames[i].equals(name)) return tagValues[i];
+
+    return null;
+  }
+
+  /**
+   * Returns the number of tags.
+   */
+  public int getTagCount() {
+    return tagNames.length;
+  }
+
+  /**
+   * Returns the name of the tag at the specified index.
+   */
+  public String getTagName(int index) {
+    return tagNames[index];
+  }
+
+  /**
+   * Returns the value of the tag at the specified index.
+   */
+  public String getTagValue(int index) {
+    return tagValues[index];
+  }
+
+  /**
+   * Returns the name of the white player, as specified by the <code>White</code> tag.
+   */
+  public String getWhite() {
+    return getTag("White");
+  }
+
+  /**
+   * Returns the name of the black player, as specified by the <code>Black</code> tag.
+   */
+  public String getBlack() {
+    return getTag("Black");
+  }
+
+  /**
+   * Returns the game termination marker (<code>"1-0"</code>, <code>"0-1"</code>,
+   * <code>"1/2-1/2"</code> or <code>"*"</code>).
+   */
+  public String getResult() {
+    return result;
+  }
+
+  /**
+   * Returns the number of moves (plies) in the game.
+   */
+  public int getMoveCount() {
+    return moves.length;
+  }
+
+  /**
+   * Returns the encoded move (ply) at the specified index.
+   */
+  public int getEncodedMove(int index) {
+    return moves[index];
+  }
+
+  /**
+   * Returns the initial position of the game.
+   *
+   * @throws PositionFormatException if the <code>FEN</code> tag is invalid.
+   */
+  public Position getInitialPosition() throws PositionFormatException {
+    Position pos = new Position();
+    String fen = getTag("FEN");
+    if (fen != null) pos.setFEN(fen);
+
+    return pos;
+  }
+
+  /**
+   * Returns the moves of the game, resolved against its initial position. If a move can't be
+   * resolved (which can only happen if the database is corrupt), the returned array ends before
+   * it.
+   *
+   * @throws PositionFormatException if the <code>FEN</code> tag is invalid.
+   */
+  public Move[] getMoves() throws PositionFormatException {
+    Position pos = getInitialPosition();
+    Move[] result = new Move[moves.length];
+    for (int i = 0; i < moves.length; i++) {
+      Move move = OpeningBook.decodeMove(moves[i], pos);
+      if (move == null) {
+        Move[] truncated = new Move[i];
+        System.arraycopy(result, 0, truncated, 0, i);
+        return truncated;
+      }
+
+      result[i] = move;
+      pos.makeMove(move);
+    }
+
+    return result;
+  }
+
+  /**
+   * Converts this record to a {@link PgnGame}, with the moves in SAN.
+   *
+   * @throws PositionFormatException if the <code>FEN</code> tag is invalid.
+   */
+  public PgnGame toPgnGame() throws PositionFormatException {
+    Vector names = new Vector(tagNames.length);
+    Hashtable tags = new Hashtable(tagNames.length * 2);
+    for (int i = 0; i < tagNames.length; i++) {
+      names.addElement(tagNames[i]);
+      tags.put(tagNames[i], tagValues[i]);
+    }
+
+    Position pos = getInitialPosition();
+    String[] san = new String[moves.length];
+    int moveCount = 0;
+    while (moveCount < moves.length) {
+      Move move = OpeningBook.decodeMove(moves[moveCount], pos);
+      if (move == null) break;
+
+      san[moveCount++] = SanNotation.toSAN(pos, move);
+      pos.makeMove(move);
+    }
+
+    if (moveCount < san.length) {
+      String[] truncated = new String[moveCount];
+      System.arraycopy(san, 0, truncated, 0, moveCount);
+      san = truncated;
+    }
+
+    return new PgnGame(names, tags, san, result);
+  }
+
+  /**
+   * Returns a textual representation of this game, for debugging.
+   */
+  @Override
+  public String toString() {
+    String date = getTag("Date");
+    return number + ": " + getWhite() + " - " + getBlack() + " " + result
+        + ((date == null) ? "" : " " + date);
+  }
+}
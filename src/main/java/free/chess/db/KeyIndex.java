@@ -0,0 +1,394 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+
+package free.chess.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A secondary index of a {@link GameDatabase}, mapping 64 bit keys to game numbers. The index file
+ * consists of an 8 byte header - a magic number and the number of games indexed - followed by 12
+ * byte, big-endian entries: an 8 byte key and a 4 byte game number, sorted by key (compared as
+ * unsigned numbers) and then by game number, so that lookups are binary searches. Entries added
+ * since the file was last written are kept in memory, and merged into the file by
+ * {@link #flush()}. Unlike {@link free.chess.book.OpeningBook}, the file is read with positional
+ * reads rather than memory-mapped, because it is replaced on every flush, and a mapped file can't
+ * be replaced on all platforms.
+ */
+final class KeyIndex {
+
+  /**
+   * The magic number at the start of index files.
+   */
+  static final int MAGIC = 0x4A474458;
+
+  /**
+   * The size of the header, in bytes.
+   */
+  private static final int HEADER_SIZE = 8;
+
+  /**
+   * The size of a single entry, in bytes.
+   */
+  static final int ENTRY_SIZE = 12;
+
+  /**
+   * The number of entries read at once when scanning a range of keys.
+   */
+  private static final int READ_CHUNK = 4096;
+
+  /**
+   * The index file.
+   */
+  private final File file;
+
+  /**
+   * The channel of the index file, <code>null</code> if the file doesn't exist yet.
+   */
+  private FileChannel channel;
+
+  /**
+   * The number of entries in the file.
+   */
+  private int fileEntryCount;
+
+  /**
+   * The number of games indexed, including the ones whose entries are pending.
+   */
+  private int gameCount;
+
+  /**
+   * The keys of the pending entries.
+   */
+  private long[] pendingKeys = new long[64];
+
+  /**
+   * The game numbers of the pending entries.
+   */
+  private int[] pendingGames = new int[64];
+
+  /**
+   * The number of pending entries.
+   */
+  private int pendingCount = 0;
+
+  /**
+   * Whether the index was modified since the file was last written.
+   */
+  private boolean isModified = false;
+
+  /**
+   * Creates a new <code>KeyIndex</code> for the specified file, which need not exist.
+   *
+   * @throws IOException if the file exists but can't be read or is not a valid index.
+   */
+  KeyIndex(File file) throws IOException {
+    this.file = file;
+    open();
+  }
+
+  /**
+   * Opens the index file, if it exists.
+   */
+  private void open() throws IOException {
+    channel = null;
+    fileEntryCount = 0;
+    gameCount = 0;
+    if (!file.exists()) return;
+
+    FileChannel fileChannel = new RandomAccessFile(file, "r").getChannel();
+    try {
+      long size = fileChannel.size();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      if ((size < HEADER_SIZE)
+          || ((size - HEADER_SIZE) % ENTRY_SIZE != 0)
+          || (fileChannel.read(header, 0) != HEADER_SIZE)
+          || (header.getInt(0) != MAGIC))
+        throw new IOException("Invalid index file: " + file);
+
+      fileEntryCount = (int) ((size - HEADER_SIZE) / ENTRY_SIZE);
+      gameCount = header.getInt(4);
+      channel = fileChannel;
+    } finally {
+      if (channel == null) fileChannel.close();
+    }
+  }
+
+  /**
+   * Returns the number of games indexed.
+   */
+  int getGameCount() {
+    return gameCount;
+  }
+
+  /**
+   * Sets the number of games indexed. This is called after the entries of a game (if any) have
+   * been added.
+   */
+  void setGameCount(int gameCount) {
+    if (this.gameCount != gameCount) isModified = true;
+
+    this.gameCount = gameCount;
+  }
+
+  /**
+   * Returns the total number of entries, including the pending ones.
+   */
+  int getEntryCount() {
+    return fileEntryCount + pendingCount;
+  }
+
+  /**
+   * Returns the number of pending entries.
+   */
+  int getPendingCount() {
+    return pendingCount;
+  }
+
+  /**
+   * Adds an entry.
+   */
+  void add(long key, int game) {
+    if (pendingCount == pendingKeys.length) {
+      pendingKeys = Arrays.copyOf(pendingKeys, pendingCount * 2);
+      pendingGames = Arrays.copyOf(pendingGames, pendingCount * 2);
+    }
+
+    pendingKeys[pendingCount] = key;
+    pendingGames[pendingCount] = game;
+    pendingCount++;
+    isModified = true;
+  }
+
+  /**
+   * Adds the numbers of the games with keys in the specified range (inclusive, compared as
+   * unsigned numbers) to the specified buffer. The buffer is neither sorted nor free of duplicates.
+   */
+  void find(long fromKey, long toKey, GameNumberBuffer result) throws IOException {
+    for (int i = 0; i < pendingCount; i++) {
+      long key = pendingKeys[i];
+      if ((Long.compareUnsigned(key, fromKey) >= 0) && (Long.compareUnsigned(key, toKey) <= 0))
+        result.add(pendingGames[i]);
+    }
+
+    if (fileEntryCount == 0) return;
+
+    ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK * ENTRY_SIZE);
+    int index = findFirst(fromKey);
+    while (index < fileEntryCount) {
+      int count = Math.min(READ_CHUNK, fileEntryCount - index);
+      chunk.clear();
+      chunk.limit(count * ENTRY_SIZE);
+      readFully(chunk, HEADER_SIZE + (long) index * ENTRY_SIZE);
+      for (int i = 0; i < count; i++) {
+        if (Long.compareUnsigned(chunk.getLong(i * ENTRY_SIZE), toKey) > 0) return;
+        result.add(chunk.getInt(i * ENTRY_SIZE + 8));
+      }
+      index += count;
+    }
+  }
+
+  /**
+   * Returns the index of the first entry in the file whose key is not smaller than the specified
+   * one.
+   */
+  private int findFirst(long key) throws IOException {
+    ByteBuffer keyBuf = ByteBuffer.allocate(8);
+    int low = 0;
+    int high = fileEntryCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      keyBuf.clear();
+      readFully(keyBuf, HEADER_SIZE + (long) mid * ENTRY_SIZE);
+      if (Long.compareUnsigned(keyBuf.getLong(0), key) < 0) low = mid + 1;
+      else high = mid;
+    }
+
+    return low;
+  }
+
+  /**
+   * Fills the specified buffer from the specified position of the file.
+   */
+  private void readFully(ByteBuffer buf, long position) throws IOException {
+    while (buf.hasRemaining()) {
+      int count = channel.read(buf, position);
+      if (count < 0) throw new EOFException("Unexpected end of index file: " + file);
+      position += count;
+    }
+  }
+
+  /**
+   * Writes the index file, merging the pending entries into it, and then clears the pending
+   * entries. The new file is written next to the old one and then renamed over it, so a failure
+   * leaves the old file intact.
+   */
+  void flush() throws IOException {
+    if (!isModified) return;
+
+    sort(pendingKeys, pendingGames, 0, pendingCount);
+
+    File tempFile = new File(file.getPath() + ".tmp");
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(gameCount);
+
+      DataInputStream in = null;
+      if (channel != null) {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        in.skipBytes(HEADER_SIZE);
+      }
+      try {
+        int fileIndex = 0;
+        int pendingIndex = 0;
+        long fileKey = 0;
+        int fileGame = 0;
+        if (fileIndex < fileEntryCount) {
+          fileKey = in.readLong();
+          fileGame = in.readInt();
+        }
+        while ((fileIndex < fileEntryCount) || (pendingIndex < pendingCount)) {
+          boolean takeFile;
+          if (fileIndex == fileEntryCount) takeFile = false;
+          else if (pendingIndex == pendingCount) takeFile = true;
+          else {
+            int cmp =
+                compare(fileKey, fileGame, pendingKeys[pendingIndex], pendingGames[pendingIndex]);
+            takeFile = cmp <= 0;
+          }
+
+          if (takeFile) {
+            out.writeLong(fileKey);
+            out.writeInt(fileGame);
+            if (++fileIndex < fileEntryCount) {
+              fileKey = in.readLong();
+              fileGame = in.readInt();
+            }
+          } else {
+            out.writeLong(pendingKeys[pendingIndex]);
+            out.writeInt(pendingGames[pendingIndex]);
+            pendingIndex++;
+          }
+        }
+      } finally {
+        if (in != null) in.close();
+      }
+    } finally {
+      out.close();
+    }
+
+    close();
+    if ((file.exists() && !file.delete()) || !tempFile.renameTo(file))
+      throw new IOException("Unable to replace index file: " + file);
+
+    pendingCount = 0;
+    isModified = false;
+    open();
+  }
+
+  /**
+   * Closes the index file. Pending entries are not written.
+   */
+  void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+
+  /**
+   * Deletes the index file and the pending entries.
+   */
+  void clear() throws IOException {
+    close();
+    if (file.exists() && !file.delete()) throw new IOException("Unable to delete " + file);
+
+    pendingCount = 0;
+    fileEntryCount = 0;
+    gameCount = 0;
+    isModified = true;
+  }
+
+  /**
+   * Compares two entries, by unsigned key and then by game number.
+   */
+  private static int compare(long key1, int game1, long key2, int game2) {
+    int cmp = Long.compareUnsigned(key1, key2);
+    return (cmp != 0) ? cmp : Integer.compare(game1, game2);
+  }
+
+  /**
+   * Sorts the entries in the specified range of the specified parallel arrays.
+   */
+  private static void sort(long[] keys, int[] games, int from, int to) {
+    while (to - from > 16) {
+      int mid = (from + to) >>> 1;
+      long pivotKey = keys[mid];
+      int pivotGame = games[mid];
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+        while (compare(keys[i], games[i], pivotKey, pivotGame) < 0) i++;
+        while (compare(keys[j], games[j], pivotKey, pivotGame) > 0) j--;
+        if (i <= j) swap(keys, games, i++, j--);
+      }
+
+      // Recurse into the smaller part, iterate over the larger one
+      if (j + 1 - from < to - i) {
+        sort(keys, games, from, j + 1);
+        from = i;
+      } else {
+        sort(keys, games, i, to);
+        to = j + 1;
+      }
+    }
+
+    for (int i = from + 1; i < to; i++) {
+      for (int j = i; j > from; j--) {
+        if (compare(keys[j - 1], games[j - 1], keys[j], games[j]) <= 0) break;
+        swap(keys, games, j - 1, j);
+      }
+    }
+  }
+
+  /**
+   * Swaps two entries of the specified parallel arrays.
+   */
+  private static void swap(long[] keys, int[] games, int i, int j) {
+    long key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+
+    int game = games[i];
+    games[i] = games[j];
+    games[j] = game;
+  }
+}
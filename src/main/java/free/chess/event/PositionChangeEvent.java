@@ -0,0 +1,74 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.event;
+
+import javax.swing.event.ChangeEvent;
+
+import free.chess.Position;
+import free.chess.Square;
+
+/**
+ * The <code>ChangeEvent</code> fired by a <code>Position</code> when a batch update ends. In
+ * addition to the source, it carries the set of squares whose contents were modified during the
+ * batch, so that listeners don't need to compare the whole board to find out what changed.
+ */
+public class PositionChangeEvent extends ChangeEvent {
+
+  /**
+   * The set of changed squares, as a bitmask where bit <code>rank * 8 + file</code> is set for
+   * each changed square.
+   */
+  private final long changedSquares;
+
+  /**
+   * Creates a new <code>PositionChangeEvent</code> with the specified source position and mask of
+   * changed squares.
+   */
+  public PositionChangeEvent(Position source, long changedSquares) {
+    super(source);
+    this.changedSquares = changedSquares;
+  }
+
+  /**
+   * Returns the position that changed.
+   */
+  public Position getPosition() {
+    return (Position) getSource();
+  }
+
+  /**
+   * Returns the mask of changed squares. Bit <code>rank * 8 + file</code> is set for each square
+   * whose contents were modified.
+   */
+  public long getChangedSquaresMask() {
+    return changedSquares;
+  }
+
+  /**
+   * Returns whether the contents of the square with the specified file and rank were modified.
+   */
+  public boolean isSquareChanged(int file, int rank) {
+    return (changedSquares & (1L << ((rank << 3) | file))) != 0;
+  }
+
+  /**
+   * Returns whether the contents of the specified square were modified.
+   */
+  public boolean isSquareChanged(Square square) {
+    return isSquareChanged(square.getFile(), square.getRank());
+  }
+}
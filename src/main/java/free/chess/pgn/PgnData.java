@@ -0,0 +1,147 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import free.util.zip.BlockGzipFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The contents of a PGN file, which may be gzip-compressed. Plain files are read memory-mapped;
+ * compressed files are decompressed as they're read (see {@link BlockGzipFile}), which is only
+ * efficient for files compressed in blocks. Offsets and lengths are always those of the
+ * uncompressed contents.
+ */
+abstract class PgnData {
+
+  /**
+   * Opens the specified PGN file, compressed or not, as determined by its contents.
+   */
+  public static PgnData open(File pgnFile) throws IOException {
+    if ((pgnFile.length() > 0) && BlockGzipFile.isGzipFile(pgnFile))
+      return new Compressed(new BlockGzipFile(pgnFile));
+    else return new Plain(new RandomAccessFile(pgnFile, "r"));
+  }
+
+  /**
+   * Returns whether the contents are compressed.
+   */
+  public abstract boolean isCompressed();
+
+  /**
+   * Returns the length of the (uncompressed) contents.
+   */
+  public abstract long length() throws IOException;
+
+  /**
+   * Returns a buffer with the specified part of the contents. The part must lie within the
+   * contents.
+   */
+  public abstract ByteBuffer read(long offset, int length) throws IOException;
+
+  /**
+   * Closes the file.
+   */
+  public abstract void close() throws IOException;
+
+  /**
+   * The contents of an uncompressed PGN file.
+   */
+  private static class Plain extends PgnData {
+
+    /**
+     * The open file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Creates a new <code>Plain</code> for the specified open file.
+     */
+    public Plain(RandomAccessFile file) {
+      this.file = file;
+    }
+
+    @Override
+    public boolean isCompressed() {
+      return false;
+    }
+
+    @Override
+    public long length() throws IOException {
+      return file.getChannel().size();
+    }
+
+    /**
+     * Returns the specified part of the file, memory-mapped.
+     */
+    @Override
+    public ByteBuffer read(long offset, int length) throws IOException {
+      return file.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+
+  /**
+   * The contents of a compressed PGN file.
+   */
+  private static class Compressed extends PgnData {
+
+    /**
+     * The open file.
+     */
+    private final BlockGzipFile file;
+
+    /**
+     * Creates a new <code>Compressed</code> for the specified open file.
+     */
+    public Compressed(BlockGzipFile file) {
+      this.file = file;
+    }
+
+    @Override
+    public boolean isCompressed() {
+      return true;
+    }
+
+    @Override
+    public long length() {
+      return file.length();
+    }
+
+    /**
+     * Returns the specified part of the contents, decompressed into a heap buffer.
+     */
+    @Override
+    public ByteBuffer read(long offset, int length) throws IOException {
+      byte[] buf = new byte[length];
+      file.readFully(offset, buf, 0, length);
+      return ByteBuffer.wrap(buf);
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+}
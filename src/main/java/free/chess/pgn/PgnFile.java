@@ -0,0 +1,163 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+
+package free.chess.pgn;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to the games of a PGN file, through its {@link PgnIndex}. The file is
+ * memory-mapped, so reading a game only touches the pages it occupies, no matter where in the
+ * file it is; files too large to be mapped at once are mapped a game at a time. Games appended to
+ * the file are picked up by {@link #refresh()}. Gzip-compressed files are read too, decompressing
+ * only the blocks holding the games read, if they're compressed in blocks.
+ */
+public class PgnFile {
+
+  /**
+   * The index.
+   */
+  private final PgnIndex index;
+
+  /**
+   * The contents of the file.
+   */
+  private final PgnData data;
+
+  /**
+   * The memory-mapped contents of the file, <code>null</code> if the file is too large to be
+   * mapped at once, or compressed.
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * Opens the specified PGN file, creating or updating its index as needed.
+   *
+   * @throws IOException if the file can't be read.
+   */
+  public PgnFile(File pgnFile) throws IOException {
+    this.index = PgnIndex.open(pgnFile);
+    this.data = PgnData.open(pgnFile);
+    try {
+      map();
+    } catch (IOException e) {
+      data.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Maps the indexed part of the file, if it's small enough and not compressed.
+   */
+  private void map() throws IOException {
+    long length = index.getIndexedLength();
+    buffer =
+        ((length > Integer.MAX_VALUE) || data.isCompressed()) ? null : data.read(0, (int) length);
+  }
+
+  /**
+   * Returns the index of the file.
+   */
+  public PgnIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Brings the index up to date with the games appended to the file since it was opened (or last
+   * refreshed).
+   */
+  public synchronized void refresh() throws IOException {
+    long length = index.getIndexedLength();
+    index.update();
+    if (index.getIndexedLength() != length) map();
+  }
+
+  /**
+   * Returns the number of games in the file.
+   */
+  public int getGameCount() {
+    return index.getGameCount();
+  }
+
+  /**
+   * Returns the value of the specified summary tag (see {@link PgnIndex#SUMMARY_TAGS}) of the
+   * specified game, without reading it.
+   */
+  public String getTag(int game, String tagName) {
+    return index.getTag(game, tagName);
+  }
+
+  /**
+   * Returns the numbers of the games whose value of the specified summary tag equals (ignoring
+   * case) the specified value, in ascending order.
+   */
+  public int[] findGames(String tagName, String value) {
+    return index.findGames(tagName, value);
+  }
+
+  /**
+   * Returns the text of the specified game.
+   */
+  public synchronized String getGameText(int game) throws IOException {
+    long offset = index.getOffset(game);
+    int length = index.getLength(game);
+
+    ByteBuffer source;
+    if ((buffer != null) && (offset + length <= buffer.capacity())) {
+      source = buffer.duplicate();
+      source.position((int) offset);
+    } else source = data.read(offset, length);
+
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) chars[i] = (char) (source.get() & 0xff); // ISO-8859-1
+
+    return new String(chars);
+  }
+
+  /**
+   * Reads and returns the specified game, skipping comments and variations.
+   */
+  public PgnGame getGame(int game) throws IOException {
+    return getGame(game, false, false);
+  }
+
+  /**
+   * Reads and returns the specified game, keeping comments and recursive annotation variations as
+   * specified. Only the text of the game itself is read.
+   */
+  public PgnGame getGame(int game, boolean keepComments, boolean keepVariations)
+      throws IOException {
+    PgnReader reader =
+        new PgnReader(new StringReader(getGameText(game)), keepComments, keepVariations);
+    PgnGame pgnGame = reader.readGame();
+    if (pgnGame == null)
+      throw new IOException("Game " + game + " not found in " + index.getPgnFile());
+
+    return pgnGame;
+  }
+
+  /**
+   * Closes the file.
+   */
+  public synchronized void close() throws IOException {
+    buffer = null;
+    data.close();
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import free.chess.Chess;
+import free.chess.MoveFormatException;
+import free.chess.MoveList;
+import free.chess.Position;
+import free.chess.PositionFormatException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * A game read from a PGN source by a {@link PgnReader}. Holds the tag pairs, the main line (moves
+ * in SAN, and comments and variations if they were kept) and the game termination marker. The
+ * moves are only resolved into {@link free.chess.Move} objects when {@link #getMoveList()} is first
+ * called.
+ */
+public class PgnGame {
+
+  /**
+   * The names of the tags, in the order they appeared.
+   */
+  private final Vector tagNames;
+
+  /**
+   * Maps tag names to their values.
+   */
+  private final Hashtable tags;
+
+  /**
+   * The main line.
+   */
+  private final PgnLine mainLine;
+
+  /**
+   * The game termination marker, <code>null</code> if the movetext didn't end with one.
+   */
+  private final String result;
+
+  /**
+   * The resolved moves of the main line, <code>null</code> until they're first requested.
+   */
+  private MoveList moveList = null;
+
+  /**
+   * Creates a new <code>PgnGame</code> with the specified tag names (in order), tag values, moves
+   * of the main line and game termination marker.
+   */
+  public PgnGame(Vector tagNames, Hashtable tags, String[] moves, String result) {
+    this(tagNames, tags, new PgnLine(moves, null, null), result);
+  }
+
+  /**
+   * Creates a new <code>PgnGame</code> with the specified tag names (in order), tag values, main
+   * line and game termination marker.
+   */
+  public PgnGame(Vector tagNames, Hashtable tags, PgnLine mainLine, String result) {
+    this.tagNames = tagNames;
+    this.tags = tags;
+    this.mainLine = mainLine;
+    this.result = result;
+  }
+
+  /**
+   * Returns the value of the tag with the specified name, or <code>null</code> if there is no such
+   * tag.
+   */
+  public String getTag(String name) {
+    return (String) tags.get(name);
+  }
+
+  /**
+   * Returns the names of the tags, in the order they appeared.
+   */
+  public Enumeration getTagNames() {
+    return tagNames.elements();
+  }
+
+  /**
+   * Returns the number of moves (plies) in the main line.
+   */
+  public int getMoveCount() {
+    return mainLine.getMoveCount();
+  }
+
+  /**
+   * Returns the move (ply) at the specified index of the main line, in SAN.
+   */
+  public String getMove(int index) {
+    return mainLine.getMove(index);
+  }
+
+  /**
+   * Returns the main line, with its comments and variations.
+   */
+  public PgnLine getMainLine() {
+    return mainLine;
+  }
+
+  /**
+   * Returns the game termination marker (<code>"1-0"</code>, <code>"0-1"</code>,
+   * <code>"1/2-1/2"</code> or <code>"*"</code>). If the movetext didn't end with one, the value of
+   * the <code>Result</code> tag is returned, or <code>"*"</code> if there is no such tag.
+   */
+  public String getResult() {
+    if (result != null) return result;
+
+    String resultTag = getTag("Result");
+    return resultTag == null ? "*" : resultTag;
+  }
+
+  /**
+   * Returns the initial position of the game - the position specified by the <code>FEN</code> tag,
+   * or the standard initial position if there is no such tag. Only standard chess is supported.
+   *
+   * @throws PositionFormatException if the <code>FEN</code> tag is invalid.
+   */
+  public Position getInitialPosition() throws PositionFormatException {
+    Position pos = new Position(Chess.getInstance());
+    String fen = getTag("FEN");
+    if (fen != null) pos.setFEN(fen);
+
+    return pos;
+  }
+
+  /**
+   * Returns the moves of the main line, resolved starting at {@link #getInitialPosition()}. The
+   * moves are resolved on the first call, and the same list is returned afterwards; since
+   * <code>MoveList</code> is not thread safe, it should only be used by one thread.
+   *
+   * @throws PositionFormatException if the <code>FEN</code> tag is invalid.
+   * @throws MoveFormatException if one of the moves is invalid or illegal.
+   */
+  public synchronized MoveList getMoveList() throws PositionFormatException, MoveFormatException {
+    if (moveList == null) moveList = mainLine.toMoveList(getInitialPosition());
+
+    return moveList;
+  }
+
+  /**
+   * Returns a textual representation of this game, for debugging.
+   */
+  @Override
+  public String toString() {
+    return getTag("White") + " - " + getTag("Black") + " " + getResult();
+  }
+}
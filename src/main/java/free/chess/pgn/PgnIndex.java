@@ -0,0 +1,800 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+
+package free.chess.pgn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * An index of the games in a PGN file, kept in a sidecar file (the name of the PGN file with
+ * <code>.index</code> appended). For each game the index holds its byte offset and length in the
+ * PGN file and a summary of its tags - the values of the seven tag roster and the
+ * <code>ECO</code> tag, so that a game can be located, and games filtered by these tags, without
+ * reading the PGN file. The index is brought up to date incrementally: only the part of the PGN
+ * file appended since it was last indexed is scanned. Indexing a whole file is split between
+ * several threads, each scanning a part of the file, memory-mapped. PGN files are assumed to be
+ * in ISO-8859-1, as the PGN standard specifies. See {@link PgnFile} for reading the indexed games.
+ *
+ * <p>Gzip-compressed PGN files are indexed too, transparently - offsets and lengths are those of
+ * the uncompressed contents. Files compressed in blocks (see
+ * {@link free.util.zip.BlockGzipOutputStream}) are scanned and read without decompressing more
+ * than needed.
+ */
+public class PgnIndex {
+
+  /**
+   * The names of the tags whose values are kept in the index.
+   */
+  public static final String[] SUMMARY_TAGS = {
+    "Event", "Site", "Date", "Round", "White", "Black", "Result", "ECO"
+  };
+
+  /**
+   * The magic number at the start of index files.
+   */
+  private static final int MAGIC = 0x4A504749;
+
+  /**
+   * The version of the index file format.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * The size of the index file header - the magic number, the version, the indexed length of the
+   * PGN file, a hash of its first bytes and the number of games.
+   */
+  private static final int HEADER_SIZE = 28;
+
+  /**
+   * The number of bytes at the start of the PGN file which are hashed, to detect a PGN file which
+   * was replaced rather than appended to.
+   */
+  private static final int HASHED_PREFIX_LENGTH = 4096;
+
+  /**
+   * The maximum number of characters of a tag value kept in the index.
+   */
+  private static final int MAX_TAG_LENGTH = 1024;
+
+  /**
+   * The minimum size of the part of the file scanned by each thread.
+   */
+  private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+  /**
+   * The maximum size of the part of the file scanned by each thread.
+   */
+  private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+  /**
+   * The maximum size of the part of a compressed file scanned by each thread. The parts are
+   * decompressed into memory, so they're kept small.
+   */
+  private static final long MAX_COMPRESSED_CHUNK_SIZE = 1 << 22;
+
+  /**
+   * Maps the paths of index files to the objects synchronizing writing them, so that several
+   * <code>PgnIndex</code>es of the same file don't write it concurrently.
+   */
+  private static final Hashtable fileLocks = new Hashtable();
+
+  /**
+   * The PGN file.
+   */
+  private final File pgnFile;
+
+  /**
+   * The index file.
+   */
+  private final File indexFile;
+
+  /**
+   * The offsets of the games.
+   */
+  private long[] offsets = new long[256];
+
+  /**
+   * The lengths of the games.
+   */
+  private int[] lengths = new int[256];
+
+  /**
+   * The values of the summary tags, indexed by the summary tag and then by the game. Missing tags
+   * are represented by empty strings.
+   */
+  private String[][] tags = new String[SUMMARY_TAGS.length][256];
+
+  /**
+   * The number of games.
+   */
+  private int gameCount = 0;
+
+  /**
+   * The length of the indexed part of the PGN file.
+   */
+  private long indexedLength = 0;
+
+  /**
+   * The hash of the first bytes of the indexed part of the PGN file.
+   */
+  private long prefixHash = hashPrefix(new byte[0], 0);
+
+  /**
+   * The number of games in the index file.
+   */
+  private int savedGameCount = 0;
+
+  /**
+   * The indexed length of the PGN file, as recorded in the index file.
+   */
+  private long savedIndexedLength = 0;
+
+  /**
+   * The length of the index file, as written by us.
+   */
+  private long savedFileLength = 0;
+
+  /**
+   * The index of the first game which changed since the index file was written.
+   */
+  private int firstUnsavedGame = 0;
+
+  /**
+   * Canonical instances of tag values, so that repeating values (such as event names and results)
+   * are only kept once.
+   */
+  private final Map tagValues = new HashMap();
+
+  /**
+   * Creates a new <code>PgnIndex</code> for the specified PGN file.
+   */
+  private PgnIndex(File pgnFile) {
+    this.pgnFile = pgnFile;
+    this.indexFile = getIndexFile(pgnFile);
+  }
+
+  /**
+   * Returns the index file of the specified PGN file.
+   */
+  public static File getIndexFile(File pgnFile) {
+    return new File(pgnFile.getPath() + ".index");
+  }
+
+  /**
+   * Opens the index of the specified PGN file, creating it or bringing it up to date as needed.
+   *
+   * @throws IOException if the PGN file can't be read.
+   */
+  public static PgnIndex open(File pgnFile) throws IOException {
+    PgnIndex index = new PgnIndex(pgnFile);
+    try {
+      index.load();
+    } catch (IOException e) {
+      index.clear(); // Invalid or unreadable, so it's rebuilt
+    }
+    index.update();
+
+    return index;
+  }
+
+  /**
+   * Returns the PGN file.
+   */
+  public File getPgnFile() {
+    return pgnFile;
+  }
+
+  /**
+   * Returns the number of games.
+   */
+  public synchronized int getGameCount() {
+    return gameCount;
+  }
+
+  /**
+   * Returns the length of the indexed part of the PGN file.
+   */
+  public synchronized long getIndexedLength() {
+    return indexedLength;
+  }
+
+  /**
+   * Returns the offset of the specified game in the PGN file.
+   */
+  public synchronized long getOffset(int game) {
+    checkGame(game);
+    return offsets[game];
+  }
+
+  /**
+   * Returns the length of the specified game in the PGN file, in bytes.
+   */
+  public synchronized int getLength(int game) {
+    checkGame(game);
+    return lengths[game];
+  }
+
+  /**
+   * Returns the value of the specified summary tag of the specified game. Returns
+   * <code>null</code> if the game has no such tag.
+   *
+   * @throws IllegalArgumentException if the tag is not one of {@link #SUMMARY_TAGS}.
+   */
+  public synchronized String getTag(int game, String tagName) {
+    checkGame(game);
+    String value = tags[getSummaryTagIndex(tagName)][game];
+    return (value.length() == 0) ? null : value;
+  }
+
+  /**
+   * Returns the numbers of the games whose value of the specified summary tag equals (ignoring
+   * case) the specified value, in ascending order.
+   *
+   * @throws IllegalArgumentException if the tag is not one of {@link #SUMMARY_TAGS}.
+   */
+  public synchronized int[] findGames(String tagName, String value) {
+    String[] values = tags[getSummaryTagIndex(tagName)];
+    int[] result = new int[16];
+    int count = 0;
+    for (int i = 0; i < gameCount; i++) {
+      if (values[i].equalsIgnoreCase(value)) {
+        if (count == result.length) result = Arrays.copyOf(result, count * 2);
+        result[count++] = i;
+      }
+    }
+
+    return Arrays.copyOf(result, count);
+  }
+
+  /**
+   * Returns the index of the specified summary tag in {@link #SUMMARY_TAGS}.
+   */
+  private static int getSummaryTagIndex(String tagName) {
+    for (int i = 0; i < SUMMARY_TAGS.length; i++) if (SUMMARY_TAGS[i].equals(tagName)) return i;
+
+    throw new IllegalArgumentException("Not a summary tag: " + tagName);
+  }
+
+  /**
+   * Checks that the specified game number is valid.
+   */
+  private void checkGame(int game) {
+    if ((game < 0) || (game >= gameCount))
+      throw new IllegalArgumentException("No such game: " + game);
+  }
+
+  /**
+   * Indexes the part of the PGN file appended since it was last indexed, and writes the changes
+   * into the index file. If the PGN file became shorter or its start changed, it is reindexed from
+   * scratch. The last game is always scanned again, in case it wasn't complete. Failing to write
+   * the index file is not an error - it's simply rebuilt the next time.
+   *
+   * @throws IOException if the PGN file can't be read.
+   */
+  public synchronized void update() throws IOException {
+    PgnData data = PgnData.open(pgnFile);
+    try {
+      long length = data.length();
+      if ((length < indexedLength) || (hashPrefix(data, indexedLength) != prefixHash)) clear();
+      if ((length == indexedLength) && (gameCount > 0)) return;
+
+      // Rescan the last game, noting whether it changed
+      long from = 0;
+      int lastGame = gameCount - 1;
+      long lastOffset = 0;
+      int lastLength = 0;
+      String[] lastTags = new String[SUMMARY_TAGS.length];
+      if (lastGame >= 0) {
+        lastOffset = offsets[lastGame];
+        lastLength = lengths[lastGame];
+        for (int i = 0; i < lastTags.length; i++) lastTags[i] = tags[i][lastGame];
+        gameCount--;
+        from = lastOffset;
+      }
+
+      int threadCount = (gameCount == 0) ? Runtime.getRuntime().availableProcessors() : 1;
+      scan(data, from, length, threadCount);
+      indexedLength = length;
+      prefixHash = hashPrefix(data, length);
+
+      if (lastGame >= 0) {
+        boolean isUnchanged =
+            (gameCount > lastGame)
+                && (offsets[lastGame] == lastOffset)
+                && (lengths[lastGame] == lastLength);
+        for (int i = 0; isUnchanged && (i < lastTags.length); i++)
+          isUnchanged = lastTags[i].equals(tags[i][lastGame]);
+        if (!isUnchanged) firstUnsavedGame = Math.min(firstUnsavedGame, lastGame);
+      }
+    } finally {
+      data.close();
+    }
+
+    try {
+      save();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Returns a hash of the first bytes (up to <code>HASHED_PREFIX_LENGTH</code>) of the specified
+   * length of the PGN file.
+   */
+  private static long hashPrefix(PgnData data, long length) throws IOException {
+    int prefixLength = (int) Math.min(HASHED_PREFIX_LENGTH, Math.min(length, data.length()));
+    byte[] prefix = new byte[prefixLength];
+    if (prefixLength > 0) data.read(0, prefixLength).get(prefix);
+
+    return hashPrefix(prefix, prefixLength);
+  }
+
+  /**
+   * Returns the 64 bit FNV-1a hash of the specified amount of bytes of the specified array.
+   */
+  private static long hashPrefix(byte[] bytes, int length) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < length; i++) {
+      hash ^= bytes[i] & 0xff;
+      hash *= 0x100000001b3L;
+    }
+
+    return hash;
+  }
+
+  /**
+   * Removes all the games from the index.
+   */
+  private void clear() {
+    gameCount = 0;
+    indexedLength = 0;
+    prefixHash = hashPrefix(new byte[0], 0);
+    firstUnsavedGame = 0;
+  }
+
+  /**
+   * Scans the specified range of the PGN file, which starts at the beginning of a game, for
+   * games, using up to the specified number of threads.
+   */
+  private void scan(PgnData data, long from, long to, int threadCount) throws IOException {
+    long maxChunkSize = data.isCompressed() ? MAX_COMPRESSED_CHUNK_SIZE : MAX_CHUNK_SIZE;
+    int chunkCount = (int) Math.min(threadCount, Math.max(1, (to - from) / MIN_CHUNK_SIZE));
+    chunkCount = (int) Math.max(chunkCount, (to - from + maxChunkSize - 1) / maxChunkSize);
+
+    // Split the range at game boundaries
+    long[] bounds = new long[chunkCount + 1];
+    int boundCount = 0;
+    bounds[boundCount++] = from;
+    for (int i = 1; i < chunkCount; i++) {
+      long boundary = findGameBoundary(data, from + (to - from) * i / chunkCount, to);
+      if (boundary > bounds[boundCount - 1]) bounds[boundCount++] = boundary;
+    }
+    bounds[boundCount++] = to;
+
+    // Scan up to threadCount parts at a time, since compressed parts are held in memory
+    for (int first = 0; first < boundCount - 1; first += threadCount) {
+      final Scanner[] scanners = new Scanner[Math.min(threadCount, boundCount - 1 - first)];
+      for (int i = 0; i < scanners.length; i++) {
+        long start = bounds[first + i];
+        long end = bounds[first + i + 1];
+        if (end - start > Integer.MAX_VALUE)
+          throw new IOException("Unable to split " + pgnFile + " into small enough parts");
+
+        scanners[i] = new Scanner(data.read(start, (int) (end - start)), start);
+      }
+
+      if (scanners.length == 1) scanners[0].run();
+      else {
+        Thread[] threads = new Thread[scanners.length];
+        for (int i = 0; i < threads.length; i++) {
+          threads[i] = new Thread(scanners[i], "PgnIndex-" + i);
+          threads[i].start();
+        }
+
+        try {
+          for (int i = 0; i < threads.length; i++) threads[i].join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while indexing " + pgnFile);
+        }
+      }
+
+      for (int i = 0; i < scanners.length; i++) scanners[i].addGamesTo(this);
+    }
+  }
+
+  /**
+   * Returns the offset of the first game boundary at or after the specified offset - a
+   * <code>[</code> at the start of a line following an empty line - or <code>to</code> if there is
+   * none before it.
+   */
+  private static long findGameBoundary(PgnData data, long offset, long to) throws IOException {
+    int state = 0; // The number of consecutive line ends seen, ignoring carriage returns
+    while (offset < to) {
+      int count = (int) Math.min(65536, to - offset);
+      ByteBuffer buf = data.read(offset, count);
+      for (int i = 0; i < count; i++) {
+        byte b = buf.get(i);
+        if (b == '\n') state++;
+        else if (b == '[') {
+          if (state >= 2) return offset + i;
+          state = 0;
+        } else if ((b != '\r') && (b != ' ') && (b != '\t')) state = 0;
+      }
+      offset += count;
+    }
+
+    return to;
+  }
+
+  /**
+   * Adds a game to the index.
+   */
+  private void addGame(long offset, int length, String[] gameTags) {
+    if (gameCount == offsets.length) {
+      int capacity = gameCount * 2;
+      offsets = Arrays.copyOf(offsets, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      for (int i = 0; i < tags.length; i++) tags[i] = Arrays.copyOf(tags[i], capacity);
+    }
+
+    offsets[gameCount] = offset;
+    lengths[gameCount] = length;
+    for (int i = 0; i < tags.length; i++) tags[i][gameCount] = canonicalize(gameTags[i]);
+    gameCount++;
+  }
+
+  /**
+   * Returns the canonical instance of the specified tag value.
+   */
+  private String canonicalize(String value) {
+    String canonical = (String) tagValues.get(value);
+    if (canonical == null) {
+      // Only values likely to repeat are worth keeping, but all of them are cheap to look up
+      if (tagValues.size() < 65536) tagValues.put(value, value);
+      canonical = value;
+    }
+
+    return canonical;
+  }
+
+  /**
+   * Loads the index file.
+   *
+   * @throws IOException if the index file doesn't exist, can't be read, or is invalid.
+   */
+  private void load() throws IOException {
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 65536));
+    try {
+      if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+        throw new IOException("Invalid index file: " + indexFile);
+
+      long length = in.readLong();
+      long hash = in.readLong();
+      int count = in.readInt();
+
+      long fileLength = HEADER_SIZE;
+      String[] gameTags = new String[SUMMARY_TAGS.length];
+      for (int i = 0; i < count; i++) {
+        long offset = in.readLong();
+        int gameLength = in.readInt();
+        fileLength += 12;
+        for (int j = 0; j < gameTags.length; j++) {
+          gameTags[j] = in.readUTF();
+          fileLength += 2 + getUtfLength(gameTags[j]);
+        }
+        addGame(offset, gameLength, gameTags);
+      }
+
+      indexedLength = length;
+      prefixHash = hash;
+      savedGameCount = gameCount;
+      savedIndexedLength = length;
+      savedFileLength = fileLength;
+      firstUnsavedGame = gameCount;
+    } catch (EOFException e) {
+      throw new IOException("Truncated index file: " + indexFile);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the changes since the index file was last written into it - appending the new games if
+   * only games were added (and the file wasn't changed by someone else in the meantime), and
+   * rewriting it otherwise.
+   */
+  private void save() throws IOException {
+    synchronized (getFileLock(indexFile)) {
+      boolean canAppend = (firstUnsavedGame >= savedGameCount) && indexFile.exists();
+      if (canAppend) {
+        DataInputStream in = new DataInputStream(new FileInputStream(indexFile));
+        try {
+          in.skipBytes(8);
+          canAppend = (in.readLong() == savedIndexedLength);
+          in.skipBytes(8);
+          canAppend &= (in.readInt() == savedGameCount);
+        } catch (EOFException e) {
+          canAppend = false;
+        } finally {
+          in.close();
+        }
+      }
+
+      if (canAppend) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        writeGames(out, savedGameCount, gameCount);
+        out.flush();
+
+        // Anything after the games we wrote is left over from an interrupted append
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        try {
+          raf.seek(savedFileLength);
+          raf.write(buf.toByteArray());
+          raf.setLength(savedFileLength + buf.size());
+          raf.seek(0);
+          raf.write(createHeader());
+        } finally {
+          raf.close();
+        }
+        savedFileLength += buf.size();
+      } else {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536));
+        try {
+          out.write(createHeader());
+          writeGames(out, 0, gameCount);
+        } finally {
+          out.close();
+        }
+        savedFileLength = out.size();
+
+        if ((indexFile.exists() && !indexFile.delete()) || !tempFile.renameTo(indexFile))
+          throw new IOException("Unable to replace " + indexFile);
+      }
+
+      savedGameCount = gameCount;
+      savedIndexedLength = indexedLength;
+      firstUnsavedGame = gameCount;
+    }
+  }
+
+  /**
+   * Returns the header of the index file.
+   */
+  private byte[] createHeader() {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putLong(indexedLength).putLong(prefixHash);
+    header.putInt(gameCount);
+    return header.array();
+  }
+
+  /**
+   * Writes the entries of the games in the specified range.
+   */
+  private void writeGames(DataOutputStream out, int from, int to) throws IOException {
+    for (int i = from; i < to; i++) {
+      out.writeLong(offsets[i]);
+      out.writeInt(lengths[i]);
+      for (int j = 0; j < tags.length; j++) out.writeUTF(tags[j][i]);
+    }
+  }
+
+  /**
+   * Returns the length of the specified string in the modified UTF-8 encoding used by
+   * <code>DataOutput.writeUTF</code>.
+   */
+  private static int getUtfLength(String s) {
+    int length = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if ((c >= 0x0001) && (c <= 0x007f)) length++;
+      else if (c > 0x07ff) length += 3;
+      else length += 2;
+    }
+
+    return length;
+  }
+
+  /**
+   * Returns the object synchronizing writes to the specified index file.
+   */
+  private static Object getFileLock(File file) {
+    String path = file.getAbsolutePath();
+    synchronized (fileLocks) {
+      Object lock = fileLocks.get(path);
+      if (lock == null) fileLocks.put(path, lock = path);
+      return lock;
+    }
+  }
+
+  /**
+   * Scans a part of a PGN file for games. The part must start at the beginning of a game; a game
+   * ends where the next one begins, or at the end of the part. The rules for where games begin
+   * are those of {@link PgnReader}: at the first tag or movetext, and at a tag following
+   * movetext.
+   */
+  private static class Scanner implements Runnable {
+
+    /**
+     * The part of the file.
+     */
+    private final ByteBuffer buf;
+
+    /**
+     * The offset of the part in the file.
+     */
+    private final long baseOffset;
+
+    /**
+     * The offsets of the games found, relative to the part.
+     */
+    private int[] gameOffsets = new int[64];
+
+    /**
+     * The summary tags of the games found.
+     */
+    private String[][] gameTags = new String[64][];
+
+    /**
+     * The number of games found.
+     */
+    private int count = 0;
+
+    /**
+     * A buffer for reading tag names and values.
+     */
+    private final StringBuffer sb = new StringBuffer();
+
+    /**
+     * Creates a new <code>Scanner</code> of the specified part of a file.
+     */
+    public Scanner(ByteBuffer buf, long baseOffset) {
+      this.buf = buf;
+      this.baseOffset = baseOffset;
+    }
+
+    /**
+     * Scans the part.
+     */
+    @Override
+    public void run() {
+      int limit = buf.limit();
+      boolean inMovetext = false;
+      boolean lineStart = true;
+      int i = 0;
+      while (i < limit) {
+        int c = buf.get(i) & 0xff;
+        if (c == '[') {
+          if (inMovetext || (count == 0)) startGame(i);
+          inMovetext = false;
+          i = readTag(i + 1);
+          lineStart = false;
+          continue;
+        } else if (c == '{') i = skipUntil(i + 1, '}');
+        else if ((c == ';') || ((c == '%') && lineStart)) {
+          i = skipUntil(i + 1, '\n') + 1;
+          lineStart = true;
+          continue;
+        } else if (!Character.isWhitespace((char) c)) {
+          if (count == 0) startGame(i);
+          inMovetext = true;
+        }
+
+        lineStart = (c == '\n') || (c == '\r');
+        i++;
+      }
+    }
+
+    /**
+     * Returns the index of the specified character, searching from the specified index, or the
+     * end of the part if it's not found.
+     */
+    private int skipUntil(int from, int c) {
+      int limit = buf.limit();
+      while ((from < limit) && (buf.get(from) != c)) from++;
+
+      return from;
+    }
+
+    /**
+     * Records the beginning of a game at the specified index.
+     */
+    private void startGame(int index) {
+      if (count == gameOffsets.length) {
+        gameOffsets = Arrays.copyOf(gameOffsets, count * 2);
+        gameTags = (String[][]) Arrays.copyOf(gameTags, count * 2);
+      }
+
+      gameOffsets[count] = index;
+      gameTags[count] = new String[SUMMARY_TAGS.length];
+      Arrays.fill(gameTags[count], "");
+      count++;
+    }
+
+    /**
+     * Reads a tag, starting after its opening bracket, and records its value if it's a summary
+     * tag. Returns the index after the tag.
+     */
+    private int readTag(int i) {
+      int limit = buf.limit();
+      while ((i < limit) && Character.isWhitespace((char) (buf.get(i) & 0xff))) i++;
+
+      sb.setLength(0);
+      while (i < limit) {
+        char c = (char) (buf.get(i) & 0xff);
+        if ((c == '"') || (c == ']') || Character.isWhitespace(c)) break;
+        sb.append(c);
+        i++;
+      }
+      String name = sb.toString();
+
+      while ((i < limit) && (buf.get(i) != '"') && (buf.get(i) != ']')) i++;
+
+      sb.setLength(0);
+      if ((i < limit) && (buf.get(i) == '"')) {
+        i++;
+        while (i < limit) {
+          char c = (char) (buf.get(i++) & 0xff);
+          if (c == '"') break;
+          if ((c == '\\') && (i < limit)) c = (char) (buf.get(i++) & 0xff);
+          if (sb.length() < MAX_TAG_LENGTH) sb.append(c);
+        }
+        while ((i < limit) && (buf.get(i) != ']') && (buf.get(i) != '\n')) i++;
+      }
+      if ((i < limit) && (buf.get(i) == ']')) i++;
+
+      for (int j = 0; j < SUMMARY_TAGS.length; j++) {
+        if (SUMMARY_TAGS[j].equals(name)) {
+          if (gameTags[count - 1][j].length() == 0) gameTags[count - 1][j] = sb.toString();
+          break;
+        }
+      }
+
+      return i;
+    }
+
+    /**
+     * Adds the games found to the specified index.
+     */
+    public void addGamesTo(PgnIndex index) {
+      int limit = buf.limit();
+      for (int i = 0; i < count; i++) {
+        int end = (i + 1 < count) ? gameOffsets[i + 1] : limit;
+        index.addGame(baseOffset + gameOffsets[i], end - gameOffsets[i], gameTags[i]);
+      }
+    }
+  }
+}
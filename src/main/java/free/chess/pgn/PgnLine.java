@@ -0,0 +1,130 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+
+package free.chess.pgn;
+
+import free.chess.Move;
+import free.chess.MoveFormatException;
+import free.chess.MoveList;
+import free.chess.Position;
+import free.chess.SanNotation;
+
+/**
+ * A line of moves read from PGN - the main line of a {@link PgnGame} or one of its recursive
+ * annotation variations. Holds the moves in SAN and, if the {@link PgnReader} was asked to keep
+ * them, the comments between the moves and the variations branching off them. Moves are only
+ * resolved against a position when {@link #toMoveList(Position)} is called.
+ */
+public final class PgnLine {
+
+  /**
+   * The moves, in SAN.
+   */
+  private final String[] moves;
+
+  /**
+   * The comments; the comment at index <code>i</code> follows the first <code>i</code> moves.
+   * <code>null</code> if there are no comments.
+   */
+  private final String[] comments;
+
+  /**
+   * The variations; the variations at index <code>i</code> are alternatives to the move at index
+   * <code>i</code>. <code>null</code> if there are no variations.
+   */
+  private final PgnLine[][] variations;
+
+  /**
+   * Creates a new <code>PgnLine</code> with the specified moves, comments and variations. The
+   * comments and variations arrays may be <code>null</code>, as may their elements.
+   */
+  PgnLine(String[] moves, String[] comments, PgnLine[][] variations) {
+    if ((comments != null) && (comments.length != moves.length + 1))
+      throw new IllegalArgumentException("Bad amount of comments: " + comments.length);
+    if ((variations != null) && (variations.length != moves.length))
+      throw new IllegalArgumentException("Bad amount of variations: " + variations.length);
+
+    this.moves = moves;
+    this.comments = comments;
+    this.variations = variations;
+  }
+
+  /**
+   * Returns the number of moves (plies) in this line.
+   */
+  public int getMoveCount() {
+    return moves.length;
+  }
+
+  /**
+   * Returns the move (ply) at the specified index, in SAN.
+   */
+  public String getMove(int index) {
+    return moves[index];
+  }
+
+  /**
+   * Returns the comment following the specified amount of moves (so the comment at 0 precedes the
+   * first move), or <code>null</code> if there is none.
+   */
+  public String getComment(int plyCount) {
+    if ((plyCount < 0) || (plyCount > moves.length))
+      throw new IllegalArgumentException("Bad ply count: " + plyCount);
+
+    return comments == null ? null : comments[plyCount];
+  }
+
+  /**
+   * Returns the number of variations which are alternatives to the move at the specified index.
+   */
+  public int getVariationCount(int index) {
+    if ((index < 0) || (index >= moves.length))
+      throw new IllegalArgumentException("Bad move index: " + index);
+
+    if ((variations == null) || (variations[index] == null)) return 0;
+    return variations[index].length;
+  }
+
+  /**
+   * Returns the specified variation of the move at the specified index. The variation starts at the
+   * position before that move.
+   */
+  public PgnLine getVariation(int index, int variation) {
+    if ((variation < 0) || (variation >= getVariationCount(index)))
+      throw new IllegalArgumentException("Bad variation index: " + variation);
+
+    return variations[index][variation];
+  }
+
+  /**
+   * Resolves the moves of this line, starting at the specified position, and returns them as a
+   * <code>MoveList</code>. The specified position is not modified.
+   *
+   * @throws MoveFormatException if one of the moves is invalid or illegal.
+   */
+  public MoveList toMoveList(Position initialPosition) throws MoveFormatException {
+    Position pos = new Position(initialPosition);
+    MoveList moveList = new MoveList(pos.snapshot());
+    for (int i = 0; i < moves.length; i++) {
+      Move move = SanNotation.parseSAN(pos, moves[i]);
+      pos.makeMove(move);
+      moveList.add(move);
+    }
+
+    return moveList;
+  }
+}
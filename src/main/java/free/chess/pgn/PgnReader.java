@@ -0,0 +1,458 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.pgn;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Reads games from PGN text one at a time, so that arbitrarily large PGN files can be processed
+ * without reading them into memory. The tag pairs and the main line are always kept; comments and
+ * recursive annotation variations are skipped unless the reader is asked to keep them. Numeric
+ * annotation glyphs, move number indications and escaped lines are always skipped. The reader is
+ * lenient: text which can't be a move is simply ignored, and no attempt is made to verify that the
+ * moves are legal - moves are only resolved when the game's {@link PgnGame#getMoveList()} is
+ * called.
+ */
+public class PgnReader {
+
+  /**
+   * The underlying reader.
+   */
+  private final Reader in;
+
+  /**
+   * Whether comments are kept.
+   */
+  private final boolean keepComments;
+
+  /**
+   * Whether recursive annotation variations are kept.
+   */
+  private final boolean keepVariations;
+
+  /**
+   * A character that was read and pushed back, or -2 if none.
+   */
+  private int pushedBack = -2;
+
+  /**
+   * The previously read character, used to detect the beginning of a line.
+   */
+  private int lastChar = '\n';
+
+  /**
+   * A buffer used for reading tokens.
+   */
+  private final StringBuffer buf = new StringBuffer();
+
+  /**
+   * Creates a new <code>PgnReader</code> which reads from the specified reader, skipping comments
+   * and variations.
+   */
+  public PgnReader(Reader in) {
+    this(in, false, false);
+  }
+
+  /**
+   * Creates a new <code>PgnReader</code> which reads from the specified reader, keeping comments
+   * and recursive annotation variations as specified.
+   */
+  public PgnReader(Reader in, boolean keepComments, boolean keepVariations) {
+    this.in = (in instanceof BufferedReader) ? in : new BufferedReader(in);
+    this.keepComments = keepComments;
+    this.keepVariations = keepVariations;
+  }
+
+  /**
+   * Reads the next game, returning <code>null</code> when there are no more games.
+   */
+  public PgnGame readGame() throws IOException {
+    Vector tagNames = new Vector();
+    Hashtable tags = new Hashtable();
+    LineBuilder mainLine = new LineBuilder();
+    String result = null;
+    boolean inMovetext = false;
+
+    loop:
+    while (true) {
+      boolean lineStart = (lastChar == '\n') || (lastChar == '\r');
+      int c = read();
+      switch (c) {
+        case -1:
+          break loop;
+        case '[':
+          if (inMovetext) {
+            unread(c);
+            break loop;
+          }
+          readTag(tagNames, tags);
+          break;
+        case '{':
+          readComment('}', mainLine);
+          break;
+        case ';':
+          readComment('\n', mainLine);
+          break;
+        case '(':
+          inMovetext = true;
+          readVariation(mainLine);
+          break;
+        case '%':
+          if (lineStart) skipLine();
+          break;
+        case '$':
+          readToken(c);
+          break;
+        case ')':
+        case ']':
+        case '}':
+          break;
+        default:
+          if (Character.isWhitespace((char) c)) break;
+
+          inMovetext = true;
+          String token = readToken(c);
+          if (isResult(token)) {
+            result = token;
+            break loop;
+          }
+
+          String move = stripMove(token);
+          if (move.length() != 0) mainLine.addMove(move);
+      }
+    }
+
+    if (tagNames.isEmpty() && mainLine.isEmpty() && (result == null)) return null;
+
+    return new PgnGame(tagNames, tags, mainLine.toLine(), result);
+  }
+
+  /**
+   * Closes the underlying reader.
+   */
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Reads the next character.
+   */
+  private int read() throws IOException {
+    int c;
+    if (pushedBack != -2) {
+      c = pushedBack;
+      pushedBack = -2;
+    } else c = in.read();
+
+    lastChar = c;
+    return c;
+  }
+
+  /**
+   * Pushes back the specified character.
+   */
+  private void unread(int c) {
+    pushedBack = c;
+  }
+
+  /**
+   * Reads a tag pair, after the opening bracket has been read.
+   */
+  private void readTag(Vector tagNames, Hashtable tags) throws IOException {
+    buf.setLength(0);
+    int c;
+    while (((c = read()) != -1) && Character.isWhitespace((char) c)) {}
+    while ((c != -1) && (c != '"') && (c != ']') && !Character.isWhitespace((char) c)) {
+      buf.append((char) c);
+      c = read();
+    }
+    String name = buf.toString();
+
+    while ((c != -1) && (c != '"') && (c != ']')) c = read();
+
+    buf.setLength(0);
+    if (c == '"') {
+      while (((c = read()) != -1) && (c != '"')) {
+        if (c == '\\') c = read();
+        if (c != -1) buf.append((char) c);
+      }
+      while ((c != -1) && (c != ']') && (c != '\n')) c = read();
+    }
+
+    if (name.length() == 0) return;
+
+    if (!tags.containsKey(name)) tagNames.addElement(name);
+    tags.put(name, buf.toString());
+  }
+
+  /**
+   * Reads a comment, after its opening character has been read, up to the specified closing
+   * character (<code>'\n'</code> standing for the end of the line), and adds it to the specified
+   * line if comments are kept.
+   */
+  private void readComment(int end, LineBuilder line) throws IOException {
+    if (!keepComments) {
+      if (end == '\n') skipLine();
+      else skipUntil(end);
+      return;
+    }
+
+    buf.setLength(0);
+    int c;
+    while (((c = read()) != -1) && (c != end)) {
+      if ((end == '\n') && (c == '\r')) break;
+      buf.append((char) c);
+    }
+
+    line.addComment(buf.toString());
+  }
+
+  /**
+   * Reads a (possibly nested) recursive annotation variation, after its opening parenthesis has
+   * been read, and adds it to the specified line. If variations aren't kept, it is skipped.
+   */
+  private void readVariation(LineBuilder parent) throws IOException {
+    if (!keepVariations) {
+      skipVariation();
+      return;
+    }
+
+    LineBuilder variation = new LineBuilder();
+
+    loop:
+    while (true) {
+      boolean lineStart = (lastChar == '\n') || (lastChar == '\r');
+      int c = read();
+      switch (c) {
+        case -1:
+        case ')':
+          break loop;
+        case '[': // An unterminated variation, followed by the next game
+          unread(c);
+          break loop;
+        case '{':
+          readComment('}', variation);
+          break;
+        case ';':
+          readComment('\n', variation);
+          break;
+        case '(':
+          readVariation(variation);
+          break;
+        case '%':
+          if (lineStart) skipLine();
+          break;
+        case '$':
+          readToken(c);
+          break;
+        case ']':
+        case '}':
+          break;
+        default:
+          if (Character.isWhitespace((char) c)) break;
+
+          String move = stripMove(readToken(c));
+          if ((move.length() != 0) && !isResult(move)) variation.addMove(move);
+      }
+    }
+
+    parent.addVariation(variation.toLine());
+  }
+
+  /**
+   * Skips characters until the specified one (inclusive) or the end of the input.
+   */
+  private void skipUntil(int end) throws IOException {
+    int c;
+    while (((c = read()) != -1) && (c != end)) {}
+  }
+
+  /**
+   * Skips the rest of the current line.
+   */
+  private void skipLine() throws IOException {
+    int c;
+    while (((c = read()) != -1) && (c != '\n') && (c != '\r')) {}
+  }
+
+  /**
+   * Skips a (possibly nested) recursive annotation variation, after its opening parenthesis has
+   * been read. An unterminated variation is skipped up to the next game.
+   */
+  private void skipVariation() throws IOException {
+    int depth = 1;
+    int c;
+    while ((depth > 0) && ((c = read()) != -1)) {
+      if (c == '[') {
+        unread(c);
+        break;
+      } else if (c == '(') depth++;
+      else if (c == ')') depth--;
+      else if (c == '{') skipUntil('}');
+      else if (c == ';') skipLine();
+    }
+  }
+
+  /**
+   * Reads a movetext token, starting with the specified character.
+   */
+  private String readToken(int first) throws IOException {
+    buf.setLength(0);
+    buf.append((char) first);
+    int c;
+    while ((c = read()) != -1) {
+      if (Character.isWhitespace((char) c) || ("{}()[];$".indexOf(c) != -1)) {
+        unread(c);
+        break;
+      }
+      buf.append((char) c);
+    }
+
+    return buf.toString();
+  }
+
+  /**
+   * Returns whether the specified token is a game termination marker.
+   */
+  private static boolean isResult(String token) {
+    return "1-0".equals(token)
+        || "0-1".equals(token)
+        || "1/2-1/2".equals(token)
+        || "*".equals(token);
+  }
+
+  /**
+   * Strips a leading move number indication and trailing move suffix annotations (such as "!?")
+   * from the specified token, returning the move itself (possibly an empty string).
+   */
+  private static String stripMove(String token) {
+    int start = 0;
+    int length = token.length();
+    while ((start < length) && Character.isDigit(token.charAt(start))) start++;
+    if ((start < length) && (token.charAt(start) == '.')) {
+      while ((start < length) && (token.charAt(start) == '.')) start++;
+    } else if (start == length) return "";
+    else start = 0;
+
+    int end = length;
+    while ((end > start) && ("!?".indexOf(token.charAt(end - 1)) != -1)) end--;
+
+    return token.substring(start, end);
+  }
+
+  /**
+   * Accumulates the moves, comments and variations of a line while it's being read.
+   */
+  private static class LineBuilder {
+
+    /**
+     * The moves.
+     */
+    private final List moves = new ArrayList();
+
+    /**
+     * Maps the number of moves a comment follows to the comment, <code>null</code> if there are no
+     * comments.
+     */
+    private Hashtable comments = null;
+
+    /**
+     * Maps the indices of moves to <code>Vector</code>s of their variations, <code>null</code> if
+     * there are no variations.
+     */
+    private Hashtable variations = null;
+
+    /**
+     * Returns whether no moves have been added.
+     */
+    public boolean isEmpty() {
+      return moves.isEmpty();
+    }
+
+    /**
+     * Adds the specified move.
+     */
+    public void addMove(String move) {
+      moves.add(move);
+    }
+
+    /**
+     * Adds the specified comment, after the moves added so far. Whitespace in the comment is
+     * collapsed, and consecutive comments are joined.
+     */
+    public void addComment(String comment) {
+      comment = comment.trim().replaceAll("\\s+", " ");
+      if (comment.length() == 0) return;
+
+      if (comments == null) comments = new Hashtable();
+      Integer key = new Integer(moves.size());
+      String previous = (String) comments.get(key);
+      comments.put(key, previous == null ? comment : previous + " " + comment);
+    }
+
+    /**
+     * Adds the specified variation, as an alternative to the last move added. Variations preceding
+     * all the moves are dropped.
+     */
+    public void addVariation(PgnLine variation) {
+      if (moves.isEmpty()) return;
+
+      if (variations == null) variations = new Hashtable();
+      Integer key = new Integer(moves.size() - 1);
+      Vector moveVariations = (Vector) variations.get(key);
+      if (moveVariations == null) variations.put(key, moveVariations = new Vector());
+      moveVariations.addElement(variation);
+    }
+
+    /**
+     * Creates the line.
+     */
+    public PgnLine toLine() {
+      int moveCount = moves.size();
+
+      String[] commentsArray = null;
+      if (comments != null) {
+        commentsArray = new String[moveCount + 1];
+        for (Enumeration e = comments.keys(); e.hasMoreElements(); ) {
+          Integer key = (Integer) e.nextElement();
+          commentsArray[key.intValue()] = (String) comments.get(key);
+        }
+      }
+
+      PgnLine[][] variationsArray = null;
+      if (variations != null) {
+        variationsArray = new PgnLine[moveCount][];
+        for (Enumeration e = variations.keys(); e.hasMoreElements(); ) {
+          Integer key = (Integer) e.nextElement();
+          Vector moveVariations = (Vector) variations.get(key);
+          variationsArray[key.intValue()] = new PgnLine[moveVariations.size()];
+          moveVariations.copyInto(variationsArray[key.intValue()]);
+        }
+      }
+
+      return new PgnLine(
+          (String[]) moves.toArray(new String[moveCount]), commentsArray, variationsArray);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+
+package free.chess.pgn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Enumeration;
+
+/**
+ * Writes games in PGN, in export format: the tag pairs (the seven tag roster first, in its
+ * standard order, followed by the rest of the tags in the order they appeared), an empty line, and
+ * the movetext wrapped at 80 columns.
+ */
+public class PgnWriter {
+
+  /**
+   * The names of the tags of the seven tag roster, in their standard order.
+   */
+  private static final String[] SEVEN_TAG_ROSTER = {
+    "Event", "Site", "Date", "Round", "White", "Black", "Result"
+  };
+
+  /**
+   * The maximum length of a movetext line.
+   */
+  private static final int LINE_LENGTH = 80;
+
+  /**
+   * The underlying writer.
+   */
+  private final Writer out;
+
+  /**
+   * Creates a new <code>PgnWriter</code> which writes into the specified writer.
+   */
+  public PgnWriter(Writer out) {
+    this.out = (out instanceof BufferedWriter) ? out : new BufferedWriter(out);
+  }
+
+  /**
+   * Writes the specified game, followed by an empty line.
+   */
+  public void writeGame(PgnGame game) throws IOException {
+    String result = game.getResult();
+    for (int i = 0; i < SEVEN_TAG_ROSTER.length; i++) {
+      String name = SEVEN_TAG_ROSTER[i];
+      String value = "Result".equals(name) ? result : game.getTag(name);
+      writeTag(name, (value == null) ? "?" : value);
+    }
+
+    for (Enumeration e = game.getTagNames(); e.hasMoreElements(); ) {
+      String name = (String) e.nextElement();
+      if (!isSevenTagRoster(name)) writeTag(name, game.getTag(name));
+    }
+
+    out.write('\n');
+
+    boolean blackStarts = isBlackToMove(game.getTag("FEN"));
+    int firstMoveNumber = getFullMoveNumber(game.getTag("FEN"));
+    StringBuffer line = new StringBuffer();
+    StringBuffer token = new StringBuffer();
+    int moveCount = game.getMoveCount();
+    for (int i = 0; i <= moveCount; i++) {
+      token.setLength(0);
+      if (i == moveCount) token.append(result);
+      else {
+        int ply = blackStarts ? i + 1 : i;
+        int moveNumber = firstMoveNumber + ply / 2;
+        if (ply % 2 == 0) token.append(moveNumber).append(". ");
+        else if (i == 0) token.append(moveNumber).append("... ");
+        token.append(game.getMove(i));
+      }
+
+      if ((line.length() != 0) && (line.length() + 1 + token.length() > LINE_LENGTH)) {
+        out.write(line.toString());
+        out.write('\n');
+        line.setLength(0);
+      }
+      if (line.length() != 0) line.append(' ');
+      line.append(token);
+    }
+
+    out.write(line.toString());
+    out.write("\n\n");
+  }
+
+  /**
+   * Writes a tag pair, escaping quotes and backslashes in the value.
+   */
+  private void writeTag(String name, String value) throws IOException {
+    out.write('[');
+    out.write(name);
+    out.write(" \"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c == '"') || (c == '\\')) out.write('\\');
+      out.write(c);
+    }
+    out.write("\"]\n");
+  }
+
+  /**
+   * Returns whether the specified tag name is one of the seven tag roster.
+   */
+  private static boolean isSevenTagRoster(String name) {
+    for (int i = 0; i < SEVEN_TAG_ROSTER.length; i++)
+      if (SEVEN_TAG_ROSTER[i].equals(name)) return true;
+
+    return false;
+  }
+
+  /**
+   * Returns whether black is to move in the position described by the specified FEN, which may be
+   * <code>null</code>.
+   */
+  private static boolean isBlackToMove(String fen) {
+    return getFenField(fen, 1).equals("b");
+  }
+
+  /**
+   * Returns the full move number of the position described by the specified FEN, which may be
+   * <code>null</code>.
+   */
+  private static int getFullMoveNumber(String fen) {
+    try {
+      return Math.max(1, Integer.parseInt(getFenField(fen, 5)));
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * Returns the field with the specified index of the specified FEN, or an empty string if there
+   * is no such field.
+   */
+  private static String getFenField(String fen, int index) {
+    if (fen == null) return "";
+
+    String[] fields = fen.trim().split("\\s+");
+    return (index < fields.length) ? fields[index] : "";
+  }
+
+  /**
+   * Flushes the underlying writer.
+   */
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * Closes the underlying writer.
+   */
+  public void close() throws IOException {
+    out.close();
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.search;
+
+import free.chess.Position;
+
+/**
+ * Evaluates positions for a {@link SearchEngine}. Implementations must be thread safe, as the
+ * engine's threads use the same evaluator concurrently.
+ */
+public interface Evaluator {
+
+  /**
+   * Returns the static evaluation of the specified position, in centipawns, from the point of view
+   * of the player to move.
+   */
+  int evaluate(Position pos);
+
+  /**
+   * Returns the outcome of the specified position, in which the player to move has no legal moves:
+   * 1 if the player to move wins, -1 if it loses and 0 for a draw.
+   */
+  int getNoMovesOutcome(Position pos);
+}
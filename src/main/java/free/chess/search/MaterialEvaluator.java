@@ -0,0 +1,88 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.search;
+
+import free.chess.ChessPiece;
+import free.chess.MoveGenerator;
+import free.chess.Piece;
+import free.chess.Position;
+import free.chess.WildVariant;
+
+/**
+ * A simple {@link Evaluator}, counting material (as valued by the position's {@link WildVariant})
+ * with small bonuses for advanced (especially central) pawns and for centralized minor pieces and
+ * queens. A player without moves loses when in check and draws otherwise, as in chess; variants
+ * with other rules are not searched (see {@link SearchEngine#isSupported(WildVariant)}).
+ */
+public class MaterialEvaluator implements Evaluator {
+
+  /**
+   * The bonus for centralization, indexed by <code>rank * 8 + file</code>.
+   */
+  private static final int[] CENTER_BONUS = new int[64];
+
+  static {
+    for (int i = 0; i < 64; i++) {
+      int file = i & 7;
+      int rank = i >> 3;
+      int fileDistance = Math.max(3 - file, file - 4);
+      int rankDistance = Math.max(3 - rank, rank - 4);
+      CENTER_BONUS[i] = 4 * (3 - Math.max(fileDistance, rankDistance));
+    }
+  }
+
+  /**
+   * Returns the material and positional evaluation of the specified position.
+   */
+  @Override
+  public int evaluate(Position pos) {
+    WildVariant variant = pos.getVariant();
+
+    int score = 0;
+    for (int i = 0; i < 64; i++) {
+      int file = i & 7;
+      int rank = i >> 3;
+      Piece piece = pos.getPieceAt(file, rank);
+      if (piece == null) continue;
+
+      int value = 100 * variant.getApproximateMaterialValue(piece);
+      switch (piece.getType()) {
+        case ChessPiece.PAWN:
+          int advancement = piece.isWhite() ? rank - 1 : 6 - rank;
+          value += ((file >= 2) && (file <= 5) ? 6 : 2) * advancement;
+          break;
+        case ChessPiece.KNIGHT:
+        case ChessPiece.BISHOP:
+        case ChessPiece.QUEEN:
+          value += CENTER_BONUS[i];
+          break;
+      }
+
+      score += piece.isWhite() ? value : -value;
+    }
+
+    return pos.getCurrentPlayer().isWhite() ? score : -score;
+  }
+
+  /**
+   * Returns the outcome of a position in which the player to move has no legal moves.
+   */
+  @Override
+  public int getNoMovesOutcome(Position pos) {
+    return MoveGenerator.isInCheck(pos) ? -1 : 0;
+  }
+}
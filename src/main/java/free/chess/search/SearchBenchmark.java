@@ -0,0 +1,101 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.search;
+
+import free.chess.Chess;
+import free.chess.Position;
+import free.chess.PositionFormatException;
+
+/**
+ * A commandline benchmark of {@link SearchEngine}. Searches a fixed set of positions to a fixed
+ * depth, first with a single thread and then with the specified number of threads, printing the
+ * time to depth and the speed in nodes per second for each position. Usage: <code>SearchBenchmark
+ * [threads [depth]]</code>; the defaults are the number of available processors and
+ * {@link #DEFAULT_DEPTH}.
+ */
+public class SearchBenchmark {
+
+  /**
+   * The default search depth.
+   */
+  private static final int DEFAULT_DEPTH = 5;
+
+  /**
+   * The size of the transposition table, in megabytes.
+   */
+  private static final int HASH_SIZE = 32;
+
+  /**
+   * The FENs of the benchmarked positions.
+   */
+  private static final String[] POSITIONS = {
+    "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+    "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+    "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N2N2/PP2BPPP/R2QKB1R w KQ - 0 8",
+    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+  };
+
+  /**
+   * The main method.
+   */
+  public static void main(String[] args) throws PositionFormatException {
+    int threads =
+        (args.length > 0)
+            ? Integer.parseInt(args[0])
+            : Runtime.getRuntime().availableProcessors();
+    int depth = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+
+    Position[] positions = new Position[POSITIONS.length];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = new Position(Chess.getInstance());
+      positions[i].setFEN(POSITIONS[i]);
+    }
+
+    // Warm up
+    run(positions, 1, Math.min(depth, 3), false);
+
+    run(positions, 1, depth, true);
+    if (threads > 1) run(positions, threads, depth, true);
+  }
+
+  /**
+   * Searches each of the specified positions to the specified depth with a new engine with the
+   * specified number of threads, optionally printing the results.
+   */
+  private static void run(Position[] positions, int threads, int depth, boolean print) {
+    if (print) System.out.println(threads + " thread(s), depth " + depth + ":");
+
+    long totalNodes = 0;
+    long totalTime = 0;
+    for (int i = 0; i < positions.length; i++) {
+      SearchEngine engine = new SearchEngine(threads, HASH_SIZE);
+      SearchResult result = engine.search(positions[i], depth, 0, null);
+      totalNodes += result.getNodes();
+      totalTime += result.getTime();
+      if (print)
+        System.out.println(
+            "  " + POSITIONS[i] + ": " + result.getTime() + "ms, " + result.getNodes() + " nodes, "
+                + result.getNodesPerSecond() + " nps, score " + result.getScore());
+    }
+
+    if (print) {
+      long nps = (totalTime == 0) ? totalNodes * 1000 : totalNodes * 1000 / totalTime;
+      System.out.println("  total: " + totalTime + "ms, " + totalNodes + " nodes, " + nps + " nps");
+    }
+  }
+}
@@ -0,0 +1,641 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.search;
+
+import free.chess.ChessMove;
+import free.chess.ChesslikeGenericVariant;
+import free.chess.Move;
+import free.chess.MoveGenerator;
+import free.chess.Piece;
+import free.chess.Position;
+import free.chess.PositionSnapshot;
+import free.chess.Square;
+import free.chess.WildVariant;
+import free.chess.Zobrist;
+import free.chess.variants.atomic.Atomic;
+import free.chess.variants.giveaway.Giveaway;
+import free.chess.variants.shatranj.Shatranj;
+import free.chess.variants.suicide.Suicide;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small alpha-beta search engine over <code>free.chess</code> positions, meant for hints and
+ * blunder checks rather than strong play. The search is an iterative deepening negamax alpha-beta
+ * search with a capture-only quiescence search, check extensions and a {@link TranspositionTable}
+ * keyed by {@link Zobrist} keys. Several threads search the same position in the "Lazy SMP" style:
+ * they share only the transposition table and a stop flag, and the helper threads start at
+ * staggered depths, so that they fill the table with results the main thread then reuses. Moves
+ * are generated by {@link MoveGenerator}, which only knows the rules of chess, so only the variants
+ * accepted by {@link #isSupported(WildVariant)} can be searched; positions are evaluated by an
+ * {@link Evaluator}.
+ *
+ * <p>{@link #search(Position, int, long, SearchListener)} blocks until the search ends, so it must
+ * not be called in the event dispatching thread. An engine runs one search at a time; {@link
+ * #stop()} may be called from any thread to end the current search early.
+ */
+public class SearchEngine {
+
+  /**
+   * The score of a position in which the player to move mates immediately. The score of a mate in
+   * <code>n</code> plies is <code>MATE_SCORE - n</code>.
+   */
+  public static final int MATE_SCORE = 30000;
+
+  /**
+   * Scores beyond &plusmn;<code>MATE_THRESHOLD</code> are mate scores.
+   */
+  public static final int MATE_THRESHOLD = MATE_SCORE - 1000;
+
+  /**
+   * The maximum search depth, in plies.
+   */
+  public static final int MAX_DEPTH = 64;
+
+  /**
+   * The maximum distance from the root, including extensions and quiescence search, in plies.
+   */
+  private static final int MAX_PLY = 128;
+
+  /**
+   * A score larger than any real score.
+   */
+  private static final int INFINITY = 32000;
+
+  /**
+   * The time is checked whenever the amount of nodes searched by a thread is divisible by this
+   * number plus one (which must be a power of two).
+   */
+  private static final int TIME_CHECK_MASK = 1023;
+
+  /**
+   * The number of threads searching.
+   */
+  private final int threadCount;
+
+  /**
+   * The transposition table.
+   */
+  private final TranspositionTable table;
+
+  /**
+   * The evaluator.
+   */
+  private final Evaluator evaluator;
+
+  /**
+   * Whether the current search should stop.
+   */
+  private volatile boolean isStopped;
+
+  /**
+   * Whether the current search has completed at least one iteration. The search is never stopped
+   * before it has, so that there is always a move to report.
+   */
+  private volatile boolean hasResult;
+
+  /**
+   * The time when the current search must end, in milliseconds; <code>Long.MAX_VALUE</code> if it
+   * has no time limit.
+   */
+  private volatile long deadline;
+
+  /**
+   * The searchers of the current search.
+   */
+  private Searcher[] searchers;
+
+  /**
+   * Creates a new <code>SearchEngine</code> with the specified number of threads and transposition
+   * table size (in megabytes), evaluating positions with a {@link MaterialEvaluator}.
+   */
+  public SearchEngine(int threadCount, int hashSizeMB) {
+    this(threadCount, hashSizeMB, new MaterialEvaluator());
+  }
+
+  /**
+   * Creates a new <code>SearchEngine</code> with the specified number of threads, transposition
+   * table size (in megabytes) and evaluator.
+   */
+  public SearchEngine(int threadCount, int hashSizeMB, Evaluator evaluator) {
+    if (threadCount < 1) throw new IllegalArgumentException("Bad thread count: " + threadCount);
+    if (evaluator == null) throw new IllegalArgumentException("evaluator may not be null");
+
+    this.threadCount = threadCount;
+    this.table = new TranspositionTable(hashSizeMB);
+    this.evaluator = evaluator;
+  }
+
+  /**
+   * Returns the number of threads searching.
+   */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  /**
+   * Returns whether positions of the specified variant can be searched. {@link MoveGenerator} only
+   * applies the rules of chess (king safety, castling and en passant) and the search scores a
+   * player without moves as checkmated or stalemated, so variants with compulsory captures
+   * (Giveaway, Suicide and Losers), explosions (Atomic), other stalemate rules (Shatranj) or hidden
+   * pieces (Kriegspiel) are not supported.
+   */
+  public static boolean isSupported(WildVariant variant) {
+    if (!(variant instanceof ChesslikeGenericVariant)) return false;
+    if ((variant instanceof Giveaway)
+        || (variant instanceof Suicide)
+        || (variant instanceof Atomic)
+        || (variant instanceof Shatranj)) return false;
+
+    // Losers is created as a plain chess-like variant, only its name tells it apart
+    return !"losers".equals(variant.getName());
+  }
+
+  /**
+   * Searches the specified position to the specified depth, or until the specified amount of
+   * milliseconds passes (0 for no time limit), or until {@link #stop()} is called, whichever comes
+   * first. The first iteration is always completed, regardless of the time limit. The specified
+   * listener (which may be <code>null</code>) is notified, in the calling thread, of each completed
+   * iteration. Returns the result of the deepest completed iteration. The specified position is
+   * not modified.
+   *
+   * @throws IllegalArgumentException if the position's variant is not
+   * {@link #isSupported(WildVariant) supported}.
+   */
+  public synchronized SearchResult search(
+      Position pos, int maxDepth, long timeLimit, SearchListener listener) {
+    if (maxDepth < 1) throw new IllegalArgumentException("Bad depth: " + maxDepth);
+    if (timeLimit < 0) throw new IllegalArgumentException("Bad time limit: " + timeLimit);
+    if (!isSupported(pos.getVariant()))
+      throw new IllegalArgumentException("Unsupported variant: " + pos.getVariant());
+
+    maxDepth = Math.min(maxDepth, MAX_DEPTH);
+    long startTime = System.currentTimeMillis();
+    deadline = (timeLimit == 0) ? Long.MAX_VALUE : startTime + timeLimit;
+    hasResult = false;
+    isStopped = false;
+
+    PositionSnapshot root = pos.snapshot();
+    searchers = new Searcher[threadCount];
+    for (int i = 0; i < threadCount; i++)
+      searchers[i] = new Searcher(i, root, maxDepth, startTime, listener);
+
+    Thread[] helpers = new Thread[threadCount - 1];
+    for (int i = 0; i < helpers.length; i++) {
+      helpers[i] = new Thread(searchers[i + 1], "SearchEngine helper " + (i + 1));
+      helpers[i].setDaemon(true);
+      helpers[i].start();
+    }
+
+    searchers[0].run();
+
+    isStopped = true;
+    for (int i = 0; i < helpers.length; i++) {
+      try {
+        helpers[i].join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    SearchResult result = searchers[0].result;
+    searchers = null;
+    return result;
+  }
+
+  /**
+   * Asks the current search, if any, to stop as soon as possible.
+   */
+  public void stop() {
+    isStopped = true;
+  }
+
+  /**
+   * Clears the transposition table, forgetting the results of previous searches. Must not be
+   * called while searching.
+   */
+  public synchronized void clearHash() {
+    table.clear();
+  }
+
+  /**
+   * Returns the total number of nodes searched so far by the threads of the current search.
+   */
+  private long getNodeCount() {
+    Searcher[] currentSearchers = searchers;
+    long nodes = 0;
+    for (int i = 0; i < currentSearchers.length; i++) nodes += currentSearchers[i].nodes;
+
+    return nodes;
+  }
+
+  /**
+   * Returns whether the current search should be abandoned.
+   */
+  private boolean isAborted() {
+    return isStopped && hasResult;
+  }
+
+  /**
+   * Encodes the specified move into 16 bits: the index of the starting square, the index of the
+   * ending square and the type of the promotion target (0 if none).
+   */
+  static int encodeMove(Move move) {
+    int promotion = 0;
+    if ((move instanceof ChessMove) && ((ChessMove) move).isPromotion())
+      promotion = ((ChessMove) move).getPromotionTarget().getType();
+
+    return move.getStartingSquare().getIndex()
+        | (move.getEndingSquare().getIndex() << 6)
+        | (promotion << 12);
+  }
+
+  /**
+   * Returns the move in the specified list whose encoding is the specified one, or
+   * <code>null</code> if none.
+   */
+  private static Move findMove(List moves, int encodedMove) {
+    for (int i = 0; i < moves.size(); i++) {
+      Move move = (Move) moves.get(i);
+      if (encodeMove(move) == encodedMove) return move;
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns whether the specified move, made in the specified position, is a capture.
+   */
+  private static boolean isCapture(Position pos, Move move) {
+    if (move instanceof ChessMove) return ((ChessMove) move).isCapture();
+
+    return pos.getPieceAt(move.getEndingSquare()) != null;
+  }
+
+  /**
+   * Converts the specified score, relative to the specified ply, into a score relative to the
+   * position being stored in the transposition table.
+   */
+  private static int toTableScore(int score, int ply) {
+    if (score >= MATE_THRESHOLD) return score + ply;
+    if (score <= -MATE_THRESHOLD) return score - ply;
+    return score;
+  }
+
+  /**
+   * Converts the specified score from the transposition table into a score relative to the
+   * specified ply.
+   */
+  private static int fromTableScore(int score, int ply) {
+    if (score >= MATE_THRESHOLD) return score - ply;
+    if (score <= -MATE_THRESHOLD) return score + ply;
+    return score;
+  }
+
+  /**
+   * A single searching thread.
+   */
+  private final class Searcher implements Runnable {
+
+    /**
+     * The index of the searcher; 0 for the main searcher.
+     */
+    private final int id;
+
+    /**
+     * The maximum depth to search to.
+     */
+    private final int maxDepth;
+
+    /**
+     * The time the search started.
+     */
+    private final long startTime;
+
+    /**
+     * The listener to notify of completed iterations (main searcher only), may be
+     * <code>null</code>.
+     */
+    private final SearchListener listener;
+
+    /**
+     * The positions along the current line, indexed by ply.
+     */
+    private final Position[] positions = new Position[MAX_PLY + 1];
+
+    /**
+     * The keys of the positions along the current line, indexed by ply.
+     */
+    private final long[] keys = new long[MAX_PLY + 1];
+
+    /**
+     * Two killer moves (quiet moves which caused a cutoff) per ply.
+     */
+    private final int[] killers = new int[2 * (MAX_PLY + 1)];
+
+    /**
+     * A scratch position used for checking the legality of moves.
+     */
+    private final Position scratch;
+
+    /**
+     * The best move found at the root by the current iteration.
+     */
+    private Move rootBestMove;
+
+    /**
+     * The number of nodes searched by this searcher.
+     */
+    public volatile long nodes = 0;
+
+    /**
+     * The result of the deepest completed iteration (main searcher only).
+     */
+    public SearchResult result = null;
+
+    /**
+     * Creates a new <code>Searcher</code>.
+     */
+    public Searcher(
+        int id, PositionSnapshot root, int maxDepth, long startTime, SearchListener listener) {
+      this.id = id;
+      this.maxDepth = maxDepth;
+      this.startTime = startTime;
+      this.listener = listener;
+      this.positions[0] = root.toPosition();
+      this.scratch = root.toPosition();
+    }
+
+    /**
+     * Runs the iterative deepening loop.
+     */
+    @Override
+    public void run() {
+      // Helpers start at staggered depths, so that they search ahead of the main thread
+      int firstDepth = (id == 0) ? 1 : 1 + (id % 2);
+      for (int depth = firstDepth; (depth <= maxDepth) && !isAborted(); depth++) {
+        rootBestMove = null;
+        int score = search(0, depth, -INFINITY, INFINITY);
+        if (isAborted() || (id != 0)) continue;
+
+        Move[] pv = (rootBestMove == null) ? new Move[0] : extractPrincipalVariation(depth);
+        result =
+            new SearchResult(
+                depth, score, pv, getNodeCount(), System.currentTimeMillis() - startTime);
+        hasResult = true;
+        if (listener != null) listener.iterationCompleted(result);
+
+        if (rootBestMove == null) break;
+        if ((Math.abs(score) >= MATE_THRESHOLD) && (MATE_SCORE - Math.abs(score) <= depth)) break;
+      }
+
+      if (id == 0) isStopped = true;
+    }
+
+    /**
+     * Checks whether the search time is up, stopping the search if it is.
+     */
+    private void checkTime() {
+      if (hasResult && (System.currentTimeMillis() >= deadline)) isStopped = true;
+    }
+
+    /**
+     * Returns the position at the specified ply, after making the specified move in the position
+     * at the previous ply.
+     */
+    private Position makeMove(int ply, Move move) {
+      Position child = positions[ply];
+      if (child == null) positions[ply] = child = new Position(positions[ply - 1]);
+      else child.copyFrom(positions[ply - 1]);
+
+      child.makeMove(move);
+      return child;
+    }
+
+    /**
+     * Returns whether the position at the specified ply, with the specified key, repeats an
+     * earlier position of the current line.
+     */
+    private boolean isRepetition(int ply, long key) {
+      for (int i = ply - 2; i >= 0; i -= 2) if (keys[i] == key) return true;
+
+      return false;
+    }
+
+    /**
+     * Returns the ordering scores of the specified moves, made in the specified position - higher
+     * scores are searched first.
+     */
+    private int[] getOrderingScores(Position pos, List moves, int ttMove, int ply) {
+      WildVariant variant = pos.getVariant();
+      int[] scores = new int[moves.size()];
+      for (int i = 0; i < scores.length; i++) {
+        Move move = (Move) moves.get(i);
+        int encodedMove = encodeMove(move);
+        if (encodedMove == ttMove) scores[i] = 1000000;
+        else if (isCapture(pos, move)) {
+          Piece captured = pos.getPieceAt(move.getEndingSquare());
+          Piece moving = pos.getPieceAt(move.getStartingSquare());
+          int victim = (captured == null) ? 1 : variant.getApproximateMaterialValue(captured);
+          int attacker = (moving == null) ? 0 : variant.getApproximateMaterialValue(moving);
+          scores[i] = 100000 + 100 * victim - attacker;
+        } else if (encodedMove == killers[2 * ply]) scores[i] = 90000;
+        else if (encodedMove == killers[2 * ply + 1]) scores[i] = 89999;
+      }
+
+      return scores;
+    }
+
+    /**
+     * Moves the move with the highest ordering score among the moves starting at the specified
+     * index to that index.
+     */
+    private void selectMove(List moves, int[] scores, int index) {
+      int best = index;
+      for (int i = index + 1; i < scores.length; i++) if (scores[i] > scores[best]) best = i;
+
+      if (best != index) {
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+        moves.set(index, moves.set(best, moves.get(index)));
+      }
+    }
+
+    /**
+     * Searches the position at the specified ply to the specified depth, with the specified alpha
+     * and beta bounds, returning its score.
+     */
+    private int search(int ply, int depth, int alpha, int beta) {
+      Position pos = positions[ply];
+      long key = Zobrist.getKey(pos);
+      keys[ply] = key;
+
+      if ((ply > 0) && ((pos.getHalfmoveClock() >= 100) || isRepetition(ply, key))) return 0;
+
+      if ((ply < MAX_PLY / 2) && MoveGenerator.isInCheck(pos)) depth++;
+      if ((depth <= 0) || (ply >= MAX_PLY - 1)) return quiesce(ply, alpha, beta);
+
+      if ((++nodes & TIME_CHECK_MASK) == 0) checkTime();
+      if (isAborted()) return 0;
+
+      int ttMove = TranspositionTable.NO_MOVE;
+      long entry = table.probe(key);
+      if (entry != 0) {
+        ttMove = TranspositionTable.getMove(entry);
+        if ((ply > 0) && (TranspositionTable.getDepth(entry) >= depth)) {
+          int score = fromTableScore(TranspositionTable.getScore(entry), ply);
+          int bound = TranspositionTable.getBound(entry);
+          if ((bound == TranspositionTable.EXACT)
+              || ((bound == TranspositionTable.LOWER_BOUND) && (score >= beta))
+              || ((bound == TranspositionTable.UPPER_BOUND) && (score <= alpha))) return score;
+        }
+      }
+
+      List moves = MoveGenerator.getLegalMoves(pos);
+      if (moves.isEmpty()) return evaluator.getNoMovesOutcome(pos) * (MATE_SCORE - ply);
+
+      int[] scores = getOrderingScores(pos, moves, ttMove, ply);
+      int originalAlpha = alpha;
+      int bestScore = -INFINITY;
+      int bestMove = TranspositionTable.NO_MOVE;
+      for (int i = 0; i < moves.size(); i++) {
+        selectMove(moves, scores, i);
+        Move move = (Move) moves.get(i);
+        makeMove(ply + 1, move);
+        int score = -search(ply + 1, depth - 1, -beta, -alpha);
+        if (isAborted()) return 0;
+
+        if (score > bestScore) {
+          bestScore = score;
+          bestMove = encodeMove(move);
+          if (ply == 0) rootBestMove = move;
+          if (score > alpha) {
+            alpha = score;
+            if (alpha >= beta) {
+              if (!isCapture(pos, move) && (killers[2 * ply] != bestMove)) {
+                killers[2 * ply + 1] = killers[2 * ply];
+                killers[2 * ply] = bestMove;
+              }
+              break;
+            }
+          }
+        }
+      }
+
+      int bound;
+      if (bestScore >= beta) bound = TranspositionTable.LOWER_BOUND;
+      else if (bestScore > originalAlpha) bound = TranspositionTable.EXACT;
+      else bound = TranspositionTable.UPPER_BOUND;
+      table.store(key, bestMove, toTableScore(bestScore, ply), depth, bound);
+
+      return bestScore;
+    }
+
+    /**
+     * Searches only the captures in the position at the specified ply, until a quiet position is
+     * reached, returning its score.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+      if ((++nodes & TIME_CHECK_MASK) == 0) checkTime();
+      if (isAborted()) return 0;
+
+      Position pos = positions[ply];
+      int standPat = evaluator.evaluate(pos);
+      if ((standPat >= beta) || (ply >= MAX_PLY - 1)) return standPat;
+      if (standPat > alpha) alpha = standPat;
+
+      List captures = getLegalCaptures(pos);
+      int[] scores = getOrderingScores(pos, captures, TranspositionTable.NO_MOVE, ply);
+      int bestScore = standPat;
+      for (int i = 0; i < captures.size(); i++) {
+        selectMove(captures, scores, i);
+        makeMove(ply + 1, (Move) captures.get(i));
+        int score = -quiesce(ply + 1, -beta, -alpha);
+        if (isAborted()) return 0;
+
+        if (score > bestScore) {
+          bestScore = score;
+          if (score > alpha) {
+            alpha = score;
+            if (alpha >= beta) break;
+          }
+        }
+      }
+
+      return bestScore;
+    }
+
+    /**
+     * Returns the legal captures of the player to move in the specified position.
+     */
+    private List getLegalCaptures(Position pos) {
+      List candidates = new ArrayList();
+      int color = pos.getCurrentPlayer().getPieceColor();
+      for (int i = 0; i < 64; i++) {
+        Piece piece = pos.getPieceAt(i & 7, i >> 3);
+        if ((piece != null) && (piece.getColor() == color))
+          MoveGenerator.addPieceMoves(pos, Square.getInstance(i), candidates);
+      }
+
+      List captures = new ArrayList();
+      for (int i = 0; i < candidates.size(); i++) {
+        Move move = (Move) candidates.get(i);
+        if (isCapture(pos, move) && MoveGenerator.isLegal(pos, move, scratch)) captures.add(move);
+      }
+
+      return captures;
+    }
+
+    /**
+     * Returns the principal variation of the just completed iteration of the specified depth - the
+     * best root move followed by the best moves stored in the transposition table.
+     */
+    private Move[] extractPrincipalVariation(int depth) {
+      List pv = new ArrayList();
+      pv.add(rootBestMove);
+
+      Position pos = new Position(positions[0]);
+      pos.makeMove(rootBestMove);
+      long[] seenKeys = new long[depth];
+      while (pv.size() < depth) {
+        long key = Zobrist.getKey(pos);
+        for (int i = 0; i < pv.size() - 1; i++) if (seenKeys[i] == key) return toArray(pv);
+        seenKeys[pv.size() - 1] = key;
+
+        long entry = table.probe(key);
+        if ((entry == 0) || (TranspositionTable.getMove(entry) == TranspositionTable.NO_MOVE))
+          break;
+
+        Move move = findMove(MoveGenerator.getLegalMoves(pos), TranspositionTable.getMove(entry));
+        if (move == null) break;
+
+        pv.add(move);
+        pos.makeMove(move);
+      }
+
+      return toArray(pv);
+    }
+
+    /**
+     * Converts the specified list of moves to an array.
+     */
+    private Move[] toArray(List moves) {
+      return (Move[]) moves.toArray(new Move[moves.size()]);
+    }
+  }
+}
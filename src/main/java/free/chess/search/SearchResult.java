@@ -0,0 +1,138 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.search;
+
+import free.chess.Move;
+
+/**
+ * The result of a (possibly not yet complete) search by a {@link SearchEngine}: the best move and
+ * principal variation found by the deepest completed iteration, with its score and statistics.
+ */
+public final class SearchResult {
+
+  /**
+   * The depth of the search, in plies.
+   */
+  private final int depth;
+
+  /**
+   * The score, in centipawns, from the point of view of the player to move.
+   */
+  private final int score;
+
+  /**
+   * The principal variation; empty if the player to move has no moves.
+   */
+  private final Move[] principalVariation;
+
+  /**
+   * The number of nodes searched, by all threads.
+   */
+  private final long nodes;
+
+  /**
+   * The time spent searching, in milliseconds.
+   */
+  private final long time;
+
+  /**
+   * Creates a new <code>SearchResult</code>.
+   */
+  SearchResult(int depth, int score, Move[] principalVariation, long nodes, long time) {
+    this.depth = depth;
+    this.score = score;
+    this.principalVariation = principalVariation;
+    this.nodes = nodes;
+    this.time = time;
+  }
+
+  /**
+   * Returns the depth of the search, in plies.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns the score, in centipawns, from the point of view of the player to move. Mate scores are
+   * beyond &plusmn;{@link SearchEngine#MATE_THRESHOLD}; see {@link #getMateDistance()}.
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Returns whether the score is a mate score.
+   */
+  public boolean isMateScore() {
+    return Math.abs(score) >= SearchEngine.MATE_THRESHOLD;
+  }
+
+  /**
+   * Returns the number of moves until mate - positive if the player to move mates, negative if it
+   * gets mated. Returns 0 if the score is not a mate score.
+   */
+  public int getMateDistance() {
+    if (!isMateScore()) return 0;
+
+    int plies = SearchEngine.MATE_SCORE - Math.abs(score);
+    return (score > 0) ? (plies + 1) / 2 : -(plies + 1) / 2;
+  }
+
+  /**
+   * Returns the best move, or <code>null</code> if the player to move has no moves.
+   */
+  public Move getBestMove() {
+    return principalVariation.length == 0 ? null : principalVariation[0];
+  }
+
+  /**
+   * Returns the principal variation.
+   */
+  public Move[] getPrincipalVariation() {
+    return (Move[]) principalVariation.clone();
+  }
+
+  /**
+   * Returns the number of nodes searched, by all threads.
+   */
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the time spent searching, in milliseconds.
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Returns the search speed, in nodes per second.
+   */
+  public long getNodesPerSecond() {
+    return (time == 0) ? nodes * 1000 : nodes * 1000 / time;
+  }
+
+  /**
+   * Returns a textual representation of this result, for debugging.
+   */
+  @Override
+  public String toString() {
+    return "depth " + depth + " score " + score + " best " + getBestMove() + " nodes " + nodes;
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * The chess framework library. More information is available at http://www.jinchess.com/. Copyright
+ * (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with the chess
+ * framework library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite
+ * 330, Boston, MA 02111-1307 USA
+ */
+package free.chess.search;
+
+import java.util.Arrays;
+
+/**
+ * A transposition table shared by the threads of a {@link SearchEngine}. Each slot holds a 64-bit
+ * data word and the position key xor-ed with it, so that a slot torn by concurrent, unsynchronized
+ * writes fails the key check on probing instead of returning another position's data. The data
+ * word packs the best move (16 bits), the score (16 bits), the depth (8 bits) and the bound type (2
+ * bits); a set {@link #VALID} bit distinguishes it from an empty slot.
+ */
+final class TranspositionTable {
+
+  /**
+   * The bound type of an exact score.
+   */
+  static final int EXACT = 0;
+
+  /**
+   * The bound type of a score which is a lower bound of the real score.
+   */
+  static final int LOWER_BOUND = 1;
+
+  /**
+   * The bound type of a score which is an upper bound of the real score.
+   */
+  static final int UPPER_BOUND = 2;
+
+  /**
+   * The move stored when there is no best move.
+   */
+  static final int NO_MOVE = 0xffff;
+
+  /**
+   * The bit set in all valid data words.
+   */
+  private static final long VALID = 1L << 62;
+
+  /**
+   * The position keys, xor-ed with the data words.
+   */
+  private final long[] keys;
+
+  /**
+   * The data words.
+   */
+  private final long[] data;
+
+  /**
+   * The mask selecting a slot from a key.
+   */
+  private final int mask;
+
+  /**
+   * Creates a new <code>TranspositionTable</code> occupying approximately the specified amount of
+   * megabytes (rounded down to a power of two amount of slots).
+   */
+  TranspositionTable(int sizeMB) {
+    if (sizeMB < 1) throw new IllegalArgumentException("Bad size: " + sizeMB);
+
+    int slots = Integer.highestOneBit((int) Math.min(1 << 30, sizeMB * (1024L * 1024 / 16)));
+    this.keys = new long[slots];
+    this.data = new long[slots];
+    this.mask = slots - 1;
+  }
+
+  /**
+   * Returns the data word stored for the specified key, or 0 if none.
+   */
+  long probe(long key) {
+    int index = (int) key & mask;
+    long word = data[index];
+    return ((word != 0) && ((keys[index] ^ word) == key)) ? word : 0;
+  }
+
+  /**
+   * Stores the specified information for the specified key. An entry for a different position is
+   * always replaced; an entry for the same position only by a search at least as deep.
+   */
+  void store(long key, int move, int score, int depth, int bound) {
+    int index = (int) key & mask;
+    long oldWord = data[index];
+    if ((oldWord != 0) && ((keys[index] ^ oldWord) == key) && (getDepth(oldWord) > depth)) return;
+
+    long word =
+        VALID
+            | (move & 0xffffL)
+            | ((long) ((score + 0x8000) & 0xffff) << 16)
+            | ((long) (Math.min(depth, 255) & 0xff) << 32)
+            | ((long) bound << 40);
+    data[index] = word;
+    keys[index] = key ^ word;
+  }
+
+  /**
+   * Clears the table.
+   */
+  void clear() {
+    Arrays.fill(keys, 0);
+    Arrays.fill(data, 0);
+  }
+
+  /**
+   * Returns the move stored in the specified data word.
+   */
+  static int getMove(long word) {
+    return (int) (word & 0xffff);
+  }
+
+  /**
+   * Returns the score stored in the specified data word.
+   */
+  static int getScore(long word) {
+    return (int) ((word >>> 16) & 0xffff) - 0x8000;
+  }
+
+  /**
+   * Returns the depth stored in the specified data word.
+   */
+  static int getDepth(long word) {
+    return (int) ((word >>> 32) & 0xff);
+  }
+
+  /**
+   * Returns the bound type stored in the specified data word.
+   */
+  static int getBound(long word) {
+    return (int) ((word >>> 40) & 3);
+  }
+}
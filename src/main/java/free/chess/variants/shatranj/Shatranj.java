@@ -88,6 +88,15 @@ public class Shatranj extends NoCastlingVariant {
     return false;
   }
 
+  /**
+   * Returns <code>false</code>, since the queen (fers) and the bishop (elephant) don't move like in
+   * chess.
+   */
+  @Override
+  public boolean hasChessPieceMovement() {
+    return false;
+  }
+
   /**
    * Fers (queen) move directions. The fers can only move one square diagonally in any direction.
    */
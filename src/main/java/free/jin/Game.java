@@ -20,6 +20,7 @@ import java.beans.PropertyChangeListener;
 
 import free.chess.Player;
 import free.chess.Position;
+import free.chess.PositionSnapshot;
 import free.chess.TimeControl;
 import free.chess.WildVariant;
 import free.util.BeanProperties;
@@ -333,17 +334,30 @@ public class Game {
    * Sets the initial position of the game to the given position.
    */
   public void setInitialPosition(Position initialPosition) {
-    Position newInitPos = new Position(initialPosition.getVariant());
-    newInitPos.copyFrom(initialPosition);
+    setInitialPosition(initialPosition.snapshot());
+  }
+
+  /**
+   * Sets the initial position of the game to the given snapshot.
+   */
+  public void setInitialPosition(PositionSnapshot initialPosition) {
     props.setProperty("initialPosition", initialPosition);
   }
 
   /**
-   * Returns a copy of the initial position in the game.
+   * Returns a modifiable copy of the initial position in the game. The copy shares its board with
+   * the game's snapshot of the initial position until it's modified, so this is cheap, but callers
+   * which only need to look at the position should use {@link #getInitialPositionSnapshot()}.
    */
   public Position getInitialPosition() {
-    Position pos = (Position) props.getProperty("initialPosition");
-    return new Position(pos);
+    return new Position(getInitialPositionSnapshot());
+  }
+
+  /**
+   * Returns the immutable snapshot of the initial position in the game.
+   */
+  public PositionSnapshot getInitialPositionSnapshot() {
+    return (PositionSnapshot) props.getProperty("initialPosition");
   }
 
   /**
@@ -368,7 +382,7 @@ public class Game {
    * Returns the WildVariant of this Game.
    */
   public WildVariant getVariant() {
-    return ((Position) props.getProperty("initialPosition")).getVariant();
+    return getInitialPositionSnapshot().getVariant();
   }
 
   /**
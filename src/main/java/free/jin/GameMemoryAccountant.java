@@ -0,0 +1,156 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin;
+
+import java.util.Vector;
+
+/**
+ * Keeps track of the {@link GameStateHolder}s and the approximate amount of memory they hold, and
+ * asks them to compact their state when the total exceeds a budget. Game state holders are expected
+ * to invoke {@link #checkBudget()} whenever they start keeping state for a new game.
+ */
+public final class GameMemoryAccountant {
+
+  /**
+   * The default memory budget, in bytes.
+   */
+  public static final long DEFAULT_BUDGET = 8 * 1024 * 1024;
+
+  /**
+   * The sole instance of this class.
+   */
+  private static final GameMemoryAccountant INSTANCE = new GameMemoryAccountant();
+
+  /**
+   * The registered <code>GameStateHolder</code>s.
+   */
+  private final Vector holders = new Vector();
+
+  /**
+   * The memory budget, in bytes.
+   */
+  private volatile long budget = DEFAULT_BUDGET;
+
+  /**
+   * The amount of times the budget was exceeded and the holders were asked to compact their state.
+   */
+  private volatile int compactionCount = 0;
+
+  /**
+   * Creates the sole instance of this class.
+   */
+  private GameMemoryAccountant() {}
+
+  /**
+   * Returns the sole instance of this class.
+   */
+  public static GameMemoryAccountant getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Registers the specified <code>GameStateHolder</code>.
+   */
+  public void register(GameStateHolder holder) {
+    if (holder == null) throw new IllegalArgumentException("The holder may not be null");
+
+    if (!holders.contains(holder)) holders.addElement(holder);
+  }
+
+  /**
+   * Unregisters the specified <code>GameStateHolder</code>.
+   */
+  public void unregister(GameStateHolder holder) {
+    holders.removeElement(holder);
+  }
+
+  /**
+   * Returns the registered <code>GameStateHolder</code>s.
+   */
+  public GameStateHolder[] getHolders() {
+    synchronized (holders) {
+      GameStateHolder[] result = new GameStateHolder[holders.size()];
+      holders.copyInto(result);
+      return result;
+    }
+  }
+
+  /**
+   * Returns the approximate amount of bytes held by the specified <code>GameStateHolder</code>.
+   */
+  public static long getHeldBytes(GameStateHolder holder) {
+    GameMemoryUsage[] usage = holder.getGameMemoryUsage();
+    long total = 0;
+    for (int i = 0; i < usage.length; i++) total += usage[i].getBytes();
+
+    return total;
+  }
+
+  /**
+   * Returns the approximate amount of bytes held by all the registered
+   * <code>GameStateHolder</code>s.
+   */
+  public long getTotalBytes() {
+    GameStateHolder[] holders = getHolders();
+    long total = 0;
+    for (int i = 0; i < holders.length; i++) total += getHeldBytes(holders[i]);
+
+    return total;
+  }
+
+  /**
+   * Sets the memory budget, in bytes.
+   */
+  public void setBudget(long budget) {
+    if (budget <= 0) throw new IllegalArgumentException("The budget must be positive: " + budget);
+
+    this.budget = budget;
+  }
+
+  /**
+   * Returns the memory budget, in bytes.
+   */
+  public long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Returns the amount of times the holders were asked to compact their state.
+   */
+  public int getCompactionCount() {
+    return compactionCount;
+  }
+
+  /**
+   * Asks all the registered holders to compact their state if the total amount of memory they hold
+   * exceeds the budget. Must be invoked on the event dispatching thread.
+   */
+  public void checkBudget() {
+    if (getTotalBytes() > budget) compact();
+  }
+
+  /**
+   * Asks all the registered holders to compact their state. Must be invoked on the event
+   * dispatching thread.
+   */
+  public void compact() {
+    compactionCount++;
+
+    GameStateHolder[] holders = getHolders();
+    for (int i = 0; i < holders.length; i++) holders[i].compactGameState();
+  }
+}
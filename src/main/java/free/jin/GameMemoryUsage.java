@@ -0,0 +1,70 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin;
+
+/**
+ * A description of the approximate amount of memory held for a single game by a
+ * {@link GameStateHolder}.
+ */
+public final class GameMemoryUsage {
+
+  /**
+   * A description of the game.
+   */
+  private final String gameDescription;
+
+  /**
+   * Whether the game has ended.
+   */
+  private final boolean isEnded;
+
+  /**
+   * The approximate amount of bytes held for the game.
+   */
+  private final long bytes;
+
+  /**
+   * Creates a new <code>GameMemoryUsage</code> with the specified game description, whether the
+   * game ended and the approximate amount of bytes held for it.
+   */
+  public GameMemoryUsage(String gameDescription, boolean isEnded, long bytes) {
+    this.gameDescription = gameDescription;
+    this.isEnded = isEnded;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Returns a description of the game.
+   */
+  public String getGameDescription() {
+    return gameDescription;
+  }
+
+  /**
+   * Returns whether the game has ended.
+   */
+  public boolean isEnded() {
+    return isEnded;
+  }
+
+  /**
+   * Returns the approximate amount of bytes held for the game.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin;
+
+/**
+ * An object which keeps state about games, such as a connection or a plugin. Game state holders
+ * register with the {@link GameMemoryAccountant} so that the memory they hold can be accounted for
+ * and, when it exceeds the budget, compacted. Implementations are expected to drop the state of a
+ * game as soon as it ends, unless they actually need it afterwards.
+ */
+public interface GameStateHolder {
+
+  /**
+   * Returns a short description of this holder, for display to the user.
+   */
+  String getGameStateHolderName();
+
+  /**
+   * Returns the approximate amount of memory held for each game this holder keeps state for. This
+   * method may be invoked from any thread, and the result need not be exact.
+   */
+  GameMemoryUsage[] getGameMemoryUsage();
+
+  /**
+   * Releases any memory held for games which is not strictly needed, such as caches which can be
+   * recreated. Invoked on the event dispatching thread when the memory budget is exceeded.
+   */
+  void compactGameState();
+}
@@ -0,0 +1,259 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.action.diagnostics;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+
+import free.jin.Connection;
+import free.jin.GameMemoryAccountant;
+import free.jin.GameMemoryUsage;
+import free.jin.GameStateHolder;
+import free.jin.I18n;
+import free.jin.event.BasicListenerManager;
+import free.jin.event.ListenerLatency;
+import free.jin.event.ListenerManager;
+import free.jin.ui.DialogPanel;
+
+/**
+ * A panel displaying the approximate memory held for games by the various
+ * <code>GameStateHolder</code>s and the latency of the connection's event listeners.
+ */
+public class DiagnosticsPanel extends DialogPanel {
+
+  /**
+   * The connection whose listener latencies we display.
+   */
+  private final Connection conn;
+
+  /**
+   * The text area displaying the report.
+   */
+  private final JTextArea reportArea = new JTextArea(24, 90);
+
+  /**
+   * Creates a new <code>DiagnosticsPanel</code> for the specified connection.
+   */
+  public DiagnosticsPanel(Connection conn) {
+    this.conn = conn;
+
+    createUI();
+    refresh();
+  }
+
+  /**
+   * Returns the title of this <code>DialogPanel</code>.
+   */
+  @Override
+  protected String getTitle() {
+    return I18n.get(DiagnosticsPanel.class).getString("title");
+  }
+
+  /**
+   * Displays this panel.
+   */
+  public void display() {
+    super.askResult();
+  }
+
+  /**
+   * Returns the connection's listener manager, if it records listener latencies;
+   * <code>null</code> otherwise.
+   */
+  private BasicListenerManager getBasicListenerManager() {
+    ListenerManager listenerManager = conn.getListenerManager();
+    return listenerManager instanceof BasicListenerManager
+        ? (BasicListenerManager) listenerManager
+        : null;
+  }
+
+  /**
+   * Creates the user interface.
+   */
+  private void createUI() {
+    I18n i18n = I18n.get(DiagnosticsPanel.class);
+
+    setLayout(new BorderLayout(5, 5));
+
+    reportArea.setEditable(false);
+    reportArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+    add(new JScrollPane(reportArea), BorderLayout.CENTER);
+
+    final BasicListenerManager listenerManager = getBasicListenerManager();
+    final JCheckBox recordLatencyBox = i18n.createCheckBox("recordLatencyCheckBox");
+    recordLatencyBox.setEnabled(listenerManager != null);
+    recordLatencyBox.setSelected(
+        (listenerManager != null) && listenerManager.isLatencyRecordingEnabled());
+    recordLatencyBox.addActionListener(
+        new ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent evt) {
+            listenerManager.setLatencyRecordingEnabled(recordLatencyBox.isSelected());
+          }
+        });
+    add(recordLatencyBox, BorderLayout.NORTH);
+
+    JButton refreshButton = i18n.createButton("refreshButton");
+    refreshButton.addActionListener(
+        new ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent evt) {
+            refresh();
+          }
+        });
+
+    JButton compactButton = i18n.createButton("compactButton");
+    compactButton.addActionListener(
+        new ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent evt) {
+            GameMemoryAccountant.getInstance().compact();
+            refresh();
+          }
+        });
+
+    JButton closeButton = i18n.createButton("closeButton");
+    closeButton.addActionListener(new ClosingListener(null));
+
+    JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+    buttonsPanel.add(refreshButton);
+    buttonsPanel.add(compactButton);
+    buttonsPanel.add(closeButton);
+    add(buttonsPanel, BorderLayout.SOUTH);
+
+    setDefaultButton(closeButton);
+  }
+
+  /**
+   * Recreates the report.
+   */
+  private void refresh() {
+    StringBuffer buf = new StringBuffer();
+    appendMemoryReport(buf);
+    buf.append("\n");
+    appendLatencyReport(buf);
+
+    reportArea.setText(buf.toString());
+    reportArea.setCaretPosition(0);
+  }
+
+  /**
+   * Appends the report of the memory held for games to the specified buffer.
+   */
+  private void appendMemoryReport(StringBuffer buf) {
+    I18n i18n = I18n.get(DiagnosticsPanel.class);
+    GameMemoryAccountant accountant = GameMemoryAccountant.getInstance();
+    GameStateHolder[] holders = accountant.getHolders();
+
+    long total = 0;
+    StringBuffer holdersBuf = new StringBuffer();
+    for (int i = 0; i < holders.length; i++) {
+      GameMemoryUsage[] usage = holders[i].getGameMemoryUsage();
+      long holderTotal = 0;
+      for (int j = 0; j < usage.length; j++) holderTotal += usage[j].getBytes();
+      total += holderTotal;
+
+      holdersBuf.append("  ");
+      holdersBuf.append(
+          i18n.getFormattedString(
+              "holderLine",
+              new Object[] {
+                holders[i].getGameStateHolderName(),
+                new Integer(usage.length),
+                toKilobytes(holderTotal)
+              }));
+      holdersBuf.append("\n");
+
+      for (int j = 0; j < usage.length; j++) {
+        holdersBuf.append("    ");
+        holdersBuf.append(
+            i18n.getFormattedString(
+                usage[j].isEnded() ? "endedGameLine" : "gameLine",
+                new Object[] {usage[j].getGameDescription(), toKilobytes(usage[j].getBytes())}));
+        holdersBuf.append("\n");
+      }
+    }
+
+    buf.append(
+        i18n.getFormattedString(
+            "memoryHeader",
+            new Object[] {
+              toKilobytes(total),
+              toKilobytes(accountant.getBudget()),
+              new Integer(accountant.getCompactionCount())
+            }));
+    buf.append("\n");
+    buf.append(holdersBuf);
+  }
+
+  /**
+   * Appends the report of the latency of the connection's listeners to the specified buffer.
+   */
+  private void appendLatencyReport(StringBuffer buf) {
+    I18n i18n = I18n.get(DiagnosticsPanel.class);
+    BasicListenerManager listenerManager = getBasicListenerManager();
+    if (listenerManager == null) {
+      buf.append(i18n.getString("latencyUnavailable"));
+      buf.append("\n");
+      return;
+    }
+
+    buf.append(i18n.getString("latencyHeader"));
+    buf.append("\n");
+
+    ListenerLatency[] latencies = listenerManager.getListenerLatencies();
+    for (int i = 0; i < latencies.length; i++) {
+      ListenerLatency latency = latencies[i];
+      buf.append("  ");
+      buf.append(
+          i18n.getFormattedString(
+              latency.isBackground() ? "backgroundLatencyLine" : "latencyLine",
+              new Object[] {
+                latency.getListenerName(),
+                new Long(latency.getEventCount()),
+                toMicroseconds(latency.getAverageDelay()),
+                toMicroseconds(latency.getMaxDelay()),
+                toMicroseconds(latency.getAverageDuration()),
+                toMicroseconds(latency.getMaxDuration())
+              }));
+      buf.append("\n");
+    }
+  }
+
+  /**
+   * Returns the specified amount of bytes in kilobytes, rounded up.
+   */
+  private static Long toKilobytes(long bytes) {
+    return new Long((bytes + 1023) / 1024);
+  }
+
+  /**
+   * Returns the specified amount of nanoseconds in microseconds.
+   */
+  private static Long toMicroseconds(long nanos) {
+    return new Long(nanos / 1000);
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+
+package free.jin.action.pgnbrowser;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+
+import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import free.chess.Move;
+import free.chess.pgn.PgnFile;
+import free.jin.Connection;
+import free.jin.Game;
+import free.jin.I18n;
+import free.jin.action.JinAction;
+import free.jin.event.GameAdapter;
+import free.jin.event.GameStartEvent;
+import free.jin.event.ListenerManager;
+import free.util.swing.ExtensionFileFilter;
+
+/**
+ * An action which lets the user browse the games in a local PGN file and replay them, and import
+ * a game into a new examined game on the server. The file is indexed (see
+ * {@link free.chess.pgn.PgnIndex}) rather than read, so only the game being viewed is parsed, no
+ * matter how large the file.
+ */
+public class PgnBrowserAction extends JinAction {
+
+  /**
+   * How long, in milliseconds, to wait for the server to start the examined game after we ask it
+   * to. The server doesn't reply when it refuses, so after that we stop waiting, lest the moves be
+   * made in some later, unrelated examined game.
+   */
+  private static final int EXAMINE_TIMEOUT = 10000;
+
+  /**
+   * Returns the id of the action - "pgnbrowser".
+   */
+  @Override
+  public String getId() {
+    return "pgnbrowser";
+  }
+
+  /**
+   * Asks the user to pick a PGN file and opens it.
+   */
+  @Override
+  public void actionPerformed(ActionEvent evt) {
+    Component hintParent =
+        (evt.getSource() instanceof Component) ? (Component) evt.getSource() : null;
+    I18n i18n = getI18n();
+
+    JFileChooser fileChooser = new JFileChooser(getPrefs().getString("lastDirectory", null));
+    fileChooser.setMultiSelectionEnabled(false);
+    fileChooser.addChoosableFileFilter(
+        new ExtensionFileFilter(
+            i18n.getString("fileChooser.filterName"), new String[] {".pgn", ".pgn.gz"}, false));
+    fileChooser.setFileHidingEnabled(true);
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    int result =
+        fileChooser.showDialog(hintParent, i18n.getString("fileChooser.approveButtonText"));
+    if (result != JFileChooser.APPROVE_OPTION) return;
+
+    File file = fileChooser.getSelectedFile();
+    if (file.getParent() != null) getPrefs().setString("lastDirectory", file.getParent());
+
+    open(file, hintParent);
+  }
+
+  /**
+   * Opens the specified PGN file and displays the browser for it. Indexing a large file may take a
+   * while, so the file is opened on a separate thread.
+   */
+  private void open(final File file, final Component hintParent) {
+    new Thread("PgnBrowserAction: " + file.getName()) {
+      @Override
+      public void run() {
+        try {
+          final PgnFile pgnFile = new PgnFile(file);
+          SwingUtilities.invokeLater(
+              new Runnable() {
+                @Override
+                public void run() {
+                  browse(pgnFile, hintParent);
+                }
+              });
+        } catch (final IOException e) {
+          SwingUtilities.invokeLater(
+              new Runnable() {
+                @Override
+                public void run() {
+                  Object[] args = new Object[] {file.getPath(), e.getMessage()};
+                  getI18n().error("openError", hintParent, args);
+                }
+              });
+        }
+      }
+    }.start();
+  }
+
+  /**
+   * Displays the browser for the specified PGN file and, once it's closed, examines the game the
+   * user asked to examine, if any.
+   */
+  private void browse(PgnFile pgnFile, Component hintParent) {
+    Connection conn = getConn();
+    PgnBrowserPanel panel = new PgnBrowserPanel(pgnFile, conn.isConnected());
+    panel.setHintParent(hintParent);
+    Move[] moves = panel.display();
+
+    try {
+      pgnFile.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+
+    if (moves != null) examine(moves);
+  }
+
+  /**
+   * Starts a new examined game on the server and makes the specified moves in it. If the server
+   * doesn't start the game within {@link #EXAMINE_TIMEOUT} milliseconds (for example, because the
+   * user is already playing or examining a game), the moves are dropped.
+   */
+  private void examine(final Move[] moves) {
+    final Connection conn = getConn();
+    final ListenerManager listenerManager = conn.getListenerManager();
+    final Timer timeout = new Timer(EXAMINE_TIMEOUT, null);
+    final GameAdapter examineListener =
+        new GameAdapter() {
+          @Override
+          public void gameStarted(GameStartEvent evt) {
+            Game game = evt.getGame();
+            if ((game.getGameType() != Game.MY_GAME) || game.isPlayed()) return;
+
+            timeout.stop();
+            listenerManager.removeGameListener(this);
+            for (int i = 0; i < moves.length; i++) conn.makeMove(game, moves[i]);
+          }
+        };
+    timeout.addActionListener(
+        new ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent evt) {
+            listenerManager.removeGameListener(examineListener);
+          }
+        });
+    timeout.setRepeats(false);
+
+    listenerManager.addGameListener(examineListener);
+    conn.examineNewGame();
+    timeout.start();
+  }
+}
@@ -0,0 +1,561 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+
+package free.jin.action.pgnbrowser;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+import free.chess.JBoard;
+import free.chess.Move;
+import free.chess.MoveList;
+import free.chess.Position;
+import free.chess.PositionSnapshot;
+import free.chess.pgn.PgnFile;
+import free.chess.pgn.PgnGame;
+import free.chess.pgn.PgnLine;
+import free.jin.I18n;
+import free.jin.ui.DialogPanel;
+import free.util.FormatException;
+
+/**
+ * A panel listing the games in a PGN file and replaying the selected one on a board. The list is
+ * filled from the file's index, so only the selected game is ever read and parsed. The comments and
+ * variations of the game are displayed next to the board as it's replayed.
+ */
+public class PgnBrowserPanel extends DialogPanel {
+
+  /**
+   * The tags displayed in the columns of the game list, after the game number.
+   */
+  private static final String[] COLUMN_TAGS = {"White", "Black", "Result", "Date", "Event", "ECO"};
+
+  /**
+   * The PGN file.
+   */
+  private final PgnFile pgnFile;
+
+  /**
+   * Whether the user may ask to examine the selected game on the server.
+   */
+  private final boolean canExamine;
+
+  /**
+   * The numbers of the games listed, <code>null</code> if all the games are listed.
+   */
+  private int[] listedGames = null;
+
+  /**
+   * The model of the game list.
+   */
+  private final GameTableModel gameTableModel = new GameTableModel();
+
+  /**
+   * The game list.
+   */
+  private final JTable gameTable = new JTable(gameTableModel);
+
+  /**
+   * The field into which the user types the player whose games to list.
+   */
+  private final JTextField playerField = new JTextField(15);
+
+  /**
+   * The label displaying the number of listed games.
+   */
+  private final JLabel gameCountLabel = new JLabel();
+
+  /**
+   * The position displayed on the board.
+   */
+  private final Position position = new Position();
+
+  /**
+   * The board.
+   */
+  private final JBoard board = new JBoard(position);
+
+  /**
+   * The model of the list of the moves of the selected game.
+   */
+  private final DefaultListModel moveListModel = new DefaultListModel();
+
+  /**
+   * The list of the moves of the selected game.
+   */
+  private final JList moveList = new JList(moveListModel);
+
+  /**
+   * The text area displaying the comment and the variations at the current position.
+   */
+  private final JTextArea annotationArea = new JTextArea(5, 30);
+
+  /**
+   * The buttons for going to the start of the game, a move back, a move forward and to the end of
+   * the game.
+   */
+  private JButton firstButton, previousButton, nextButton, lastButton;
+
+  /**
+   * The button for examining the game on the server.
+   */
+  private JButton examineButton;
+
+  /**
+   * The selected game, <code>null</code> if none.
+   */
+  private PgnGame game = null;
+
+  /**
+   * The resolved moves of the selected game, <code>null</code> if there's no selected game or its
+   * moves couldn't be resolved.
+   */
+  private MoveList moves = null;
+
+  /**
+   * The number of moves of the selected game made on the board.
+   */
+  private int ply = 0;
+
+  /**
+   * Whether we're updating the move list selection ourselves.
+   */
+  private boolean isUpdatingMoveList = false;
+
+  /**
+   * Creates a new <code>PgnBrowserPanel</code> for the specified PGN file. <code>canExamine</code>
+   * specifies whether the user may ask to examine the selected game on the server.
+   */
+  public PgnBrowserPanel(PgnFile pgnFile, boolean canExamine) {
+    this.pgnFile = pgnFile;
+    this.canExamine = canExamine;
+
+    createUI();
+    updateGameCount();
+    setGame(null, null);
+  }
+
+  /**
+   * Returns the title of this <code>DialogPanel</code>.
+   */
+  @Override
+  protected String getTitle() {
+    return I18n.get(PgnBrowserPanel.class)
+        .getFormattedString("title", new Object[] {pgnFile.getIndex().getPgnFile().getName()});
+  }
+
+  /**
+   * Makes the dialog resizable.
+   */
+  @Override
+  protected void configureDialog(JDialog dialog) {
+    super.configureDialog(dialog);
+    dialog.setResizable(true);
+  }
+
+  /**
+   * Displays this panel. Returns the moves, up to the displayed position, of the game the user
+   * asked to examine on the server, or <code>null</code> if the panel was simply closed.
+   */
+  public Move[] display() {
+    return (Move[]) super.askResult();
+  }
+
+  /**
+   * Creates the user interface.
+   */
+  private void createUI() {
+    I18n i18n = I18n.get(PgnBrowserPanel.class);
+
+    setLayout(new BorderLayout(5, 5));
+
+    JLabel playerLabel = i18n.createLabel("playerLabel");
+    playerLabel.setLabelFor(playerField);
+    JButton filterButton = i18n.createButton("filterButton");
+    ActionListener filterListener =
+        new ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent evt) {
+            filter(playerField.getText().trim());
+          }
+        };
+    filterButton.addActionListener(filterListener);
+    playerField.addActionListener(filterListener);
+
+    JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    filterPanel.add(playerLabel);
+    filterPanel.add(playerField);
+    filterPanel.add(filterButton);
+    filterPanel.add(gameCountLabel);
+    add(filterPanel, BorderLayout.NORTH);
+
+    gameTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    gameTable.getColumnModel().getColumn(0).setPreferredWidth(50);
+    gameTable
+        .getSelectionModel()
+        .addListSelectionListener(
+            new ListSelectionListener() {
+              @Override
+              public void valueChanged(ListSelectionEvent evt) {
+                if (evt.getValueIsAdjusting()) return;
+
+                int row = gameTable.getSelectedRow();
+                if (row == -1) setGame(null, null);
+                else loadGame(gameTableModel.getGameAt(row));
+              }
+            });
+    JScrollPane gameTableScrollPane = new JScrollPane(gameTable);
+    gameTableScrollPane.setPreferredSize(new Dimension(600, 200));
+
+    board.setEditable(false);
+    board.setPreferredSize(new Dimension(320, 320));
+
+    moveList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    moveList.addListSelectionListener(
+        new ListSelectionListener() {
+          @Override
+          public void valueChanged(ListSelectionEvent evt) {
+            if (evt.getValueIsAdjusting() || isUpdatingMoveList) return;
+
+            setPly(moveList.getSelectedIndex() + 1);
+          }
+        });
+
+    annotationArea.setEditable(false);
+    annotationArea.setLineWrap(true);
+    annotationArea.setWrapStyleWord(true);
+
+    JPanel gamePanel = new JPanel(new BorderLayout(5, 5));
+    gamePanel.add(new JScrollPane(moveList), BorderLayout.CENTER);
+    gamePanel.add(new JScrollPane(annotationArea), BorderLayout.SOUTH);
+
+    firstButton = i18n.createButton("firstButton");
+    previousButton = i18n.createButton("previousButton");
+    nextButton = i18n.createButton("nextButton");
+    lastButton = i18n.createButton("lastButton");
+    ActionListener navigationListener =
+        new ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent evt) {
+            Object source = evt.getSource();
+            if (source == firstButton) setPly(0);
+            else if (source == previousButton) setPly(ply - 1);
+            else if (source == nextButton) setPly(ply + 1);
+            else if (source == lastButton) setPly(moves.size());
+          }
+        };
+    JPanel navigationPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+    JButton[] navigationButtons = {firstButton, previousButton, nextButton, lastButton};
+    for (int i = 0; i < navigationButtons.length; i++) {
+      navigationButtons[i].addActionListener(navigationListener);
+      navigationPanel.add(navigationButtons[i]);
+    }
+
+    JPanel boardPanel = new JPanel(new BorderLayout(5, 5));
+    boardPanel.add(board, BorderLayout.CENTER);
+    boardPanel.add(navigationPanel, BorderLayout.SOUTH);
+
+    JPanel viewerPanel = new JPanel(new BorderLayout(5, 5));
+    viewerPanel.add(boardPanel, BorderLayout.WEST);
+    viewerPanel.add(gamePanel, BorderLayout.CENTER);
+
+    JSplitPane splitPane =
+        new JSplitPane(JSplitPane.VERTICAL_SPLIT, gameTableScrollPane, viewerPanel);
+    splitPane.setResizeWeight(0.4);
+    add(splitPane, BorderLayout.CENTER);
+
+    examineButton = i18n.createButton("examineButton");
+    examineButton.addActionListener(
+        new ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent evt) {
+            close(moves.getMoves(0, ply));
+          }
+        });
+
+    JButton closeButton = i18n.createButton("closeButton");
+    closeButton.addActionListener(new ClosingListener(null));
+
+    JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+    buttonsPanel.add(examineButton);
+    buttonsPanel.add(closeButton);
+    add(buttonsPanel, BorderLayout.SOUTH);
+
+    setDefaultButton(closeButton);
+  }
+
+  /**
+   * Lists only the games of the specified player, or all the games if the specified player is an
+   * empty string.
+   */
+  private void filter(String player) {
+    if (player.length() == 0) listedGames = null;
+    else
+      listedGames =
+          union(pgnFile.findGames("White", player), pgnFile.findGames("Black", player));
+
+    gameTableModel.fireTableDataChanged();
+    updateGameCount();
+  }
+
+  /**
+   * Updates the label displaying the number of listed games.
+   */
+  private void updateGameCount() {
+    gameCountLabel.setText(
+        I18n.get(PgnBrowserPanel.class)
+            .getFormattedString(
+                "gameCountLabel",
+                new Object[] {
+                  new Integer(gameTableModel.getRowCount()), new Integer(pgnFile.getGameCount())
+                }));
+  }
+
+  /**
+   * Reads the game with the specified number and displays it.
+   */
+  private void loadGame(int number) {
+    I18n i18n = I18n.get(PgnBrowserPanel.class);
+    PgnGame pgnGame;
+    try {
+      pgnGame = pgnFile.getGame(number, true, true);
+    } catch (IOException e) {
+      i18n.error("readError", this, new Object[] {new Integer(number + 1), e.getMessage()});
+      setGame(null, null);
+      return;
+    }
+
+    try {
+      setGame(pgnGame, pgnGame.getMoveList());
+    } catch (FormatException e) {
+      setGame(pgnGame, null);
+      annotationArea.setText(
+          i18n.getFormattedString("badGameMessage", new Object[] {e.getMessage()}));
+    }
+  }
+
+  /**
+   * Sets the displayed game and its resolved moves, either or both of which may be
+   * <code>null</code>.
+   */
+  private void setGame(PgnGame game, MoveList moves) {
+    this.game = game;
+    this.moves = moves;
+
+    isUpdatingMoveList = true;
+    moveListModel.clear();
+    if (moves != null) {
+      PositionSnapshot initialPosition = moves.getInitialPosition();
+      for (int i = 0; i < moves.size(); i++)
+        moveListModel.addElement(
+            getMoveNumberPrefix(initialPosition, i, true) + " " + game.getMove(i));
+    }
+    isUpdatingMoveList = false;
+
+    setPly(0);
+  }
+
+  /**
+   * Makes the specified amount of moves of the displayed game on the board.
+   */
+  private void setPly(int ply) {
+    int moveCount = moves == null ? 0 : moves.size();
+    this.ply = ply = Math.max(0, Math.min(ply, moveCount));
+
+    if (moves != null) moves.getPosition(ply, position);
+    else position.init();
+
+    isUpdatingMoveList = true;
+    if (ply == 0) moveList.clearSelection();
+    else {
+      moveList.setSelectedIndex(ply - 1);
+      moveList.ensureIndexIsVisible(ply - 1);
+    }
+    isUpdatingMoveList = false;
+
+    annotationArea.setText(moves == null ? "" : getAnnotation(ply));
+    annotationArea.setCaretPosition(0);
+
+    firstButton.setEnabled(ply > 0);
+    previousButton.setEnabled(ply > 0);
+    nextButton.setEnabled(ply < moveCount);
+    lastButton.setEnabled(ply < moveCount);
+    examineButton.setEnabled(canExamine && (moves != null) && (game.getTag("FEN") == null));
+  }
+
+  /**
+   * Returns the text describing the comment following the specified amount of moves of the main
+   * line, and the variations of the next move.
+   */
+  private String getAnnotation(int ply) {
+    PgnLine mainLine = game.getMainLine();
+    PositionSnapshot initialPosition = moves.getInitialPosition();
+    StringBuffer buf = new StringBuffer();
+
+    String comment = mainLine.getComment(ply);
+    if (comment != null) buf.append(comment);
+
+    if ((ply < mainLine.getMoveCount()) && (mainLine.getVariationCount(ply) != 0)) {
+      if (buf.length() != 0) buf.append("\n\n");
+      buf.append(I18n.get(PgnBrowserPanel.class).getString("variationsLabel"));
+      for (int i = 0; i < mainLine.getVariationCount(ply); i++) {
+        buf.append("\n(");
+        appendLine(buf, mainLine.getVariation(ply, i), initialPosition, ply);
+        buf.append(')');
+      }
+    }
+
+    return buf.toString();
+  }
+
+  /**
+   * Appends the moves, comments and nested variations of the specified line, which starts after
+   * <code>firstPly</code> plies of the game starting at the specified position, to the specified
+   * buffer.
+   */
+  private static void appendLine(
+      StringBuffer buf, PgnLine line, PositionSnapshot initialPosition, int firstPly) {
+    int length = buf.length();
+    for (int i = 0; i <= line.getMoveCount(); i++) {
+      String comment = line.getComment(i);
+      if (comment != null) buf.append(" {").append(comment).append('}');
+      if (i == line.getMoveCount()) break;
+
+      buf.append(' ');
+      String prefix = getMoveNumberPrefix(initialPosition, firstPly + i, i == 0);
+      if (prefix.length() != 0) buf.append(prefix).append(' ');
+      buf.append(line.getMove(i));
+
+      for (int j = 0; j < line.getVariationCount(i); j++) {
+        buf.append(" (");
+        appendLine(buf, line.getVariation(i, j), initialPosition, firstPly + i);
+        buf.append(')');
+      }
+    }
+
+    if ((buf.length() > length) && (buf.charAt(length) == ' ')) buf.deleteCharAt(length);
+  }
+
+  /**
+   * Returns the move number indication ("12." or "12...") of the move made after the specified
+   * amount of plies of the game starting at the specified position. For black's moves, an empty
+   * string is returned unless <code>always</code> is <code>true</code>.
+   */
+  private static String getMoveNumberPrefix(
+      PositionSnapshot initialPosition, int ply, boolean always) {
+    boolean isWhiteFirst = initialPosition.getCurrentPlayer().isWhite();
+    boolean isWhiteMove = (ply % 2 == 0) == isWhiteFirst;
+    int moveNumber = initialPosition.getFullmoveNumber() + (ply + (isWhiteFirst ? 0 : 1)) / 2;
+
+    if (isWhiteMove) return moveNumber + ".";
+    else if (always) return moveNumber + "...";
+    else return "";
+  }
+
+  /**
+   * Returns the union of the specified sorted arrays of game numbers.
+   */
+  private static int[] union(int[] games1, int[] games2) {
+    int[] result = new int[games1.length + games2.length];
+    int i = 0, j = 0, count = 0;
+    while ((i < games1.length) || (j < games2.length)) {
+      int game;
+      if (j == games2.length) game = games1[i++];
+      else if (i == games1.length) game = games2[j++];
+      else if (games1[i] < games2[j]) game = games1[i++];
+      else if (games1[i] > games2[j]) game = games2[j++];
+      else {
+        game = games1[i++];
+        j++;
+      }
+      result[count++] = game;
+    }
+
+    int[] trimmed = new int[count];
+    System.arraycopy(result, 0, trimmed, 0, count);
+    return trimmed;
+  }
+
+  /**
+   * The model of the game list. Values are taken from the index of the PGN file.
+   */
+  private class GameTableModel extends AbstractTableModel {
+
+    /**
+     * Returns the number of the game displayed in the specified row.
+     */
+    public int getGameAt(int row) {
+      return listedGames == null ? row : listedGames[row];
+    }
+
+    /**
+     * Returns the number of listed games.
+     */
+    @Override
+    public int getRowCount() {
+      return listedGames == null ? pgnFile.getGameCount() : listedGames.length;
+    }
+
+    /**
+     * Returns the number of columns - the game number and the displayed tags.
+     */
+    @Override
+    public int getColumnCount() {
+      return COLUMN_TAGS.length + 1;
+    }
+
+    /**
+     * Returns the name of the specified column.
+     */
+    @Override
+    public String getColumnName(int column) {
+      I18n i18n = I18n.get(PgnBrowserPanel.class);
+      if (column == 0) return i18n.getString("numberColumn");
+      else return i18n.getString(COLUMN_TAGS[column - 1] + "Column");
+    }
+
+    /**
+     * Returns the value in the specified cell.
+     */
+    @Override
+    public Object getValueAt(int row, int column) {
+      int game = getGameAt(row);
+      if (column == 0) return new Integer(game + 1);
+      else return pgnFile.getTag(game, COLUMN_TAGS[column - 1]);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.analysis;
+
+import java.io.IOException;
+
+import free.chess.PositionSnapshot;
+import free.chess.WildVariant;
+
+/**
+ * An engine an {@link AnalysisService} analyzes positions with. An engine runs a single search at a
+ * time; {@link #search(PositionSnapshot, int, InfoHandler)} blocks the calling thread until the
+ * search ends, while {@link #stopSearch()} may be called from any thread to end it early. The
+ * progress of a search is reported as UCI <code>info</code> lines, which are parsed by
+ * {@link AnalysisInfo#parse(String, boolean, String)}.
+ */
+public interface AnalysisEngine {
+
+  /**
+   * Receives the <code>info</code> lines the engine reports while searching.
+   */
+  interface InfoHandler {
+
+    /**
+     * Called, in the searching thread, for each <code>info</code> line reported by the engine.
+     */
+    void infoReported(String line);
+  }
+
+  /**
+   * Starts the engine.
+   *
+   * @throws IOException if the engine can't be started.
+   */
+  void start() throws IOException;
+
+  /**
+   * Returns whether the engine is running.
+   */
+  boolean isRunning();
+
+  /**
+   * Returns whether the engine can analyze positions of the specified variant.
+   */
+  boolean supports(WildVariant variant);
+
+  /**
+   * Searches the specified position for the specified amount of milliseconds, or until
+   * {@link #stopSearch()} is invoked, passing the <code>info</code> lines reported by the engine to
+   * the specified handler. Returns the best move found, in UCI notation, or <code>null</code> if
+   * there is none. The position's variant must be one the engine {@link #supports(WildVariant)
+   * supports}.
+   *
+   * @throws IOException if communicating with the engine fails. The engine is stopped in this case.
+   */
+  String search(PositionSnapshot position, int moveTime, InfoHandler handler) throws IOException;
+
+  /**
+   * Asks the engine to end the current search as soon as possible. Does nothing if the engine isn't
+   * searching or running.
+   */
+  void stopSearch();
+
+  /**
+   * Stops the engine.
+   */
+  void quit();
+}
@@ -0,0 +1,175 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.analysis;
+
+import java.util.StringTokenizer;
+
+/**
+ * An immutable piece of analysis of a position, as reported by a UCI engine in an
+ * <code>info</code> line: the search depth, the evaluation and the principal variation.
+ */
+public final class AnalysisInfo {
+
+  /**
+   * The key of the analyzed position.
+   */
+  private final String positionKey;
+
+  /**
+   * Whether white is to move in the analyzed position.
+   */
+  private final boolean isWhiteToMove;
+
+  /**
+   * The search depth.
+   */
+  private final int depth;
+
+  /**
+   * Whether the score is a mate score.
+   */
+  private final boolean isMate;
+
+  /**
+   * The score from the point of view of the player to move - in centipawns, or the number of moves
+   * to mate if <code>isMate</code>.
+   */
+  private final int score;
+
+  /**
+   * The principal variation, in UCI long algebraic notation.
+   */
+  private final String[] pv;
+
+  /**
+   * Creates a new <code>AnalysisInfo</code> with the specified properties.
+   */
+  public AnalysisInfo(
+      String positionKey,
+      boolean isWhiteToMove,
+      int depth,
+      boolean isMate,
+      int score,
+      String[] pv) {
+    if (positionKey == null) throw new IllegalArgumentException("positionKey may not be null");
+    if (pv == null) throw new IllegalArgumentException("pv may not be null");
+
+    this.positionKey = positionKey;
+    this.isWhiteToMove = isWhiteToMove;
+    this.depth = depth;
+    this.isMate = isMate;
+    this.score = score;
+    this.pv = (String[]) pv.clone();
+  }
+
+  /**
+   * Parses the specified UCI <code>info</code> line, reported while analyzing the position with
+   * the specified key. Returns <code>null</code> if the line doesn't carry both a score and a
+   * principal variation (for example, lines reporting only the current move or bound scores).
+   */
+  public static AnalysisInfo parse(String positionKey, boolean isWhiteToMove, String line) {
+    StringTokenizer tokens = new StringTokenizer(line, " ");
+    if (!tokens.hasMoreTokens() || !"info".equals(tokens.nextToken())) return null;
+
+    int depth = 0;
+    boolean isMate = false;
+    boolean hasScore = false;
+    int score = 0;
+    String[] pv = null;
+    try {
+      while (tokens.hasMoreTokens()) {
+        String token = tokens.nextToken();
+        if ("depth".equals(token)) depth = Integer.parseInt(tokens.nextToken());
+        else if ("score".equals(token)) {
+          isMate = "mate".equals(tokens.nextToken());
+          score = Integer.parseInt(tokens.nextToken());
+          hasScore = true;
+        } else if ("lowerbound".equals(token) || "upperbound".equals(token)) return null;
+        else if ("string".equals(token)) return null;
+        else if ("pv".equals(token)) {
+          pv = new String[tokens.countTokens()];
+          for (int i = 0; i < pv.length; i++) pv[i] = tokens.nextToken();
+        }
+      }
+    } catch (RuntimeException e) { // NumberFormatException, NoSuchElementException
+      return null;
+    }
+
+    if (!hasScore || (pv == null) || (pv.length == 0)) return null;
+
+    return new AnalysisInfo(positionKey, isWhiteToMove, depth, isMate, score, pv);
+  }
+
+  /**
+   * Returns the key of the analyzed position.
+   */
+  public String getPositionKey() {
+    return positionKey;
+  }
+
+  /**
+   * Returns the search depth.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns whether the score is a mate score, in which case it's the number of moves to mate.
+   */
+  public boolean isMateScore() {
+    return isMate;
+  }
+
+  /**
+   * Returns the score, from the point of view of the player with the white pieces.
+   */
+  public int getWhiteScore() {
+    return isWhiteToMove ? score : -score;
+  }
+
+  /**
+   * Returns the principal variation, in UCI long algebraic notation ("e2e4", "e7e8q").
+   */
+  public String[] getPrincipalVariation() {
+    return (String[]) pv.clone();
+  }
+
+  /**
+   * Returns the score as it's usually displayed to the user, from white's point of view - pawns
+   * with two decimals, such as "+0.35", or the number of moves to mate, such as "#3" or "-#2".
+   */
+  public String getScoreString() {
+    int whiteScore = getWhiteScore();
+    if (isMate) return (whiteScore < 0 ? "-#" : "#") + Math.abs(whiteScore);
+
+    int abs = Math.abs(whiteScore);
+    int cents = abs % 100;
+    return (whiteScore < 0 ? "-" : "+") + (abs / 100) + (cents < 10 ? ".0" : ".") + cents;
+  }
+
+  /**
+   * Returns a textual representation of this analysis.
+   */
+  @Override
+  public String toString() {
+    StringBuffer buf = new StringBuffer();
+    buf.append("depth ").append(depth).append(' ').append(getScoreString());
+    for (int i = 0; i < pv.length; i++) buf.append(' ').append(pv[i]);
+    return buf.toString();
+  }
+}
@@ -0,0 +1,563 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.analysis;
+
+import java.awt.BorderLayout;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import free.chess.Move;
+import free.chess.Position;
+import free.chess.PositionSnapshot;
+import free.chess.SanNotation;
+import free.chess.book.EcoEntry;
+import free.chess.book.EcoTable;
+import free.chess.book.OpeningBook;
+import free.jin.Game;
+import free.jin.I18n;
+import free.jin.Preferences;
+import free.jin.board.BoardManager;
+import free.jin.board.BoardPanel;
+import free.jin.event.GameAdapter;
+import free.jin.event.GameEndEvent;
+import free.jin.event.GameStartEvent;
+import free.jin.plugin.Plugin;
+import free.jin.plugin.PluginStartException;
+import free.jin.plugin.PluginUIContainer;
+import free.jin.ui.UIProvider;
+
+/**
+ * A plugin which analyzes the positions displayed on the boards with a local engine and shows the
+ * engine's evaluation and principal variation for each board, flagging moves which lose more than
+ * the <code>blunderThreshold</code> preference (in centipawns) as blunders. All boards share a
+ * single engine via an {@link AnalysisService}. A UCI engine is run with the command specified by
+ * the <code>engine.command</code> preference; if it's empty, the built-in engine is used if the
+ * <code>engine.builtin</code> preference is <code>true</code> (it's off by default). The plugin
+ * also shows the opening and the book moves of each board, if an ECO table (the
+ * <code>eco.file</code> preference) and an opening book (the <code>book.file</code> preference)
+ * are configured. Games the user is playing are never analyzed - only observed and examined games
+ * and isolated boards.
+ */
+public class AnalysisPlugin extends Plugin implements AnalysisListener {
+
+  /**
+   * The ID of this plugin.
+   */
+  public static final String PLUGIN_ID = "analysis";
+
+  /**
+   * The maximum amount of plies of the principal variation displayed.
+   */
+  private static final int MAX_DISPLAYED_PLIES = 10;
+
+  /**
+   * The maximum amount of book moves displayed.
+   */
+  private static final int MAX_DISPLAYED_BOOK_MOVES = 5;
+
+  /**
+   * The analysis service, <code>null</code> if no engine is configured.
+   */
+  private AnalysisService analysisService;
+
+  /**
+   * The minimal loss, in centipawns, for which a move is flagged as a blunder.
+   */
+  private int blunderThreshold;
+
+  /**
+   * The opening book, <code>null</code> if none is configured.
+   */
+  private OpeningBook openingBook;
+
+  /**
+   * The ECO table, <code>null</code> if none is configured.
+   */
+  private EcoTable ecoTable;
+
+  /**
+   * Maps games to their <code>BoardAnalysis</code> objects.
+   */
+  private final Hashtable gamesToAnalyses = new Hashtable();
+
+  /**
+   * The list model holding the <code>BoardAnalysis</code> objects, in the order the boards were
+   * opened.
+   */
+  private final DefaultListModel analysesListModel = new DefaultListModel();
+
+  /**
+   * The games whose properties we're listening to, so that we can start or stop analyzing them when
+   * they become, or stop being, games played by the user.
+   */
+  private final Vector listenedGames = new Vector();
+
+  /**
+   * Listens to games starting and ending.
+   */
+  private final GameAdapter gameListener =
+      new GameAdapter() {
+        @Override
+        public void gameStarted(final GameStartEvent evt) {
+          // The board panel may not have been created yet
+          SwingUtilities.invokeLater(
+              new Runnable() {
+                @Override
+                public void run() {
+                  Game game = evt.getGame();
+                  if (listenedGames.contains(game)) return;
+
+                  listenedGames.addElement(game);
+                  game.addPropertyChangeListener(gamePropertiesListener);
+                  if (isAnalysisAllowed(game)) startAnalysis(game);
+                }
+              });
+        }
+
+        @Override
+        public void gameEnded(GameEndEvent evt) {
+          Game game = evt.getGame();
+          if (listenedGames.removeElement(game))
+            game.removePropertyChangeListener(gamePropertiesListener);
+          stopAnalysis(game);
+        }
+      };
+
+  /**
+   * Starts or stops analyzing a game when it stops or starts being a game played by the user.
+   */
+  private final PropertyChangeListener gamePropertiesListener =
+      new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+          String propertyName = evt.getPropertyName();
+          if (!"played".equals(propertyName) && !"gameType".equals(propertyName)) return;
+
+          Game game = (Game) evt.getSource();
+          if (isAnalysisAllowed(game)) startAnalysis(game);
+          else stopAnalysis(game);
+        }
+      };
+
+  /**
+   * Returns the ID of this plugin.
+   */
+  @Override
+  public String getId() {
+    return PLUGIN_ID;
+  }
+
+  /**
+   * Returns the ID of the board plugin, whose boards we analyze.
+   */
+  @Override
+  public String[] getDependencies() {
+    return new String[] {"board"};
+  }
+
+  /**
+   * Starts this plugin.
+   */
+  @Override
+  public void start() throws PluginStartException {
+    Preferences prefs = getPrefs();
+    String[] command = UciEngine.parseCommandLine(prefs.getString("engine.command", ""));
+    AnalysisEngine engine;
+    if (command.length != 0) engine = new UciEngine(command);
+    else if (prefs.getBool("engine.builtin", false))
+      engine =
+          new BuiltinAnalysisEngine(
+              prefs.getInt("engine.threads", 2), prefs.getInt("engine.hashSize", 16));
+    else engine = null;
+
+    blunderThreshold = prefs.getInt("blunderThreshold", 200);
+    if (engine != null)
+      analysisService =
+          new AnalysisService(
+              engine,
+              prefs.getInt("queueSize", 4),
+              prefs.getInt("debounceDelay", 300),
+              prefs.getInt("searchTime", 3000),
+              prefs.getInt("cacheSize", 500));
+
+    openingBook = (OpeningBook) openFile(prefs.getString("book.file", ""), false);
+    ecoTable = (EcoTable) openFile(prefs.getString("eco.file", ""), true);
+
+    createUI();
+
+    getConn().getListenerManager().addGameListener(gameListener);
+  }
+
+  /**
+   * Stops this plugin.
+   */
+  @Override
+  public void stop() {
+    getConn().getListenerManager().removeGameListener(gameListener);
+
+    for (int i = 0; i < listenedGames.size(); i++)
+      ((Game) listenedGames.elementAt(i)).removePropertyChangeListener(gamePropertiesListener);
+    listenedGames.removeAllElements();
+
+    Game[] games = (Game[]) gamesToAnalyses.keySet().toArray(new Game[0]);
+    for (int i = 0; i < games.length; i++) stopAnalysis(games[i]);
+
+    if (analysisService != null) analysisService.shutdown();
+  }
+
+  /**
+   * Memory-maps the opening book or ECO table in the specified file. Returns <code>null</code> if
+   * the filename is empty or the file can't be opened.
+   */
+  private static Object openFile(String filename, boolean isEcoTable) {
+    if (filename.length() == 0) return null;
+
+    try {
+      File file = new File(filename);
+      return isEcoTable ? (Object) new EcoTable(file) : new OpeningBook(file);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether there is anything to show for a board.
+   */
+  private boolean isActive() {
+    return (analysisService != null) || (openingBook != null) || (ecoTable != null);
+  }
+
+  /**
+   * Creates the UI.
+   */
+  protected void createUI() {
+    I18n i18n = getI18n();
+
+    PluginUIContainer uiContainer = createContainer("", UIProvider.HIDEABLE_CONTAINER_MODE);
+    uiContainer.setTitle(i18n.getString("uiContainerTitle"));
+
+    uiContainer.getContentPane().setLayout(new BorderLayout());
+    if (analysisService == null)
+      uiContainer.getContentPane().add(i18n.createLabel("noEngineLabel"), BorderLayout.NORTH);
+    uiContainer.getContentPane().add(new JScrollPane(new JList(analysesListModel)));
+  }
+
+  /**
+   * Returns whether the specified game may be analyzed. A game the user is playing may not be -
+   * showing evaluations, variations or book moves during it would be engine assistance.
+   */
+  private static boolean isAnalysisAllowed(Game game) {
+    return !((game.getGameType() == Game.MY_GAME) && game.isPlayed());
+  }
+
+  /**
+   * Starts analyzing the board displaying the specified game, unless the user is playing it.
+   */
+  private void startAnalysis(Game game) {
+    if (!isActive() || !isAnalysisAllowed(game) || gamesToAnalyses.containsKey(game)) return;
+
+    BoardManager boardManager = (BoardManager) getPlugin("board");
+    BoardPanel boardPanel = (boardManager == null) ? null : boardManager.getBoardPanel(game);
+    if (boardPanel == null) return;
+
+    BoardAnalysis analysis = new BoardAnalysis(game, boardPanel.getBoard().getPosition());
+    gamesToAnalyses.put(game, analysis);
+    analysesListModel.addElement(analysis);
+    analysis.start();
+  }
+
+  /**
+   * Stops analyzing the board displaying the specified game.
+   */
+  private void stopAnalysis(Game game) {
+    BoardAnalysis analysis = (BoardAnalysis) gamesToAnalyses.remove(game);
+    if (analysis == null) return;
+
+    analysis.stop();
+    analysesListModel.removeElement(analysis);
+  }
+
+  /**
+   * <code>AnalysisListener</code> implementation. Displays the analysis if it's still relevant.
+   */
+  @Override
+  public void analysisUpdated(Object owner, AnalysisInfo info) {
+    BoardAnalysis analysis = (BoardAnalysis) owner;
+    if (!info.getPositionKey().equals(analysis.positionKey)) return;
+
+    int index = analysesListModel.indexOf(analysis);
+    if (index == -1) return;
+
+    analysis.setInfo(info);
+    analysesListModel.set(index, analysis);
+  }
+
+  /**
+   * Returns the specified principal variation, made in the specified position, in SAN with move
+   * numbers. At most <code>MAX_DISPLAYED_PLIES</code> plies are returned; the variation also ends
+   * at the first move which can't be parsed.
+   */
+  private static String formatVariation(PositionSnapshot start, String[] pv) {
+    Position pos = start.toPosition();
+    StringBuffer buf = new StringBuffer();
+    try {
+      for (int i = 0; (i < pv.length) && (i < MAX_DISPLAYED_PLIES); i++) {
+        boolean isWhite = pos.getCurrentPlayer().isWhite();
+        if (isWhite) buf.append(pos.getFullmoveNumber()).append(". ");
+        else if (i == 0) buf.append(pos.getFullmoveNumber()).append("... ");
+
+        Move move = UciEngine.parseMove(pos, pv[i]);
+        buf.append(SanNotation.toSAN(pos, move)).append(' ');
+        pos.makeMove(move);
+      }
+    } catch (IllegalArgumentException e) {
+      // Display what we could parse
+    }
+
+    return buf.toString().trim();
+  }
+
+  /**
+   * The analysis of a single board. Requests analysis whenever the position displayed on the board
+   * changes.
+   */
+  private class BoardAnalysis implements ChangeListener {
+
+    /**
+     * The game displayed on the board.
+     */
+    private final Game game;
+
+    /**
+     * The position displayed on the board.
+     */
+    private final Position position;
+
+    /**
+     * The snapshot of the position being analyzed.
+     */
+    private PositionSnapshot snapshot;
+
+    /**
+     * The key of the position being analyzed.
+     */
+    public String positionKey;
+
+    /**
+     * The text displaying the most recent analysis, <code>null</code> if none yet.
+     */
+    private String analysisText = null;
+
+    /**
+     * The most recent analysis of the position being analyzed, <code>null</code> if none yet.
+     */
+    private AnalysisInfo info = null;
+
+    /**
+     * The most recent analysis of the previously analyzed position, <code>null</code> if none.
+     */
+    private AnalysisInfo previousInfo = null;
+
+    /**
+     * The ply of the previously analyzed position.
+     */
+    private int previousPly = -1;
+
+    /**
+     * The text flagging the move which led to the position as a blunder, <code>null</code> if it
+     * isn't one (as far as the analysis tells).
+     */
+    private String blunderText = null;
+
+    /**
+     * The opening of the game, as classified by the ECO table; <code>null</code> if unknown.
+     */
+    private EcoEntry opening = null;
+
+    /**
+     * The text displaying the book moves, <code>null</code> if there are none.
+     */
+    private String bookMovesText = null;
+
+    /**
+     * Creates a new <code>BoardAnalysis</code> for the specified game, displayed in the specified
+     * position.
+     */
+    public BoardAnalysis(Game game, Position position) {
+      this.game = game;
+      this.position = position;
+    }
+
+    /**
+     * Starts analyzing the board.
+     */
+    public void start() {
+      position.addChangeListener(this);
+      requestAnalysis();
+    }
+
+    /**
+     * Stops analyzing the board.
+     */
+    public void stop() {
+      position.removeChangeListener(this);
+      if (analysisService != null) analysisService.cancel(this);
+    }
+
+    /**
+     * Requests analysis of the current position on the board.
+     */
+    private void requestAnalysis() {
+      PositionSnapshot previousSnapshot = snapshot;
+      snapshot = position.snapshot();
+      String key = AnalysisService.getPositionKey(snapshot);
+      if (key.equals(positionKey)) return;
+
+      previousInfo = info;
+      previousPly = (previousSnapshot == null) ? -1 : getPly(previousSnapshot);
+      positionKey = key;
+      info = null;
+      analysisText = null;
+      blunderText = null;
+      updateOpening();
+      if (analysisService != null)
+        analysisService.requestAnalysis(this, snapshot, AnalysisPlugin.this);
+    }
+
+    /**
+     * Updates the opening and book moves for the current position. The opening is kept when the
+     * game leaves the ECO table, so it names the last classified position.
+     */
+    private void updateOpening() {
+      if (ecoTable != null) {
+        EcoEntry entry = ecoTable.lookup(snapshot);
+        if (entry != null) opening = entry;
+      }
+
+      bookMovesText = null;
+      if (openingBook != null) {
+        Move[] moves = openingBook.getMoves(position);
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; (i < moves.length) && (i < MAX_DISPLAYED_BOOK_MOVES); i++)
+          buf.append(SanNotation.toSAN(position, moves[i])).append(' ');
+        if (buf.length() != 0)
+          bookMovesText =
+              getI18n()
+                  .getFormattedString("bookMovesText", new Object[] {buf.toString().trim()});
+      }
+    }
+
+    /**
+     * Returns the number of plies played before the specified position.
+     */
+    private int getPly(PositionSnapshot pos) {
+      return 2 * (pos.getFullmoveNumber() - 1) + (pos.getCurrentPlayer().isWhite() ? 0 : 1);
+    }
+
+    /**
+     * Returns the score of the specified analysis, from white's point of view, with mate scores
+     * mapped to large centipawn values.
+     */
+    private int getComparableScore(AnalysisInfo analysis) {
+      int score = analysis.getWhiteScore();
+      if (!analysis.isMateScore()) return score;
+
+      return (score < 0) ? -100000 - score : 100000 - score;
+    }
+
+    /**
+     * Checks whether the move which led to the position being analyzed is a blunder, by comparing
+     * its analysis to that of the position before the move.
+     */
+    private void updateBlunderText() {
+      blunderText = null;
+      if ((previousInfo == null) || (getPly(snapshot) != previousPly + 1)) return;
+
+      int previousScore = getComparableScore(previousInfo);
+      int score = getComparableScore(info);
+      boolean whiteMoved = !snapshot.getCurrentPlayer().isWhite();
+      int loss = whiteMoved ? previousScore - score : score - previousScore;
+      if (loss >= blunderThreshold)
+        blunderText =
+            getI18n()
+                .getFormattedString(
+                    "blunderText",
+                    new Object[] {previousInfo.getScoreString(), info.getScoreString()});
+    }
+
+    /**
+     * Sets the analysis to display.
+     */
+    public void setInfo(AnalysisInfo info) {
+      this.info = info;
+      updateBlunderText();
+      analysisText =
+          getI18n()
+              .getFormattedString(
+                  "analysisText",
+                  new Object[] {
+                    String.valueOf(info.getDepth()),
+                    info.getScoreString(),
+                    formatVariation(snapshot, info.getPrincipalVariation())
+                  });
+    }
+
+    /**
+     * Called when the position on the board changes.
+     */
+    @Override
+    public void stateChanged(ChangeEvent evt) {
+      requestAnalysis();
+      int index = analysesListModel.indexOf(this);
+      if (index != -1) analysesListModel.set(index, this);
+    }
+
+    /**
+     * Returns the text displayed for this board in the list.
+     */
+    @Override
+    public String toString() {
+      String openingText =
+          (opening == null)
+              ? null
+              : getI18n()
+                  .getFormattedString(
+                      "openingText", new Object[] {opening.getCode(), opening.getName()});
+
+      StringBuffer buf = new StringBuffer();
+      String[] parts = new String[] {blunderText, openingText, bookMovesText, analysisText};
+      for (int i = 0; i < parts.length; i++) {
+        if (parts[i] == null) continue;
+        buf.append(buf.length() == 0 ? ": " : ", ").append(parts[i]);
+      }
+
+      return game.getShortDescription() + buf;
+    }
+  }
+}
@@ -0,0 +1,362 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.analysis;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+import free.chess.PositionSnapshot;
+
+/**
+ * Analyzes positions with a single, shared engine on behalf of any number of owners (such as
+ * boards). Each owner has at most one outstanding request - a new request replaces the owner's
+ * pending one and cancels its running search. Requests are only started after a debounce delay
+ * during which they haven't been replaced, so that quickly stepping through a game doesn't start a
+ * search for every position. Pending requests wait in a bounded queue; when it's full, the oldest
+ * request is dropped. Completed analysis is cached by position key, so returning to an analyzed
+ * position costs nothing. The engine is started lazily, in the service's own thread, and is
+ * restarted with the next request if it dies.
+ */
+public class AnalysisService implements Runnable {
+
+  /**
+   * The engine.
+   */
+  private final AnalysisEngine engine;
+
+  /**
+   * The maximum amount of pending requests.
+   */
+  private final int queueCapacity;
+
+  /**
+   * The delay, in milliseconds, between a request and the start of its search.
+   */
+  private final int debounceDelay;
+
+  /**
+   * The amount of time, in milliseconds, the engine searches each position.
+   */
+  private final int searchTime;
+
+  /**
+   * Maps position keys to the final <code>AnalysisInfo</code> of completed searches, in access
+   * order, so that the least recently used entries are evicted first.
+   */
+  private final Map cache;
+
+  /**
+   * Maps owners to their pending <code>Request</code>s, in the order the requests were made.
+   */
+  private final LinkedHashMap pendingRequests = new LinkedHashMap();
+
+  /**
+   * The request whose search is currently running, <code>null</code> if none.
+   */
+  private Request currentRequest = null;
+
+  /**
+   * The thread running the searches, <code>null</code> until the first request.
+   */
+  private Thread thread = null;
+
+  /**
+   * Whether the service has been shut down.
+   */
+  private boolean isShutDown = false;
+
+  /**
+   * Creates a new <code>AnalysisService</code>.
+   *
+   * @param engine The engine; it's started by the service when first needed.
+   * @param queueCapacity The maximum amount of pending requests.
+   * @param debounceDelay The delay between a request and the start of its search, in milliseconds.
+   * @param searchTime The amount of time to search each position for, in milliseconds.
+   * @param cacheSize The maximum amount of positions whose analysis is cached.
+   */
+  public AnalysisService(
+      AnalysisEngine engine,
+      int queueCapacity,
+      int debounceDelay,
+      int searchTime,
+      final int cacheSize) {
+    if (queueCapacity < 1)
+      throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+    if (debounceDelay < 0)
+      throw new IllegalArgumentException("Debounce delay may not be negative: " + debounceDelay);
+    if (searchTime < 1)
+      throw new IllegalArgumentException("Search time must be positive: " + searchTime);
+
+    this.engine = engine;
+    this.queueCapacity = queueCapacity;
+    this.debounceDelay = debounceDelay;
+    this.searchTime = searchTime;
+    this.cache =
+        new LinkedHashMap(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > cacheSize;
+          }
+        };
+  }
+
+  /**
+   * Returns the key by which analysis of the specified position is cached - its FEN without the
+   * halfmove clock and fullmove number.
+   */
+  public static String getPositionKey(PositionSnapshot position) {
+    String fen = position.getFEN();
+    int index = fen.length();
+    for (int i = 0; i < 2; i++) index = fen.lastIndexOf(' ', index - 1);
+
+    return fen.substring(0, index);
+  }
+
+  /**
+   * Requests analysis of the specified position on behalf of the specified owner, replacing the
+   * owner's previous request. The listener is notified, in the event dispatching thread, of the
+   * analysis as it progresses (or at once, if the position's analysis is cached). Positions of
+   * variants the engine doesn't {@link AnalysisEngine#supports(free.chess.WildVariant) support} are
+   * not analyzed - the previous request is still cancelled, but nothing is delivered. Because
+   * updates for a replaced request may still be in flight, listeners should compare
+   * {@link AnalysisInfo#getPositionKey()} against the key of the position they're interested in.
+   */
+  public synchronized void requestAnalysis(
+      Object owner, PositionSnapshot position, AnalysisListener listener) {
+    if (isShutDown) throw new IllegalStateException("The analysis service has been shut down");
+
+    String key = getPositionKey(position);
+    if ((currentRequest != null) && (currentRequest.owner == owner)) {
+      if (currentRequest.key.equals(key) && (currentRequest.listener == listener)) return;
+      cancelCurrentRequest();
+    }
+    pendingRequests.remove(owner);
+    if (!engine.supports(position.getVariant())) return;
+
+    AnalysisInfo cachedInfo = (AnalysisInfo) cache.get(key);
+    if (cachedInfo != null) {
+      deliver(owner, listener, cachedInfo);
+      return;
+    }
+
+    if (pendingRequests.size() >= queueCapacity) {
+      Iterator requests = pendingRequests.values().iterator();
+      requests.next();
+      requests.remove();
+    }
+
+    long dueTime = System.currentTimeMillis() + debounceDelay;
+    pendingRequests.put(owner, new Request(owner, position, key, listener, dueTime));
+
+    if (thread == null) {
+      thread = new Thread(this, "AnalysisService");
+      thread.setDaemon(true);
+      thread.start();
+    } else notifyAll();
+  }
+
+  /**
+   * Cancels the pending request or the running search of the specified owner, if any.
+   */
+  public synchronized void cancel(Object owner) {
+    pendingRequests.remove(owner);
+    if ((currentRequest != null) && (currentRequest.owner == owner)) cancelCurrentRequest();
+  }
+
+  /**
+   * Cancels all requests and stops the engine. The service may not be used afterwards.
+   */
+  public void shutdown() {
+    synchronized (this) {
+      isShutDown = true;
+      pendingRequests.clear();
+      if (currentRequest != null) cancelCurrentRequest();
+      notifyAll();
+    }
+
+    engine.quit();
+  }
+
+  /**
+   * Marks the current request as cancelled and asks the engine to stop searching.
+   */
+  private void cancelCurrentRequest() {
+    currentRequest.isCancelled = true;
+    engine.stopSearch();
+  }
+
+  /**
+   * Waits until a pending request is due and makes it the current request. Returns
+   * <code>null</code> if the service has been shut down.
+   */
+  private synchronized Request takeRequest() throws InterruptedException {
+    while (!isShutDown) {
+      Request next = null;
+      for (Iterator i = pendingRequests.values().iterator(); i.hasNext(); ) {
+        Request request = (Request) i.next();
+        if ((next == null) || (request.dueTime < next.dueTime)) next = request;
+      }
+
+      if (next == null) wait();
+      else {
+        long delay = next.dueTime - System.currentTimeMillis();
+        if (delay > 0) wait(delay);
+        else {
+          pendingRequests.remove(next.owner);
+
+          // The position may have been analyzed since the request was made
+          AnalysisInfo cachedInfo = (AnalysisInfo) cache.get(next.key);
+          if (cachedInfo != null) deliver(next.owner, next.listener, cachedInfo);
+          else {
+            currentRequest = next;
+            return next;
+          }
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Runs the searches.
+   */
+  @Override
+  public void run() {
+    try {
+      Request request;
+      while ((request = takeRequest()) != null) {
+        try {
+          if (!engine.isRunning()) engine.start();
+
+          // A stop asked for before the search started was lost, so skip cancelled requests
+          boolean isCancelled;
+          synchronized (this) {
+            isCancelled = request.isCancelled;
+          }
+          if (!isCancelled) engine.search(request.position, searchTime, request);
+        } catch (IOException e) {
+          System.err.println("Analysis engine failed:");
+          e.printStackTrace();
+        }
+
+        synchronized (this) {
+          if (!request.isCancelled && (request.lastInfo != null))
+            cache.put(request.key, request.lastInfo);
+          currentRequest = null;
+        }
+      }
+    } catch (InterruptedException e) {
+      // Just exit
+    }
+  }
+
+  /**
+   * Passes the specified analysis to the specified listener in the event dispatching thread.
+   */
+  private static void deliver(
+      final Object owner, final AnalysisListener listener, final AnalysisInfo info) {
+    SwingUtilities.invokeLater(
+        new Runnable() {
+          @Override
+          public void run() {
+            listener.analysisUpdated(owner, info);
+          }
+        });
+  }
+
+  /**
+   * A request to analyze a position.
+   */
+  private static final class Request implements AnalysisEngine.InfoHandler {
+
+    /**
+     * The owner of the request.
+     */
+    public final Object owner;
+
+    /**
+     * The position.
+     */
+    public final PositionSnapshot position;
+
+    /**
+     * The key of the position.
+     */
+    public final String key;
+
+    /**
+     * Whether white is to move in the position.
+     */
+    public final boolean isWhiteToMove;
+
+    /**
+     * The listener to notify.
+     */
+    public final AnalysisListener listener;
+
+    /**
+     * The time, in milliseconds, when the request's search may start.
+     */
+    public final long dueTime;
+
+    /**
+     * Whether the request has been cancelled; no more analysis is delivered once it has.
+     */
+    public volatile boolean isCancelled = false;
+
+    /**
+     * The most recent analysis reported for the position, accessed only by the searching thread.
+     */
+    public AnalysisInfo lastInfo = null;
+
+    /**
+     * Creates a new <code>Request</code>.
+     */
+    public Request(
+        Object owner,
+        PositionSnapshot position,
+        String key,
+        AnalysisListener listener,
+        long dueTime) {
+      this.owner = owner;
+      this.position = position;
+      this.key = key;
+      this.isWhiteToMove = position.getCurrentPlayer().isWhite();
+      this.listener = listener;
+      this.dueTime = dueTime;
+    }
+
+    /**
+     * Parses the info line and passes the analysis it carries to the listener.
+     */
+    @Override
+    public void infoReported(String line) {
+      if (isCancelled) return;
+
+      AnalysisInfo info = AnalysisInfo.parse(key, isWhiteToMove, line);
+      if (info == null) return;
+
+      lastInfo = info;
+      deliver(owner, listener, info);
+    }
+  }
+}
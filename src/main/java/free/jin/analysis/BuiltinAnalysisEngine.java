@@ -0,0 +1,162 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.analysis;
+
+import free.chess.Move;
+import free.chess.Position;
+import free.chess.PositionSnapshot;
+import free.chess.WildVariant;
+import free.chess.search.SearchEngine;
+import free.chess.search.SearchListener;
+import free.chess.search.SearchResult;
+
+/**
+ * An {@link AnalysisEngine} running the built-in {@link SearchEngine} in the calling thread (and
+ * its helper threads), so that analysis is available without an external engine. It supports the
+ * variants the search engine {@link SearchEngine#isSupported(WildVariant) supports}.
+ */
+public class BuiltinAnalysisEngine implements AnalysisEngine {
+
+  /**
+   * The number of threads searching.
+   */
+  private final int threadCount;
+
+  /**
+   * The size of the transposition table, in megabytes.
+   */
+  private final int hashSize;
+
+  /**
+   * The search engine, <code>null</code> when not running.
+   */
+  private SearchEngine searchEngine = null;
+
+  /**
+   * Creates a new <code>BuiltinAnalysisEngine</code> with the specified number of threads and
+   * transposition table size, in megabytes.
+   */
+  public BuiltinAnalysisEngine(int threadCount, int hashSize) {
+    if (threadCount < 1) throw new IllegalArgumentException("Bad thread count: " + threadCount);
+    if (hashSize < 1) throw new IllegalArgumentException("Bad hash size: " + hashSize);
+
+    this.threadCount = threadCount;
+    this.hashSize = hashSize;
+  }
+
+  /**
+   * Creates the search engine, allocating its transposition table.
+   */
+  @Override
+  public synchronized void start() {
+    if (searchEngine != null) throw new IllegalStateException("Engine already started");
+
+    searchEngine = new SearchEngine(threadCount, hashSize);
+  }
+
+  /**
+   * Returns whether the engine has been started.
+   */
+  @Override
+  public synchronized boolean isRunning() {
+    return searchEngine != null;
+  }
+
+  /**
+   * Returns whether the search engine supports the specified variant.
+   */
+  @Override
+  public boolean supports(WildVariant variant) {
+    return SearchEngine.isSupported(variant);
+  }
+
+  /**
+   * Searches the specified position, reporting each completed iteration as an <code>info</code>
+   * line. Returns <code>null</code> right away, reporting nothing, if the position's variant is not
+   * supported.
+   */
+  @Override
+  public String search(PositionSnapshot position, int moveTime, final InfoHandler handler) {
+    SearchEngine engine;
+    synchronized (this) {
+      if (searchEngine == null) throw new IllegalStateException("Engine not started");
+      engine = searchEngine;
+    }
+
+    Position pos = position.toPosition();
+    if (!supports(pos.getVariant())) return null;
+
+    SearchResult result =
+        engine.search(
+            pos,
+            SearchEngine.MAX_DEPTH,
+            moveTime,
+            new SearchListener() {
+              @Override
+              public void iterationCompleted(SearchResult iterationResult) {
+                handler.infoReported(formatInfo(iterationResult));
+              }
+            });
+
+    Move bestMove = result.getBestMove();
+    return (bestMove == null) ? null : UciEngine.formatMove(bestMove);
+  }
+
+  /**
+   * Stops the current search.
+   */
+  @Override
+  public void stopSearch() {
+    SearchEngine engine;
+    synchronized (this) {
+      engine = searchEngine;
+    }
+
+    if (engine != null) engine.stop();
+  }
+
+  /**
+   * Stops the current search and disposes of the search engine.
+   */
+  @Override
+  public void quit() {
+    stopSearch();
+    synchronized (this) {
+      searchEngine = null;
+    }
+  }
+
+  /**
+   * Returns the UCI <code>info</code> line describing the specified search result.
+   */
+  static String formatInfo(SearchResult result) {
+    StringBuffer buf = new StringBuffer("info depth ");
+    buf.append(result.getDepth());
+    if (result.isMateScore()) buf.append(" score mate ").append(result.getMateDistance());
+    else buf.append(" score cp ").append(result.getScore());
+    buf.append(" nodes ").append(result.getNodes());
+    buf.append(" time ").append(result.getTime());
+
+    Move[] pv = result.getPrincipalVariation();
+    if (pv.length != 0) {
+      buf.append(" pv");
+      for (int i = 0; i < pv.length; i++) buf.append(' ').append(UciEngine.formatMove(pv[i]));
+    }
+
+    return buf.toString();
+  }
+}
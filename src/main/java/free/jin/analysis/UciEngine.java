@@ -0,0 +1,277 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Vector;
+
+import free.chess.Chess;
+import free.chess.ChessMove;
+import free.chess.Move;
+import free.chess.Piece;
+import free.chess.Position;
+import free.chess.PositionSnapshot;
+import free.chess.Square;
+import free.chess.WildVariant;
+
+/**
+ * A chess engine speaking the UCI protocol, running in a separate process. An engine runs a single
+ * search at a time; {@link #search(String, int, InfoHandler)} blocks the calling thread until the
+ * search ends, while {@link #stopSearch()} may be called from any thread to end it early.
+ */
+public class UciEngine implements AnalysisEngine {
+
+  /**
+   * The command (program and arguments) which runs the engine.
+   */
+  private final String[] command;
+
+  /**
+   * The engine process, <code>null</code> when not running.
+   */
+  private Process process;
+
+  /**
+   * The reader of the engine's output.
+   */
+  private BufferedReader in;
+
+  /**
+   * The writer of the engine's input.
+   */
+  private Writer out;
+
+  /**
+   * Creates a new <code>UciEngine</code> which will be run with the specified command. The engine
+   * is not started until {@link #start()} is invoked.
+   */
+  public UciEngine(String[] command) {
+    if ((command == null) || (command.length == 0))
+      throw new IllegalArgumentException("No engine command specified");
+
+    this.command = (String[]) command.clone();
+  }
+
+  /**
+   * Starts the engine process and performs the UCI handshake.
+   *
+   * @throws IOException if the engine can't be started or doesn't speak UCI.
+   */
+  @Override
+  public synchronized void start() throws IOException {
+    if (process != null) throw new IllegalStateException("Engine already started");
+
+    ProcessBuilder builder = new ProcessBuilder(command);
+    builder.redirectErrorStream(true);
+    process = builder.start();
+    in = new BufferedReader(new InputStreamReader(process.getInputStream(), "ISO-8859-1"));
+    out = new OutputStreamWriter(process.getOutputStream(), "ISO-8859-1");
+
+    try {
+      send("uci");
+      waitFor("uciok");
+      send("isready");
+      waitFor("readyok");
+    } catch (IOException e) {
+      quit();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns whether the engine process is running.
+   */
+  @Override
+  public synchronized boolean isRunning() {
+    return process != null;
+  }
+
+  /**
+   * Returns whether the specified variant is standard chess, the only variant the engine is
+   * assumed to play - positions are passed to it as plain FEN, without negotiating a variant.
+   */
+  @Override
+  public boolean supports(WildVariant variant) {
+    return variant instanceof Chess;
+  }
+
+  /**
+   * Searches the specified position. The position is passed to the engine as FEN.
+   */
+  @Override
+  public String search(PositionSnapshot position, int moveTime, InfoHandler handler)
+      throws IOException {
+    return search(position.getFEN(), moveTime, handler);
+  }
+
+  /**
+   * Searches the position with the specified FEN for the specified amount of milliseconds, or
+   * until {@link #stopSearch()} is invoked, passing the <code>info</code> lines reported by the
+   * engine to the specified handler. Returns the best move found, in UCI notation, or
+   * <code>null</code> if the engine reports none.
+   *
+   * @throws IOException if communicating with the engine fails. The engine is stopped in this case.
+   */
+  public String search(String fen, int moveTime, InfoHandler handler) throws IOException {
+    BufferedReader reader;
+    synchronized (this) {
+      if (process == null) throw new IllegalStateException("Engine not started");
+
+      reader = in;
+      send("position fen " + fen);
+      send("go movetime " + moveTime);
+    }
+
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("info ")) handler.infoReported(line);
+        else if (line.startsWith("bestmove")) {
+          String[] tokens = line.trim().split(" +");
+          return ((tokens.length < 2) || "(none)".equals(tokens[1])) ? null : tokens[1];
+        }
+      }
+      throw new IOException("Engine terminated");
+    } catch (IOException e) {
+      quit();
+      throw e;
+    }
+  }
+
+  /**
+   * Asks the engine to end the current search as soon as possible. Does nothing if the engine isn't
+   * searching or running.
+   */
+  @Override
+  public synchronized void stopSearch() {
+    if (process == null) return;
+
+    try {
+      send("stop");
+    } catch (IOException e) {
+      // The searching thread will find out
+    }
+  }
+
+  /**
+   * Tells the engine to quit and disposes of the engine process.
+   */
+  @Override
+  public synchronized void quit() {
+    if (process == null) return;
+
+    try {
+      send("quit");
+    } catch (IOException e) {
+      // It's going away anyway
+    }
+    process.destroy();
+    process = null;
+    in = null;
+    out = null;
+  }
+
+  /**
+   * Sends the specified command to the engine.
+   */
+  private void send(String engineCommand) throws IOException {
+    out.write(engineCommand);
+    out.write('\n');
+    out.flush();
+  }
+
+  /**
+   * Reads the engine's output until a line equal to the specified one.
+   */
+  private void waitFor(String expectedLine) throws IOException {
+    String line;
+    while ((line = in.readLine()) != null) if (line.trim().equals(expectedLine)) return;
+
+    throw new IOException("Engine terminated while waiting for " + expectedLine);
+  }
+
+  /**
+   * Returns the UCI (long algebraic) representation of the specified move, such as "e2e4" or
+   * "e7e8q". Castling is represented by the king's move.
+   */
+  public static String formatMove(Move move) {
+    String result = move.getStartingSquare().toString() + move.getEndingSquare().toString();
+    if ((move instanceof ChessMove) && ((ChessMove) move).isPromotion())
+      result += ((ChessMove) move).getPromotionTarget().toShortString().toLowerCase();
+
+    return result;
+  }
+
+  /**
+   * Parses the specified move in UCI notation, made in the specified position.
+   *
+   * @throws IllegalArgumentException if the move string is malformed or the move is illegal in the
+   * position's variant.
+   */
+  public static Move parseMove(Position pos, String move) {
+    if ((move.length() < 4) || (move.length() > 5))
+      throw new IllegalArgumentException("Bad UCI move: " + move);
+
+    Square startSquare = Square.parseSquare(move.substring(0, 2));
+    Square endSquare = Square.parseSquare(move.substring(2, 4));
+    if (pos.getPieceAt(startSquare) == null)
+      throw new IllegalArgumentException("No piece to move: " + move);
+
+    WildVariant variant = pos.getVariant();
+    Piece promotionTarget = null;
+    if (move.length() == 5) {
+      String target = move.substring(4);
+      promotionTarget =
+          variant.parsePiece(
+              pos.getCurrentPlayer().isWhite() ? target.toUpperCase() : target.toLowerCase());
+    }
+
+    return variant.createMove(pos, startSquare, endSquare, promotionTarget, null);
+  }
+
+  /**
+   * Splits the specified command line into the program and its arguments, separated by whitespace.
+   * Arguments containing whitespace may be quoted with double quotes.
+   */
+  public static String[] parseCommandLine(String commandLine) {
+    Vector args = new Vector();
+    StringBuffer arg = null;
+    boolean inQuotes = false;
+    for (int i = 0; i < commandLine.length(); i++) {
+      char c = commandLine.charAt(i);
+      if (c == '"') {
+        inQuotes = !inQuotes;
+        if (arg == null) arg = new StringBuffer();
+      } else if (Character.isWhitespace(c) && !inQuotes) {
+        if (arg != null) args.addElement(arg.toString());
+        arg = null;
+      } else {
+        if (arg == null) arg = new StringBuffer();
+        arg.append(c);
+      }
+    }
+    if (arg != null) args.addElement(arg.toString());
+
+    String[] result = new String[args.size()];
+    args.copyInto(result);
+    return result;
+  }
+}
@@ -915,7 +915,7 @@ public class BoardManager extends Plugin
    */
   protected void initBoardPanel(Game game, BoardPanel boardPanel) {
     boardPanel.addUserMoveListener(this);
-    getConn().getListenerManager().addGameListener(boardPanel);
+    getConn().getListenerManager().addGameListener(game, boardPanel);
     gamesToBoardPanels.put(game, boardPanel);
 
     PluginUIContainer boardContainer = createBoardContainer();
@@ -1021,7 +1021,7 @@ public class BoardManager extends Plugin
   protected void gameEndCleanup(Game game) {
     BoardPanel boardPanel = (BoardPanel) gamesToBoardPanels.remove(game);
     if (boardPanel != null) {
-      getConn().getListenerManager().removeGameListener(boardPanel);
+      getConn().getListenerManager().removeGameListener(game, boardPanel);
       boardPanel.removeUserMoveListener(this);
       boardPanel.setInactive();
 
@@ -35,7 +35,6 @@ import java.awt.event.MouseMotionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.net.URL;
-import java.util.Vector;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
@@ -65,6 +64,7 @@ import free.chess.JChessClock;
 import free.chess.Move;
 import free.chess.Player;
 import free.chess.Position;
+import free.chess.PositionHistory;
 import free.chess.WildVariant;
 import free.chess.event.MoveEvent;
 import free.chess.event.MoveListener;
@@ -137,17 +137,18 @@ public class BoardPanel extends FixedJPanel
    */
   private int moveSendingMode;
 
-  /**
-   * The list of made moves.
-   */
-  protected final Vector madeMoves = new Vector();
-
   /**
    * The actual position in the game, this may differ than the one on the board because the one on
    * the board may include moves not yet inspected by the server.
    */
   protected final Position realPosition;
 
+  /**
+   * The history of positions in the game, indexed so that jumping to any position in the move list
+   * doesn't require replaying the game from the initial position.
+   */
+  protected final PositionHistory positionHistory;
+
   /**
    * The number of the move after which the position displayed on the board occurs.
    */
@@ -283,6 +284,7 @@ public class BoardPanel extends FixedJPanel
     this.game = game;
     this.boardManager = boardManager;
     this.realPosition = game.getInitialPosition();
+    this.positionHistory = new PositionHistory(realPosition);
 
     boardManager.addPropertyChangeListener(this);
     game.addPropertyChangeListener(this);
@@ -548,8 +550,14 @@ public class BoardPanel extends FixedJPanel
             else if (queuedMove != null) {
               setQueuedMove(null);
               isBoardPositionUpdating = true;
-              board.getPosition().copyFrom(realPosition);
-              if (isMoveEnRoute()) board.getPosition().makeMove(moveEnRoute);
+              Position boardPosition = board.getPosition();
+              boardPosition.beginBatch();
+              try {
+                boardPosition.copyFrom(realPosition);
+                if (isMoveEnRoute()) boardPosition.makeMove(moveEnRoute);
+              } finally {
+                boardPosition.endBatch();
+              }
               isBoardPositionUpdating = false;
             } else fullscreenPanel.getFullscreenModeModel().setOff();
           }
@@ -841,24 +849,23 @@ public class BoardPanel extends FixedJPanel
       model.setNumRows(++rowCount);
       model.setValueAt((rowCount + movesSinceStart) + ".", rowCount - 1, 0);
     }
-    if (move.getPlayer().isWhite()) model.setValueAt(move, rowCount - 1, 1);
+    if (move.getPlayer().isWhite()) model.setValueAt(move.toString(), rowCount - 1, 1);
     else {
-      model.setValueAt(move, rowCount - 1, 2);
+      model.setValueAt(move.toString(), rowCount - 1, 2);
     }
 
     if (displayedMoveNumber == 0) {
       moveListTable.clearSelection();
-      positionScrollBar.setValues(0, 1, 0, madeMoves.size() + 1);
+      positionScrollBar.setValues(0, 1, 0, positionHistory.getMoveCount() + 1);
     } else {
-      boolean isFirstMoveBlack = ((Move) madeMoves.elementAt(0)).getPlayer().isBlack();
-      int visualMoveNumber = isFirstMoveBlack ? displayedMoveNumber + 1 : displayedMoveNumber;
+      int visualMoveNumber = isFirstMoveBlack() ? displayedMoveNumber + 1 : displayedMoveNumber;
       int row = (visualMoveNumber - 1) / 2;
       int column = 2 - (visualMoveNumber % 2);
 
       isPositionScrollBarUpdating = true;
       isMoveListTableSelectionUpdating = true;
       setMoveListTableSelection(row, column);
-      positionScrollBar.setValues(displayedMoveNumber, 1, 0, madeMoves.size() + 1);
+      positionScrollBar.setValues(displayedMoveNumber, 1, 0, positionHistory.getMoveCount() + 1);
       isMoveListTableSelectionUpdating = false;
       isPositionScrollBarUpdating = false;
     }
@@ -872,18 +879,17 @@ public class BoardPanel extends FixedJPanel
   protected void updateMoveListTable() {
     DefaultTableModel model = (DefaultTableModel) moveListTableModel;
     int movesSinceStart = game.getPliesSinceStart() / 2;
-    int moveCount = madeMoves.size();
-    boolean isFirstMoveBlack =
-        (moveCount > 0) && ((Move) madeMoves.elementAt(0)).getPlayer().isBlack();
+    int moveCount = positionHistory.getMoveCount();
+    boolean isFirstMoveBlack = (moveCount > 0) && isFirstMoveBlack();
     int numRows = isFirstMoveBlack ? 1 + moveCount / 2 : (moveCount + 1) / 2;
     model.setNumRows(numRows);
     for (int i = 0; i < numRows; i++) model.setValueAt((i + 1 + movesSinceStart) + ".", i, 0);
 
     int row = 0;
     int column = isFirstMoveBlack ? 2 : 1;
+    Move[] moves = positionHistory.getMoves(0, moveCount);
     for (int i = 0; i < moveCount; i++) {
-      Object move = madeMoves.elementAt(i);
-      model.setValueAt(move, row, column);
+      model.setValueAt(moves[i].toString(), row, column);
       column++;
       if (column == 3) {
         row++;
@@ -896,7 +902,7 @@ public class BoardPanel extends FixedJPanel
 
     if (displayedMoveNumber == 0) {
       moveListTable.clearSelection();
-      positionScrollBar.setValues(0, 1, 0, madeMoves.size() + 1);
+      positionScrollBar.setValues(0, 1, 0, positionHistory.getMoveCount() + 1);
     } else {
       int visualMoveNumber = isFirstMoveBlack ? displayedMoveNumber + 1 : displayedMoveNumber;
       row = (visualMoveNumber - 1) / 2;
@@ -905,7 +911,7 @@ public class BoardPanel extends FixedJPanel
       isPositionScrollBarUpdating = true;
       isMoveListTableSelectionUpdating = true;
       setMoveListTableSelection(row, column);
-      positionScrollBar.setValues(displayedMoveNumber, 1, 0, madeMoves.size() + 1);
+      positionScrollBar.setValues(displayedMoveNumber, 1, 0, positionHistory.getMoveCount() + 1);
       isMoveListTableSelectionUpdating = false;
       isPositionScrollBarUpdating = false;
     }
@@ -913,6 +919,13 @@ public class BoardPanel extends FixedJPanel
     SwingUtilities.invokeLater(new MoveListScrollBarUpdater());
   }
 
+  /**
+   * Returns whether the first move in the game is (or will be) made by black.
+   */
+  private boolean isFirstMoveBlack() {
+    return positionHistory.getInitialPosition().getCurrentPlayer().isBlack();
+  }
+
   /**
    * Sets the specified cell to be the selected cell in the move list table.
    */
@@ -934,19 +947,18 @@ public class BoardPanel extends FixedJPanel
   }
 
   /**
-   * Updates the move highlighting on the board. The boolean argument specifies whether the last
-   * made move (on the board, not the real position) is a move made by the user and should therefore
-   * be ignored if isHighlightingOwnMoves() returns false. Note that the callers don't really
-   * determine whether the last move is the user's - they only pass true when it's a move that has
-   * just been made by the user.
+   * Updates the move highlighting on the board. The move argument is the move that led to the
+   * displayed position (<code>null</code> if there is none), which the callers already have at
+   * hand, so that the move history needn't be replayed to find it. The boolean argument specifies
+   * whether that move is a move made by the user and should therefore be ignored if
+   * isHighlightingOwnMoves() returns false. Note that the callers don't really determine whether
+   * the last move is the user's - they only pass true when it's a move that has just been made by
+   * the user.
    */
-  private void updateMoveHighlighting(boolean isOwnMove) {
+  private void updateMoveHighlighting(Move move, boolean isOwnMove) {
     if ((displayedMoveNumber == 0) || (isOwnMove && !highlightOwnMoves))
       board.setHighlightedMove(null);
-    else {
-      Move move = (Move) madeMoves.elementAt(displayedMoveNumber - 1);
-      board.setHighlightedMove(move);
-    }
+    else board.setHighlightedMove(move);
   }
 
   /**
@@ -1417,19 +1429,20 @@ public class BoardPanel extends FixedJPanel
     queuedMove = move;
     if (queuedMove != null) board.setShaded(queuedMove.getEndingSquare(), true);
 
-    board.setEditable((queuedMove == null) && (displayedMoveNumber == madeMoves.size()));
+    board.setEditable(
+        (queuedMove == null) && (displayedMoveNumber == positionHistory.getMoveCount()));
   }
 
   /**
    * Sets the currently displayed move to the specified move.
    */
   private void setDisplayedMove(int moveNum) {
-    if ((moveNum < 0) || (moveNum > madeMoves.size()))
+    if ((moveNum < 0) || (moveNum > positionHistory.getMoveCount()))
       throw new IllegalArgumentException("displayed move number out of range");
 
     displayedMoveNumber = moveNum;
 
-    if (displayedMoveNumber != madeMoves.size()) board.setEditable(false);
+    if (displayedMoveNumber != positionHistory.getMoveCount()) board.setEditable(false);
     else if (moveSendingMode == BoardManager.PREMOVE_MOVE_SENDING_MODE)
       board.setEditable(queuedMove == null);
     else if (moveSendingMode == BoardManager.LEGAL_CHESS_MOVE_SENDING_MODE)
@@ -1466,9 +1479,9 @@ public class BoardPanel extends FixedJPanel
 
     // The user is looking at a position other than the last one, so we don't
     // want to update the board when a new move arrives.
-    if (displayedMoveNumber != madeMoves.size()) shouldUpdateBoard = false;
+    if (displayedMoveNumber != positionHistory.getMoveCount()) shouldUpdateBoard = false;
 
-    madeMoves.addElement(move);
+    positionHistory.addMove(move);
     realPosition.makeMove(move);
 
     // This is not the server echoeing a move made on the board
@@ -1501,8 +1514,8 @@ public class BoardPanel extends FixedJPanel
     }
 
     if (shouldUpdateBoard) {
-      setDisplayedMove(madeMoves.size());
-      updateMoveHighlighting(isMoveEnRoute());
+      setDisplayedMove(positionHistory.getMoveCount());
+      updateMoveHighlighting(move, isMoveEnRoute());
     }
 
     // queuedMove.getPlayer() == realPosition.getCurrentPlayer() makes sure
@@ -1574,8 +1587,8 @@ public class BoardPanel extends FixedJPanel
   public void positionChanged(PositionChangedEvent evt) {
     if (evt.getGame() != game) return;
 
-    madeMoves.removeAllElements();
-    realPosition.copyFrom(evt.getPosition());
+    positionHistory.reset(evt.getPositionSnapshot());
+    realPosition.copyFrom(evt.getPositionSnapshot());
 
     isBoardPositionUpdating = true;
     board.getPosition().copyFrom(realPosition);
@@ -1583,7 +1596,7 @@ public class BoardPanel extends FixedJPanel
 
     setDisplayedMove(0);
 
-    updateMoveHighlighting(false);
+    updateMoveHighlighting(null, false);
 
     moveEnRoute = null; // We shouldn't keep state between
     setQueuedMove(null); // such drastic position changes
@@ -1604,23 +1617,20 @@ public class BoardPanel extends FixedJPanel
     if (evt.getGame() != game) return;
 
     int takebackCount = evt.getTakebackCount();
-    int numMadeMoves = madeMoves.size() - takebackCount;
-    for (int i = madeMoves.size() - 1; i >= numMadeMoves; i--) madeMoves.removeElementAt(i);
-
-    realPosition.copyFrom(game.getInitialPosition());
-    for (int i = 0; i < numMadeMoves; i++) realPosition.makeMove((Move) madeMoves.elementAt(i));
+    positionHistory.removeLastMoves(takebackCount);
+    realPosition.copyFrom(positionHistory.getLastPosition());
 
     moveEnRoute = null;
     setQueuedMove(null);
 
     // Try not to change the board if possible. If, however we were displaying the position
     // after a move that was taken back, we have to update the board.
-    if (displayedMoveNumber >= madeMoves.size()) {
+    if (displayedMoveNumber >= positionHistory.getMoveCount()) {
       isBoardPositionUpdating = true;
       board.getPosition().copyFrom(realPosition);
       isBoardPositionUpdating = false;
-      setDisplayedMove(madeMoves.size());
-      updateMoveHighlighting(false);
+      setDisplayedMove(positionHistory.getMoveCount());
+      updateMoveHighlighting(positionHistory.getLastMove(), false);
     }
 
     updateClockActiveness();
@@ -1652,7 +1662,7 @@ public class BoardPanel extends FixedJPanel
     playersClock.setRunning(true);
 
     updateClockActiveness();
-    setDisplayedMove(madeMoves.size());
+    setDisplayedMove(positionHistory.getMoveCount());
     updateMoveListTable();
   }
 
@@ -1782,26 +1792,21 @@ public class BoardPanel extends FixedJPanel
     isMoveListTableSelectionUpdating = true;
 
     try {
-      boolean isFirstMoveBlack = ((Move) madeMoves.elementAt(0)).getPlayer().isBlack();
-
       int moveNum = column + row * 2;
-      if (isFirstMoveBlack && (moveNum > 0)) moveNum--;
+      if (isFirstMoveBlack() && (moveNum > 0)) moveNum--;
 
-      if (moveNum == madeMoves.size() + 1) // The user pressed the last empty cell
+      if (moveNum == positionHistory.getMoveCount() + 1) // The user pressed the last empty cell
       moveNum--;
 
-      if (moveNum > madeMoves.size()) // Shouldn't happen
+      if (moveNum > positionHistory.getMoveCount()) // Shouldn't happen
       throw new IllegalStateException();
 
-      Position pos = game.getInitialPosition();
-      for (int i = 0; i < moveNum; i++) {
-        Move move = (Move) madeMoves.elementAt(i);
-        pos.makeMove(move);
-      }
+      Position pos = new Position(game.getVariant());
+      Move move = positionHistory.getPositionAndMove(moveNum, pos);
 
       board.clearShaded();
 
-      if ((moveNum == madeMoves.size()) && (queuedMove != null)) {
+      if ((moveNum == positionHistory.getMoveCount()) && (queuedMove != null)) {
         pos.makeMove(queuedMove);
         board.setShaded(queuedMove.getEndingSquare(), true);
       }
@@ -1812,11 +1817,11 @@ public class BoardPanel extends FixedJPanel
       setDisplayedMove(moveNum);
 
       if (!isPositionScrollBarUpdating)
-        positionScrollBar.setValues(displayedMoveNumber, 1, 0, madeMoves.size() + 1);
+        positionScrollBar.setValues(displayedMoveNumber, 1, 0, positionHistory.getMoveCount() + 1);
 
-      board.setEditable(displayedMoveNumber == madeMoves.size());
+      board.setEditable(displayedMoveNumber == positionHistory.getMoveCount());
 
-      updateMoveHighlighting(false);
+      updateMoveHighlighting(move, false);
 
       SwingUtilities.invokeLater(new MoveListScrollBarUpdater());
     } finally {
@@ -1836,11 +1841,10 @@ public class BoardPanel extends FixedJPanel
 
       isPositionScrollBarUpdating = true;
 
-      if (madeMoves.size() > 0) {
+      if (positionHistory.getMoveCount() > 0) {
         int moveNum = positionScrollBar.getValue();
 
-        boolean isFirstMoveBlack = ((Move) madeMoves.elementAt(0)).getPlayer().isBlack();
-        int visualMoveNumber = isFirstMoveBlack ? moveNum + 1 : moveNum;
+        int visualMoveNumber = isFirstMoveBlack() ? moveNum + 1 : moveNum;
         int row = (visualMoveNumber - 1) / 2;
         int column = (visualMoveNumber == 0) ? 0 : 2 - (visualMoveNumber % 2);
 
@@ -1880,7 +1884,7 @@ public class BoardPanel extends FixedJPanel
       else if ("moveSendingMode".equals(propertyName)) {
         moveSendingMode = boardManager.getMoveSendingMode();
 
-        if (displayedMoveNumber == madeMoves.size()) {
+        if (displayedMoveNumber == positionHistory.getMoveCount()) {
           if ((moveSendingMode == BoardManager.PREMOVE_MOVE_SENDING_MODE)
               || (moveSendingMode == BoardManager.PREDRAG_MOVE_SENDING_MODE))
             board.setEditable(true);
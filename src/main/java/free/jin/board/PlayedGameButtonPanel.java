@@ -240,7 +240,7 @@ public class PlayedGameButtonPanel extends FixedJPanel implements ActionListener
           if (takeback1Button != null) takeback1Button.setEnabled(false);
           if (takebackNButton != null) takebackNButton.setEnabled(false);
 
-          plugin.getConn().getListenerManager().removeGameListener(this);
+          plugin.getConn().getListenerManager().removeGameListener(game, this);
 
           super.gameEnded(evt);
         }
@@ -275,7 +275,7 @@ public class PlayedGameButtonPanel extends FixedJPanel implements ActionListener
     setTakeback1State(OFFER_STATE);
     setTakebackNState(OFFER_STATE, 2);
 
-    plugin.getConn().getListenerManager().addGameListener(gameListener);
+    plugin.getConn().getListenerManager().addGameListener(game, gameListener);
   }
 
   /**
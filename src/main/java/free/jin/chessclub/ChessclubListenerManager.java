@@ -17,6 +17,7 @@
 package free.jin.chessclub;
 
 import free.chessclub.level2.Datagram;
+import free.jin.Game;
 import free.jin.chessclub.event.ArrowEvent;
 import free.jin.chessclub.event.ChessEventEvent;
 import free.jin.chessclub.event.ChessEventListener;
@@ -30,6 +31,7 @@ import free.jin.event.GameListListener;
 import free.jin.event.GameListener;
 import free.jin.event.MatchOfferListener;
 import free.jin.event.SeekListener;
+import free.util.CopyOnWriteListenerList;
 
 /**
  * A chessclub.com specific extension of <code>BasicListenerManager</code>. Used by
@@ -42,6 +44,12 @@ public class ChessclubListenerManager extends BasicListenerManager {
    */
   private final JinChessclubConnection source;
 
+  /**
+   * The <code>ChessEventListener</code>s.
+   */
+  private final CopyOnWriteListenerList chessEventListeners =
+      new CopyOnWriteListenerList(ChessEventListener.class);
+
   /**
    * Creates a new <code>ChessclubListenerManager</code> with the specified source
    * <code>JinChessclubConnection</code>.
@@ -60,7 +68,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void addChatListener(ChatListener listener) {
     super.addChatListener(listener);
 
-    if (listenerList.getListenerCount(ChatListener.class) == 1) {
+    if (getChatListenerCount() == 1) {
       source.addDatagramListener(source, Datagram.DG_PERSONAL_TELL);
       source.addDatagramListener(source, Datagram.DG_PERSONAL_QTELL);
       source.addDatagramListener(source, Datagram.DG_SHOUT);
@@ -78,7 +86,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void removeChatListener(ChatListener listener) {
     super.removeChatListener(listener);
 
-    if (listenerList.getListenerCount(ChatListener.class) == 0) {
+    if (getChatListenerCount() == 0) {
       source.removeDatagramListener(source, Datagram.DG_PERSONAL_TELL);
       source.removeDatagramListener(source, Datagram.DG_PERSONAL_QTELL);
       source.removeDatagramListener(source, Datagram.DG_SHOUT);
@@ -98,35 +106,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void addGameListener(GameListener listener) {
     super.addGameListener(listener);
 
-    if (listenerList.getListenerCount(GameListener.class) == 1) {
-      source.addDatagramListener(source, Datagram.DG_MY_GAME_STARTED);
-      source.addDatagramListener(source, Datagram.DG_STARTED_OBSERVING);
-      source.addDatagramListener(source, Datagram.DG_ISOLATED_BOARD);
-      source.addDatagramListener(source, Datagram.DG_MY_GAME_CHANGE);
-      source.addDatagramListener(source, Datagram.DG_MY_GAME_RESULT);
-      source.addDatagramListener(source, Datagram.DG_POSITION_BEGIN);
-      source.addDatagramListener(source, Datagram.DG_MY_RELATION_TO_GAME);
-      source.addDatagramListener(source, Datagram.DG_SEND_MOVES);
-      source.addDatagramListener(source, Datagram.DG_MOVE_SMITH);
-      source.addDatagramListener(source, Datagram.DG_MOVE_ALGEBRAIC);
-      source.addDatagramListener(source, Datagram.DG_IS_VARIATION);
-      source.addDatagramListener(source, Datagram.DG_BACKWARD);
-      source.addDatagramListener(source, Datagram.DG_TAKEBACK);
-      source.addDatagramListener(source, Datagram.DG_ILLEGAL_MOVE);
-      source.addDatagramListener(source, Datagram.DG_MSEC);
-      source.addDatagramListener(source, Datagram.DG_OFFERS_IN_MY_GAME);
-      source.addDatagramListener(source, Datagram.DG_MORETIME);
-      source.addDatagramListener(source, Datagram.DG_FLIP);
-      source.addDatagramListener(source, Datagram.DG_KNOWS_FISCHER_RANDOM);
-      source.addDatagramListener(source, Datagram.DG_ARROW);
-      source.addDatagramListener(source, Datagram.DG_UNARROW);
-      source.addDatagramListener(source, Datagram.DG_CIRCLE);
-      source.addDatagramListener(source, Datagram.DG_UNCIRCLE);
-      // Do not add listeners after this one - it marks the end of the
-      // datagram changes (see JinChessclubConnection.gameDatagramsStateChanged).
-
-      source.setStyle(13);
-    }
+    if (getGameListenerCount() == 1) addGameDatagramListeners();
   }
 
   /**
@@ -139,72 +119,139 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void removeGameListener(GameListener listener) {
     super.removeGameListener(listener);
 
-    if (listenerList.getListenerCount(GameListener.class) == 0) {
-      source.removeDatagramListener(source, Datagram.DG_MY_GAME_STARTED);
-      source.removeDatagramListener(source, Datagram.DG_STARTED_OBSERVING);
-      source.removeDatagramListener(source, Datagram.DG_ISOLATED_BOARD);
-      source.removeDatagramListener(source, Datagram.DG_MY_GAME_CHANGE);
-      source.removeDatagramListener(source, Datagram.DG_MY_GAME_RESULT);
-      source.removeDatagramListener(source, Datagram.DG_POSITION_BEGIN);
-      source.removeDatagramListener(source, Datagram.DG_MY_RELATION_TO_GAME);
-      source.removeDatagramListener(source, Datagram.DG_SEND_MOVES);
-      source.removeDatagramListener(source, Datagram.DG_MOVE_SMITH);
-      source.removeDatagramListener(source, Datagram.DG_MOVE_ALGEBRAIC);
-      source.removeDatagramListener(source, Datagram.DG_IS_VARIATION);
-      source.removeDatagramListener(source, Datagram.DG_BACKWARD);
-      source.removeDatagramListener(source, Datagram.DG_TAKEBACK);
-      source.removeDatagramListener(source, Datagram.DG_ILLEGAL_MOVE);
-      source.removeDatagramListener(source, Datagram.DG_MSEC);
-      source.removeDatagramListener(source, Datagram.DG_OFFERS_IN_MY_GAME);
-      source.removeDatagramListener(source, Datagram.DG_MORETIME);
-      source.removeDatagramListener(source, Datagram.DG_FLIP);
-      source.removeDatagramListener(source, Datagram.DG_KNOWS_FISCHER_RANDOM);
-      source.removeDatagramListener(source, Datagram.DG_ARROW);
-      source.removeDatagramListener(source, Datagram.DG_UNARROW);
-      source.removeDatagramListener(source, Datagram.DG_CIRCLE);
-      source.removeDatagramListener(source, Datagram.DG_UNCIRCLE);
-      // Do not remove listeners after this one - it marks the end of the
-      // datagram changes (see JinChessclubConnection.gameDatagramsStateChanged).
+    if (getGameListenerCount() == 0) removeGameDatagramListeners();
+  }
 
-      source.setStyle(1);
-    }
+  /**
+   * Adds the specified <code>GameListener</code> to the list of listeners receiving notifications
+   * of <code>GameEvent</code>s concerning the specified game. <code>ChessclubGameListener</code>s
+   * are handled just like in {@link #addGameListener(GameListener)}.
+   */
+  @Override
+  public void addGameListener(Game game, GameListener listener) {
+    super.addGameListener(game, listener);
+
+    if (getGameListenerCount() == 1) addGameDatagramListeners();
   }
 
   /**
-   * Overrides <code>BasicJinListenerManager.fireGameEvent</code> to handling firing of
-   * chessclub.com specific events.
+   * Removes the specified <code>GameListener</code> from the list of listeners receiving
+   * notifications of <code>GameEvent</code>s concerning the specified game.
+   */
+  @Override
+  public void removeGameListener(Game game, GameListener listener) {
+    super.removeGameListener(game, listener);
+
+    if (getGameListenerCount() == 0) removeGameDatagramListeners();
+  }
+
+  /**
+   * Registers for the datagrams needed to fire <code>GameEvent</code>s. Invoked when the first
+   * <code>GameListener</code> is added.
+   */
+  private void addGameDatagramListeners() {
+    source.addDatagramListener(source, Datagram.DG_MY_GAME_STARTED);
+    source.addDatagramListener(source, Datagram.DG_STARTED_OBSERVING);
+    source.addDatagramListener(source, Datagram.DG_ISOLATED_BOARD);
+    source.addDatagramListener(source, Datagram.DG_MY_GAME_CHANGE);
+    source.addDatagramListener(source, Datagram.DG_MY_GAME_RESULT);
+    source.addDatagramListener(source, Datagram.DG_POSITION_BEGIN);
+    source.addDatagramListener(source, Datagram.DG_MY_RELATION_TO_GAME);
+    source.addDatagramListener(source, Datagram.DG_SEND_MOVES);
+    source.addDatagramListener(source, Datagram.DG_MOVE_SMITH);
+    source.addDatagramListener(source, Datagram.DG_MOVE_ALGEBRAIC);
+    source.addDatagramListener(source, Datagram.DG_IS_VARIATION);
+    source.addDatagramListener(source, Datagram.DG_BACKWARD);
+    source.addDatagramListener(source, Datagram.DG_TAKEBACK);
+    source.addDatagramListener(source, Datagram.DG_ILLEGAL_MOVE);
+    source.addDatagramListener(source, Datagram.DG_MSEC);
+    source.addDatagramListener(source, Datagram.DG_OFFERS_IN_MY_GAME);
+    source.addDatagramListener(source, Datagram.DG_MORETIME);
+    source.addDatagramListener(source, Datagram.DG_FLIP);
+    source.addDatagramListener(source, Datagram.DG_KNOWS_FISCHER_RANDOM);
+    source.addDatagramListener(source, Datagram.DG_ARROW);
+    source.addDatagramListener(source, Datagram.DG_UNARROW);
+    source.addDatagramListener(source, Datagram.DG_CIRCLE);
+    source.addDatagramListener(source, Datagram.DG_UNCIRCLE);
+    // Do not add listeners after this one - it marks the end of the
+    // datagram changes (see JinChessclubConnection.gameDatagramsStateChanged).
+
+    source.setStyle(13);
+  }
+
+  /**
+   * Unregisters from the datagrams needed to fire <code>GameEvent</code>s. Invoked when the last
+   * <code>GameListener</code> is removed.
+   */
+  private void removeGameDatagramListeners() {
+    source.removeDatagramListener(source, Datagram.DG_MY_GAME_STARTED);
+    source.removeDatagramListener(source, Datagram.DG_STARTED_OBSERVING);
+    source.removeDatagramListener(source, Datagram.DG_ISOLATED_BOARD);
+    source.removeDatagramListener(source, Datagram.DG_MY_GAME_CHANGE);
+    source.removeDatagramListener(source, Datagram.DG_MY_GAME_RESULT);
+    source.removeDatagramListener(source, Datagram.DG_POSITION_BEGIN);
+    source.removeDatagramListener(source, Datagram.DG_MY_RELATION_TO_GAME);
+    source.removeDatagramListener(source, Datagram.DG_SEND_MOVES);
+    source.removeDatagramListener(source, Datagram.DG_MOVE_SMITH);
+    source.removeDatagramListener(source, Datagram.DG_MOVE_ALGEBRAIC);
+    source.removeDatagramListener(source, Datagram.DG_IS_VARIATION);
+    source.removeDatagramListener(source, Datagram.DG_BACKWARD);
+    source.removeDatagramListener(source, Datagram.DG_TAKEBACK);
+    source.removeDatagramListener(source, Datagram.DG_ILLEGAL_MOVE);
+    source.removeDatagramListener(source, Datagram.DG_MSEC);
+    source.removeDatagramListener(source, Datagram.DG_OFFERS_IN_MY_GAME);
+    source.removeDatagramListener(source, Datagram.DG_MORETIME);
+    source.removeDatagramListener(source, Datagram.DG_FLIP);
+    source.removeDatagramListener(source, Datagram.DG_KNOWS_FISCHER_RANDOM);
+    source.removeDatagramListener(source, Datagram.DG_ARROW);
+    source.removeDatagramListener(source, Datagram.DG_UNARROW);
+    source.removeDatagramListener(source, Datagram.DG_CIRCLE);
+    source.removeDatagramListener(source, Datagram.DG_UNCIRCLE);
+    // Do not remove listeners after this one - it marks the end of the
+    // datagram changes (see JinChessclubConnection.gameDatagramsStateChanged).
+
+    source.setStyle(1);
+  }
+
+  /**
+   * Overrides <code>BasicListenerManager.fireGameEvent</code> to handle firing of chessclub.com
+   * specific events, which are only dispatched to <code>ChessclubGameListener</code>s.
    */
   @Override
   public void fireGameEvent(GameEvent evt) {
     if (!isChessclubSpecificEvent(evt)) super.fireGameEvent(evt);
     else {
-      Object[] listeners = listenerList.getListenerList();
-      for (int i = 0; i < listeners.length; i += 2) {
-        if (listeners[i] == GameListener.class) {
-          GameListener listener = (GameListener) listeners[i + 1];
-          try {
-            if (listener instanceof ChessclubGameListener) {
-              ChessclubGameListener chessclubListener = (ChessclubGameListener) listener;
-
-              if (evt instanceof CircleEvent) {
-                CircleEvent cevt = (CircleEvent) evt;
-
-                if (cevt.getId() == CircleEvent.CIRCLE_ADDED) chessclubListener.circleAdded(cevt);
-                else if (cevt.getId() == CircleEvent.CIRCLE_REMOVED)
-                  chessclubListener.circleRemoved(cevt);
-              } else if (evt instanceof ArrowEvent) {
-                ArrowEvent aevt = (ArrowEvent) evt;
-
-                if (aevt.getId() == ArrowEvent.ARROW_ADDED) chessclubListener.arrowAdded(aevt);
-                else if (aevt.getId() == ArrowEvent.ARROW_REMOVED)
-                  chessclubListener.arrowRemoved(aevt);
-              } else
-                throw new IllegalArgumentException("Unknown GameEvent type: " + evt.getClass());
-            }
-          } catch (RuntimeException e) {
-            e.printStackTrace();
-          }
+      fireChessclubGameEvent(gameListeners, evt);
+
+      CopyOnWriteListenerList scopedListeners = getGameListeners(evt.getGame());
+      if (scopedListeners != null) fireChessclubGameEvent(scopedListeners, evt);
+    }
+  }
+
+  /**
+   * Dispatches the specified chessclub.com specific event to the
+   * <code>ChessclubGameListener</code>s in the specified list.
+   */
+  private void fireChessclubGameEvent(CopyOnWriteListenerList list, GameEvent evt) {
+    GameListener[] listeners = (GameListener[]) list.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      if (!(listeners[i] instanceof ChessclubGameListener)) continue;
+
+      ChessclubGameListener listener = (ChessclubGameListener) listeners[i];
+      try {
+        if (evt instanceof CircleEvent) {
+          CircleEvent cevt = (CircleEvent) evt;
+
+          if (cevt.getId() == CircleEvent.CIRCLE_ADDED) listener.circleAdded(cevt);
+          else if (cevt.getId() == CircleEvent.CIRCLE_REMOVED) listener.circleRemoved(cevt);
+        } else if (evt instanceof ArrowEvent) {
+          ArrowEvent aevt = (ArrowEvent) evt;
+
+          if (aevt.getId() == ArrowEvent.ARROW_ADDED) listener.arrowAdded(aevt);
+          else if (aevt.getId() == ArrowEvent.ARROW_REMOVED) listener.arrowRemoved(aevt);
         }
+      } catch (RuntimeException e) {
+        listenerFailed(list, listener, e);
       }
     }
   }
@@ -224,7 +271,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void addSeekListener(SeekListener listener) {
     super.addSeekListener(listener);
 
-    if (listenerList.getListenerCount(SeekListener.class) == 1) {
+    if (getSeekListenerCount() == 1) {
       source.addDatagramListener(source, Datagram.DG_SEEK);
       source.addDatagramListener(source, Datagram.DG_SEEK_REMOVED);
       // Do not add listeners after this one - it marks the end of the
@@ -240,7 +287,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void removeSeekListener(SeekListener listener) {
     super.removeSeekListener(listener);
 
-    if (listenerList.getListenerCount(SeekListener.class) == 0) {
+    if (getSeekListenerCount() == 0) {
       source.removeDatagramListener(source, Datagram.DG_SEEK);
       source.removeDatagramListener(source, Datagram.DG_SEEK_REMOVED);
       // Do not remove listeners after this one - it marks the end of the
@@ -256,7 +303,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void addGameListListener(GameListListener listener) {
     super.addGameListListener(listener);
 
-    if (listenerList.getListenerCount(GameListListener.class) == 1) {
+    if (gameListListeners.size() == 1) {
       source.addDatagramListener(source, Datagram.DG_GAMELIST_BEGIN);
       source.addDatagramListener(source, Datagram.DG_GAMELIST_ITEM);
     }
@@ -270,7 +317,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void removeGameListListener(GameListListener listener) {
     super.removeGameListListener(listener);
 
-    if (listenerList.getListenerCount(GameListListener.class) == 0) {
+    if (gameListListeners.size() == 0) {
       source.removeDatagramListener(source, Datagram.DG_GAMELIST_BEGIN);
       source.removeDatagramListener(source, Datagram.DG_GAMELIST_ITEM);
     }
@@ -281,9 +328,9 @@ public class ChessclubListenerManager extends BasicListenerManager {
    * notifications when an event is added.
    */
   public void addChessEventListener(ChessEventListener listener) {
-    listenerList.add(ChessEventListener.class, listener);
+    chessEventListeners.add(listener);
 
-    if (listenerList.getListenerCount(ChessEventListener.class) == 1) {
+    if (chessEventListeners.size() == 1) {
       source.addDatagramListener(source, Datagram.DG_TOURNEY);
       source.addDatagramListener(source, Datagram.DG_REMOVE_TOURNEY);
     }
@@ -294,9 +341,9 @@ public class ChessclubListenerManager extends BasicListenerManager {
    * notifications when an event is added.
    */
   public void removeChessEventListener(ChessEventListener listener) {
-    listenerList.remove(ChessEventListener.class, listener);
+    chessEventListeners.remove(listener);
 
-    if (listenerList.getListenerCount(ChessEventListener.class) == 0) {
+    if (chessEventListeners.size() == 0) {
       source.removeDatagramListener(source, Datagram.DG_TOURNEY);
       source.removeDatagramListener(source, Datagram.DG_REMOVE_TOURNEY);
     }
@@ -306,22 +353,19 @@ public class ChessclubListenerManager extends BasicListenerManager {
    * Dispatches the specified <code>ChessEventEvent</code> to all interested listeners.
    */
   public void fireChessEventEvent(ChessEventEvent evt) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == ChessEventListener.class) {
-        ChessEventListener listener = (ChessEventListener) listeners[i + 1];
-        try {
-          switch (evt.getID()) {
-            case ChessEventEvent.EVENT_ADDED:
-              listener.chessEventAdded(evt);
-              break;
-            case ChessEventEvent.EVENT_REMOVED:
-              listener.chessEventRemoved(evt);
-              break;
-          }
-        } catch (RuntimeException e) {
-          e.printStackTrace();
+    ChessEventListener[] listeners = (ChessEventListener[]) chessEventListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        switch (evt.getID()) {
+          case ChessEventEvent.EVENT_ADDED:
+            listeners[i].chessEventAdded(evt);
+            break;
+          case ChessEventEvent.EVENT_REMOVED:
+            listeners[i].chessEventRemoved(evt);
+            break;
         }
+      } catch (RuntimeException e) {
+        listenerFailed(chessEventListeners, listeners[i], e);
       }
     }
   }
@@ -334,7 +378,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void addFriendsListener(FriendsListener listener) {
     super.addFriendsListener(listener);
 
-    if (listenerList.getListenerCount(FriendsListener.class) == 1) {
+    if (friendsListeners.size() == 1) {
       source.addDatagramListener(source, Datagram.DG_NOTIFY_ARRIVED);
       source.addDatagramListener(source, Datagram.DG_NOTIFY_LEFT);
       source.addDatagramListener(source, Datagram.DG_NOTIFY_STATE);
@@ -352,7 +396,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void removeFriendsListener(FriendsListener listener) {
     super.removeFriendsListener(listener);
 
-    if (listenerList.getListenerCount(FriendsListener.class) == 0) {
+    if (friendsListeners.size() == 0) {
       source.removeDatagramListener(source, Datagram.DG_NOTIFY_ARRIVED);
       source.removeDatagramListener(source, Datagram.DG_NOTIFY_LEFT);
       source.removeDatagramListener(source, Datagram.DG_NOTIFY_STATE);
@@ -370,7 +414,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void addMatchOfferListener(MatchOfferListener listener) {
     super.addMatchOfferListener(listener);
 
-    if (listenerList.getListenerCount(MatchOfferListener.class) == 1) {
+    if (matchOfferListeners.size() == 1) {
       source.addDatagramListener(source, Datagram.DG_MATCH);
       source.addDatagramListener(source, Datagram.DG_MATCH_REMOVED);
     }
@@ -384,7 +428,7 @@ public class ChessclubListenerManager extends BasicListenerManager {
   public void removeMatchOfferListener(MatchOfferListener listener) {
     super.removeMatchOfferListener(listener);
 
-    if (listenerList.getListenerCount(MatchOfferListener.class) == 0) {
+    if (matchOfferListeners.size() == 0) {
       source.removeDatagramListener(source, Datagram.DG_MATCH);
       source.removeDatagramListener(source, Datagram.DG_MATCH_REMOVED);
     }
@@ -23,6 +23,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.Socket;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -40,6 +41,7 @@ import free.chess.ChessMove;
 import free.chess.ChesslikeGenericVariant;
 import free.chess.FischerTimeControl;
 import free.chess.Move;
+import free.chess.MoveList;
 import free.chess.OddsTimeControl;
 import free.chess.Player;
 import free.chess.Position;
@@ -62,6 +64,9 @@ import free.jin.Connection;
 import free.jin.FriendsConnection;
 import free.jin.Game;
 import free.jin.GameListConnection;
+import free.jin.GameMemoryAccountant;
+import free.jin.GameMemoryUsage;
+import free.jin.GameStateHolder;
 import free.jin.GameListItem;
 import free.jin.HistoryListItem;
 import free.jin.I18n;
@@ -263,6 +268,8 @@ public class JinChessclubConnection extends ChessclubConnection
     // line. Remove when Bert fixes it.
     if (isDGOn(Datagram.DG_TOURNEY)) setDGOnAgain(Datagram.DG_TOURNEY);
 
+    GameMemoryAccountant.getInstance().register(gameStateAccounting);
+
     listenerManager.fireLoginSucceeded(this);
 
     setDGOnAgain(Datagram.DG_DUMMY_RESPONSE, END_OF_LOGIN_PROCEDURE_TAG);
@@ -283,6 +290,8 @@ public class JinChessclubConnection extends ChessclubConnection
    */
   @Override
   protected void handleDisconnection(IOException e) {
+    GameMemoryAccountant.getInstance().unregister(gameStateAccounting);
+
     listenerManager.fireConnectionLost(this);
 
     super.handleDisconnection(e);
@@ -1118,6 +1127,23 @@ public class JinChessclubConnection extends ChessclubConnection
    */
   private int userGamesCount = 0;
 
+  /**
+   * The approximate amount of memory, in bytes, taken by the information we keep about an ongoing
+   * game, not counting its move list.
+   */
+  private static final int APPROXIMATE_GAME_INFO_SIZE = 1024;
+
+  /**
+   * The approximate amount of memory, in bytes, taken by the properties of a game which hasn't
+   * started yet, or a move which hasn't been echoed yet.
+   */
+  private static final int APPROXIMATE_PENDING_DATA_SIZE = 512;
+
+  /**
+   * Accounts for the memory we hold for games.
+   */
+  private final GameStateAccounting gameStateAccounting = new GameStateAccounting();
+
   /**
    * <P>
    * Returns the GameInfo object for the given game number. This method throws a
@@ -1971,6 +1997,8 @@ public class JinChessclubConnection extends ChessclubConnection
       addGameInfo(gameNumber, gameInfo);
 
       fireGameEvent(new GameStartEvent(this, clientTag, newGame));
+
+      GameMemoryAccountant.getInstance().checkBudget();
     } else { // This can happen during an examined game on a "p@a2", "clearboard" and "loadgame" for example.
       try {
         GameInfo gameInfo = getGameInfo(gameNumber);
@@ -1981,8 +2009,8 @@ public class JinChessclubConnection extends ChessclubConnection
 
         game.setInitialPosition(newInitPos);
         game.setPliesSinceStart(0);
-        gameInfo.moves.removeAllElements();
-        gameInfo.position.copyFrom(game.getInitialPosition());
+        gameInfo.moves.reset(game.getInitialPositionSnapshot());
+        gameInfo.position.copyFrom(game.getInitialPositionSnapshot());
         gameInfo.numMovesToFollow = numMovesToFollow;
 
         fireGameEvent(new PositionChangedEvent(this, clientTag, game, gameInfo.position));
@@ -2005,6 +2033,9 @@ public class JinChessclubConnection extends ChessclubConnection
   protected void processMyRelationToGame(String clientTag, int gameNumber, String playerState) {
     if (ChessclubConstants.DOING_NOTHING_PLAYER_STATE.equals(playerState)) {
 
+      // A game whose position never arrived, if it's unsupported for example
+      nonStartedGames.remove(new Integer(gameNumber));
+
       GameInfo gameInfo = removeGameInfo(gameNumber);
 
       // Game wasn't set up properly, probably because the wild variant is not supported.
@@ -2105,7 +2136,7 @@ public class JinChessclubConnection extends ChessclubConnection
       Move move = parseWarrenSmith(smithMove, position, algebraicMove);
 
       position.makeMove(move);
-      gameInfo.moves.addElement(move);
+      gameInfo.moves.add(move);
 
       boolean isNewMove =
           (variationCode != ChessclubConstants.INITIAL_MOVE)
@@ -2177,13 +2208,10 @@ public class JinChessclubConnection extends ChessclubConnection
       GameInfo gameInfo = getGameInfo(gameNumber);
       Game game = gameInfo.game;
       Position pos = gameInfo.position;
-      Vector moves = gameInfo.moves;
-
-      int numMadeMoves = moves.size() - backwardCount;
-      for (int i = moves.size() - 1; i >= numMadeMoves; i--) moves.removeElementAt(i);
+      MoveList moves = gameInfo.moves;
 
-      pos.copyFrom(game.getInitialPosition());
-      for (int i = 0; i < numMadeMoves; i++) pos.makeMove((Move) moves.elementAt(i));
+      moves.removeLast(Math.min(backwardCount, moves.size()));
+      moves.getPosition(moves.size(), pos);
 
       fireGameEvent(new TakebackEvent(this, clientTag, game, backwardCount));
     } catch (NoSuchGameException e) {
@@ -2205,13 +2233,10 @@ public class JinChessclubConnection extends ChessclubConnection
       GameInfo gameInfo = getGameInfo(gameNumber);
       Game game = gameInfo.game;
       Position pos = gameInfo.position;
-      Vector moves = gameInfo.moves;
+      MoveList moves = gameInfo.moves;
 
-      int numMadeMoves = moves.size() - takebackCount;
-      for (int i = moves.size() - 1; i >= numMadeMoves; i--) moves.removeElementAt(i);
-
-      pos.copyFrom(game.getInitialPosition());
-      for (int i = 0; i < numMadeMoves; i++) pos.makeMove((Move) moves.elementAt(i));
+      moves.removeLast(Math.min(takebackCount, moves.size()));
+      moves.getPosition(moves.size(), pos);
 
       fireGameEvent(new TakebackEvent(this, clientTag, game, takebackCount));
       updateTakebackOffer(
@@ -3070,6 +3095,60 @@ public class JinChessclubConnection extends ChessclubConnection
     else return state.intValue();
   }
 
+  /**
+   * Reports the memory we hold for games to the <code>GameMemoryAccountant</code>.
+   */
+  private class GameStateAccounting implements GameStateHolder {
+
+    /**
+     * Returns a description of the connection.
+     */
+    @Override
+    public String getGameStateHolderName() {
+      return "chessclub.com connection";
+    }
+
+    /**
+     * Returns the memory held for ongoing games and for games which haven't started yet.
+     */
+    @Override
+    public GameMemoryUsage[] getGameMemoryUsage() {
+      Vector usage = new Vector();
+
+      Enumeration gameInfos = gameNumbersToGameInfo.elements();
+      while (gameInfos.hasMoreElements()) {
+        GameInfo gameInfo = (GameInfo) gameInfos.nextElement();
+        long bytes = APPROXIMATE_GAME_INFO_SIZE + gameInfo.moves.getApproximateSize();
+        Vector unechoedGameMoves = (Vector) unechoedMoves.get(gameInfo.game);
+        if (unechoedGameMoves != null)
+          bytes += unechoedGameMoves.size() * APPROXIMATE_PENDING_DATA_SIZE;
+
+        usage.addElement(new GameMemoryUsage(gameInfo.game.toString(), false, bytes));
+      }
+
+      Enumeration nonStartedGameNumbers = nonStartedGames.keys();
+      while (nonStartedGameNumbers.hasMoreElements()) {
+        Object gameNumber = nonStartedGameNumbers.nextElement();
+        usage.addElement(
+            new GameMemoryUsage(
+                "#" + gameNumber + " (not started)", false, APPROXIMATE_PENDING_DATA_SIZE));
+      }
+
+      GameMemoryUsage[] result = new GameMemoryUsage[usage.size()];
+      usage.copyInto(result);
+      return result;
+    }
+
+    /**
+     * Compacts the move lists of the ongoing games.
+     */
+    @Override
+    public void compactGameState() {
+      Enumeration gameInfos = gameNumbersToGameInfo.elements();
+      while (gameInfos.hasMoreElements()) ((GameInfo) gameInfos.nextElement()).moves.compact();
+    }
+  }
+
   /**
    * A container for various game information, such as the Game object, the current Position and a
    * list of made moves.
@@ -3089,7 +3168,7 @@ public class JinChessclubConnection extends ChessclubConnection
     /**
      * The list of moves.
      */
-    public final Vector moves;
+    public final MoveList moves;
 
     /**
      * The amount of moves to follow before the game actually starts.
@@ -3155,7 +3234,7 @@ public class JinChessclubConnection extends ChessclubConnection
     public GameInfo(Game game, Position initialPos, int numMovesToFollow) {
       this.game = game;
       this.position = initialPos;
-      this.moves = new Vector();
+      this.moves = new MoveList(initialPos.snapshot());
       this.numMovesToFollow = numMovesToFollow;
       this.isFlipped = game.isBoardInitiallyFlipped();
 
@@ -32,7 +32,6 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.util.Hashtable;
 import java.util.Vector;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -62,6 +61,7 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Caret;
 import javax.swing.text.DefaultCaret;
+import javax.swing.text.Element;
 import javax.swing.text.JTextComponent;
 import javax.swing.text.Position;
 import javax.swing.text.SimpleAttributeSet;
@@ -83,6 +83,7 @@ import free.jin.event.JinEvent;
 import free.jin.event.PlainTextEvent;
 import free.jin.ui.SdiUiProvider;
 import free.util.BrowserControl;
+import free.util.OrderedExecutor;
 import free.util.PlatformUtils;
 import free.util.swing.MultiButton;
 
@@ -135,32 +136,54 @@ public class Console extends JPanel implements KeyListener {
   private final Preferences prefs;
 
   /**
-   * The regular expressions against which we match the text to find links.
+   * Finds the links in the text added to the console.
    */
-  private Pattern[] linkREs;
+  private LinkDetector linkDetector;
 
   /**
-   * The commands executed for the matched links.
+   * The executor which runs link detection off the event dispatching thread. The lines of each
+   * console are scanned in order, one at a time.
    */
-  private String[] linkCommands;
+  private static final OrderedExecutor LINK_DETECTION_EXECUTOR =
+      new OrderedExecutor("ConsoleLinkDetection", 2);
 
   /**
-   * The indices of the subexpression to make a link out of.
+   * The default maximum amount of lines kept in the output component.
    */
-  private int[] linkSubexpressionIndices;
+  private static final int DEFAULT_MAX_SCROLLBACK_LINES = 5000;
 
   /**
-   * The regular expression we use for detecting URLs.
+   * The default maximum amount of characters kept in the output component.
    */
-  private static final Pattern URL_REGEX =
-      Pattern.compile(
-          "((([Ff][Tt][Pp]|[Hh][Tt][Tt][Pp]([Ss])?)://)|([Ww][Ww][Ww]\\.))([^\\s()<>\"])*[^\\s.,()<>\"'!?]");
+  private static final int DEFAULT_MAX_SCROLLBACK_CHARS = 1000000;
 
   /**
-   * The regular expression we use for detecting emails.
+   * When the scrollback exceeds its limit, it is trimmed by the limit divided by this number, so
+   * that the oldest text is removed in large chunks, rather than a line at a time.
    */
-  private static final Pattern EMAIL_REGEX =
-      Pattern.compile("[^\\s()<>\"\']+@[^\\s()<>\"]+\\.[^\\s.,()<>\"'?]+");
+  private static final int SCROLLBACK_CHUNK_DIVISOR = 10;
+
+  /**
+   * The maximum amount of lines set explicitly for this console; -1 if the one specified in the
+   * preferences should be used.
+   */
+  private int customMaxScrollbackLines = -1;
+
+  /**
+   * The maximum amount of characters set explicitly for this console; -1 if the one specified in
+   * the preferences should be used.
+   */
+  private int customMaxScrollbackChars = -1;
+
+  /**
+   * The maximum amount of lines kept in the output component; 0 if unlimited.
+   */
+  private int maxScrollbackLines;
+
+  /**
+   * The maximum amount of characters kept in the output component; 0 if unlimited.
+   */
+  private int maxScrollbackChars;
 
   /**
    * Maps text types that were actually looked up to the resulting AttributeSets.
@@ -184,6 +207,30 @@ public class Console extends JPanel implements KeyListener {
    */
   private boolean didScrollToBottom = true;
 
+  /**
+   * The delay, in milliseconds, for which text added to the console is held before being added to
+   * the output component, so that lines arriving within roughly one frame are added together.
+   */
+  private static final int OUTPUT_BATCH_DELAY = 15;
+
+  /**
+   * The <code>PendingLine</code>s waiting to be added to the output component, in order.
+   */
+  private final Vector pendingLines = new Vector();
+
+  /**
+   * The timer which adds the waiting lines to the output component.
+   */
+  private final Timer outputBatchTimer =
+      new Timer(
+          OUTPUT_BATCH_DELAY,
+          new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+              flushOutput(false);
+            }
+          });
+
   /**
    * An action which clears the console.
    */
@@ -216,6 +263,8 @@ public class Console extends JPanel implements KeyListener {
 
     this.prefs = consoleManager.getPrefs();
 
+    outputBatchTimer.setRepeats(false);
+
     this.outputComponent = createOutputComponent();
     configureOutputComponent(outputComponent);
     this.outputScrollPane = createOutputScrollPane(outputComponent);
@@ -674,9 +723,9 @@ public class Console extends JPanel implements KeyListener {
     if (inputSelected != null) inputComponent.setSelectedTextColor(inputSelected);
 
     int numLinkPatterns = prefs.getInt("output-link.num-patterns", 0);
-    linkREs = new Pattern[numLinkPatterns];
-    linkCommands = new String[numLinkPatterns];
-    linkSubexpressionIndices = new int[numLinkPatterns];
+    Pattern[] linkREs = new Pattern[numLinkPatterns];
+    String[] linkCommands = new String[numLinkPatterns];
+    int[] linkSubexpressionIndices = new int[numLinkPatterns];
     for (int i = 0; i < numLinkPatterns; i++) {
       try {
         String linkPattern = prefs.getString("output-link.pattern-" + i);
@@ -691,6 +740,43 @@ public class Console extends JPanel implements KeyListener {
         e.printStackTrace();
       }
     }
+    linkDetector = new LinkDetector(linkREs, linkCommands, linkSubexpressionIndices);
+
+    maxScrollbackLines =
+        customMaxScrollbackLines >= 0
+            ? customMaxScrollbackLines
+            : prefs.getInt("output-scrollback.max-lines", DEFAULT_MAX_SCROLLBACK_LINES);
+    maxScrollbackChars =
+        customMaxScrollbackChars >= 0
+            ? customMaxScrollbackChars
+            : prefs.getInt("output-scrollback.max-chars", DEFAULT_MAX_SCROLLBACK_CHARS);
+  }
+
+  /**
+   * Sets the maximum amount of lines and characters kept in this console, overriding the values
+   * specified in the preferences. A value of 0 means no limit; a negative value means the value
+   * specified in the preferences should be used. The new limits take effect when text is next
+   * added to the console.
+   */
+  public void setScrollbackLimits(int maxLines, int maxChars) {
+    customMaxScrollbackLines = Math.max(-1, maxLines);
+    customMaxScrollbackChars = Math.max(-1, maxChars);
+
+    init();
+  }
+
+  /**
+   * Returns the maximum amount of lines kept in this console; 0 if unlimited.
+   */
+  public int getMaxScrollbackLines() {
+    return maxScrollbackLines;
+  }
+
+  /**
+   * Returns the maximum amount of characters kept in this console; 0 if unlimited.
+   */
+  public int getMaxScrollbackChars() {
+    return maxScrollbackChars;
   }
 
   /**
@@ -782,10 +868,64 @@ public class Console extends JPanel implements KeyListener {
     }
   }
 
+  /**
+   * Removes the oldest text from the output component if it exceeds the scrollback limits of this
+   * console. The text is removed in chunks of a tenth of the limit, with a single removal from the
+   * document, so the cost is spread over many added lines. The links in the removed text are
+   * dropped and, unless we are about to scroll to the bottom, the visible text stays in place.
+   */
+  private void trimScrollback(boolean scrollToBottom) {
+    StyledDocument document = outputComponent.getStyledDocument();
+    Element root = document.getDefaultRootElement();
+    int lineCount = root.getElementCount();
+    int length = document.getLength();
+
+    boolean tooManyLines = (maxScrollbackLines > 0) && (lineCount > maxScrollbackLines);
+    boolean tooManyChars = (maxScrollbackChars > 0) && (length > maxScrollbackChars);
+    if (!tooManyLines && !tooManyChars) return;
+
+    int trimEnd = 0;
+    if (tooManyLines) {
+      int keptLines = maxScrollbackLines - maxScrollbackLines / SCROLLBACK_CHUNK_DIVISOR;
+      trimEnd = root.getElement(lineCount - keptLines - 1).getEndOffset();
+    }
+    if (tooManyChars) {
+      int keptChars = maxScrollbackChars - maxScrollbackChars / SCROLLBACK_CHUNK_DIVISOR;
+      Element line = root.getElement(root.getElementIndex(length - keptChars));
+      trimEnd = Math.max(trimEnd, line.getEndOffset());
+    }
+    trimEnd = Math.min(trimEnd, length);
+
+    try {
+      // The height of the removed text, which we need to scroll up by to keep the visible text
+      int removedHeight = 0;
+      if (!scrollToBottom) {
+        Rectangle startRect = outputComponent.modelToView(0);
+        Rectangle trimEndRect = outputComponent.modelToView(trimEnd);
+        if ((startRect != null) && (trimEndRect != null))
+          removedHeight = trimEndRect.y - startRect.y;
+      }
+
+      outputComponent.removeLinks(trimEnd);
+      document.remove(0, trimEnd);
+
+      if (removedHeight > 0) {
+        JViewport viewport = outputScrollPane.getViewport();
+        Point viewPosition = viewport.getViewPosition();
+        viewport.setViewPosition(
+            new Point(viewPosition.x, Math.max(0, viewPosition.y - removedHeight)));
+      }
+    } catch (BadLocationException e) {
+      e.printStackTrace();
+    }
+  }
+
   /**
    * Adds the given component to the output.
    */
   public void addToOutput(JComponent component) {
+    flushOutput();
+
     boolean shouldScroll = prepareAdding();
 
     boolean wasEditable = outputComponent.isEditable();
@@ -806,24 +946,87 @@ public class Console extends JPanel implements KeyListener {
     }
     outputComponent.setEditable(wasEditable);
 
+    trimScrollback(shouldScroll);
     assureScrolling(shouldScroll);
   }
 
   /**
    * Adds the specified text of the specified type to the console. The event type is a string which
    * is used to look up (in the preferences) the properties (font, color etc.) of the text when
-   * displayed in the console.
+   * displayed in the console. The text is not added to the output component immediately, but
+   * together with the rest of the text added within the next few milliseconds; call
+   * {@link #flushOutput()} to add it right away.
    *
    * @see #textTypeForEvent(JinEvent)
    */
   public void addToOutput(String text, String textType) {
     try {
-      boolean shouldScroll = prepareAdding();
       addToOutputImpl(text, textType);
-      assureScrolling(shouldScroll);
     } catch (BadLocationException e) {
       e.printStackTrace(); // Why the heck is this checked?
     }
+
+    if (!outputBatchTimer.isRunning()) outputBatchTimer.start();
+  }
+
+  /**
+   * Adds all the text waiting to be added to the output component, as a single batch, and then
+   * trims and scrolls the output as necessary. Lines whose links haven't been found yet by the link
+   * detection worker are scanned on the calling thread.
+   */
+  public void flushOutput() {
+    flushOutput(true);
+  }
+
+  /**
+   * Adds the text waiting to be added to the output component, as a single batch, and then trims
+   * and scrolls the output as necessary. If <code>force</code> is <code>false</code>, only the
+   * lines preceding the first line whose links haven't been found yet are added, and the rest are
+   * left for the next time the batch timer fires.
+   */
+  private void flushOutput(boolean force) {
+    outputBatchTimer.stop();
+
+    OutputBatch batch = null;
+    while (!pendingLines.isEmpty()) {
+      PendingLine line = (PendingLine) pendingLines.firstElement();
+      if (!force && !line.isDetected()) {
+        outputBatchTimer.start();
+        break;
+      }
+      pendingLines.removeElementAt(0);
+
+      LinkSpan[] lineLinks = line.getLinks();
+      AttributeSet[] linkAttributes = new AttributeSet[lineLinks.length];
+      for (int i = 0; i < lineLinks.length; i++)
+        linkAttributes[i] = attributesForTextType(lineLinks[i].getTextType());
+
+      if (batch == null) batch = new OutputBatch();
+      batch.addLine(
+          line.getText(), attributesForTextType(line.getTextType()), lineLinks, linkAttributes);
+    }
+
+    if (batch == null) return;
+
+    boolean shouldScroll = prepareAdding();
+    try {
+      StyledDocument document = outputComponent.getStyledDocument();
+      int offset = batch.appendTo(document);
+
+      Vector links = batch.getLinks();
+      for (int i = 0; i < links.size(); i++) {
+        LinkSpan link = (LinkSpan) links.elementAt(i);
+        int linkStart = offset + link.getOffset();
+        Position linkStartPosition = document.createPosition(linkStart);
+        Position linkEndPosition = document.createPosition(linkStart + link.getLength());
+        outputComponent.addLink(new Link(linkStartPosition, linkEndPosition, link.getCommand()));
+      }
+    } catch (BadLocationException e) {
+      e.printStackTrace();
+    }
+
+    trimScrollback(shouldScroll);
+    assureScrolling(shouldScroll);
   }
 
   /**
@@ -870,87 +1073,14 @@ public class Console extends JPanel implements KeyListener {
   }
 
   /**
-   * Actually does the work of adding the given text to the output component's Document.
+   * Actually does the work of adding the given text to the output component - queues it for having
+   * its links found by the link detection worker, after which it is added, along with the links and
+   * the rest of the batch, to the output component's Document.
    */
   protected void addToOutputImpl(String text, String textType) throws BadLocationException {
-    StyledDocument document = outputComponent.getStyledDocument();
-    int oldTextLength = document.getLength();
-
-    document.insertString(document.getLength(), text + "\n", attributesForTextType(textType));
-
-    AttributeSet urlAttributes = attributesForTextType("link.url");
-    AttributeSet emailAttributes = attributesForTextType("link.email");
-    AttributeSet commandAttributes = attributesForTextType("link.command");
-
-    Matcher urlMatcher = URL_REGEX.matcher(text);
-    while (urlMatcher.find()) {
-      int matchStart = urlMatcher.start();
-      int matchEnd = urlMatcher.end();
-
-      Command command =
-          new Command(
-              "url " + text.substring(matchStart, matchEnd),
-              Command.SPECIAL_MASK | Command.BLANKED_MASK);
-      Position linkStart = document.createPosition(matchStart + oldTextLength);
-      Position linkEnd = document.createPosition(matchEnd + oldTextLength);
-      Link link = new Link(linkStart, linkEnd, command);
-      document.setCharacterAttributes(
-          matchStart + oldTextLength, matchEnd - matchStart, urlAttributes, false);
-      outputComponent.addLink(link);
-    }
-
-    Matcher emailMatcher = EMAIL_REGEX.matcher(text);
-    while (emailMatcher.find()) {
-      int matchStart = emailMatcher.start();
-      int matchEnd = emailMatcher.end();
-
-      Command command =
-          new Command(
-              "email " + text.substring(matchStart, matchEnd),
-              Command.SPECIAL_MASK | Command.BLANKED_MASK);
-      Position linkStart = document.createPosition(matchStart + oldTextLength);
-      Position linkEnd = document.createPosition(matchEnd + oldTextLength);
-      Link link = new Link(linkStart, linkEnd, command);
-      document.setCharacterAttributes(
-          matchStart + oldTextLength, matchEnd - matchStart, emailAttributes, false);
-      outputComponent.addLink(link);
-    }
-
-    for (int i = 0; i < linkREs.length; i++) {
-      Pattern linkRE = linkREs[i];
-
-      if (linkRE == null) // Bad pattern was given in properties.
-      continue;
-
-      Matcher linkMatcher = linkRE.matcher(text);
-      while (linkMatcher.find()) {
-        String linkCommand = linkCommands[i];
-
-        int index = -1;
-        while ((index = linkCommand.indexOf("$", index + 1)) != -1) {
-          if ((index < linkCommand.length() - 1)
-              && Character.isDigit(linkCommand.charAt(index + 1))) {
-            int subexpressionIndex = Character.digit(linkCommand.charAt(index + 1), 10);
-            linkCommand =
-                linkCommand.substring(0, index)
-                    + linkMatcher.group(subexpressionIndex)
-                    + linkCommand.substring(index + 2);
-          }
-        }
-
-        int linkSubexpressionIndex = linkSubexpressionIndices[i];
-        int matchStart = linkMatcher.start(linkSubexpressionIndex);
-        int matchEnd = linkMatcher.end(linkSubexpressionIndex);
-
-        document.setCharacterAttributes(
-            matchStart + oldTextLength, matchEnd - matchStart, commandAttributes, false);
-
-        Position linkStart = document.createPosition(matchStart + oldTextLength);
-        Position linkEnd = document.createPosition(matchEnd + oldTextLength);
-        Link link = new Link(linkStart, linkEnd, new Command("/" + linkCommand, 0));
-        outputComponent.addLink(link);
-      }
-    }
+    PendingLine line = new PendingLine(text, textType, linkDetector);
+    pendingLines.addElement(line);
+    LINK_DETECTION_EXECUTOR.execute(this, line);
   }
 
   /**
@@ -1012,6 +1142,9 @@ public class Console extends JPanel implements KeyListener {
    * Removes all text from the console.
    */
   public void clear() {
+    outputBatchTimer.stop();
+    pendingLines.removeAllElements();
+
     outputComponent.setText("");
     outputComponent.removeAll();
     outputComponent.removeLinks();
@@ -0,0 +1,158 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.console;
+
+import javax.swing.JTextPane;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+
+/**
+ * A commandline benchmark of appending text to a console's output component. Measures the amount
+ * of lines per second appended to a <code>JTextPane</code> line by line, with an insertion and an
+ * attribute change per link, as <code>Console</code> used to do, and in batches of the specified
+ * size, as it does now. The text pane is laid out after each batch, as it would be once per frame.
+ * Usage: <code>ConsoleAppendBenchmark [lines [batchSize]]</code>; the defaults are
+ * {@link #DEFAULT_LINE_COUNT} and {@link #DEFAULT_BATCH_SIZE}.
+ */
+public class ConsoleAppendBenchmark {
+
+  /**
+   * The default amount of lines appended in each measurement.
+   */
+  private static final int DEFAULT_LINE_COUNT = 20000;
+
+  /**
+   * The default amount of lines appended in each batch.
+   */
+  private static final int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * The lines we append, in turn. Every other line has a link in it.
+   */
+  private static final String[] LINES = {
+    "Kasparov(GM)(2812)[12] kibitzes: what a game, see http://www.jinchess.com/ for more",
+    "Channel 50 (Chat): Anyone up for a game of crazyhouse?",
+    "Game 123 (GuestABCD vs. GuestEFGH) GuestABCD resigns {1-0}",
+    "You are now observing game 456, write to support@example.com if it doesn't work.",
+  };
+
+  /**
+   * The offsets and lengths of the links in the lines; <code>null</code> for lines without links.
+   */
+  private static final int[][] LINKS = {{50, 24}, null, null, {41, 19}};
+
+  /**
+   * The main method.
+   */
+  public static void main(String[] args) throws BadLocationException {
+    int lineCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_LINE_COUNT;
+    int batchSize = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE;
+
+    SimpleAttributeSet textAttributes = new SimpleAttributeSet();
+    StyleConstants.setFontFamily(textAttributes, "Monospaced");
+    SimpleAttributeSet linkAttributes = new SimpleAttributeSet();
+    StyleConstants.setUnderline(linkAttributes, true);
+
+    System.out.println(
+        "Appending " + lineCount + " lines, in batches of " + batchSize + ", lines per second:");
+    for (int round = 0; round < 3; round++) {
+      JTextPane textPane = new JTextPane(new DefaultStyledDocument());
+      textPane.setSize(800, 600);
+      long time = System.nanoTime();
+      for (int i = 0; i < lineCount; i++) {
+        appendLine(textPane.getStyledDocument(), i, textAttributes, linkAttributes);
+        if ((i + 1) % batchSize == 0) textPane.getPreferredSize();
+      }
+      textPane.getPreferredSize();
+      long lineTime = System.nanoTime() - time;
+
+      textPane = new JTextPane(new ConsoleDocument());
+      textPane.setSize(800, 600);
+      time = System.nanoTime();
+      OutputBatch batch = new OutputBatch();
+      for (int i = 0; i < lineCount; i++) {
+        addLine(batch, i, textAttributes, linkAttributes);
+        if (((i + 1) % batchSize == 0) || (i == lineCount - 1)) {
+          StyledDocument document = textPane.getStyledDocument();
+          int offset = batch.appendTo(document);
+          for (int j = 0; j < batch.getLinks().size(); j++) {
+            LinkSpan span = (LinkSpan) batch.getLinks().elementAt(j);
+            document.createPosition(offset + span.getOffset());
+            document.createPosition(offset + span.getOffset() + span.getLength());
+          }
+          batch = new OutputBatch();
+          textPane.getPreferredSize();
+        }
+      }
+      long batchTime = System.nanoTime() - time;
+
+      System.out.println(
+          "Round "
+              + (round + 1)
+              + ": line by line "
+              + linesPerSecond(lineCount, lineTime)
+              + ", batched "
+              + linesPerSecond(lineCount, batchTime));
+    }
+  }
+
+  /**
+   * Appends the specified line to the specified document the way <code>Console</code> used to.
+   */
+  private static void appendLine(
+      StyledDocument document, int index, AttributeSet textAttributes, AttributeSet linkAttributes)
+      throws BadLocationException {
+    String text = LINES[index % LINES.length];
+    int[] link = LINKS[index % LINES.length];
+
+    int offset = document.getLength();
+    document.insertString(offset, text + "\n", textAttributes);
+    if (link != null) {
+      document.setCharacterAttributes(offset + link[0], link[1], linkAttributes, false);
+      document.createPosition(offset + link[0]);
+      document.createPosition(offset + link[0] + link[1]);
+    }
+  }
+
+  /**
+   * Adds the specified line to the specified batch.
+   */
+  private static void addLine(
+      OutputBatch batch, int index, AttributeSet textAttributes, AttributeSet linkAttributes) {
+    String text = LINES[index % LINES.length];
+    int[] link = LINKS[index % LINES.length];
+
+    if (link == null) batch.addLine(text, textAttributes, new LinkSpan[0], new AttributeSet[0]);
+    else {
+      LinkSpan span = new LinkSpan(link[0], link[1], null, "link.url");
+      batch.addLine(
+          text, textAttributes, new LinkSpan[] {span}, new AttributeSet[] {linkAttributes});
+    }
+  }
+
+  /**
+   * Returns the amount of lines per second, given the amount of lines and the time, in
+   * nanoseconds, it took to append them.
+   */
+  private static long linesPerSecond(int lineCount, long time) {
+    return lineCount * 1000000000L / Math.max(1, time);
+  }
+}
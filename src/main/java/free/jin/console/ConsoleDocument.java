@@ -0,0 +1,62 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.console;
+
+import java.util.Vector;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+
+/**
+ * The document of a <code>ConsoleTextPane</code>. Allows appending many lines of styled text with
+ * a single insertion, and thus a single <code>DocumentEvent</code> and layout update, rather than
+ * an insertion, and possibly several attribute changes, per line.
+ */
+class ConsoleDocument extends DefaultStyledDocument {
+
+  /**
+   * Appends the specified content and end tag <code>ElementSpec</code>s to the end of the document.
+   * Each end tag ends a paragraph, and must be preceded by a content spec whose text ends with a
+   * newline.
+   */
+  public void append(Vector specs) throws BadLocationException {
+    int length = getLength();
+    AttributeSet paragraphAttributes = getParagraphElement(length).getAttributes();
+
+    int specCount = specs.size();
+    Vector allSpecs = new Vector(specCount * 2 + 2);
+
+    // If we're adding at the beginning of the (empty) last paragraph, we need to end the previous
+    // one explicitly, otherwise our first line joins it.
+    if ((length > 0) && "\n".equals(getText(length - 1, 1))) {
+      allSpecs.addElement(new ElementSpec(null, ElementSpec.EndTagType));
+      allSpecs.addElement(new ElementSpec(paragraphAttributes, ElementSpec.StartTagType));
+    }
+
+    for (int i = 0; i < specCount; i++) {
+      ElementSpec spec = (ElementSpec) specs.elementAt(i);
+      allSpecs.addElement(spec);
+      if (spec.getType() == ElementSpec.EndTagType)
+        allSpecs.addElement(new ElementSpec(paragraphAttributes, ElementSpec.StartTagType));
+    }
+
+    ElementSpec[] specArray = new ElementSpec[allSpecs.size()];
+    allSpecs.copyInto(specArray);
+    insert(length, specArray);
+  }
+}
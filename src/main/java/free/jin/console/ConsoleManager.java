@@ -219,6 +219,11 @@ public abstract class ConsoleManager extends Plugin
       String containerId = prefs.getString(prefix + "container.id", MAIN_CONTAINER_ID);
       ConsoleDesignation designation = loadConsoleDesignation(prefix);
       addConsole(designation, containerId, false);
+
+      int maxScrollbackLines = prefs.getInt(prefix + "scrollback.max-lines", -1);
+      int maxScrollbackChars = prefs.getInt(prefix + "scrollback.max-chars", -1);
+      if ((maxScrollbackLines >= 0) || (maxScrollbackChars >= 0))
+        getConsole(designation).setScrollbackLimits(maxScrollbackLines, maxScrollbackChars);
     }
 
     for (Iterator i = tabbedPanes.entrySet().iterator(); i.hasNext(); ) {
@@ -36,7 +36,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.util.Vector;
 
 import javax.swing.Action;
 import javax.swing.BorderFactory;
@@ -87,9 +86,9 @@ public class ConsoleTextPane extends FixedJTextPane {
   protected JPopupMenu defaultPopupMenu = null;
 
   /**
-   * We keep the links here.
+   * We keep the links here, ordered by their position in the text.
    */
-  private Vector links = new Vector();
+  private final LinkIndex links = new LinkIndex();
 
   /**
    * Our regular cursor (our real cursor might be hand while over a link).
@@ -105,6 +104,8 @@ public class ConsoleTextPane extends FixedJTextPane {
    * Creates a new ConsoleTextPane which will be a part of the given Console.
    */
   public ConsoleTextPane(Console console) {
+    super(new ConsoleDocument());
+
     this.console = console;
 
     setEditable(false);
@@ -205,6 +206,7 @@ public class ConsoleTextPane extends FixedJTextPane {
             text = document.getText(0, Math.min(text.length() * 2, documentLength));
 
           // Remove the first line
+          removeLinks(newlineIndex + 1);
           document.remove(0, newlineIndex + 1);
         }
       } catch (BadLocationException e) {
@@ -415,14 +417,27 @@ public class ConsoleTextPane extends FixedJTextPane {
    * ending index clickable.
    */
   public void addLink(Link link) {
-    links.addElement(link);
+    links.add(link);
   }
 
   /**
    * Removes all the links.
    */
   public void removeLinks() {
-    links.removeAllElements();
+    links.clear();
+  }
+
+  /**
+   * Removes the links which start before the specified offset. This is meant to be called right
+   * before the text up to the specified offset is removed from the beginning of the document.
+   */
+  public void removeLinks(int offset) {
+    if (!links.removeBefore(offset)) return;
+
+    if ((curLink != null) && (curLink.getStartPosition().getOffset() < offset)) {
+      curLink = null;
+      setCursor(regCursor, false);
+    }
   }
 
   /**
@@ -580,16 +595,34 @@ public class ConsoleTextPane extends FixedJTextPane {
    * Returns the link at the given location, or null if none.
    */
   protected Link getLink(int x, int y) {
-    int numLinks = links.size();
-    for (int i = 0; i < numLinks; i++) {
-      Link link = (Link) links.elementAt(i);
-      int linkStart = link.getStartPosition().getOffset();
-      int linkEnd = link.getEndPosition().getOffset();
+    if (links.size() == 0) return null;
+
+    int offset = viewToModel(new Point(x, y));
+    if (offset == -1) return null;
 
-      if (isOverText(x, y, linkStart, linkEnd)) return link;
+    try {
+      // viewToModel returns the nearest character boundary, so the point may be over the
+      // character preceding the returned offset, or past the end of the line altogether.
+      Rectangle offsetRect = modelToView(offset);
+      if (offsetRect == null) return null;
+      if ((y < offsetRect.y) || (y >= offsetRect.y + offsetRect.height)) return null;
+
+      if (x < offsetRect.x) {
+        if (offset == 0) return null;
+        Rectangle prevRect = modelToView(offset - 1);
+        if ((prevRect == null) || (prevRect.y != offsetRect.y) || (x < prevRect.x)) return null;
+        offset--;
+      } else {
+        if (offset >= getDocument().getLength()) return null;
+        Rectangle nextRect = modelToView(offset + 1);
+        if ((nextRect != null) && (nextRect.y == offsetRect.y) && (x >= nextRect.x)) return null;
+      }
+    } catch (BadLocationException e) { // Shouldn't happen
+      e.printStackTrace();
+      return null;
     }
 
-    return null;
+    return links.getLink(offset);
   }
 
   /**
@@ -27,6 +27,7 @@ import free.jin.event.GameAdapter;
 import free.jin.event.GameEndEvent;
 import free.jin.event.IllegalMoveEvent;
 import free.jin.event.JinEvent;
+import free.jin.event.ListenerManager;
 import free.jin.event.TakebackEvent;
 
 /**
@@ -61,27 +62,26 @@ public abstract class GameConsoleDesignation extends AbstractConsoleDesignation
 
     this.game = game;
 
-    connection
-        .getListenerManager()
-        .addGameListener(
-            new GameAdapter() {
-              @Override
-              public void gameEnded(GameEndEvent evt) {
-                if (getGame().equals(evt.getGame())) GameConsoleDesignation.this.gameEnded(evt);
-              }
-
-              @Override
-              public void illegalMoveAttempted(IllegalMoveEvent evt) {
-                if (getGame().equals(evt.getGame()))
-                  GameConsoleDesignation.this.illegalMoveAttempted(evt);
-              }
-
-              @Override
-              public void takebackOccurred(TakebackEvent evt) {
-                if (getGame().equals(evt.getGame()))
-                  GameConsoleDesignation.this.takebackOccurred(evt);
-              }
-            });
+    final ListenerManager listenerManager = connection.getListenerManager();
+    listenerManager.addGameListener(
+        game,
+        new GameAdapter() {
+          @Override
+          public void gameEnded(GameEndEvent evt) {
+            GameConsoleDesignation.this.gameEnded(evt);
+            listenerManager.removeGameListener(evt.getGame(), this);
+          }
+
+          @Override
+          public void illegalMoveAttempted(IllegalMoveEvent evt) {
+            GameConsoleDesignation.this.illegalMoveAttempted(evt);
+          }
+
+          @Override
+          public void takebackOccurred(TakebackEvent evt) {
+            GameConsoleDesignation.this.takebackOccurred(evt);
+          }
+        });
 
     game.addPropertyChangeListener(
         new PropertyChangeListener() {
@@ -0,0 +1,174 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.console;
+
+import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the links - URLs, email addresses and text matching the user defined link patterns - in
+ * lines of console text. A <code>LinkDetector</code> is immutable and thread safe, so lines can be
+ * scanned off the event dispatching thread, which then merely applies the resulting spans.
+ */
+final class LinkDetector {
+
+  /**
+   * The regular expression we use for detecting URLs.
+   */
+  private static final Pattern URL_REGEX =
+      Pattern.compile(
+          "((([Ff][Tt][Pp]|[Hh][Tt][Tt][Pp]([Ss])?)://)|([Ww][Ww][Ww]\\.))([^\\s()<>\"])*[^\\s.,()<>\"'!?]");
+
+  /**
+   * The regular expression we use for detecting emails.
+   */
+  private static final Pattern EMAIL_REGEX =
+      Pattern.compile("[^\\s()<>\"\']+@[^\\s()<>\"]+\\.[^\\s.,()<>\"'?]+");
+
+  /**
+   * The user defined link patterns.
+   */
+  private final Pattern[] linkPatterns;
+
+  /**
+   * The literal parts of the commands of the user defined links. The command of a link is the
+   * literal parts with the groups specified in <code>commandGroups</code> between them.
+   */
+  private final String[][] commandLiterals;
+
+  /**
+   * The indices of the groups whose text is substituted for the <code>$n</code> placeholders in
+   * the commands of the user defined links.
+   */
+  private final int[][] commandGroups;
+
+  /**
+   * The indices of the groups making up the user defined links.
+   */
+  private final int[] linkGroups;
+
+  /**
+   * Creates a new <code>LinkDetector</code> with the specified user defined link patterns, the
+   * commands issued for them, with <code>$n</code> standing for the text of the n-th group, and the
+   * indices of the groups to make links out of. <code>null</code> patterns are ignored.
+   */
+  public LinkDetector(Pattern[] patterns, String[] commands, int[] groups) {
+    Vector validPatterns = new Vector();
+    for (int i = 0; i < patterns.length; i++)
+      if (patterns[i] != null) validPatterns.addElement(new Integer(i));
+
+    int count = validPatterns.size();
+    this.linkPatterns = new Pattern[count];
+    this.commandLiterals = new String[count][];
+    this.commandGroups = new int[count][];
+    this.linkGroups = new int[count];
+
+    for (int i = 0; i < count; i++) {
+      int index = ((Integer) validPatterns.elementAt(i)).intValue();
+      linkPatterns[i] = patterns[index];
+      linkGroups[i] = groups[index];
+      parseCommand(commands[index], i);
+    }
+  }
+
+  /**
+   * Splits the specified link command into its literal parts and the group placeholders between
+   * them, and stores them at the specified index.
+   */
+  private void parseCommand(String command, int index) {
+    Vector literals = new Vector();
+    Vector groups = new Vector();
+
+    int literalStart = 0;
+    int length = command.length();
+    for (int i = 0; i < length - 1; i++) {
+      if ((command.charAt(i) == '$') && Character.isDigit(command.charAt(i + 1))) {
+        literals.addElement(command.substring(literalStart, i));
+        groups.addElement(new Integer(Character.digit(command.charAt(i + 1), 10)));
+        literalStart = i + 2;
+        i++;
+      }
+    }
+    literals.addElement(command.substring(literalStart));
+
+    commandLiterals[index] = new String[literals.size()];
+    literals.copyInto(commandLiterals[index]);
+    commandGroups[index] = new int[groups.size()];
+    for (int i = 0; i < commandGroups[index].length; i++)
+      commandGroups[index][i] = ((Integer) groups.elementAt(i)).intValue();
+  }
+
+  /**
+   * Returns the links in the specified line of text, in the order their attributes should be
+   * applied - URLs, then email addresses, then user defined links.
+   */
+  public LinkSpan[] findLinks(String text) {
+    Vector links = new Vector();
+
+    Matcher urlMatcher = URL_REGEX.matcher(text);
+    while (urlMatcher.find()) {
+      int matchStart = urlMatcher.start();
+      int matchEnd = urlMatcher.end();
+
+      Command command =
+          new Command(
+              "url " + text.substring(matchStart, matchEnd),
+              Command.SPECIAL_MASK | Command.BLANKED_MASK);
+      links.addElement(new LinkSpan(matchStart, matchEnd - matchStart, command, "link.url"));
+    }
+
+    Matcher emailMatcher = EMAIL_REGEX.matcher(text);
+    while (emailMatcher.find()) {
+      int matchStart = emailMatcher.start();
+      int matchEnd = emailMatcher.end();
+
+      Command command =
+          new Command(
+              "email " + text.substring(matchStart, matchEnd),
+              Command.SPECIAL_MASK | Command.BLANKED_MASK);
+      links.addElement(new LinkSpan(matchStart, matchEnd - matchStart, command, "link.email"));
+    }
+
+    for (int i = 0; i < linkPatterns.length; i++) {
+      Matcher linkMatcher = linkPatterns[i].matcher(text);
+      while (linkMatcher.find()) {
+        int matchStart = linkMatcher.start(linkGroups[i]);
+        int matchEnd = linkMatcher.end(linkGroups[i]);
+        if (matchEnd <= matchStart) // The group didn't match anything
+        continue;
+
+        String[] literals = commandLiterals[i];
+        int[] groups = commandGroups[i];
+        StringBuffer buf = new StringBuffer("/");
+        for (int j = 0; j < groups.length; j++) {
+          buf.append(literals[j]);
+          buf.append(linkMatcher.group(groups[j]));
+        }
+        buf.append(literals[groups.length]);
+
+        Command command = new Command(buf.toString(), 0);
+        links.addElement(
+            new LinkSpan(matchStart, matchEnd - matchStart, command, "link.command"));
+      }
+    }
+
+    LinkSpan[] result = new LinkSpan[links.size()];
+    links.copyInto(result);
+    return result;
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.console;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the links of a <code>ConsoleTextPane</code> ordered by their starting offset in the
+ * document, so that the link at a certain offset can be found with a binary search. Links are
+ * added line by line as text is appended, so new links almost always go at the end, and lines are
+ * only ever removed from the beginning of the document, so removing the links in trimmed text
+ * amounts to advancing the index of the first link.
+ */
+final class LinkIndex {
+
+  /**
+   * The links, ordered by their starting offsets. The links are at indices
+   * <code>[first, first + count)</code>.
+   */
+  private Link[] links = new Link[64];
+
+  /**
+   * The index of the first link in <code>links</code>.
+   */
+  private int first = 0;
+
+  /**
+   * The amount of links.
+   */
+  private int count = 0;
+
+  /**
+   * The length of the longest link added since the index was last cleared. Only links starting at
+   * most this far before an offset can contain it.
+   */
+  private int maxLinkLength = 0;
+
+  /**
+   * Returns the amount of links in the index.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Adds the specified link.
+   */
+  public void add(Link link) {
+    int start = startOf(link);
+    int length = link.getEndPosition().getOffset() - start;
+    if (length > maxLinkLength) maxLinkLength = length;
+
+    if (first + count == links.length) {
+      if (count * 2 > links.length) { // Grow
+        Link[] newLinks = new Link[links.length * 2];
+        System.arraycopy(links, first, newLinks, 0, count);
+        links = newLinks;
+      } else { // Compact
+        System.arraycopy(links, first, links, 0, count);
+        Arrays.fill(links, count, first + count, null);
+      }
+      first = 0;
+    }
+
+    // Find the insertion point, which is normally right at the end
+    int index = first + count;
+    if ((count > 0) && (startOf(links[index - 1]) > start)) {
+      index = upperBound(start);
+      System.arraycopy(links, index, links, index + 1, first + count - index);
+    }
+
+    links[index] = link;
+    count++;
+  }
+
+  /**
+   * Removes all the links.
+   */
+  public void clear() {
+    Arrays.fill(links, first, first + count, null);
+    first = 0;
+    count = 0;
+    maxLinkLength = 0;
+  }
+
+  /**
+   * Removes all the links which start before the specified offset and returns whether there were
+   * any.
+   */
+  public boolean removeBefore(int offset) {
+    int end = upperBound(offset - 1);
+    if (end == first) return false;
+
+    Arrays.fill(links, first, end, null);
+    count -= end - first;
+    first = count == 0 ? 0 : end;
+    return true;
+  }
+
+  /**
+   * Returns the link containing the character at the specified offset, or <code>null</code> if
+   * none. If several links contain it, the one starting last is returned.
+   */
+  public Link getLink(int offset) {
+    for (int i = upperBound(offset) - 1; i >= first; i--) {
+      Link link = links[i];
+      int start = startOf(link);
+      if (start + maxLinkLength <= offset) break;
+
+      if (offset < link.getEndPosition().getOffset()) return link;
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the index of the first link which starts after the specified offset.
+   */
+  private int upperBound(int offset) {
+    int low = first;
+    int high = first + count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (startOf(links[mid]) <= offset) low = mid + 1;
+      else high = mid;
+    }
+
+    return low;
+  }
+
+  /**
+   * Returns the current starting offset of the specified link.
+   */
+  private static int startOf(Link link) {
+    return link.getStartPosition().getOffset();
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.console;
+
+/**
+ * A link found in a line of text which is about to be added to a console - the range of the
+ * characters making up the link, relative to the beginning of the line, the command issued when
+ * the link is clicked and the text type which determines how the link is displayed.
+ */
+final class LinkSpan {
+
+  /**
+   * The offset of the link in the line.
+   */
+  private final int offset;
+
+  /**
+   * The length of the link.
+   */
+  private final int length;
+
+  /**
+   * The command issued when the link is clicked.
+   */
+  private final Command command;
+
+  /**
+   * The text type of the link.
+   */
+  private final String textType;
+
+  /**
+   * Creates a new <code>LinkSpan</code> with the specified offset, length, command and text type.
+   */
+  public LinkSpan(int offset, int length, Command command, String textType) {
+    if ((offset < 0) || (length <= 0)) throw new IllegalArgumentException("Empty link span");
+
+    this.offset = offset;
+    this.length = length;
+    this.command = command;
+    this.textType = textType;
+  }
+
+  /**
+   * Returns the offset of the link in the line.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns the length of the link.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Returns the command issued when the link is clicked.
+   */
+  public Command getCommand() {
+    return command;
+  }
+
+  /**
+   * Returns the text type of the link.
+   */
+  public String getTextType() {
+    return textType;
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.console;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument.ElementSpec;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyledDocument;
+
+/**
+ * A batch of lines waiting to be added to a console's output component. The lines, along with the
+ * attributes of their text and links, are collected as they arrive and are then appended to the
+ * document in one go - a single insertion if the document is a <code>ConsoleDocument</code>.
+ */
+final class OutputBatch {
+
+  /**
+   * The <code>ElementSpec</code>s of the text - a content spec for each run of text with the same
+   * attributes and an end tag spec at the end of each line.
+   */
+  private final Vector specs = new Vector();
+
+  /**
+   * The links in the batch; their offsets are relative to the beginning of the batch.
+   */
+  private final Vector links = new Vector();
+
+  /**
+   * The total length of the text in the batch.
+   */
+  private int length = 0;
+
+  /**
+   * The amount of lines in the batch.
+   */
+  private int lineCount = 0;
+
+  /**
+   * Adds a line of text with the specified attributes and links to the batch. The attributes of
+   * each link are added to the attributes of the text it spans, in order.
+   */
+  public void addLine(
+      String text, AttributeSet attributes, LinkSpan[] lineLinks, AttributeSet[] linkAttributes) {
+    char[] chars = (text + "\n").toCharArray();
+    int textLength = text.length();
+
+    if (lineLinks.length == 0) addRun(chars, 0, chars.length, attributes);
+    else {
+      // The offsets where the attributes of the text may change
+      int[] bounds = new int[lineLinks.length * 2 + 2];
+      bounds[0] = 0;
+      bounds[1] = textLength;
+      for (int i = 0; i < lineLinks.length; i++) {
+        LinkSpan link = lineLinks[i];
+        bounds[2 * i + 2] = link.getOffset();
+        bounds[2 * i + 3] = link.getOffset() + link.getLength();
+      }
+      Arrays.sort(bounds);
+
+      for (int i = 0; i < bounds.length - 1; i++) {
+        int start = bounds[i];
+        int end = bounds[i + 1];
+        if (start == end) continue;
+
+        AttributeSet runAttributes = attributes;
+        for (int j = 0; j < lineLinks.length; j++) {
+          LinkSpan link = lineLinks[j];
+          if ((link.getOffset() <= start) && (link.getOffset() + link.getLength() >= end)) {
+            if (runAttributes == attributes) runAttributes = new SimpleAttributeSet(attributes);
+            ((SimpleAttributeSet) runAttributes).addAttributes(linkAttributes[j]);
+          }
+        }
+
+        addRun(chars, start, end - start, runAttributes);
+      }
+      addRun(chars, textLength, 1, attributes);
+
+      for (int i = 0; i < lineLinks.length; i++) {
+        LinkSpan link = lineLinks[i];
+        links.addElement(
+            new LinkSpan(
+                length + link.getOffset(),
+                link.getLength(),
+                link.getCommand(),
+                link.getTextType()));
+      }
+    }
+
+    specs.addElement(new ElementSpec(null, ElementSpec.EndTagType));
+
+    length += chars.length;
+    lineCount++;
+  }
+
+  /**
+   * Adds a content spec for the specified run of text.
+   */
+  private void addRun(char[] chars, int offset, int runLength, AttributeSet attributes) {
+    specs.addElement(
+        new ElementSpec(attributes, ElementSpec.ContentType, chars, offset, runLength));
+  }
+
+  /**
+   * Returns the amount of lines in the batch.
+   */
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Returns the links in the batch, as <code>LinkSpan</code>s whose offsets are relative to the
+   * beginning of the batch.
+   */
+  public Vector getLinks() {
+    return links;
+  }
+
+  /**
+   * Appends the text of the batch to the end of the specified document and returns the offset at
+   * which it was added.
+   */
+  public int appendTo(StyledDocument document) throws BadLocationException {
+    int offset = document.getLength();
+
+    if (document instanceof ConsoleDocument) {
+      ((ConsoleDocument) document).append(specs);
+      return offset;
+    }
+
+    int specCount = specs.size();
+    for (int i = 0; i < specCount; i++) {
+      ElementSpec spec = (ElementSpec) specs.elementAt(i);
+      if (spec.getType() == ElementSpec.ContentType) {
+        String text = new String(spec.getArray(), spec.getOffset(), spec.getLength());
+        document.insertString(document.getLength(), text, spec.getAttributes());
+      }
+    }
+
+    return offset;
+  }
+}
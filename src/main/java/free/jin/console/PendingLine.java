@@ -0,0 +1,93 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.console;
+
+/**
+ * A line of text added to a console, waiting for its links to be found so that it can be added to
+ * the console's output component. The links are normally found by a worker thread, but if the
+ * line is needed before that happens, whoever needs it finds them. This class is thread safe.
+ */
+final class PendingLine implements Runnable {
+
+  /**
+   * The text of the line.
+   */
+  private final String text;
+
+  /**
+   * The text type of the line.
+   */
+  private final String textType;
+
+  /**
+   * The link detector we use to find the links.
+   */
+  private final LinkDetector linkDetector;
+
+  /**
+   * The links in the line; <code>null</code> if they haven't been found yet.
+   */
+  private LinkSpan[] links = null;
+
+  /**
+   * Creates a new <code>PendingLine</code> with the specified text and text type, whose links are
+   * to be found with the specified <code>LinkDetector</code>.
+   */
+  public PendingLine(String text, String textType, LinkDetector linkDetector) {
+    this.text = text;
+    this.textType = textType;
+    this.linkDetector = linkDetector;
+  }
+
+  /**
+   * Returns the text of the line.
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Returns the text type of the line.
+   */
+  public String getTextType() {
+    return textType;
+  }
+
+  /**
+   * Returns whether the links in the line have already been found.
+   */
+  public synchronized boolean isDetected() {
+    return links != null;
+  }
+
+  /**
+   * Returns the links in the line, finding them first, if necessary.
+   */
+  public synchronized LinkSpan[] getLinks() {
+    if (links == null) links = linkDetector.findLinks(text);
+
+    return links;
+  }
+
+  /**
+   * Finds the links in the line. This is what the worker thread runs.
+   */
+  @Override
+  public void run() {
+    getLinks();
+  }
+}
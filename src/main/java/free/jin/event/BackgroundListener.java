@@ -0,0 +1,34 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2007 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.event;
+
+import java.util.EventListener;
+
+/**
+ * A marker interface for listeners which don't touch the user interface and may therefore be
+ * notified of events on a background thread rather than the event dispatching thread. Game, chat,
+ * plain text and seek listeners registered with a <code>BasicListenerManager</code> which implement
+ * this interface are notified on a separate pool of threads. Events concerning the same game are
+ * delivered in the order they were fired, as are all the other events among themselves, but a
+ * background listener may be notified of an event before or after the event dispatching thread
+ * listeners are, and the events of different games may be delivered concurrently. Background
+ * listeners must therefore be thread safe, and must use <code>SwingUtilities.invokeLater</code> for
+ * anything they do with the user interface.
+ *
+ * @see ListenerManager#invokeInBackground(free.jin.Game, Runnable)
+ */
+public interface BackgroundListener extends EventListener {}
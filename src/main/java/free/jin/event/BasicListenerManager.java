@@ -18,30 +18,201 @@ package free.jin.event;
 
 import free.jin.Connection;
 import free.jin.FriendsConnection;
+import free.jin.Game;
 import free.jin.GameListConnection;
 import free.jin.MatchOfferConnection;
 import free.jin.SeekConnection;
-import free.util.EventListenerList;
+import free.util.CopyOnWriteListenerList;
+import free.util.OrderedExecutor;
 import free.util.UnsupportedOperationException;
+import java.util.Enumeration;
+import java.util.EventListener;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
- * A basic implementation of the <code>ListenerManager</code> interface which uses an
- * <code>EventListenerList</code> to hold the listeners. It also provides convenient event firing
- * methods.
+ * A basic implementation of the <code>ListenerManager</code> interface which keeps the listeners of
+ * each type in a <code>CopyOnWriteListenerList</code>. It also provides convenient event firing
+ * methods. Listeners may be added and removed from any thread. What happens when a listener throws
+ * an exception is decided by a pluggable {@link ListenerExceptionPolicy}.
+ *
+ * <p>Game, chat, plain text and seek listeners which implement {@link BackgroundListener} are kept
+ * in separate lists and notified on a pool of worker threads instead of the thread firing the
+ * event. Events concerning a game are delivered to them in order for each game; the rest of the
+ * events are delivered in order among themselves. The time each background listener waits for and
+ * spends handling events is recorded, and can be obtained via {@link #getListenerLatencies()}.
  */
 public class BasicListenerManager
     implements ListenerManager, SeekListenerManager, GameListListenerManager,
         FriendsListenerManager, MatchOfferListenerManager {
 
+  /**
+   * The identifier of <code>GameStartEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int GAME_STARTED = 0;
+
+  /**
+   * The identifier of <code>GameEndEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int GAME_ENDED = 1;
+
+  /**
+   * The identifier of <code>MoveMadeEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int MOVE_MADE = 2;
+
+  /**
+   * The identifier of <code>PositionChangedEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int POSITION_CHANGED = 3;
+
+  /**
+   * The identifier of <code>TakebackEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int TAKEBACK_OCCURRED = 4;
+
+  /**
+   * The identifier of <code>IllegalMoveEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int ILLEGAL_MOVE_ATTEMPTED = 5;
+
+  /**
+   * The identifier of <code>ClockAdjustmentEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int CLOCK_ADJUSTED = 6;
+
+  /**
+   * The identifier of <code>BoardFlipEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int BOARD_FLIPPED = 7;
+
+  /**
+   * The identifier of <code>OfferEvent</code>s, see {@link #getGameEventType(GameEvent)}.
+   */
+  private static final int OFFER_UPDATED = 8;
+
+  /**
+   * The maximum amount of threads notifying background listeners.
+   */
+  private static final int BACKGROUND_THREAD_COUNT = 2;
+
+  /**
+   * The value passed as the firing time of events whose dispatching shouldn't be timed.
+   */
+  private static final long NOT_TIMED = Long.MIN_VALUE;
+
   /**
    * The source of the events.
    */
   protected final Connection source;
 
   /**
-   * The <code>EventListenerList</code> where we keep all of our listeners.
+   * The <code>ConnectionListener</code>s.
+   */
+  protected final CopyOnWriteListenerList connectionListeners =
+      new CopyOnWriteListenerList(ConnectionListener.class);
+
+  /**
+   * The <code>PlainTextListener</code>s.
+   */
+  protected final CopyOnWriteListenerList plainTextListeners =
+      new CopyOnWriteListenerList(PlainTextListener.class);
+
+  /**
+   * The <code>ChatListener</code>s.
+   */
+  protected final CopyOnWriteListenerList chatListeners =
+      new CopyOnWriteListenerList(ChatListener.class);
+
+  /**
+   * The <code>GameListener</code>s interested in all games.
+   */
+  protected final CopyOnWriteListenerList gameListeners =
+      new CopyOnWriteListenerList(GameListener.class);
+
+  /**
+   * The <code>SeekListener</code>s.
+   */
+  protected final CopyOnWriteListenerList seekListeners =
+      new CopyOnWriteListenerList(SeekListener.class);
+
+  /**
+   * The <code>GameListListener</code>s.
+   */
+  protected final CopyOnWriteListenerList gameListListeners =
+      new CopyOnWriteListenerList(GameListListener.class);
+
+  /**
+   * The <code>FriendsListener</code>s.
    */
-  protected final EventListenerList listenerList = new EventListenerList();
+  protected final CopyOnWriteListenerList friendsListeners =
+      new CopyOnWriteListenerList(FriendsListener.class);
+
+  /**
+   * The <code>MatchOfferListener</code>s.
+   */
+  protected final CopyOnWriteListenerList matchOfferListeners =
+      new CopyOnWriteListenerList(MatchOfferListener.class);
+
+  /**
+   * The background <code>PlainTextListener</code>s.
+   */
+  protected final CopyOnWriteListenerList backgroundPlainTextListeners =
+      new CopyOnWriteListenerList(PlainTextListener.class);
+
+  /**
+   * The background <code>ChatListener</code>s.
+   */
+  protected final CopyOnWriteListenerList backgroundChatListeners =
+      new CopyOnWriteListenerList(ChatListener.class);
+
+  /**
+   * The background <code>GameListener</code>s. These are always interested in all games.
+   */
+  protected final CopyOnWriteListenerList backgroundGameListeners =
+      new CopyOnWriteListenerList(GameListener.class);
+
+  /**
+   * The background <code>SeekListener</code>s.
+   */
+  protected final CopyOnWriteListenerList backgroundSeekListeners =
+      new CopyOnWriteListenerList(SeekListener.class);
+
+  /**
+   * Maps <code>Game</code>s to <code>CopyOnWriteListenerList</code>s holding the
+   * <code>GameListener</code>s interested only in that game.
+   */
+  private final Hashtable gameScopedListeners = new Hashtable();
+
+  /**
+   * The policy deciding what happens when a listener throws an exception.
+   */
+  private volatile ListenerExceptionPolicy exceptionPolicy = new LoggingListenerExceptionPolicy();
+
+  /**
+   * The executor notifying background listeners. Game events are keyed by their game and all other
+   * events by {@link #nonGameEventsKey}.
+   */
+  private final OrderedExecutor backgroundExecutor =
+      new OrderedExecutor("BackgroundListeners", BACKGROUND_THREAD_COUNT);
+
+  /**
+   * The key with which events not concerning a game are submitted to the background executor.
+   */
+  private final Object nonGameEventsKey = new Object();
+
+  /**
+   * Whether the latency of listeners notified on the thread firing the event is recorded. The
+   * latency of background listeners is always recorded.
+   */
+  private volatile boolean latencyRecordingEnabled = false;
+
+  /**
+   * Maps listeners to their <code>ListenerLatency</code>s. Access is synchronized on the map.
+   */
+  private final Map listenerLatencies = new WeakHashMap();
 
   /**
    * Creates a new <code>BasicListenerManager</code> with the specified source
@@ -51,12 +222,114 @@ public class BasicListenerManager
     this.source = source;
   }
 
+  /**
+   * Sets the policy deciding what happens when a listener throws an exception. The default policy
+   * is a <code>LoggingListenerExceptionPolicy</code>.
+   */
+  public void setListenerExceptionPolicy(ListenerExceptionPolicy exceptionPolicy) {
+    if (exceptionPolicy == null)
+      throw new IllegalArgumentException("The exception policy may not be null");
+
+    this.exceptionPolicy = exceptionPolicy;
+  }
+
+  /**
+   * Returns the policy deciding what happens when a listener throws an exception.
+   */
+  public ListenerExceptionPolicy getListenerExceptionPolicy() {
+    return exceptionPolicy;
+  }
+
+  /**
+   * Sets whether the latency of listeners notified on the thread firing the event (normally the
+   * event dispatching thread) is recorded. This is off by default, as it costs two clock reads per
+   * listener per event. The latency of background listeners is always recorded.
+   */
+  public void setLatencyRecordingEnabled(boolean enabled) {
+    this.latencyRecordingEnabled = enabled;
+  }
+
+  /**
+   * Returns whether the latency of listeners notified on the thread firing the event is recorded.
+   */
+  public boolean isLatencyRecordingEnabled() {
+    return latencyRecordingEnabled;
+  }
+
+  /**
+   * Returns snapshots of the latency statistics of all the listeners whose latency has been
+   * recorded.
+   */
+  public ListenerLatency[] getListenerLatencies() {
+    synchronized (listenerLatencies) {
+      ListenerLatency[] latencies = new ListenerLatency[listenerLatencies.size()];
+      Iterator values = listenerLatencies.values().iterator();
+      for (int i = 0; i < latencies.length; i++)
+        latencies[i] = ((ListenerLatency) values.next()).copy();
+      return latencies;
+    }
+  }
+
+  /**
+   * Discards all recorded latency statistics.
+   */
+  public void clearListenerLatencies() {
+    synchronized (listenerLatencies) {
+      listenerLatencies.clear();
+    }
+  }
+
+  /**
+   * Returns the firing time to use for an event dispatched on the firing thread.
+   */
+  private long getFireTime() {
+    return latencyRecordingEnabled ? System.nanoTime() : NOT_TIMED;
+  }
+
+  /**
+   * Records that the specified listener was notified of an event <code>delay</code> nanoseconds
+   * after it was fired and took <code>duration</code> nanoseconds to handle it.
+   */
+  private void recordLatency(EventListener listener, long delay, long duration) {
+    ListenerLatency latency;
+    synchronized (listenerLatencies) {
+      latency = (ListenerLatency) listenerLatencies.get(listener);
+      if (latency == null) {
+        latency = new ListenerLatency(listener);
+        listenerLatencies.put(listener, latency);
+      }
+    }
+
+    latency.record(delay, duration);
+  }
+
+  /**
+   * Runs the specified task on the background listener executor, after all the events concerning
+   * the specified game which have already been fired to background listeners are handled.
+   */
+  @Override
+  public void invokeInBackground(Game game, Runnable task) {
+    if (game == null) throw new IllegalArgumentException("The game may not be null");
+
+    backgroundExecutor.execute(game, task);
+  }
+
+  /**
+   * Invoked when the specified listener, notified via the specified list, throws the specified
+   * exception. Consults the exception policy and removes the listener from the list if the policy
+   * says so.
+   */
+  protected void listenerFailed(
+      CopyOnWriteListenerList listeners, EventListener listener, RuntimeException e) {
+    if (!exceptionPolicy.listenerFailed(listener, e)) listeners.remove(listener);
+  }
+
   /**
    * Adds the given <code>ConnectionListener</code> to receive connection related events.
    */
   @Override
   public void addConnectionListener(ConnectionListener listener) {
-    listenerList.add(ConnectionListener.class, listener);
+    connectionListeners.add(listener);
   }
 
   /**
@@ -64,7 +337,7 @@ public class BasicListenerManager
    */
   @Override
   public void removeConnectionListener(ConnectionListener listener) {
-    listenerList.remove(ConnectionListener.class, listener);
+    connectionListeners.remove(listener);
   }
 
   /**
@@ -72,15 +345,12 @@ public class BasicListenerManager
    * made.
    */
   public void fireConnectionAttempted(Connection conn, String hostname, int port) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == ConnectionListener.class) {
-        ConnectionListener listener = (ConnectionListener) listeners[i + 1];
-        try {
-          listener.connectionAttempted(conn, hostname, port);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+    ConnectionListener[] listeners = (ConnectionListener[]) connectionListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        listeners[i].connectionAttempted(conn, hostname, port);
+      } catch (RuntimeException e) {
+        listenerFailed(connectionListeners, listeners[i], e);
       }
     }
   }
@@ -90,15 +360,12 @@ public class BasicListenerManager
    * been established.
    */
   public void fireConnectionEstablished(Connection conn) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == ConnectionListener.class) {
-        ConnectionListener listener = (ConnectionListener) listeners[i + 1];
-        try {
-          listener.connectionEstablished(conn);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+    ConnectionListener[] listeners = (ConnectionListener[]) connectionListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        listeners[i].connectionEstablished(conn);
+      } catch (RuntimeException e) {
+        listenerFailed(connectionListeners, listeners[i], e);
       }
     }
   }
@@ -107,15 +374,12 @@ public class BasicListenerManager
    * Notifies all interested <code>Connection</code> listeners that the attempt to connect failed.
    */
   public void fireConnectingFailed(Connection conn, String reason) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == ConnectionListener.class) {
-        ConnectionListener listener = (ConnectionListener) listeners[i + 1];
-        try {
-          listener.connectingFailed(conn, reason);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+    ConnectionListener[] listeners = (ConnectionListener[]) connectionListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        listeners[i].connectingFailed(conn, reason);
+      } catch (RuntimeException e) {
+        listenerFailed(connectionListeners, listeners[i], e);
       }
     }
   }
@@ -124,15 +388,12 @@ public class BasicListenerManager
    * Notifies all interested <code>Connection</code> listeners that login succeeded.
    */
   public void fireLoginSucceeded(Connection conn) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == ConnectionListener.class) {
-        ConnectionListener listener = (ConnectionListener) listeners[i + 1];
-        try {
-          listener.loginSucceeded(conn);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+    ConnectionListener[] listeners = (ConnectionListener[]) connectionListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        listeners[i].loginSucceeded(conn);
+      } catch (RuntimeException e) {
+        listenerFailed(connectionListeners, listeners[i], e);
       }
     }
   }
@@ -141,15 +402,12 @@ public class BasicListenerManager
    * Notifies all interested <code>Connection</code> listeners that login failed.
    */
   public void fireLoginFailed(Connection conn, String reason) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == ConnectionListener.class) {
-        ConnectionListener listener = (ConnectionListener) listeners[i + 1];
-        try {
-          listener.loginFailed(conn, reason);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+    ConnectionListener[] listeners = (ConnectionListener[]) connectionListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        listeners[i].loginFailed(conn, reason);
+      } catch (RuntimeException e) {
+        listenerFailed(connectionListeners, listeners[i], e);
       }
     }
   }
@@ -159,15 +417,12 @@ public class BasicListenerManager
    * lost.
    */
   public void fireConnectionLost(Connection conn) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == ConnectionListener.class) {
-        ConnectionListener listener = (ConnectionListener) listeners[i + 1];
-        try {
-          listener.connectionLost(conn);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+    ConnectionListener[] listeners = (ConnectionListener[]) connectionListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        listeners[i].connectionLost(conn);
+      } catch (RuntimeException e) {
+        listenerFailed(connectionListeners, listeners[i], e);
       }
     }
   }
@@ -178,7 +433,8 @@ public class BasicListenerManager
    */
   @Override
   public void addPlainTextListener(PlainTextListener listener) {
-    listenerList.add(PlainTextListener.class, listener);
+    if (listener instanceof BackgroundListener) backgroundPlainTextListeners.add(listener);
+    else plainTextListeners.add(listener);
   }
 
   /**
@@ -187,23 +443,45 @@ public class BasicListenerManager
    */
   @Override
   public void removePlainTextListener(PlainTextListener listener) {
-    listenerList.remove(PlainTextListener.class, listener);
+    if (listener instanceof BackgroundListener) backgroundPlainTextListeners.remove(listener);
+    else plainTextListeners.remove(listener);
   }
 
   /**
    * Fires the specified <code>PlainTextEvent</code> to all interested listeners.
    */
-  public void firePlainTextEvent(PlainTextEvent evt) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == PlainTextListener.class) {
-        PlainTextListener listener = (PlainTextListener) listeners[i + 1];
-        try {
-          listener.plainTextReceived(evt);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+  public void firePlainTextEvent(final PlainTextEvent evt) {
+    if (!backgroundPlainTextListeners.isEmpty()) {
+      final long fireTime = System.nanoTime();
+      backgroundExecutor.execute(
+          nonGameEventsKey,
+          new Runnable() {
+            @Override
+            public void run() {
+              dispatchPlainTextEvent(backgroundPlainTextListeners, evt, fireTime);
+            }
+          });
+    }
+
+    dispatchPlainTextEvent(plainTextListeners, evt, getFireTime());
+  }
+
+  /**
+   * Dispatches the specified <code>PlainTextEvent</code>, fired at the specified time, to the
+   * listeners in the specified list.
+   */
+  private void dispatchPlainTextEvent(
+      CopyOnWriteListenerList list, PlainTextEvent evt, long fireTime) {
+    PlainTextListener[] listeners = (PlainTextListener[]) list.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      long startTime = (fireTime == NOT_TIMED) ? 0 : System.nanoTime();
+      try {
+        listeners[i].plainTextReceived(evt);
+      } catch (RuntimeException e) {
+        listenerFailed(list, listeners[i], e);
       }
+      if (fireTime != NOT_TIMED)
+        recordLatency(listeners[i], startTime - fireTime, System.nanoTime() - startTime);
     }
   }
 
@@ -213,7 +491,8 @@ public class BasicListenerManager
    */
   @Override
   public void addChatListener(ChatListener listener) {
-    listenerList.add(ChatListener.class, listener);
+    if (listener instanceof BackgroundListener) backgroundChatListeners.add(listener);
+    else chatListeners.add(listener);
   }
 
   /**
@@ -222,23 +501,51 @@ public class BasicListenerManager
    */
   @Override
   public void removeChatListener(ChatListener listener) {
-    listenerList.remove(ChatListener.class, listener);
+    if (listener instanceof BackgroundListener) backgroundChatListeners.remove(listener);
+    else chatListeners.remove(listener);
+  }
+
+  /**
+   * Returns the total amount of registered <code>ChatListener</code>s, including background ones.
+   */
+  protected int getChatListenerCount() {
+    return chatListeners.size() + backgroundChatListeners.size();
   }
 
   /**
    * Dispatches the specified <code>ChatEvent</code> to all interested listeners.
    */
-  public void fireChatEvent(ChatEvent evt) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == ChatListener.class) {
-        ChatListener listener = (ChatListener) listeners[i + 1];
-        try {
-          listener.chatMessageReceived(evt);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+  public void fireChatEvent(final ChatEvent evt) {
+    if (!backgroundChatListeners.isEmpty()) {
+      final long fireTime = System.nanoTime();
+      backgroundExecutor.execute(
+          nonGameEventsKey,
+          new Runnable() {
+            @Override
+            public void run() {
+              dispatchChatEvent(backgroundChatListeners, evt, fireTime);
+            }
+          });
+    }
+
+    dispatchChatEvent(chatListeners, evt, getFireTime());
+  }
+
+  /**
+   * Dispatches the specified <code>ChatEvent</code>, fired at the specified time, to the listeners
+   * in the specified list.
+   */
+  private void dispatchChatEvent(CopyOnWriteListenerList list, ChatEvent evt, long fireTime) {
+    ChatListener[] listeners = (ChatListener[]) list.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      long startTime = (fireTime == NOT_TIMED) ? 0 : System.nanoTime();
+      try {
+        listeners[i].chatMessageReceived(evt);
+      } catch (RuntimeException e) {
+        listenerFailed(list, listeners[i], e);
       }
+      if (fireTime != NOT_TIMED)
+        recordLatency(listeners[i], startTime - fireTime, System.nanoTime() - startTime);
     }
   }
 
@@ -248,7 +555,8 @@ public class BasicListenerManager
    */
   @Override
   public void addGameListener(GameListener listener) {
-    listenerList.add(GameListener.class, listener);
+    if (listener instanceof BackgroundListener) backgroundGameListeners.add(listener);
+    else gameListeners.add(listener);
   }
 
   /**
@@ -257,35 +565,174 @@ public class BasicListenerManager
    */
   @Override
   public void removeGameListener(GameListener listener) {
-    listenerList.remove(GameListener.class, listener);
+    if (listener instanceof BackgroundListener) backgroundGameListeners.remove(listener);
+    else gameListeners.remove(listener);
+  }
+
+  /**
+   * Adds the specified <code>GameListener</code> to the list of listeners receiving notifications
+   * of <code>GameEvent</code>s concerning the specified game. Listeners registered this way are
+   * always notified on the thread firing the event, even if they implement
+   * <code>BackgroundListener</code>.
+   */
+  @Override
+  public void addGameListener(Game game, GameListener listener) {
+    if (game == null) throw new IllegalArgumentException("The game may not be null");
+
+    synchronized (gameScopedListeners) {
+      CopyOnWriteListenerList listeners = (CopyOnWriteListenerList) gameScopedListeners.get(game);
+      if (listeners == null) {
+        listeners = new CopyOnWriteListenerList(GameListener.class);
+        gameScopedListeners.put(game, listeners);
+      }
+      listeners.add(listener);
+    }
+  }
+
+  /**
+   * Removes the specified <code>GameListener</code> from the list of listeners receiving
+   * notifications of <code>GameEvent</code>s concerning the specified game.
+   */
+  @Override
+  public void removeGameListener(Game game, GameListener listener) {
+    synchronized (gameScopedListeners) {
+      CopyOnWriteListenerList listeners = (CopyOnWriteListenerList) gameScopedListeners.get(game);
+      if (listeners == null) return;
+
+      listeners.remove(listener);
+      if (listeners.isEmpty()) gameScopedListeners.remove(game);
+    }
   }
 
   /**
-   * Dispatches the specified <code>GameEvent</code> to all interested listeners.
+   * Returns the list of <code>GameListener</code>s interested only in the specified game, or
+   * <code>null</code> if there are none.
    */
-  public void fireGameEvent(GameEvent evt) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == GameListener.class) {
-        GameListener listener = (GameListener) listeners[i + 1];
-        try {
-          if (evt instanceof GameStartEvent) listener.gameStarted((GameStartEvent) evt);
-          else if (evt instanceof GameEndEvent) listener.gameEnded((GameEndEvent) evt);
-          else if (evt instanceof MoveMadeEvent) listener.moveMade((MoveMadeEvent) evt);
-          else if (evt instanceof PositionChangedEvent)
+  protected CopyOnWriteListenerList getGameListeners(Game game) {
+    return (CopyOnWriteListenerList) gameScopedListeners.get(game);
+  }
+
+  /**
+   * Returns the total amount of registered <code>GameListener</code>s, whether they are interested
+   * in all games or only in a specific one, including background ones.
+   */
+  protected int getGameListenerCount() {
+    int count = gameListeners.size() + backgroundGameListeners.size();
+    synchronized (gameScopedListeners) {
+      Enumeration lists = gameScopedListeners.elements();
+      while (lists.hasMoreElements())
+        count += ((CopyOnWriteListenerList) lists.nextElement()).size();
+    }
+
+    return count;
+  }
+
+  /**
+   * Dispatches the specified <code>GameEvent</code> to all interested listeners - those
+   * interested in all games, followed by those interested only in the event's game. Background
+   * listeners are handed the event before either. The listeners interested only in the event's game
+   * are those registered when the event is fired, so one which a listener interested in all games
+   * removes (as a board is removed when its game ends) still gets the event.
+   */
+  public void fireGameEvent(final GameEvent evt) {
+    final int eventType = getGameEventType(evt);
+
+    if (!backgroundGameListeners.isEmpty()) {
+      final long fireTime = System.nanoTime();
+      backgroundExecutor.execute(
+          evt.getGame(),
+          new Runnable() {
+            @Override
+            public void run() {
+              dispatchGameEvent(backgroundGameListeners, evt, eventType, fireTime);
+            }
+          });
+    }
+
+    CopyOnWriteListenerList scopedList = getGameListeners(evt.getGame());
+    GameListener[] scopedListeners =
+        (scopedList == null) ? null : (GameListener[]) scopedList.getListeners();
+
+    long fireTime = getFireTime();
+    dispatchGameEvent(gameListeners, evt, eventType, fireTime);
+    if (scopedList != null)
+      dispatchGameEvent(scopedList, scopedListeners, evt, eventType, fireTime);
+  }
+
+  /**
+   * Returns the identifier of the type of the specified <code>GameEvent</code>. This lets us select
+   * the <code>GameListener</code> method to invoke once per event rather than once per listener.
+   */
+  private static int getGameEventType(GameEvent evt) {
+    if (evt instanceof MoveMadeEvent) return MOVE_MADE;
+    else if (evt instanceof ClockAdjustmentEvent) return CLOCK_ADJUSTED;
+    else if (evt instanceof GameStartEvent) return GAME_STARTED;
+    else if (evt instanceof GameEndEvent) return GAME_ENDED;
+    else if (evt instanceof PositionChangedEvent) return POSITION_CHANGED;
+    else if (evt instanceof TakebackEvent) return TAKEBACK_OCCURRED;
+    else if (evt instanceof IllegalMoveEvent) return ILLEGAL_MOVE_ATTEMPTED;
+    else if (evt instanceof BoardFlipEvent) return BOARD_FLIPPED;
+    else if (evt instanceof OfferEvent) return OFFER_UPDATED;
+    else throw new IllegalArgumentException("Unknown GameEvent type: " + evt.getClass());
+  }
+
+  /**
+   * Dispatches the specified <code>GameEvent</code>, of the specified type and fired at the
+   * specified time, to the listeners in the specified list.
+   */
+  private void dispatchGameEvent(
+      CopyOnWriteListenerList list, GameEvent evt, int eventType, long fireTime) {
+    dispatchGameEvent(list, (GameListener[]) list.getListeners(), evt, eventType, fireTime);
+  }
+
+  /**
+   * Dispatches the specified <code>GameEvent</code>, of the specified type and fired at the
+   * specified time, to the specified listeners, taken earlier from the specified list.
+   */
+  private void dispatchGameEvent(
+      CopyOnWriteListenerList list,
+      GameListener[] listeners,
+      GameEvent evt,
+      int eventType,
+      long fireTime) {
+    for (int i = 0; i < listeners.length; i++) {
+      GameListener listener = listeners[i];
+      long startTime = (fireTime == NOT_TIMED) ? 0 : System.nanoTime();
+      try {
+        switch (eventType) {
+          case GAME_STARTED:
+            listener.gameStarted((GameStartEvent) evt);
+            break;
+          case GAME_ENDED:
+            listener.gameEnded((GameEndEvent) evt);
+            break;
+          case MOVE_MADE:
+            listener.moveMade((MoveMadeEvent) evt);
+            break;
+          case POSITION_CHANGED:
             listener.positionChanged((PositionChangedEvent) evt);
-          else if (evt instanceof TakebackEvent) listener.takebackOccurred((TakebackEvent) evt);
-          else if (evt instanceof IllegalMoveEvent)
+            break;
+          case TAKEBACK_OCCURRED:
+            listener.takebackOccurred((TakebackEvent) evt);
+            break;
+          case ILLEGAL_MOVE_ATTEMPTED:
             listener.illegalMoveAttempted((IllegalMoveEvent) evt);
-          else if (evt instanceof ClockAdjustmentEvent)
+            break;
+          case CLOCK_ADJUSTED:
             listener.clockAdjusted((ClockAdjustmentEvent) evt);
-          else if (evt instanceof BoardFlipEvent) listener.boardFlipped((BoardFlipEvent) evt);
-          else if (evt instanceof OfferEvent) listener.offerUpdated((OfferEvent) evt);
-          else throw new IllegalArgumentException("Unknown GameEvent type: " + evt.getClass());
-        } catch (RuntimeException e) {
-          e.printStackTrace();
+            break;
+          case BOARD_FLIPPED:
+            listener.boardFlipped((BoardFlipEvent) evt);
+            break;
+          case OFFER_UPDATED:
+            listener.offerUpdated((OfferEvent) evt);
+            break;
         }
+      } catch (RuntimeException e) {
+        listenerFailed(list, listener, e);
       }
+      if (fireTime != NOT_TIMED)
+        recordLatency(listener, startTime - fireTime, System.nanoTime() - startTime);
     }
   }
 
@@ -299,7 +746,8 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of SeekConnection");
 
-    listenerList.add(SeekListener.class, listener);
+    if (listener instanceof BackgroundListener) backgroundSeekListeners.add(listener);
+    else seekListeners.add(listener);
   }
 
   /**
@@ -312,36 +760,61 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of SeekConnection");
 
-    listenerList.remove(SeekListener.class, listener);
+    if (listener instanceof BackgroundListener) backgroundSeekListeners.remove(listener);
+    else seekListeners.remove(listener);
+  }
+
+  /**
+   * Returns the total amount of registered <code>SeekListener</code>s, including background ones.
+   */
+  protected int getSeekListenerCount() {
+    return seekListeners.size() + backgroundSeekListeners.size();
   }
 
   /**
    * Fires the specified <code>SeekEvent</code> to all interested <code>SeekListener</code>s.
    */
-  public void fireSeekEvent(SeekEvent evt) {
+  public void fireSeekEvent(final SeekEvent evt) {
     if (!(source instanceof SeekConnection))
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of SeekConnection");
 
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == SeekListener.class) {
-        SeekListener listener = (SeekListener) listeners[i + 1];
-        try {
-          switch (evt.getID()) {
-            case SeekEvent.SEEK_ADDED:
-              listener.seekAdded(evt);
-              break;
-            case SeekEvent.SEEK_REMOVED:
-              listener.seekRemoved(evt);
-              break;
-            default:
-              throw new IllegalArgumentException("Unknown SeekEvent ID: " + evt.getID());
-          }
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+    int id = evt.getID();
+    if ((id != SeekEvent.SEEK_ADDED) && (id != SeekEvent.SEEK_REMOVED))
+      throw new IllegalArgumentException("Unknown SeekEvent ID: " + id);
+
+    if (!backgroundSeekListeners.isEmpty()) {
+      final long fireTime = System.nanoTime();
+      backgroundExecutor.execute(
+          nonGameEventsKey,
+          new Runnable() {
+            @Override
+            public void run() {
+              dispatchSeekEvent(backgroundSeekListeners, evt, fireTime);
+            }
+          });
+    }
+
+    dispatchSeekEvent(seekListeners, evt, getFireTime());
+  }
+
+  /**
+   * Dispatches the specified <code>SeekEvent</code>, fired at the specified time, to the listeners
+   * in the specified list.
+   */
+  private void dispatchSeekEvent(CopyOnWriteListenerList list, SeekEvent evt, long fireTime) {
+    boolean added = evt.getID() == SeekEvent.SEEK_ADDED;
+    SeekListener[] listeners = (SeekListener[]) list.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      long startTime = (fireTime == NOT_TIMED) ? 0 : System.nanoTime();
+      try {
+        if (added) listeners[i].seekAdded(evt);
+        else listeners[i].seekRemoved(evt);
+      } catch (RuntimeException e) {
+        listenerFailed(list, listeners[i], e);
       }
+      if (fireTime != NOT_TIMED)
+        recordLatency(listeners[i], startTime - fireTime, System.nanoTime() - startTime);
     }
   }
 
@@ -355,7 +828,7 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of GameListConnection");
 
-    listenerList.add(GameListListener.class, listener);
+    gameListListeners.add(listener);
   }
 
   /**
@@ -368,7 +841,7 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of GameListConnection");
 
-    listenerList.remove(GameListListener.class, listener);
+    gameListListeners.remove(listener);
   }
 
   /**
@@ -380,15 +853,12 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of GameListConnection");
 
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == GameListListener.class) {
-        GameListListener listener = (GameListListener) listeners[i + 1];
-        try {
-          listener.gameListArrived(evt);
-        } catch (RuntimeException e) {
-          e.printStackTrace();
-        }
+    GameListListener[] listeners = (GameListListener[]) gameListListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        listeners[i].gameListArrived(evt);
+      } catch (RuntimeException e) {
+        listenerFailed(gameListListeners, listeners[i], e);
       }
     }
   }
@@ -403,7 +873,7 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of FriendsConnection");
 
-    listenerList.add(FriendsListener.class, listener);
+    friendsListeners.add(listener);
   }
 
   /**
@@ -416,7 +886,7 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of FriendsConnection");
 
-    listenerList.remove(FriendsListener.class, listener);
+    friendsListeners.remove(listener);
   }
 
   /**
@@ -427,31 +897,29 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of FriendsConnection");
 
-    Object[] listenerList = this.listenerList.getListenerList();
-    for (int i = 0; i < listenerList.length; i += 2) {
-      if (listenerList[i] == FriendsListener.class) {
-        FriendsListener listener = (FriendsListener) listenerList[i + 1];
-        try {
-          switch (evt.getID()) {
-            case FriendsEvent.FRIEND_CONNECTED:
-              listener.friendConnected(evt);
-              break;
-            case FriendsEvent.FRIEND_DISCONNECTED:
-              listener.friendDisconnected(evt);
-              break;
-            case FriendsEvent.FRIEND_ADDED:
-              listener.friendAdded(evt);
-              break;
-            case FriendsEvent.FRIEND_REMOVED:
-              listener.friendRemoved(evt);
-              break;
-            case FriendsEvent.FRIEND_STATE_CHANGED:
-              listener.friendStateChanged(evt);
-              break;
-          }
-        } catch (RuntimeException e) {
-          e.printStackTrace();
+    FriendsListener[] listeners = (FriendsListener[]) friendsListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      FriendsListener listener = listeners[i];
+      try {
+        switch (evt.getID()) {
+          case FriendsEvent.FRIEND_CONNECTED:
+            listener.friendConnected(evt);
+            break;
+          case FriendsEvent.FRIEND_DISCONNECTED:
+            listener.friendDisconnected(evt);
+            break;
+          case FriendsEvent.FRIEND_ADDED:
+            listener.friendAdded(evt);
+            break;
+          case FriendsEvent.FRIEND_REMOVED:
+            listener.friendRemoved(evt);
+            break;
+          case FriendsEvent.FRIEND_STATE_CHANGED:
+            listener.friendStateChanged(evt);
+            break;
         }
+      } catch (RuntimeException e) {
+        listenerFailed(friendsListeners, listener, e);
       }
     }
   }
@@ -466,7 +934,7 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source connection is not an instance of MatchOfferConnection");
 
-    listenerList.add(MatchOfferListener.class, listener);
+    matchOfferListeners.add(listener);
   }
 
   /**
@@ -479,7 +947,7 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source connection is not an instance of MatchOfferConnection");
 
-    listenerList.remove(MatchOfferListener.class, listener);
+    matchOfferListeners.remove(listener);
   }
 
   /**
@@ -490,22 +958,19 @@ public class BasicListenerManager
       throw new UnsupportedOperationException(
           "The source Connection is not an instance of MatchOfferConnection");
 
-    Object[] listenerList = this.listenerList.getListenerList();
-    for (int i = 0; i < listenerList.length; i += 2) {
-      if (listenerList[i] == MatchOfferListener.class) {
-        MatchOfferListener listener = (MatchOfferListener) listenerList[i + 1];
-        try {
-          switch (evt.getID()) {
-            case MatchOfferEvent.MATCH_OFFER_MADE:
-              listener.matchOfferMade(evt);
-              break;
-            case MatchOfferEvent.MATCH_OFFER_WITHDRAWN:
-              listener.matchOfferWithdrawn(evt);
-              break;
-          }
-        } catch (RuntimeException e) {
-          e.printStackTrace();
+    MatchOfferListener[] listeners = (MatchOfferListener[]) matchOfferListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        switch (evt.getID()) {
+          case MatchOfferEvent.MATCH_OFFER_MADE:
+            listeners[i].matchOfferMade(evt);
+            break;
+          case MatchOfferEvent.MATCH_OFFER_WITHDRAWN:
+            listeners[i].matchOfferWithdrawn(evt);
+            break;
         }
+      } catch (RuntimeException e) {
+        listenerFailed(matchOfferListeners, listeners[i], e);
       }
     }
   }
@@ -16,10 +16,8 @@
  */
 package free.jin.event;
 
-import free.chess.ChesslikeGenericVariant;
 import free.jin.Connection;
 import free.jin.Game;
-import free.jin.PGNConnection;
 
 /**
  * The event fired when a game starts.
@@ -31,11 +29,5 @@ public class GameStartEvent extends GameEvent {
    */
   public GameStartEvent(Connection conn, String clientTag, Game game) {
     super(conn, clientTag, game);
-
-    if ((conn instanceof PGNConnection)
-        && (game.getVariant() instanceof ChesslikeGenericVariant)
-        && (game.getInitialPosition().getFEN() == null))
-      throw new IllegalStateException(
-          "The source Connection implements PGNConnection, but did not provide a FEN representation of the initial position");
   }
 }
@@ -0,0 +1,190 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.event;
+
+import free.chess.Chess;
+import free.chess.FischerTimeControl;
+import free.chess.Player;
+import free.chess.Position;
+import free.jin.Connection;
+import free.jin.Game;
+import free.util.EventListenerList;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * A commandline benchmark of event dispatching by {@link BasicListenerManager}. Measures the cost
+ * of firing a <code>ClockAdjustmentEvent</code> (the most frequent game event) to the specified
+ * amount of <code>GameListener</code>s, registered globally and per game, and compares it to
+ * walking an <code>EventListenerList</code> which also holds as many listeners of another type, as
+ * the listener manager used to do. Usage: <code>ListenerDispatchBenchmark [listeners
+ * [events]]</code>; the defaults are {@link #DEFAULT_LISTENER_COUNT} and
+ * {@link #DEFAULT_EVENT_COUNT}.
+ */
+public class ListenerDispatchBenchmark {
+
+  /**
+   * The default amount of listeners.
+   */
+  private static final int DEFAULT_LISTENER_COUNT = 50;
+
+  /**
+   * The default amount of events fired in each measurement.
+   */
+  private static final int DEFAULT_EVENT_COUNT = 1000000;
+
+  /**
+   * The amount of listener invocations, so that the JIT can't discard the dispatching.
+   */
+  private static int invocationCount = 0;
+
+  /**
+   * The main method.
+   */
+  public static void main(String[] args) {
+    int listenerCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_LISTENER_COUNT;
+    int eventCount = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_EVENT_COUNT;
+
+    Connection conn =
+        (Connection)
+            Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class[] {Connection.class},
+                new InvocationHandler() {
+                  @Override
+                  public Object invoke(Object proxy, Method method, Object[] args) {
+                    return null;
+                  }
+                });
+
+    Game[] games = new Game[listenerCount];
+    for (int i = 0; i < games.length; i++) games[i] = createGame(i);
+    ClockAdjustmentEvent evt =
+        new ClockAdjustmentEvent(conn, null, games[0], Player.WHITE_PLAYER, 60000, true);
+
+    EventListenerList legacyList = new EventListenerList();
+    BasicListenerManager globalManager = new BasicListenerManager(conn);
+    BasicListenerManager scopedManager = new BasicListenerManager(conn);
+    for (int i = 0; i < listenerCount; i++) {
+      GameListener listener = new CountingGameListener();
+      legacyList.add(ChatListener.class, new ChatAdapter());
+      legacyList.add(GameListener.class, listener);
+      globalManager.addGameListener(listener);
+      scopedManager.addGameListener(games[i], listener);
+    }
+
+    System.out.println(
+        "Firing " + eventCount + " events to " + listenerCount + " listeners, ns per event:");
+    for (int round = 0; round < 3; round++) {
+      long time = System.nanoTime();
+      for (int i = 0; i < eventCount; i++) legacyFire(legacyList, evt);
+      long legacyTime = System.nanoTime() - time;
+
+      time = System.nanoTime();
+      for (int i = 0; i < eventCount; i++) globalManager.fireGameEvent(evt);
+      long globalTime = System.nanoTime() - time;
+
+      time = System.nanoTime();
+      for (int i = 0; i < eventCount; i++) scopedManager.fireGameEvent(evt);
+      long scopedTime = System.nanoTime() - time;
+
+      System.out.println(
+          "Round "
+              + (round + 1)
+              + ": EventListenerList "
+              + legacyTime / eventCount
+              + ", global "
+              + globalTime / eventCount
+              + ", game scoped "
+              + scopedTime / eventCount);
+    }
+
+    System.out.println("(" + invocationCount + " invocations)");
+  }
+
+  /**
+   * Creates a game for the benchmark.
+   */
+  private static Game createGame(int id) {
+    return new Game(
+        Game.OBSERVED_GAME,
+        new Position(Chess.getInstance()),
+        0,
+        "White" + id,
+        "Black" + id,
+        new FischerTimeControl(60000, 0),
+        1500,
+        1500,
+        new Integer(id),
+        "Blitz",
+        false,
+        true,
+        "",
+        "",
+        false,
+        null);
+  }
+
+  /**
+   * Fires the specified event the way <code>BasicListenerManager</code> used to.
+   */
+  private static void legacyFire(EventListenerList listenerList, GameEvent evt) {
+    Object[] listeners = listenerList.getListenerList();
+    for (int i = 0; i < listeners.length; i += 2) {
+      if (listeners[i] == GameListener.class) {
+        GameListener listener = (GameListener) listeners[i + 1];
+        try {
+          if (evt instanceof GameStartEvent) listener.gameStarted((GameStartEvent) evt);
+          else if (evt instanceof GameEndEvent) listener.gameEnded((GameEndEvent) evt);
+          else if (evt instanceof MoveMadeEvent) listener.moveMade((MoveMadeEvent) evt);
+          else if (evt instanceof PositionChangedEvent)
+            listener.positionChanged((PositionChangedEvent) evt);
+          else if (evt instanceof TakebackEvent) listener.takebackOccurred((TakebackEvent) evt);
+          else if (evt instanceof IllegalMoveEvent)
+            listener.illegalMoveAttempted((IllegalMoveEvent) evt);
+          else if (evt instanceof ClockAdjustmentEvent)
+            listener.clockAdjusted((ClockAdjustmentEvent) evt);
+          else if (evt instanceof BoardFlipEvent) listener.boardFlipped((BoardFlipEvent) evt);
+          else if (evt instanceof OfferEvent) listener.offerUpdated((OfferEvent) evt);
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  /**
+   * A <code>GameListener</code> which counts the clock adjustments it's notified of.
+   */
+  private static class CountingGameListener extends GameAdapter {
+
+    @Override
+    public void clockAdjusted(ClockAdjustmentEvent evt) {
+      invocationCount++;
+    }
+  }
+
+  /**
+   * A <code>ChatListener</code> which does nothing.
+   */
+  private static class ChatAdapter implements ChatListener {
+
+    @Override
+    public void chatMessageReceived(ChatEvent evt) {}
+  }
+}
@@ -0,0 +1,36 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.event;
+
+import java.util.EventListener;
+
+/**
+ * Decides what happens when a listener throws an exception while being notified of an event by a
+ * <code>BasicListenerManager</code>. Implementations must be thread safe, as events may be fired
+ * from several threads.
+ *
+ * @see BasicListenerManager#setListenerExceptionPolicy(ListenerExceptionPolicy)
+ */
+public interface ListenerExceptionPolicy {
+
+  /**
+   * Invoked when the specified listener throws the specified exception while being notified of an
+   * event. Returns whether the listener should keep receiving events; if <code>false</code> is
+   * returned, the listener is removed from the list through which it was notified.
+   */
+  boolean listenerFailed(EventListener listener, RuntimeException e);
+}
@@ -0,0 +1,160 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2007 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.event;
+
+import java.util.EventListener;
+
+/**
+ * Latency statistics of a single listener: how long after being fired events reached it, and how
+ * long it took to handle them. All times are in nanoseconds. Instances returned by
+ * {@link BasicListenerManager#getListenerLatencies()} are snapshots and don't change.
+ */
+public final class ListenerLatency {
+
+  /**
+   * A description of the listener.
+   */
+  private final String listenerName;
+
+  /**
+   * Whether the listener is a <code>BackgroundListener</code>.
+   */
+  private final boolean background;
+
+  /**
+   * The amount of events the listener has been notified of.
+   */
+  private long eventCount = 0;
+
+  /**
+   * The total and maximum time between an event being fired and the listener being notified of it.
+   */
+  private long totalDelay = 0, maxDelay = 0;
+
+  /**
+   * The total and maximum time the listener took to handle an event.
+   */
+  private long totalDuration = 0, maxDuration = 0;
+
+  /**
+   * Creates a new, empty <code>ListenerLatency</code> for the specified listener.
+   */
+  ListenerLatency(EventListener listener) {
+    this(listener.getClass().getName(), listener instanceof BackgroundListener);
+  }
+
+  /**
+   * Creates a new, empty <code>ListenerLatency</code> with the specified listener description.
+   */
+  private ListenerLatency(String listenerName, boolean background) {
+    this.listenerName = listenerName;
+    this.background = background;
+  }
+
+  /**
+   * Records the notification of the listener of a single event.
+   */
+  synchronized void record(long delay, long duration) {
+    eventCount++;
+    totalDelay += delay;
+    totalDuration += duration;
+    if (delay > maxDelay) maxDelay = delay;
+    if (duration > maxDuration) maxDuration = duration;
+  }
+
+  /**
+   * Returns a snapshot of this <code>ListenerLatency</code>.
+   */
+  synchronized ListenerLatency copy() {
+    ListenerLatency copy = new ListenerLatency(listenerName, background);
+    copy.eventCount = eventCount;
+    copy.totalDelay = totalDelay;
+    copy.maxDelay = maxDelay;
+    copy.totalDuration = totalDuration;
+    copy.maxDuration = maxDuration;
+    return copy;
+  }
+
+  /**
+   * Returns the name of the listener's class.
+   */
+  public String getListenerName() {
+    return listenerName;
+  }
+
+  /**
+   * Returns whether the listener is notified on a background thread.
+   */
+  public boolean isBackground() {
+    return background;
+  }
+
+  /**
+   * Returns the amount of events the listener has been notified of.
+   */
+  public synchronized long getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Returns the average time between an event being fired and the listener being notified of it.
+   */
+  public synchronized long getAverageDelay() {
+    return eventCount == 0 ? 0 : totalDelay / eventCount;
+  }
+
+  /**
+   * Returns the maximum time between an event being fired and the listener being notified of it.
+   */
+  public synchronized long getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * Returns the average time the listener took to handle an event.
+   */
+  public synchronized long getAverageDuration() {
+    return eventCount == 0 ? 0 : totalDuration / eventCount;
+  }
+
+  /**
+   * Returns the maximum time the listener took to handle an event.
+   */
+  public synchronized long getMaxDuration() {
+    return maxDuration;
+  }
+
+  /**
+   * Returns a textual representation of this <code>ListenerLatency</code>, for debugging.
+   */
+  @Override
+  public synchronized String toString() {
+    return listenerName
+        + (background ? " [background]" : "")
+        + ": events="
+        + eventCount
+        + ", avgDelay="
+        + getAverageDelay()
+        + "ns, maxDelay="
+        + maxDelay
+        + "ns, avgDuration="
+        + getAverageDuration()
+        + "ns, maxDuration="
+        + maxDuration
+        + "ns";
+  }
+}
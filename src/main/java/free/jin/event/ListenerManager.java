@@ -16,6 +16,8 @@
  */
 package free.jin.event;
 
+import free.jin.Game;
+
 /**
  * <P>
  * The interface for managing listeners for events generated by <code>Connection</code> objects. See
@@ -69,4 +71,25 @@ public interface ListenerManager {
    * GameEvents.
    */
   void removeGameListener(GameListener listener);
+
+  /**
+   * Adds the given GameListener to the list of listeners receiving notifications of GameEvents
+   * concerning the specified game only. Listeners interested in a single game should prefer this
+   * method, as it spares them (and the dispatching code) the events of all the other games.
+   */
+  void addGameListener(Game game, GameListener listener);
+
+  /**
+   * Removes the given GameListener from the list of listeners receiving notifications of
+   * GameEvents concerning the specified game.
+   */
+  void removeGameListener(Game game, GameListener listener);
+
+  /**
+   * Runs the specified task on the thread(s) notifying {@link BackgroundListener}s, after all the
+   * events concerning the specified game which were fired so far have been handled by them. This
+   * lets background listeners do work prompted by something other than an event (a game property
+   * change, for example) without racing their own event handling.
+   */
+  void invokeInBackground(Game game, Runnable task);
 }
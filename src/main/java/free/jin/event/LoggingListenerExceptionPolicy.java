@@ -0,0 +1,35 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.event;
+
+import java.util.EventListener;
+
+/**
+ * A <code>ListenerExceptionPolicy</code> which prints the stack trace of every exception and keeps
+ * the listener. This is the default policy.
+ */
+public class LoggingListenerExceptionPolicy implements ListenerExceptionPolicy {
+
+  /**
+   * Prints the stack trace of the specified exception and returns <code>true</code>.
+   */
+  @Override
+  public boolean listenerFailed(EventListener listener, RuntimeException e) {
+    e.printStackTrace();
+    return true;
+  }
+}
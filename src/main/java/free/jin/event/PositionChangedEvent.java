@@ -16,11 +16,10 @@
  */
 package free.jin.event;
 
-import free.chess.ChesslikeGenericVariant;
 import free.chess.Position;
+import free.chess.PositionSnapshot;
 import free.jin.Connection;
 import free.jin.Game;
-import free.jin.PGNConnection;
 
 /**
  * The event sent when the position on the board changes in such a manner that can't be described by
@@ -29,30 +28,42 @@ import free.jin.PGNConnection;
 public class PositionChangedEvent extends GameEvent {
 
   /**
-   * The new Position.
+   * The new position.
    */
-  private final Position position;
+  private final PositionSnapshot position;
 
   /**
    * Creates a new PositionChangeEvent with the given source Connection, the game in which the
-   * position changed and the new Position.
+   * position changed and the new Position. The event keeps a snapshot of the position, so the
+   * caller may continue modifying it.
    */
   public PositionChangedEvent(Connection conn, String clientTag, Game game, Position position) {
-    super(conn, clientTag, game);
+    this(conn, clientTag, game, position.snapshot());
+  }
 
-    if ((conn instanceof PGNConnection)
-        && (position.getVariant() instanceof ChesslikeGenericVariant)
-        && (position.getFEN() == null))
-      throw new IllegalStateException(
-          "The source Connection implements PGNConnection, but did not provide a FEN representation of the position");
+  /**
+   * Creates a new PositionChangeEvent with the given source Connection, the game in which the
+   * position changed and a snapshot of the new position.
+   */
+  public PositionChangedEvent(
+      Connection conn, String clientTag, Game game, PositionSnapshot position) {
+    super(conn, clientTag, game);
 
     this.position = position;
   }
 
   /**
-   * Returns the new Position.
+   * Returns a new, modifiable copy of the new position. The copy is cheap until it's modified, but
+   * listeners which only need to look at the position should use {@link #getPositionSnapshot()}.
    */
   public Position getPosition() {
+    return position.toPosition();
+  }
+
+  /**
+   * Returns the immutable snapshot of the new position.
+   */
+  public PositionSnapshot getPositionSnapshot() {
     return position;
   }
 }
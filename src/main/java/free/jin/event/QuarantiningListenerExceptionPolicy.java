@@ -0,0 +1,104 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.event;
+
+import java.util.EventListener;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A <code>ListenerExceptionPolicy</code> which removes ("quarantines") a listener once it throws a
+ * certain amount of exceptions within a certain period of time. The individual exceptions are
+ * handed to a delegate policy for reporting.
+ */
+public class QuarantiningListenerExceptionPolicy implements ListenerExceptionPolicy {
+
+  /**
+   * The amount of failures within a period after which the listener is removed.
+   */
+  private final int maxFailures;
+
+  /**
+   * The length of the period, in milliseconds.
+   */
+  private final long period;
+
+  /**
+   * The policy to which we delegate reporting the exceptions.
+   */
+  private final ListenerExceptionPolicy delegate;
+
+  /**
+   * Maps listeners to <code>long[]</code>s holding the start time of the current period and the
+   * amount of failures in it.
+   */
+  private final Map failures = new WeakHashMap();
+
+  /**
+   * Creates a new <code>QuarantiningListenerExceptionPolicy</code> which removes a listener after
+   * it fails <code>maxFailures</code> times within <code>period</code> milliseconds, and reports
+   * the exceptions via a <code>LoggingListenerExceptionPolicy</code>.
+   */
+  public QuarantiningListenerExceptionPolicy(int maxFailures, long period) {
+    this(maxFailures, period, new LoggingListenerExceptionPolicy());
+  }
+
+  /**
+   * Creates a new <code>QuarantiningListenerExceptionPolicy</code> which removes a listener after
+   * it fails <code>maxFailures</code> times within <code>period</code> milliseconds, and reports
+   * the exceptions via the specified policy.
+   */
+  public QuarantiningListenerExceptionPolicy(
+      int maxFailures, long period, ListenerExceptionPolicy delegate) {
+    if (maxFailures < 1)
+      throw new IllegalArgumentException("maxFailures must be positive: " + maxFailures);
+    if (period <= 0) throw new IllegalArgumentException("period must be positive: " + period);
+    if (delegate == null) throw new IllegalArgumentException("delegate may not be null");
+
+    this.maxFailures = maxFailures;
+    this.period = period;
+    this.delegate = delegate;
+  }
+
+  /**
+   * Reports the exception via the delegate and returns <code>false</code> if the listener has now
+   * failed <code>maxFailures</code> times in the current period (or if the delegate says so).
+   */
+  @Override
+  public boolean listenerFailed(EventListener listener, RuntimeException e) {
+    boolean keep = delegate.listenerFailed(listener, e);
+
+    long time = System.currentTimeMillis();
+    boolean quarantine;
+    synchronized (failures) {
+      long[] record = (long[]) failures.get(listener);
+      if ((record == null) || (time - record[0] >= period)) {
+        record = new long[] {time, 0};
+        failures.put(listener, record);
+      }
+
+      quarantine = ++record[1] >= maxFailures;
+      if (quarantine) failures.remove(listener);
+    }
+
+    if (quarantine)
+      System.err.println(
+          "Removing " + listener + " after " + maxFailures + " failures in " + period + "ms");
+
+    return keep && !quarantine;
+  }
+}
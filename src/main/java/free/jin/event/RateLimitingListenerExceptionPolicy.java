@@ -0,0 +1,121 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.event;
+
+import java.util.EventListener;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A <code>ListenerExceptionPolicy</code> which keeps the listener, but prints the stack traces of
+ * at most a certain amount of exceptions thrown by a single listener during a certain period of
+ * time. The amount of suppressed exceptions is reported when the next period starts. This keeps a
+ * listener which fails on every event from flooding the log.
+ */
+public class RateLimitingListenerExceptionPolicy implements ListenerExceptionPolicy {
+
+  /**
+   * The maximum amount of exceptions reported per listener per period.
+   */
+  private final int maxReports;
+
+  /**
+   * The length of the period, in milliseconds.
+   */
+  private final long period;
+
+  /**
+   * Maps listeners which have failed to their <code>FailureRecord</code>s. The map is weak so that
+   * we don't keep discarded listeners alive.
+   */
+  private final Map failureRecords = new WeakHashMap();
+
+  /**
+   * Creates a new <code>RateLimitingListenerExceptionPolicy</code> which reports at most
+   * <code>maxReports</code> exceptions per listener in each <code>period</code> milliseconds.
+   */
+  public RateLimitingListenerExceptionPolicy(int maxReports, long period) {
+    if (maxReports < 0)
+      throw new IllegalArgumentException("maxReports may not be negative: " + maxReports);
+    if (period <= 0) throw new IllegalArgumentException("period must be positive: " + period);
+
+    this.maxReports = maxReports;
+    this.period = period;
+  }
+
+  /**
+   * Prints the stack trace of the specified exception, unless the listener has already used up its
+   * quota for the current period, and returns <code>true</code>.
+   */
+  @Override
+  public boolean listenerFailed(EventListener listener, RuntimeException e) {
+    long time = System.currentTimeMillis();
+    int suppressedCount = 0;
+    boolean report;
+    synchronized (failureRecords) {
+      FailureRecord record = (FailureRecord) failureRecords.get(listener);
+      if (record == null) {
+        record = new FailureRecord(time);
+        failureRecords.put(listener, record);
+      } else if (time - record.periodStart >= period) {
+        suppressedCount = record.suppressedCount;
+        record.periodStart = time;
+        record.reportedCount = 0;
+        record.suppressedCount = 0;
+      }
+
+      report = record.reportedCount < maxReports;
+      if (report) record.reportedCount++;
+      else record.suppressedCount++;
+    }
+
+    if (suppressedCount != 0)
+      System.err.println(
+          suppressedCount + " exceptions thrown by " + listener + " were not reported");
+    if (report) e.printStackTrace();
+
+    return true;
+  }
+
+  /**
+   * Keeps track of the exceptions thrown by a single listener in the current period.
+   */
+  private static class FailureRecord {
+
+    /**
+     * The time when the current period started.
+     */
+    public long periodStart;
+
+    /**
+     * The amount of exceptions reported in the current period.
+     */
+    public int reportedCount = 0;
+
+    /**
+     * The amount of exceptions not reported in the current period.
+     */
+    public int suppressedCount = 0;
+
+    /**
+     * Creates a new <code>FailureRecord</code> for a period starting at the specified time.
+     */
+    public FailureRecord(long periodStart) {
+      this.periodStart = periodStart;
+    }
+  }
+}
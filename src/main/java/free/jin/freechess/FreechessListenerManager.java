@@ -21,6 +21,7 @@ import free.jin.event.BasicListenerManager;
 import free.jin.event.SeekListener;
 import free.jin.freechess.event.IvarStateChangeEvent;
 import free.jin.freechess.event.IvarStateChangeListener;
+import free.util.CopyOnWriteListenerList;
 
 /**
  * A freechess.org specific extension of BasicListenerManager. Used by
@@ -33,6 +34,12 @@ public class FreechessListenerManager extends BasicListenerManager {
    */
   private final JinFreechessConnection source;
 
+  /**
+   * The <code>IvarStateChangeListener</code>s.
+   */
+  private final CopyOnWriteListenerList ivarStateChangeListeners =
+      new CopyOnWriteListenerList(IvarStateChangeListener.class);
+
   /**
    * Creates a new FreechessListenerManager with the given source
    * <code>JinFreechessConnection</code>.
@@ -50,7 +57,7 @@ public class FreechessListenerManager extends BasicListenerManager {
   public void addSeekListener(SeekListener listener) {
     super.addSeekListener(listener);
 
-    if (listenerList.getListenerCount(SeekListener.class) == 1)
+    if (getSeekListenerCount() == 1)
       source.setIvarState(Ivar.SEEKINFO, true);
   }
 
@@ -61,7 +68,7 @@ public class FreechessListenerManager extends BasicListenerManager {
   public void removeSeekListener(SeekListener listener) {
     super.removeSeekListener(listener);
 
-    if (listenerList.getListenerCount(SeekListener.class) == 0)
+    if (getSeekListenerCount() == 0)
       source.setIvarState(Ivar.SEEKINFO, false);
   }
 
@@ -70,7 +77,7 @@ public class FreechessListenerManager extends BasicListenerManager {
    * changes in states of ivars.
    */
   public void addIvarStateChangeListener(IvarStateChangeListener listener) {
-    listenerList.add(IvarStateChangeListener.class, listener);
+    ivarStateChangeListeners.add(listener);
   }
 
   /**
@@ -78,18 +85,20 @@ public class FreechessListenerManager extends BasicListenerManager {
    * of changes in states of ivars.
    */
   public void removeIvarStateChangeListener(IvarStateChangeListener listener) {
-    listenerList.remove(IvarStateChangeListener.class, listener);
+    ivarStateChangeListeners.remove(listener);
   }
 
   /**
    * Notifies all registered IvarStateChangeListeners of the specified IvarStateChangeEvent.
    */
   public void fireIvarStateChangeEvent(IvarStateChangeEvent evt) {
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == IvarStateChangeListener.class) {
-        IvarStateChangeListener listener = (IvarStateChangeListener) listeners[i + 1];
-        listener.ivarStateChanged(evt);
+    IvarStateChangeListener[] listeners =
+        (IvarStateChangeListener[]) ivarStateChangeListeners.getListeners();
+    for (int i = 0; i < listeners.length; i++) {
+      try {
+        listeners[i].ivarStateChanged(evt);
+      } catch (RuntimeException e) {
+        listenerFailed(ivarStateChangeListeners, listeners[i], e);
       }
     }
   }
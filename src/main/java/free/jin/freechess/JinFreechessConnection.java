@@ -38,6 +38,7 @@ import free.chess.ChessPiece;
 import free.chess.ChesslikeGenericVariant;
 import free.chess.FischerTimeControl;
 import free.chess.Move;
+import free.chess.MoveList;
 import free.chess.OddsTimeControl;
 import free.chess.Piece;
 import free.chess.Player;
@@ -58,6 +59,9 @@ import free.freechess.SeekInfoStruct;
 import free.freechess.Style12Struct;
 import free.jin.Connection;
 import free.jin.Game;
+import free.jin.GameMemoryAccountant;
+import free.jin.GameMemoryUsage;
+import free.jin.GameStateHolder;
 import free.jin.I18n;
 import free.jin.Jin;
 import free.jin.PGNConnection;
@@ -228,6 +232,8 @@ public class JinFreechessConnection extends FreechessConnection
     sendCommand("set bell 0", false, true, false);
     filterLine("Bell off.");
 
+    GameMemoryAccountant.getInstance().register(gameStateAccounting);
+
     listenerManager.fireLoginSucceeded(this);
   }
 
@@ -246,6 +252,8 @@ public class JinFreechessConnection extends FreechessConnection
    */
   @Override
   protected void handleDisconnection(IOException e) {
+    GameMemoryAccountant.getInstance().unregister(gameStateAccounting);
+
     listenerManager.fireConnectionLost(this);
 
     super.handleDisconnection(e);
@@ -742,6 +750,23 @@ public class JinFreechessConnection extends FreechessConnection
    */
   private final Vector unsupportedGames = new Vector();
 
+  /**
+   * The approximate amount of memory, in bytes, taken by the data we keep about an ongoing game,
+   * not counting its move list.
+   */
+  private static final int APPROXIMATE_GAME_DATA_SIZE = 1024;
+
+  /**
+   * The approximate amount of memory, in bytes, taken by the data we keep about a game which hasn't
+   * started yet, or a move which hasn't been echoed yet.
+   */
+  private static final int APPROXIMATE_PENDING_DATA_SIZE = 256;
+
+  /**
+   * Accounts for the memory we hold for games.
+   */
+  private final GameStateAccounting gameStateAccounting = new GameStateAccounting();
+
   /**
    * The user's primary played (by the user) game, -1 if unknown. This is only set when the user is
    * playing more than one game.
@@ -907,10 +932,9 @@ public class JinFreechessConnection extends FreechessConnection
       throw new IllegalStateException("delta-boards should only be sent for regular chess");
 
     Style12Struct lastBoardData = gameData.boardData;
-    Vector moveList = gameData.moveList;
+    MoveList moveList = gameData.moveList;
 
-    Position pos = game.getInitialPosition();
-    for (int i = 0; i < moveList.size(); i++) pos.makeMove((Move) moveList.elementAt(i));
+    Position pos = moveList.getPosition(moveList.size());
 
     ChessMove move =
         (ChessMove) (Move.parseWarrenSmith(data.getMoveSmith(), pos, data.getMoveAlgebraic()));
@@ -1073,7 +1097,7 @@ public class JinFreechessConnection extends FreechessConnection
     /**
      * A list of Moves done in the game.
      */
-    public Vector moveList = new Vector();
+    public final MoveList moveList;
 
     /**
      * The last Style12Struct we got for this game.
@@ -1121,6 +1145,7 @@ public class JinFreechessConnection extends FreechessConnection
      */
     public InternalGameData(Game game) {
       this.game = game;
+      this.moveList = new MoveList(game.getInitialPositionSnapshot());
     }
 
     /**
@@ -1134,7 +1159,7 @@ public class JinFreechessConnection extends FreechessConnection
      * Adds the specified move to the moves list.
      */
     public void addMove(Move move) {
-      moveList.addElement(move);
+      moveList.add(move);
     }
 
     /**
@@ -1145,16 +1170,15 @@ public class JinFreechessConnection extends FreechessConnection
       if (count > moveList.size())
         throw new IllegalArgumentException("Can't remove more elements than there are elements");
 
-      int first = moveList.size() - 1;
-      int last = moveList.size() - count;
-      for (int i = first; i >= last; i--) moveList.removeElementAt(i);
+      moveList.removeLast(count);
     }
 
     /**
-     * Removes all the moves made in the game.
+     * Removes all the moves made in the game and sets the initial position of the move list to the
+     * game's current initial position.
      */
     public void clearMoves() {
-      moveList.removeAllElements();
+      moveList.reset(game.getInitialPositionSnapshot());
     }
 
     /**
@@ -1191,6 +1215,61 @@ public class JinFreechessConnection extends FreechessConnection
     }
   }
 
+  /**
+   * Reports the memory we hold for games to the <code>GameMemoryAccountant</code>.
+   */
+  private class GameStateAccounting implements GameStateHolder {
+
+    /**
+     * Returns a description of the connection.
+     */
+    @Override
+    public String getGameStateHolderName() {
+      return "freechess.org connection";
+    }
+
+    /**
+     * Returns the memory held for ongoing games and for games which haven't started yet.
+     */
+    @Override
+    public GameMemoryUsage[] getGameMemoryUsage() {
+      Vector usage = new Vector();
+
+      Enumeration gamesData = ongoingGamesData.elements();
+      while (gamesData.hasMoreElements()) {
+        InternalGameData gameData = (InternalGameData) gamesData.nextElement();
+        long bytes = APPROXIMATE_GAME_DATA_SIZE + gameData.moveList.getApproximateSize();
+        Vector unechoedGameMoves = (Vector) unechoedMoves.get(gameData.game);
+        if (unechoedGameMoves != null)
+          bytes += unechoedGameMoves.size() * APPROXIMATE_PENDING_DATA_SIZE;
+
+        usage.addElement(new GameMemoryUsage(gameData.game.toString(), false, bytes));
+      }
+
+      Enumeration unstartedGameNumbers = unstartedGamesData.keys();
+      while (unstartedGameNumbers.hasMoreElements()) {
+        Object gameNumber = unstartedGameNumbers.nextElement();
+        usage.addElement(
+            new GameMemoryUsage(
+                "#" + gameNumber + " (not started)", false, APPROXIMATE_PENDING_DATA_SIZE));
+      }
+
+      GameMemoryUsage[] result = new GameMemoryUsage[usage.size()];
+      usage.copyInto(result);
+      return result;
+    }
+
+    /**
+     * Compacts the move lists of the ongoing games.
+     */
+    @Override
+    public void compactGameState() {
+      Enumeration gamesData = ongoingGamesData.elements();
+      while (gamesData.hasMoreElements())
+        ((InternalGameData) gamesData.nextElement()).moveList.compact();
+    }
+  }
+
   /**
    * Changes the primary played game.
    */
@@ -1385,6 +1464,8 @@ public class JinFreechessConnection extends FreechessConnection
 
     listenerManager.fireGameEvent(new GameStartEvent(this, null, game));
 
+    GameMemoryAccountant.getInstance().checkBudget();
+
     // The server doesn't send us seek remove lines during games, so we have
     // no choice but to remove *all* seeks during a game. The seeks are restored
     // when a game ends by setting seekinfo to 1 again.
@@ -1517,9 +1598,13 @@ public class JinFreechessConnection extends FreechessConnection
     if (gameID.intValue() == primaryPlayedGame) primaryPlayedGame = -1;
     else if (gameID.intValue() == primaryObservedGame) primaryObservedGame = -1;
 
+    unstartedGamesData.remove(gameID);
+
     InternalGameData gameData = (InternalGameData) ongoingGamesData.remove(gameID);
     if (gameData != null) {
       Game game = gameData.game;
+      unechoedMoves.remove(game);
+      removeOfferIndices(gameData);
 
       Player actor;
       switch (result) {
@@ -1542,6 +1627,22 @@ public class JinFreechessConnection extends FreechessConnection
     } else unsupportedGames.removeElement(gameID);
   }
 
+  /**
+   * Removes the offer indices mapped to the specified game data. The server doesn't tell us that
+   * the offers in a game are removed when the game ends.
+   */
+  private void removeOfferIndices(InternalGameData gameData) {
+    Vector offerIndices = new Vector();
+    Enumeration offerIndicesEnum = offerIndicesToGameData.keys();
+    while (offerIndicesEnum.hasMoreElements()) {
+      Object offerIndex = offerIndicesEnum.nextElement();
+      if (offerIndicesToGameData.get(offerIndex) == gameData) offerIndices.addElement(offerIndex);
+    }
+
+    for (int i = 0; i < offerIndices.size(); i++)
+      offerIndicesToGameData.remove(offerIndices.elementAt(i));
+  }
+
   /**
    * Fires an appropriate BoardFlipEvent.
    */
@@ -1602,16 +1703,12 @@ public class JinFreechessConnection extends FreechessConnection
     else if (gameData.isBSetup) changePosition(gameData, boardData);
     else {
       Game game = gameData.game;
-      Vector moveList = gameData.moveList;
+      MoveList moveList = gameData.moveList;
       // Check whether the positions match, otherwise it could just be someone
       // issuing "bsetup fen ..." after making a few moves which resets the ply
       // count.
 
-      Position oldPos = game.getInitialPosition();
-      for (int i = 0; i < moveList.size() - plyDifference; i++) {
-        Move move = (Move) moveList.elementAt(i);
-        oldPos.makeMove(move);
-      }
+      Position oldPos = moveList.getPosition(moveList.size() - plyDifference);
 
       Position newPos = game.getInitialPosition();
       newPos.setFEN(boardData.getBoardFEN());
@@ -0,0 +1,1308 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+
+package free.jin.gamelogger;
+
+import free.chess.db.GameDatabase;
+import free.chess.pgn.PgnIndex;
+import free.util.zip.BlockGzipOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.TimeZone;
+import java.util.Vector;
+
+/**
+ * Appends logged games to their files on a dedicated thread. Writes are put into a bounded queue
+ * and the writer thread takes whatever has accumulated in it at once, so several games ending
+ * together are written with one write per file. Files are kept open between writes, and closed
+ * when they haven't been written to for a while, or when too many are open.
+ *
+ * <p>To survive crashes, each write is first recorded in a journal next to the log file (the log
+ * file's name with <code>.journal</code> appended), holding the length of the log file before the
+ * write and the written text. The journal is cleared once the write is synced to disk (according
+ * to the sync policy); under <code>SYNC_INTERVAL</code>, the journal itself is synced only then,
+ * right before the log file, rather than on every write. If a journal is found when a log file is
+ * opened, the writes in it which didn't make it into the log file, or made it only partially, are
+ * redone.
+ *
+ * <p>The {@link PgnIndex} of each log file is brought up to date after every batch of writes into
+ * it, so that the logged games can be located without reading the whole file.
+ *
+ * <p>Games can also be written while they're in progress, move by move, into files of their own
+ * (named after the log file they're to be logged into, the key of the game and
+ * <code>.partial</code>), and then committed - appended to the log file - when they end. This keeps
+ * the moves of long games safe on disk without interleaving the games logged into the same file.
+ * Games left in progress by a crash are committed when their log file is recovered.
+ *
+ * <p>Log files can be rotated - when a file would grow past a maximum size, or on the first write
+ * into it on a new day, it's renamed into a segment (named after the file and the time of the
+ * rotation, such as <code>games-20240131-235959-999.pgn</code>) and a new file is started. Segments
+ * are compressed, in blocks (see {@link BlockGzipOutputStream}), on a background thread, so
+ * writing into the new file doesn't wait for it; their indices are kept, since compression
+ * doesn't change the offsets they hold. Segments left uncompressed by a crash are compressed when
+ * their log file is recovered.
+ *
+ * <p>Logged games can also be added to a {@link GameDatabase}, so that they can be searched. The
+ * database is opened by the writer thread when the first game is added to it, and closed, like the
+ * log files, when it hasn't been used for a while. Games committed when their log file is
+ * recovered aren't added to it, since they may have been added before the crash.
+ */
+class GameLogWriter {
+
+  /**
+   * The sync policy under which written games are left to the operating system to write to disk.
+   */
+  public static final int SYNC_NONE = 0;
+
+  /**
+   * The sync policy under which every batch of writes is synced to disk immediately.
+   */
+  public static final int SYNC_BATCH = 1;
+
+  /**
+   * The sync policy under which written games, and their journal records, are synced to disk
+   * periodically.
+   */
+  public static final int SYNC_INTERVAL = 2;
+
+  /**
+   * The maximum amount of log files kept open. The files of games in progress count too, so this
+   * allows for logging all the boards of a broadcast at once.
+   */
+  private static final int MAX_OPEN_FILES = 64;
+
+  /**
+   * The suffix of the names of the files of games in progress.
+   */
+  private static final String IN_PROGRESS_SUFFIX = ".partial";
+
+  /**
+   * The value of the <code>Result</code> tag of games in progress.
+   */
+  private static final String IN_PROGRESS_RESULT_TAG = "[Result \"*\"]";
+
+  /**
+   * The suffix of the names of compressed segments.
+   */
+  private static final String COMPRESSED_SUFFIX = ".gz";
+
+  /**
+   * The format of the time of the rotation in the names of segments.
+   */
+  private static final String SEGMENT_TIME_FORMAT = "yyyyMMdd-HHmmss-SSS";
+
+  /**
+   * The amount of time, in milliseconds, after which an unused log file is closed.
+   */
+  private static final long IDLE_CLOSE_TIME = 60 * 1000;
+
+  /**
+   * The amount of time, in milliseconds, the writer thread waits for writes before checking for
+   * files to sync or close.
+   */
+  private static final long POLL_TIME = 1000;
+
+  /**
+   * The maximum amount of writes in the queue. Further writes block until there's room.
+   */
+  private final int queueCapacity;
+
+  /**
+   * The queue of <code>Write</code>s.
+   */
+  private final Vector queue = new Vector();
+
+  /**
+   * Maps filenames to open <code>LogFile</code>s. Only accessed by the writer thread.
+   */
+  private final Hashtable openFiles = new Hashtable();
+
+  /**
+   * The names of the files the last write to which failed. Only accessed by the writer thread.
+   */
+  private final Hashtable failedFiles = new Hashtable();
+
+  /**
+   * The sync policy.
+   */
+  private volatile int syncPolicy = SYNC_BATCH;
+
+  /**
+   * The sync interval, in milliseconds, under the <code>SYNC_INTERVAL</code> policy.
+   */
+  private volatile long syncInterval = 5000;
+
+  /**
+   * The size, in bytes, past which log files are rotated; 0 if they aren't rotated by size.
+   */
+  private volatile long rotationSize = 0;
+
+  /**
+   * Whether log files are rotated daily.
+   */
+  private volatile boolean isDailyRotation = false;
+
+  /**
+   * The segments waiting to be compressed. The first one is being compressed.
+   */
+  private final Vector compressionQueue = new Vector();
+
+  /**
+   * The thread compressing segments, <code>null</code> when there are none to compress.
+   */
+  private Thread compressorThread = null;
+
+  /**
+   * The directory of the database games are added to, <code>null</code> for none.
+   */
+  private volatile File databaseDirectory = null;
+
+  /**
+   * The open database, <code>null</code> if it's not open. Only accessed by the writer thread.
+   */
+  private GameDatabase database = null;
+
+  /**
+   * The directory of the open database. Only accessed by the writer thread.
+   */
+  private File openDatabaseDirectory = null;
+
+  /**
+   * The time the database was last used. Only accessed by the writer thread.
+   */
+  private long databaseLastUsedTime;
+
+  /**
+   * The time of the last periodic sync.
+   */
+  private long lastSyncTime = System.currentTimeMillis();
+
+  /**
+   * Whether we've been closed.
+   */
+  private boolean isClosed = false;
+
+  /**
+   * The writer thread.
+   */
+  private final Thread thread;
+
+  /**
+   * Creates a new <code>GameLogWriter</code> with the specified maximum amount of queued writes,
+   * and starts its writer thread.
+   */
+  public GameLogWriter(int queueCapacity) {
+    if (queueCapacity <= 0)
+      throw new IllegalArgumentException("Bad queue capacity: " + queueCapacity);
+
+    this.queueCapacity = queueCapacity;
+    this.thread =
+        new Thread("GameLogWriter") {
+          @Override
+          public void run() {
+            writeLoop();
+          }
+        };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Sets the sync policy - one of <code>SYNC_NONE</code>, <code>SYNC_BATCH</code> and
+   * <code>SYNC_INTERVAL</code>, and the sync interval, in milliseconds, for the latter.
+   */
+  public void setSyncPolicy(int policy, long interval) {
+    if ((policy < SYNC_NONE) || (policy > SYNC_INTERVAL))
+      throw new IllegalArgumentException("Bad sync policy: " + policy);
+    if (interval <= 0) throw new IllegalArgumentException("Bad sync interval: " + interval);
+
+    this.syncInterval = interval;
+    this.syncPolicy = policy;
+  }
+
+  /**
+   * Sets when log files are rotated - when they would grow past the specified size, in bytes (0
+   * for no limit), and/or daily, as specified.
+   */
+  public void setRotation(long maxSize, boolean daily) {
+    if (maxSize < 0) throw new IllegalArgumentException("Bad rotation size: " + maxSize);
+
+    this.rotationSize = maxSize;
+    this.isDailyRotation = daily;
+  }
+
+  /**
+   * Sets the directory of the database logged games are added to, or <code>null</code> for none.
+   * The database is created if it doesn't exist.
+   */
+  public void setDatabaseDirectory(File directory) {
+    this.databaseDirectory = directory;
+  }
+
+  /**
+   * Queues the specified text to be appended to the specified file. Blocks while the queue is
+   * full.
+   *
+   * @throws IllegalStateException if the writer has been closed.
+   */
+  public void write(String filename, byte[] text) throws InterruptedException {
+    enqueue(new Write(Write.APPEND, filename, text, null, 0, false));
+  }
+
+  /**
+   * Queues adding the game with the specified PGN text to the database, if there is one. Blocks
+   * while the queue is full.
+   *
+   * @throws IllegalStateException if the writer has been closed.
+   */
+  public void addToDatabase(byte[] text) throws InterruptedException {
+    enqueue(new Write(Write.ADD, null, text, null, 0, false));
+  }
+
+  /**
+   * Queues the specified text to be appended to the file of the game in progress with the
+   * specified key, which is to be logged into the specified file. The <code>Result</code> tag of a
+   * game in progress should be <code>"*"</code>; it's replaced with the game termination marker
+   * when the game is committed. Blocks while the queue is full.
+   *
+   * @throws IllegalStateException if the writer has been closed.
+   */
+  public void writeInProgress(String filename, String gameKey, byte[] text)
+      throws InterruptedException {
+    String inProgressFilename = getInProgressFilename(filename, gameKey);
+    enqueue(new Write(Write.APPEND, inProgressFilename, text, null, 0, false));
+  }
+
+  /**
+   * Queues truncating the file of the game in progress with the specified key, which is to be
+   * logged into the specified file, to the specified length - for example, to undo the moves
+   * taken back. Blocks while the queue is full.
+   *
+   * @throws IllegalStateException if the writer has been closed.
+   */
+  public void truncateInProgress(String filename, String gameKey, long length)
+      throws InterruptedException {
+    if (length < 0) throw new IllegalArgumentException("Bad length: " + length);
+
+    String inProgressFilename = getInProgressFilename(filename, gameKey);
+    enqueue(new Write(Write.TRUNCATE, inProgressFilename, null, null, length, false));
+  }
+
+  /**
+   * Queues committing the game in progress with the specified key into the specified file - its
+   * text is appended to the file (see {@link #finishGame(byte[])}) and its own file is deleted. The
+   * game is also added to the database, if there is one and <code>addToDatabase</code> is
+   * <code>true</code>. Blocks while the queue is full.
+   *
+   * @throws IllegalStateException if the writer has been closed.
+   */
+  public void commit(String filename, String gameKey, boolean addToDatabase)
+      throws InterruptedException {
+    String inProgressFilename = getInProgressFilename(filename, gameKey);
+    enqueue(new Write(Write.COMMIT, inProgressFilename, null, filename, 0, addToDatabase));
+  }
+
+  /**
+   * Queues the recovery of the writes recorded in the journal of the specified file, if there is
+   * one, and the committing of the games left in progress for it. Its segments left uncompressed
+   * are compressed.
+   */
+  public void recover(String filename) throws InterruptedException {
+    if (getJournalFile(filename).exists())
+      enqueue(new Write(Write.APPEND, filename, null, null, 0, false));
+
+    String[] inProgressFilenames = getInProgressFilenames(filename);
+    for (int i = 0; i < inProgressFilenames.length; i++)
+      enqueue(new Write(Write.COMMIT, inProgressFilenames[i], null, filename, 0, false));
+
+    File[] segments = getUncompressedSegments(filename);
+    for (int i = 0; i < segments.length; i++) compressLater(segments[i]);
+  }
+
+  /**
+   * Adds the specified write to the queue, waiting for room in it.
+   */
+  private synchronized void enqueue(Write write) throws InterruptedException {
+    while (!isClosed && (queue.size() >= queueCapacity)) wait();
+    if (isClosed) throw new IllegalStateException("Closed");
+
+    queue.addElement(write);
+    notifyAll();
+  }
+
+  /**
+   * Returns the number of queued writes.
+   */
+  public synchronized int getQueuedCount() {
+    return queue.size();
+  }
+
+  /**
+   * Closes the writer, waiting (up to the specified amount of milliseconds) for the queued writes
+   * to be written and the log files to be synced and closed.
+   */
+  public void close(long timeout) throws InterruptedException {
+    synchronized (this) {
+      isClosed = true;
+      notifyAll();
+    }
+
+    thread.join(timeout);
+  }
+
+  /**
+   * Invoked on the writer thread when writing into the specified file fails. Subsequent failures
+   * to write into the same file are not reported until a write into it succeeds. The writes are
+   * kept in the journal, and retried the next time the file is written to. The default
+   * implementation prints the stack trace of the exception.
+   */
+  protected void writeFailed(String filename, IOException e) {
+    e.printStackTrace();
+  }
+
+  /**
+   * Takes all the queued writes, waiting up to <code>POLL_TIME</code> for some to arrive. Returns
+   * <code>null</code> when the writer is closed and the queue is empty.
+   */
+  private synchronized Vector takeBatch() throws InterruptedException {
+    if (queue.isEmpty() && !isClosed) wait(POLL_TIME);
+    if (queue.isEmpty() && isClosed) return null;
+
+    Vector batch = (Vector) queue.clone();
+    queue.removeAllElements();
+    notifyAll();
+    return batch;
+  }
+
+  /**
+   * The main loop of the writer thread.
+   */
+  private void writeLoop() {
+    try {
+      Vector batch;
+      while ((batch = takeBatch()) != null) {
+        writeBatch(batch);
+        maintainFiles(false);
+      }
+    } catch (InterruptedException e) {
+      // Fall through and close the files
+    } finally {
+      maintainFiles(true);
+    }
+  }
+
+  /**
+   * Writes the specified batch of writes. Appends are grouped by file, in the order the files were
+   * first written to in the batch; the appends to a file queued before a truncation or a commit of
+   * it are written before it.
+   */
+  private void writeBatch(Vector batch) {
+    Vector filenames = new Vector();
+    Hashtable texts = new Hashtable();
+    for (int i = 0; i < batch.size(); i++) {
+      Write write = (Write) batch.elementAt(i);
+      if (write.type == Write.ADD) {
+        addGameToDatabase(write.text);
+        continue;
+      }
+
+      if (write.type != Write.APPEND) {
+        Vector fileTexts = (Vector) texts.remove(write.filename);
+        if (fileTexts != null) {
+          filenames.removeElement(write.filename);
+          append(write.filename, fileTexts);
+        }
+
+        if (write.type == Write.TRUNCATE) truncate(write.filename, write.length);
+        else commitGame(write.filename, write.target, write.addToDatabase);
+        continue;
+      }
+
+      Vector fileTexts = (Vector) texts.get(write.filename);
+      if (fileTexts == null) {
+        texts.put(write.filename, fileTexts = new Vector());
+        filenames.addElement(write.filename);
+      }
+      if (write.text != null) fileTexts.addElement(write.text);
+    }
+
+    for (int i = 0; i < filenames.size(); i++) {
+      String filename = (String) filenames.elementAt(i);
+      append(filename, (Vector) texts.get(filename));
+    }
+  }
+
+  /**
+   * Appends the specified texts to the specified file, with a single write. If there are no texts,
+   * the file is merely opened (recovering its journal).
+   */
+  private void append(String filename, Vector fileTexts) {
+    int length = 0;
+    for (int i = 0; i < fileTexts.size(); i++) length += ((byte[]) fileTexts.elementAt(i)).length;
+
+    byte[] text = new byte[length];
+    int offset = 0;
+    for (int i = 0; i < fileTexts.size(); i++) {
+      byte[] fileText = (byte[]) fileTexts.elementAt(i);
+      System.arraycopy(fileText, 0, text, offset, fileText.length);
+      offset += fileText.length;
+    }
+
+    try {
+      LogFile logFile = getLogFile(filename);
+      if (length != 0) {
+        logFile = rotateIfNeeded(logFile, length);
+        logFile.append(text, syncPolicy);
+      }
+      failedFiles.remove(filename);
+      logFile.updateIndex();
+    } catch (IOException e) {
+      handleWriteFailure(filename, e, true);
+    }
+  }
+
+  /**
+   * Truncates the specified file to the specified length.
+   */
+  private void truncate(String filename, long length) {
+    try {
+      getLogFile(filename).truncate(length, syncPolicy);
+      failedFiles.remove(filename);
+    } catch (IOException e) {
+      handleWriteFailure(filename, e, true);
+    }
+  }
+
+  /**
+   * Commits the game in progress in the specified file into the specified log file, adding it to
+   * the database if specified. If committing fails, the file of the game is left, and it's
+   * committed again when the log file is next recovered.
+   */
+  private void commitGame(String inProgressFilename, String filename, boolean addToDatabase) {
+    try {
+      LogFile inProgressFile = (LogFile) openFiles.remove(inProgressFilename);
+      if (inProgressFile != null) inProgressFile.close();
+      else if (getJournalFile(inProgressFilename).exists())
+        new LogFile(inProgressFilename).close(); // Recovers the journal
+    } catch (IOException e) {
+      handleWriteFailure(inProgressFilename, e, false);
+      return;
+    }
+
+    File file = new File(inProgressFilename);
+    try {
+      if (!file.exists()) return; // Already committed
+
+      byte[] text = readFile(file);
+      if (text.length != 0) {
+        text = finishGame(text);
+        LogFile logFile = getLogFile(filename);
+        // A game committed right before a crash is already at the end of the file
+        if (!logFile.endsWith(text)) {
+          logFile = rotateIfNeeded(logFile, text.length);
+          logFile.append(text, syncPolicy);
+        }
+        failedFiles.remove(filename);
+        logFile.updateIndex();
+        if (addToDatabase) addGameToDatabase(text);
+      }
+
+      if (!file.delete()) throw new IOException("Unable to delete " + file);
+    } catch (IOException e) {
+      handleWriteFailure(filename, e, true);
+    }
+  }
+
+  /**
+   * Adds the game with the specified PGN text to the database, opening it if needed. Does nothing
+   * if there's no database.
+   */
+  private void addGameToDatabase(byte[] text) {
+    File directory = databaseDirectory;
+    if ((database != null) && !openDatabaseDirectory.equals(directory)) closeDatabase();
+    if (directory == null) return;
+
+    String name = directory.getPath();
+    try {
+      if (database == null) {
+        database = new GameDatabase(directory);
+        openDatabaseDirectory = directory;
+      }
+      databaseLastUsedTime = System.currentTimeMillis();
+
+      database.importPgn(new InputStreamReader(new ByteArrayInputStream(text), "ISO-8859-1"));
+      failedFiles.remove(name);
+    } catch (IOException e) {
+      closeDatabase();
+      handleWriteFailure(name, e, false);
+    }
+  }
+
+  /**
+   * Closes the database, if it's open.
+   */
+  private void closeDatabase() {
+    if (database == null) return;
+
+    try {
+      database.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      database = null;
+      openDatabaseDirectory = null;
+    }
+  }
+
+  /**
+   * Handles a failure to write into the specified file - abandons the file, if specified, and
+   * reports the failure, unless the last write into the file failed as well.
+   */
+  private void handleWriteFailure(String filename, IOException e, boolean abandon) {
+    if (abandon) abandonLogFile(filename);
+    if (!failedFiles.containsKey(filename)) {
+      failedFiles.put(filename, filename);
+      writeFailed(filename, e);
+    }
+  }
+
+  /**
+   * Rotates the specified log file if appending the specified amount of bytes to it calls for it,
+   * returning the log file to append to.
+   */
+  private LogFile rotateIfNeeded(LogFile logFile, int length) throws IOException {
+    if (!logFile.isIndexed) return logFile; // A game in progress
+
+    long size = logFile.size();
+    if (size == 0) return logFile;
+
+    long maxSize = rotationSize;
+    long today = getDay(System.currentTimeMillis());
+    boolean isRotationDue =
+        ((maxSize > 0) && (size + length > maxSize))
+            || (isDailyRotation && (getDay(logFile.lastWriteTime) != today));
+    if (!isRotationDue) return logFile;
+
+    rotate(logFile.filename);
+    return getLogFile(logFile.filename);
+  }
+
+  /**
+   * Renames the specified log file (and its index) into a new segment, and queues the segment to
+   * be compressed.
+   */
+  private void rotate(String filename) throws IOException {
+    LogFile logFile = (LogFile) openFiles.remove(filename);
+    if (logFile != null) logFile.close();
+
+    File file = new File(filename);
+    File segment = getSegmentFile(file);
+    if (!file.renameTo(segment))
+      throw new IOException("Unable to rename " + file + " to " + segment);
+
+    // The index is rebuilt if it can't be kept
+    PgnIndex.getIndexFile(file).renameTo(PgnIndex.getIndexFile(segment));
+
+    compressLater(segment);
+  }
+
+  /**
+   * Returns the number of the day (in the default time zone) of the specified time.
+   */
+  private static long getDay(long time) {
+    return (time + TimeZone.getDefault().getOffset(time)) / (24 * 60 * 60 * 1000);
+  }
+
+  /**
+   * Returns the file of a new segment of the specified log file. The name of the segment is that
+   * of the log file, with the current time inserted before its extension, so that the names of the
+   * segments sort in the order they were rotated.
+   */
+  private static File getSegmentFile(File file) {
+    String name = file.getName();
+    int extensionIndex = name.lastIndexOf('.');
+    if (extensionIndex <= 0) extensionIndex = name.length();
+    String baseName = name.substring(0, extensionIndex);
+    String extension = name.substring(extensionIndex);
+
+    SimpleDateFormat timeFormat = new SimpleDateFormat(SEGMENT_TIME_FORMAT);
+    long time = System.currentTimeMillis();
+    File segment;
+    do {
+      String timeString = timeFormat.format(new Date(time++));
+      segment = new File(file.getParentFile(), baseName + "-" + timeString + extension);
+    } while (segment.exists() || isSegmentCompressed(segment));
+
+    return segment;
+  }
+
+  /**
+   * Returns whether the compressed file of the specified segment exists.
+   */
+  private static boolean isSegmentCompressed(File segment) {
+    return new File(segment.getPath() + COMPRESSED_SUFFIX).exists();
+  }
+
+  /**
+   * Returns the uncompressed segments of the specified log file.
+   */
+  private static File[] getUncompressedSegments(String filename) {
+    File file = new File(filename).getAbsoluteFile();
+    File dir = file.getParentFile();
+    String name = file.getName();
+    int extensionIndex = name.lastIndexOf('.');
+    if (extensionIndex <= 0) extensionIndex = name.length();
+    final String prefix = name.substring(0, extensionIndex) + "-";
+    final String extension = name.substring(extensionIndex);
+
+    String[] names =
+        (dir == null)
+            ? null
+            : dir.list(
+                new FilenameFilter() {
+                  @Override
+                  public boolean accept(File dir, String name) {
+                    if (!name.startsWith(prefix) || !name.endsWith(extension)) return false;
+
+                    int timeEnd = name.length() - extension.length();
+                    String time = name.substring(prefix.length(), timeEnd);
+                    return time.matches("\\d{8}-\\d{6}-\\d{3}");
+                  }
+                });
+    if (names == null) return new File[0];
+
+    File[] segments = new File[names.length];
+    for (int i = 0; i < names.length; i++) segments[i] = new File(dir, names[i]);
+    return segments;
+  }
+
+  /**
+   * Queues the specified segment to be compressed on the compressor thread, starting it if needed.
+   */
+  private void compressLater(File segment) {
+    synchronized (compressionQueue) {
+      if (compressionQueue.contains(segment)) return;
+
+      compressionQueue.addElement(segment);
+      if (compressorThread == null) {
+        compressorThread =
+            new Thread("GameLogCompressor") {
+              @Override
+              public void run() {
+                compressLoop();
+              }
+            };
+        compressorThread.setDaemon(true);
+        compressorThread.setPriority(Thread.MIN_PRIORITY);
+        compressorThread.start();
+      }
+    }
+  }
+
+  /**
+   * The main loop of the compressor thread, which exits when there are no more segments to
+   * compress.
+   */
+  private void compressLoop() {
+    while (true) {
+      File segment;
+      synchronized (compressionQueue) {
+        if (compressionQueue.isEmpty()) {
+          compressorThread = null;
+          return;
+        }
+        segment = (File) compressionQueue.elementAt(0);
+      }
+
+      try {
+        compress(segment);
+      } catch (IOException e) {
+        compressionFailed(segment, e);
+      }
+
+      synchronized (compressionQueue) {
+        compressionQueue.removeElementAt(0);
+      }
+    }
+  }
+
+  /**
+   * Compresses the specified segment into a file of the same name, with <code>.gz</code>
+   * appended, moves its index to the compressed file and deletes it. The compressed file is
+   * written under a temporary name and synced before replacing the segment, so a crash leaves
+   * either.
+   */
+  private static void compress(File segment) throws IOException {
+    File compressed = new File(segment.getPath() + COMPRESSED_SUFFIX);
+    File tempFile = new File(compressed.getPath() + ".tmp");
+
+    InputStream in = new FileInputStream(segment);
+    try {
+      FileOutputStream fileOut = new FileOutputStream(tempFile);
+      try {
+        BlockGzipOutputStream out =
+            new BlockGzipOutputStream(new BufferedOutputStream(fileOut, 65536));
+        byte[] buf = new byte[65536];
+        int count;
+        while ((count = in.read(buf)) != -1) out.write(buf, 0, count);
+        out.finish();
+        fileOut.getFD().sync();
+      } finally {
+        fileOut.close();
+      }
+    } catch (IOException e) {
+      tempFile.delete();
+      throw e;
+    } finally {
+      in.close();
+    }
+
+    if ((compressed.exists() && !compressed.delete()) || !tempFile.renameTo(compressed))
+      throw new IOException("Unable to rename " + tempFile + " to " + compressed);
+
+    File indexFile = PgnIndex.getIndexFile(segment);
+    File compressedIndexFile = PgnIndex.getIndexFile(compressed);
+    compressedIndexFile.delete();
+    indexFile.renameTo(compressedIndexFile);
+    PgnIndex.open(compressed); // Brings the index up to date, or rebuilds it
+
+    if (!segment.delete()) throw new IOException("Unable to delete " + segment);
+  }
+
+  /**
+   * Invoked on the compressor thread when compressing the specified segment fails. The segment
+   * is left uncompressed, and compressing it is retried when its log file is next recovered. The
+   * default implementation prints the stack trace of the exception.
+   */
+  protected void compressionFailed(File segment, IOException e) {
+    e.printStackTrace();
+  }
+
+  /**
+   * Returns the open <code>LogFile</code> for the specified filename, opening it (and recovering
+   * its journal) if needed.
+   */
+  private LogFile getLogFile(String filename) throws IOException {
+    LogFile logFile = (LogFile) openFiles.get(filename);
+    if (logFile == null) {
+      if (openFiles.size() >= MAX_OPEN_FILES) closeLogFile(getLeastRecentlyUsed());
+
+      logFile = new LogFile(filename);
+      openFiles.put(filename, logFile);
+    }
+
+    logFile.lastUsedTime = System.currentTimeMillis();
+    return logFile;
+  }
+
+  /**
+   * Returns the name of the least recently used open file.
+   */
+  private String getLeastRecentlyUsed() {
+    LogFile leastRecent = null;
+    for (Enumeration e = openFiles.elements(); e.hasMoreElements(); ) {
+      LogFile logFile = (LogFile) e.nextElement();
+      if ((leastRecent == null) || (logFile.lastUsedTime < leastRecent.lastUsedTime))
+        leastRecent = logFile;
+    }
+
+    return leastRecent.filename;
+  }
+
+  /**
+   * Syncs and closes the log file with the specified name, if it's open.
+   */
+  private void closeLogFile(String filename) {
+    LogFile logFile = (LogFile) openFiles.remove(filename);
+    if (logFile == null) return;
+
+    try {
+      logFile.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Closes the log file with the specified name, if it's open, after a failed write into it. The
+   * journal is left as it is, so that the writes in it are redone when the file is next opened.
+   */
+  private void abandonLogFile(String filename) {
+    LogFile logFile = (LogFile) openFiles.remove(filename);
+    if (logFile != null) logFile.abandon();
+  }
+
+  /**
+   * Syncs the open files if the sync interval has passed, and closes the ones which haven't been
+   * used for a while, or all of them if <code>closeAll</code> is <code>true</code>. The database is
+   * closed likewise.
+   */
+  private void maintainFiles(boolean closeAll) {
+    long now = System.currentTimeMillis();
+    boolean syncAll = (syncPolicy == SYNC_INTERVAL) && (now - lastSyncTime >= syncInterval);
+    if (syncAll) lastSyncTime = now;
+
+    Vector filenames = new Vector();
+    for (Enumeration e = openFiles.keys(); e.hasMoreElements(); )
+      filenames.addElement(e.nextElement());
+
+    for (int i = 0; i < filenames.size(); i++) {
+      String filename = (String) filenames.elementAt(i);
+      LogFile logFile = (LogFile) openFiles.get(filename);
+      if (closeAll || (now - logFile.lastUsedTime >= IDLE_CLOSE_TIME)) closeLogFile(filename);
+      else if (syncAll) {
+        try {
+          logFile.sync();
+        } catch (IOException e) {
+          abandonLogFile(filename);
+          writeFailed(filename, e);
+        }
+      }
+    }
+
+    if (closeAll || (now - databaseLastUsedTime >= IDLE_CLOSE_TIME)) closeDatabase();
+  }
+
+  /**
+   * Returns the journal file of the log file with the specified name.
+   */
+  private static File getJournalFile(String filename) {
+    return new File(filename + ".journal");
+  }
+
+  /**
+   * Returns the name of the file of the game in progress with the specified key, which is to be
+   * logged into the specified file.
+   */
+  private static String getInProgressFilename(String filename, String gameKey) {
+    return filename + "." + gameKey + IN_PROGRESS_SUFFIX;
+  }
+
+  /**
+   * Returns the names of the files of the games in progress which are to be logged into the
+   * specified file.
+   */
+  private static String[] getInProgressFilenames(String filename) {
+    File file = new File(filename).getAbsoluteFile();
+    File dir = file.getParentFile();
+    final String prefix = file.getName() + ".";
+    String[] names =
+        dir == null
+            ? null
+            : dir.list(
+                new FilenameFilter() {
+                  @Override
+                  public boolean accept(File dir, String name) {
+                    return name.startsWith(prefix) && name.endsWith(IN_PROGRESS_SUFFIX);
+                  }
+                });
+    if (names == null) return new String[0];
+
+    for (int i = 0; i < names.length; i++) names[i] = new File(dir, names[i]).getPath();
+    return names;
+  }
+
+  /**
+   * Returns the contents of the specified file.
+   */
+  private static byte[] readFile(File file) throws IOException {
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+    try {
+      byte[] text = new byte[(int) in.length()];
+      in.readFully(text);
+      return text;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns the specified text of a game written while it was in progress, finished. If it doesn't
+   * end with a game termination marker, the game was interrupted (by a crash, for example), and
+   * <code>"*"</code> is appended. The value of the <code>Result</code> tag is then set to the game
+   * termination marker.
+   */
+  static byte[] finishGame(byte[] text) throws IOException {
+    String game = new String(text, "ISO-8859-1");
+    String result = getTerminationMarker(game);
+    if (result == null) {
+      result = "*";
+      game = game + (game.endsWith("\n") ? "" : "\n") + result + "\n\n";
+    }
+
+    int resultTagIndex = game.indexOf(IN_PROGRESS_RESULT_TAG);
+    if (resultTagIndex != -1)
+      game =
+          game.substring(0, resultTagIndex)
+              + "[Result \""
+              + result
+              + "\"]"
+              + game.substring(resultTagIndex + IN_PROGRESS_RESULT_TAG.length());
+
+    return game.getBytes("ISO-8859-1");
+  }
+
+  /**
+   * Returns the game termination marker the specified game text ends with (followed by an empty
+   * line), or <code>null</code> if none.
+   */
+  private static String getTerminationMarker(String game) {
+    if (!game.endsWith("\n\n")) return null;
+
+    String text = game.substring(0, game.length() - 2);
+    int tokenStart = Math.max(text.lastIndexOf('\n'), text.lastIndexOf(' ')) + 1;
+    String token = text.substring(tokenStart);
+    if ("1-0".equals(token) || "0-1".equals(token) || "1/2-1/2".equals(token) || "*".equals(token))
+      return token;
+
+    return null;
+  }
+
+  /**
+   * A queued write.
+   */
+  private static class Write {
+
+    /**
+     * The type of writes which append text to a file.
+     */
+    public static final int APPEND = 0;
+
+    /**
+     * The type of writes which truncate a file.
+     */
+    public static final int TRUNCATE = 1;
+
+    /**
+     * The type of writes which commit a game in progress.
+     */
+    public static final int COMMIT = 2;
+
+    /**
+     * The type of writes which add a game to the database.
+     */
+    public static final int ADD = 3;
+
+    /**
+     * The type of the write.
+     */
+    public final int type;
+
+    /**
+     * The name of the file to write into; for commits, the file of the game in progress. Unused
+     * when adding a game to the database.
+     */
+    public final String filename;
+
+    /**
+     * The text to append to the file, <code>null</code> for only recovering its journal; the text
+     * of the game when adding a game to the database.
+     */
+    public final byte[] text;
+
+    /**
+     * The name of the file to commit the game in progress into.
+     */
+    public final String target;
+
+    /**
+     * The length to truncate the file to.
+     */
+    public final long length;
+
+    /**
+     * Whether the committed game is also added to the database.
+     */
+    public final boolean addToDatabase;
+
+    /**
+     * Creates a new <code>Write</code> with the specified type, filename, text, commit target,
+     * truncation length and whether the committed game is added to the database.
+     */
+    public Write(
+        int type, String filename, byte[] text, String target, long length, boolean addToDatabase) {
+      this.type = type;
+      this.filename = filename;
+      this.text = text;
+      this.target = target;
+      this.length = length;
+      this.addToDatabase = addToDatabase;
+    }
+  }
+
+  /**
+   * An open log file, with its journal.
+   */
+  private static class LogFile {
+
+    /**
+     * The name of the file.
+     */
+    public final String filename;
+
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The journal file.
+     */
+    private final File journalFile;
+
+    /**
+     * The journal, <code>null</code> if it's not open.
+     */
+    private RandomAccessFile journal = null;
+
+    /**
+     * Whether there are writes which haven't been synced yet.
+     */
+    private boolean isUnsynced = false;
+
+    /**
+     * Whether there are journal records which haven't been synced yet.
+     */
+    private boolean isJournalUnsynced = false;
+
+    /**
+     * Whether the file is indexed. The files of games in progress aren't.
+     */
+    public final boolean isIndexed;
+
+    /**
+     * The index of the file, <code>null</code> if it hasn't been opened yet.
+     */
+    private PgnIndex index = null;
+
+    /**
+     * The time the file was last used.
+     */
+    public long lastUsedTime;
+
+    /**
+     * The time the file was last written to.
+     */
+    public long lastWriteTime;
+
+    /**
+     * Opens the log file with the specified name, recovering its journal if there is one.
+     */
+    public LogFile(String filename) throws IOException {
+      this.filename = filename;
+      this.journalFile = getJournalFile(filename);
+      this.isIndexed = !filename.endsWith(IN_PROGRESS_SUFFIX);
+
+      File file = new File(filename);
+      File dir = file.getAbsoluteFile().getParentFile();
+      if ((dir != null) && !dir.exists()) dir.mkdirs();
+
+      this.lastWriteTime = file.exists() ? file.lastModified() : System.currentTimeMillis();
+      this.channel = new RandomAccessFile(file, "rw").getChannel();
+      try {
+        if (journalFile.exists()) recoverJournal();
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Redoes the writes recorded in the journal which are missing from the log file, syncs it and
+     * deletes the journal.
+     */
+    private void recoverJournal() throws IOException {
+      DataInputStream in = new DataInputStream(new FileInputStream(journalFile));
+      try {
+        while (true) {
+          long lengthBefore;
+          byte[] text;
+          try {
+            lengthBefore = in.readLong();
+            text = new byte[in.readInt()];
+            in.readFully(text);
+          } catch (EOFException e) {
+            break; // A record which wasn't completely written, so neither was the write
+          }
+
+          long size = channel.size();
+          if (size >= lengthBefore + text.length) continue; // Written
+          if (size > lengthBefore) channel.truncate(lengthBefore); // Partially written
+
+          writeFully(text);
+        }
+      } finally {
+        in.close();
+      }
+
+      channel.force(false);
+      if (!journalFile.delete()) throw new IOException("Unable to delete " + journalFile);
+    }
+
+    /**
+     * Appends the specified text to the file, recording it in the journal first, and then syncs
+     * according to the specified policy.
+     */
+    public void append(byte[] text, int syncPolicy) throws IOException {
+      if (journal == null) {
+        journal = new RandomAccessFile(journalFile, "rw");
+        journal.seek(journal.length());
+      }
+
+      ByteBuffer record = ByteBuffer.allocate(12 + text.length);
+      record.putLong(channel.size()).putInt(text.length).put(text);
+      journal.write(record.array());
+      if (syncPolicy == SYNC_BATCH) journal.getFD().sync();
+      else isJournalUnsynced = true;
+
+      writeFully(text);
+      isUnsynced = true;
+      lastWriteTime = System.currentTimeMillis();
+
+      if (syncPolicy == SYNC_BATCH) sync();
+      else if (syncPolicy == SYNC_NONE) clearJournal();
+    }
+
+    /**
+     * Brings the index of the file up to date with the games written into it. Failing to index the
+     * file doesn't fail the writes, so errors are only printed; the index is reopened, and rebuilt
+     * if needed, on the next update.
+     */
+    public void updateIndex() {
+      if (!isIndexed) return;
+
+      try {
+        if (index == null) index = PgnIndex.open(new File(filename));
+        else index.update();
+      } catch (IOException e) {
+        index = null;
+        e.printStackTrace();
+      }
+    }
+
+    /**
+     * Appends the specified text to the end of the file.
+     */
+    private void writeFully(byte[] text) throws IOException {
+      ByteBuffer buf = ByteBuffer.wrap(text);
+      long position = channel.size();
+      while (buf.hasRemaining()) position += channel.write(buf, position);
+    }
+
+    /**
+     * Truncates the file to the specified length, and syncs it according to the specified policy.
+     * Pending writes are synced first, since redoing them from the journal after the truncation
+     * would undo it.
+     */
+    public void truncate(long length, int syncPolicy) throws IOException {
+      sync();
+      if (channel.size() <= length) return;
+
+      channel.truncate(length);
+      if (syncPolicy == SYNC_BATCH) channel.force(false);
+    }
+
+    /**
+     * Returns the size of the file.
+     */
+    public long size() throws IOException {
+      return channel.size();
+    }
+
+    /**
+     * Returns whether the file ends with the specified text.
+     */
+    public boolean endsWith(byte[] text) throws IOException {
+      long position = channel.size() - text.length;
+      if (position < 0) return false;
+
+      ByteBuffer buf = ByteBuffer.allocate(text.length);
+      while (buf.hasRemaining()) {
+        int count = channel.read(buf, position + buf.position());
+        if (count < 0) return false;
+      }
+
+      return Arrays.equals(buf.array(), text);
+    }
+
+    /**
+     * Syncs the unsynced writes to disk and clears the journal. Journal records which haven't been
+     * synced yet are synced first, so that they're on disk before the writes they record.
+     */
+    public void sync() throws IOException {
+      if (!isUnsynced) return;
+
+      if (isJournalUnsynced) journal.getFD().sync();
+      channel.force(false);
+      clearJournal();
+    }
+
+    /**
+     * Clears the journal, since the writes in it have been done.
+     */
+    private void clearJournal() throws IOException {
+      journal.setLength(0);
+      isUnsynced = false;
+      isJournalUnsynced = false;
+    }
+
+    /**
+     * Syncs and closes the file, deleting the journal.
+     */
+    public void close() throws IOException {
+      try {
+        sync();
+      } finally {
+        channel.close();
+        if (journal != null) {
+          boolean isJournalEmpty = journal.length() == 0;
+          journal.close();
+          if (isJournalEmpty) journalFile.delete();
+        }
+      }
+    }
+
+    /**
+     * Closes the file and the journal, without syncing or clearing the journal.
+     */
+    public void abandon() {
+      try {
+        channel.close();
+        if (journal != null) journal.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
@@ -20,37 +20,41 @@ import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
 import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
 
 import bsh.EvalError;
-import bsh.Interpreter;
 import free.chess.Chess;
-import free.chess.ChessMove;
+import free.chess.ChesslikeGenericVariant;
 import free.chess.FischerTimeControl;
 import free.chess.Move;
+import free.chess.MoveList;
 import free.chess.OddsTimeControl;
 import free.chess.Player;
-import free.chess.Position;
+import free.chess.PositionSnapshot;
 import free.chess.TimeControl;
 import free.jin.Connection;
 import free.jin.Game;
+import free.jin.GameMemoryAccountant;
+import free.jin.GameMemoryUsage;
+import free.jin.GameStateHolder;
 import free.jin.I18n;
 import free.jin.PGNConnection;
 import free.jin.Preferences;
 import free.jin.action.JinAction;
+import free.jin.event.BackgroundListener;
 import free.jin.event.BoardFlipEvent;
 import free.jin.event.ClockAdjustmentEvent;
+import free.jin.event.GameAdapter;
 import free.jin.event.GameEndEvent;
 import free.jin.event.GameListener;
 import free.jin.event.GameStartEvent;
@@ -68,9 +72,22 @@ import free.util.swing.ExtensionFileFilter;
 import free.util.swing.SwingUtils;
 
 /**
- * A plugin which allows logging games.
+ * A plugin which allows logging games. Games are formatted on the listener manager's background
+ * threads and written out by a {@link GameLogWriter}, so logging never holds up the user
+ * interface.
+ *
+ * <p>Observed games are logged by logging rules which apply to observed games, under the name of
+ * the rule as the event. They're written move by move while they're in progress (see
+ * {@link ObservedGameLog}), rather than kept in memory, so that many games, such as all the boards
+ * of a broadcast tournament, can be logged at once.
+ *
+ * <p>If the <code>logging.database.dir</code> preference specifies a directory, the logged games
+ * (each once, regardless of the number of files it's logged into) are also added to the
+ * {@link free.chess.db.GameDatabase} in it, so that they can be searched by player, date, result,
+ * opening or position.
  */
-public class GameLogger extends Plugin implements GameListener, PropertyChangeListener {
+public class GameLogger extends Plugin
+    implements GameListener, BackgroundListener, PropertyChangeListener {
 
   /**
    * The code for the logging mode when no games are logged.
@@ -87,6 +104,18 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    */
   public static final int USE_RULES = 2;
 
+  /**
+   * The maximum amount of writes waiting to be written by the log writer. The moves of observed
+   * games are written one by one, so this allows for a burst of moves on many boards.
+   */
+  private static final int LOG_QUEUE_CAPACITY = 256;
+
+  /**
+   * The maximum amount of time, in milliseconds, we wait for queued games to be written when the
+   * plugin is stopped.
+   */
+  private static final long LOG_WRITER_CLOSE_TIMEOUT = 5000;
+
   /**
    * The DateFormat used for formatting the Date pgn tag.
    */
@@ -103,24 +132,54 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   private final SaveGameAction saveGameAction = new SaveGameAction();
 
   /**
-   * Maps Game objects to GameInfo objects.
+   * Maps Game objects to GameInfo objects, for the games we may log.
    */
   private final Hashtable gamesToGameInfo = new Hashtable();
 
+  /**
+   * Maps observed Game objects to arrays of the ObservedGameLogs they're logged with.
+   */
+  private final Hashtable observedGamesToLogs = new Hashtable();
+
+  /**
+   * Starts listening to the properties of the games we may log, on the event dispatching thread,
+   * where property changes are fired. Doing it on the background threads, where we're notified of
+   * the game starting, could miss the game becoming examined right after it starts.
+   */
+  private final GameAdapter gameStartListener =
+      new GameAdapter() {
+        @Override
+        public void gameStarted(GameStartEvent evt) {
+          Game game = evt.getGame();
+          if (canLog(game)) game.addPropertyChangeListener(GameLogger.this);
+        }
+      };
+
+  /**
+   * Accounts for the memory we hold for games.
+   */
+  private final GameStateAccounting gameStateAccounting = new GameStateAccounting();
+
+  /**
+   * The writer which writes the logged games to their files.
+   */
+  private GameLogWriter logWriter;
+
   /**
    * The current logging mode.
    */
-  private int loggingMode;
+  private volatile int loggingMode;
 
   /**
    * The filename of the file to log to when the logging setting is to log all games.
    */
-  private String allGamesLogFile;
+  private volatile String allGamesLogFile;
 
   /**
-   * A Vector of LoggingRules.
+   * A Vector of LoggingRules. The Vector is replaced rather than modified when the rules change,
+   * since it is read on the background threads.
    */
-  private Vector loggingRules;
+  private volatile Vector loggingRules;
 
   /**
    * Sets the plugin context - returns <code>false</code> if the connection is not an instance of
@@ -167,9 +226,12 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    */
   @Override
   public void start() {
+    logWriter = new LogWriter();
     registerListeners();
     loadLoggingConditions();
+    recoverLogFiles();
     exportAction(saveGameAction);
+    GameMemoryAccountant.getInstance().register(gameStateAccounting);
   }
 
   /**
@@ -177,7 +239,38 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    */
   @Override
   public void stop() {
+    GameMemoryAccountant.getInstance().unregister(gameStateAccounting);
     unregisterListeners();
+
+    // Commit the observed games we were logging, as unfinished
+    Enumeration logs = observedGamesToLogs.elements();
+    while (logs.hasMoreElements()) endObservedGameLogs((ObservedGameLog[]) logs.nextElement(), "*");
+    observedGamesToLogs.clear();
+
+    try {
+      logWriter.close(LOG_WRITER_CLOSE_TIMEOUT);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Has the log writer finish the writes interrupted by a crash, for all the files we're
+   * configured to log into.
+   */
+  private void recoverLogFiles() {
+    Vector filenames = new Vector();
+    if (allGamesLogFile != null) filenames.addElement(allGamesLogFile);
+
+    Vector rules = loggingRules;
+    for (int i = 0; i < rules.size(); i++)
+      filenames.addElement(((LoggingRule) rules.elementAt(i)).getFilename());
+
+    try {
+      for (int i = 0; i < filenames.size(); i++) logWriter.recover((String) filenames.elementAt(i));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   /**
@@ -188,6 +281,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     ListenerManager listenerManager = conn.getListenerManager();
 
     listenerManager.addGameListener(this);
+    listenerManager.addGameListener(gameStartListener);
   }
 
   /**
@@ -198,6 +292,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     ListenerManager listenerManager = conn.getListenerManager();
 
     listenerManager.removeGameListener(this);
+    listenerManager.removeGameListener(gameStartListener);
   }
 
   /**
@@ -211,23 +306,43 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     else if ("all".equalsIgnoreCase(loggingModeString)) loggingMode = LOG_ALL;
     else loggingMode = LOG_NONE;
 
+    String syncPolicyString = prefs.getString("logging.sync", "batch");
+    int syncPolicy;
+    if ("none".equalsIgnoreCase(syncPolicyString)) syncPolicy = GameLogWriter.SYNC_NONE;
+    else if ("interval".equalsIgnoreCase(syncPolicyString))
+      syncPolicy = GameLogWriter.SYNC_INTERVAL;
+    else syncPolicy = GameLogWriter.SYNC_BATCH;
+    logWriter.setSyncPolicy(syncPolicy, Math.max(1, prefs.getInt("logging.sync.interval", 5000)));
+
+    // The size is in megabytes
+    long rotationSize = Math.max(0, prefs.getInt("logging.rotation.size", 0)) * 1024L * 1024L;
+    logWriter.setRotation(rotationSize, prefs.getBool("logging.rotation.daily", false));
+
+    String databaseDir = prefs.getString("logging.database.dir", "");
+    logWriter.setDatabaseDirectory("".equals(databaseDir) ? null : new File(databaseDir));
+
     allGamesLogFile = prefs.getString("logging.all.filename", null);
     if ((allGamesLogFile == null) && (loggingMode == LOG_ALL)) loggingMode = LOG_NONE;
 
     int rulesCount = prefs.getInt("logging.rules.count", 0);
-    loggingRules = new Vector(rulesCount);
+    Vector rules = new Vector(rulesCount);
 
     for (int i = 0; i < rulesCount; i++) {
       String name = prefs.getString("logging.rule-" + (i + 1) + ".name");
       String condition = prefs.getString("logging.rule-" + (i + 1) + ".condition");
       String filename = prefs.getString("logging.rule-" + (i + 1) + ".filename");
+      boolean isForObservedGames = prefs.getBool("logging.rule-" + (i + 1) + ".observed", false);
 
       try {
-        loggingRules.addElement(new LoggingRule(name, condition, filename));
+        LoggingRule rule = new LoggingRule(name, condition, filename);
+        rule.setForObservedGames(isForObservedGames);
+        rules.addElement(rule);
       } catch (EvalError e) {
         e.printStackTrace();
       }
     }
+
+    loggingRules = rules;
   }
 
   /**
@@ -263,6 +378,11 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
       {"unknownResult", "false"},
       {"whiteWins", "true"},
       {"blackWins", "true"},
+      {"white", "\"AlexTheGreat\""},
+      {"black", "\"Hunky\""},
+      {"whiteRating", "2450"},
+      {"blackRating", "2380"},
+      {"variant", "\"chess\""},
     };
   }
 
@@ -276,63 +396,13 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
       return new String[] {allGamesLogFile};
     } else {
       GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
+      LoggingVariables vars = createLoggingVariables(game, gameInfo);
 
-      Interpreter bsh = new Interpreter();
-      boolean isUserWhite = game.getUserPlayer().isWhite();
-      TimeControl timeControl = game.getTimeControl();
-      try {
-        bsh.set("category", game.getRatingCategoryString());
-        bsh.set("rating", isUserWhite ? game.getBlackRating() : game.getWhiteRating());
-
-        if (timeControl instanceof FischerTimeControl) {
-          FischerTimeControl tc = (FischerTimeControl) timeControl;
-          bsh.set("time", tc.getInitial() / (60 * 1000));
-          bsh.set("inc", tc.getIncrement() / 1000);
-          bsh.set("etime", tc.getInitial() + tc.getIncrement() * 2 / 3.0);
-        } else if (timeControl instanceof OddsTimeControl) {
-          OddsTimeControl otc = (OddsTimeControl) timeControl;
-          if ((otc.getWhiteTimeControl() instanceof FischerTimeControl)
-              && (otc.getBlackTimeControl() instanceof FischerTimeControl)) {
-            FischerTimeControl tc =
-                (FischerTimeControl)
-                    (isUserWhite ? otc.getWhiteTimeControl() : otc.getBlackTimeControl());
-            bsh.set("time", tc.getInitial() / (60 * 1000));
-            bsh.set("inc", tc.getIncrement() / 1000);
-            bsh.set("etime", tc.getInitial() + tc.getIncrement() * 2 / 3.0);
-          }
-        }
-        bsh.set("rated", game.isRated());
-        bsh.set("opponent", (isUserWhite ? game.getBlackName() : game.getWhiteName()));
-        bsh.set("title", (isUserWhite ? game.getBlackTitles() : game.getWhiteTitles()));
-        bsh.set("moves", gameInfo.movelist.size());
-
-        bsh.set("userWhite", game.getUserPlayer() == Player.WHITE_PLAYER);
-        bsh.set("userBlack", game.getUserPlayer() == Player.BLACK_PLAYER);
-
-        String result = getResultString(isUserWhite, game.getResultCode());
-        bsh.set("result", result);
-        bsh.set("win", result.equals("win"));
-        bsh.set("loss", result.equals("loss"));
-        bsh.set("draw", result.equals("draw"));
-        bsh.set("unknownResult", result.equals("unknownResult"));
-
-        bsh.set("whiteWins", game.getResultCode() == Game.WHITE_WINS);
-        bsh.set("blackWins", game.getResultCode() == Game.BLACK_WINS);
-      } catch (EvalError e) {
-        e.printStackTrace();
-        return new String[0];
-      }
-
+      Vector rules = loggingRules;
       Vector files = new Vector();
-      for (int i = 0; i < loggingRules.size(); i++) {
-        LoggingRule rule = (LoggingRule) loggingRules.elementAt(i);
-        String condition = rule.getCondition();
-        try {
-          boolean result = ((Boolean) bsh.eval(condition)).booleanValue();
-          if (result) files.addElement(rule.getFilename());
-        } catch (EvalError e) {
-          e.printStackTrace();
-        }
+      for (int i = 0; i < rules.size(); i++) {
+        LoggingRule rule = (LoggingRule) rules.elementAt(i);
+        if (!rule.isForObservedGames() && rule.matches(vars)) files.addElement(rule.getFilename());
       }
 
       if (files.size() == 0) return null;
@@ -344,6 +414,104 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     }
   }
 
+  /**
+   * Returns the logging rules which apply to observed games and match the specified observed game,
+   * one for each file the game should be logged into.
+   */
+  private Vector getObservedGameRules(Game game) {
+    Vector matchingRules = new Vector();
+    if (loggingMode != USE_RULES) return matchingRules;
+
+    LoggingVariables vars = createObservedLoggingVariables(game);
+    Vector rules = loggingRules;
+    Hashtable filenames = new Hashtable();
+    for (int i = 0; i < rules.size(); i++) {
+      LoggingRule rule = (LoggingRule) rules.elementAt(i);
+      if (!rule.isForObservedGames() || filenames.containsKey(rule.getFilename())) continue;
+
+      if (rule.matches(vars)) {
+        matchingRules.addElement(rule);
+        filenames.put(rule.getFilename(), rule);
+      }
+    }
+
+    return matchingRules;
+  }
+
+  /**
+   * Returns the values of the logging rule condition variables for the specified game.
+   */
+  private static LoggingVariables createLoggingVariables(Game game, GameInfo gameInfo) {
+    LoggingVariables vars = new LoggingVariables();
+    boolean isUserWhite = game.getUserPlayer().isWhite();
+
+    setGameVariables(vars, game, game.getUserPlayer());
+    vars.setInt("rating", isUserWhite ? game.getBlackRating() : game.getWhiteRating());
+    vars.setString("opponent", (isUserWhite ? game.getBlackName() : game.getWhiteName()));
+    vars.setString("title", (isUserWhite ? game.getBlackTitles() : game.getWhiteTitles()));
+    vars.setInt("moves", gameInfo.movelist.size());
+
+    vars.setBoolean("userWhite", game.getUserPlayer() == Player.WHITE_PLAYER);
+    vars.setBoolean("userBlack", game.getUserPlayer() == Player.BLACK_PLAYER);
+
+    String result = getResultString(isUserWhite, game.getResultCode());
+    vars.setString("result", result);
+    vars.setBoolean("win", result.equals("win"));
+    vars.setBoolean("loss", result.equals("loss"));
+    vars.setBoolean("draw", result.equals("draw"));
+    vars.setBoolean("unknownResult", result.equals("unknownResult"));
+
+    vars.setBoolean("whiteWins", game.getResultCode() == Game.WHITE_WINS);
+    vars.setBoolean("blackWins", game.getResultCode() == Game.BLACK_WINS);
+
+    return vars;
+  }
+
+  /**
+   * Returns the values of the logging rule condition variables for the specified observed game, as
+   * it starts. Only the variables which don't depend on the user playing in the game, or on its
+   * outcome, are set.
+   */
+  private static LoggingVariables createObservedLoggingVariables(Game game) {
+    LoggingVariables vars = new LoggingVariables();
+    setGameVariables(vars, game, Player.WHITE_PLAYER);
+    return vars;
+  }
+
+  /**
+   * Sets the logging rule condition variables describing the specified game itself, rather than
+   * the user's part in it, into the specified <code>LoggingVariables</code>. The time control
+   * variables are those of the specified player.
+   */
+  private static void setGameVariables(LoggingVariables vars, Game game, Player player) {
+    TimeControl timeControl = game.getTimeControl();
+
+    vars.setString("category", game.getRatingCategoryString());
+
+    FischerTimeControl tc = null;
+    if (timeControl instanceof FischerTimeControl) tc = (FischerTimeControl) timeControl;
+    else if (timeControl instanceof OddsTimeControl) {
+      OddsTimeControl otc = (OddsTimeControl) timeControl;
+      if ((otc.getWhiteTimeControl() instanceof FischerTimeControl)
+          && (otc.getBlackTimeControl() instanceof FischerTimeControl))
+        tc =
+            (FischerTimeControl)
+                (player.isWhite() ? otc.getWhiteTimeControl() : otc.getBlackTimeControl());
+    }
+    if (tc != null) {
+      vars.setInt("time", tc.getInitial() / (60 * 1000));
+      vars.setInt("inc", tc.getIncrement() / 1000);
+      vars.setDouble("etime", tc.getInitial() + tc.getIncrement() * 2 / 3.0);
+    }
+
+    vars.setBoolean("rated", game.isRated());
+    vars.setString("white", game.getWhiteName());
+    vars.setString("black", game.getBlackName());
+    vars.setInt("whiteRating", game.getWhiteRating());
+    vars.setInt("blackRating", game.getBlackRating());
+    vars.setString("variant", game.getVariant().getName());
+  }
+
   /**
    * Returns the result string for the specified result code and a boolean value specifying whether
    * the user is playing with the white pieces.
@@ -374,143 +542,251 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   }
 
   /**
-   * Logs the specified game to all the files it should be logged into.
+   * Returns <code>true</code> if the specified game is an observed game we know how to log while
+   * it's in progress.
    */
-  private void gameEnded(Game game) {
-    GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
-    saveGameAction.setLastGame(game, gameInfo);
+  protected boolean canLogObserved(Game game) {
+    return (game.getGameType() == Game.OBSERVED_GAME)
+        && game.isPlayed()
+        && (game.getVariant() instanceof ChesslikeGenericVariant);
+  }
 
-    String[] filenames = getFilesToLogInto(game);
-    if (filenames != null) {
-      for (int i = 0; i < filenames.length; i++) log(game, gameInfo, filenames[i]);
+  /**
+   * Starts logging the specified observed game into the files of the logging rules it matches, if
+   * any.
+   */
+  private void startObservedGameLogs(Game game) {
+    Vector rules = getObservedGameRules(game);
+    if (rules.size() == 0) return;
+
+    String gameKey = (game.getID() + "-" + System.currentTimeMillis()).replaceAll("\\W", "_");
+    ObservedGameLog[] logs = new ObservedGameLog[rules.size()];
+    for (int i = 0; i < logs.length; i++) {
+      LoggingRule rule = (LoggingRule) rules.elementAt(i);
+      logs[i] = new ObservedGameLog(logWriter, rule.getFilename(), gameKey, rule.getName());
     }
+
+    observedGamesToLogs.put(game, logs);
+    startObservedGameLogs(game, logs, game.getInitialPositionSnapshot());
   }
 
   /**
-   * Logs the specified game, with the specified game info into the specified file.
+   * (Re)starts the specified logs of the specified observed game, from the specified position.
    */
-  private void log(Game game, GameInfo gameInfo, String filename) {
+  private void startObservedGameLogs(Game game, ObservedGameLog[] logs, PositionSnapshot initPos) {
+    Date gameStartDate = new Date();
     try {
-      String resultString;
-      switch (game.getResultCode()) {
-        case Game.WHITE_WINS:
-          resultString = "1-0";
-          break;
-        case Game.BLACK_WINS:
-          resultString = "0-1";
-          break;
-        case Game.DRAW:
-          resultString = "1/2-1/2";
-          break;
-        default:
-          resultString = "*";
-          break;
+      for (int i = 0; i < logs.length; i++) {
+        StringBuffer tags = new StringBuffer();
+        writeTags(
+            tags,
+            game,
+            logs[i].getEvent(),
+            gameStartDate,
+            "*",
+            initPos.getFEN());
+        logs[i].start(tags.toString(), initPos.getCurrentPlayer());
       }
+    } catch (IOException e) {
+      e.printStackTrace(); // ISO-8859-1 is always supported
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IllegalStateException e) {
+      // The plugin was stopped
+    }
+  }
 
-      int whiteRating = game.getWhiteRating();
-      int blackRating = game.getBlackRating();
-      String whiteRatingString = (whiteRating < 0) ? "-" : String.valueOf(whiteRating);
-      String blackRatingString = (blackRating < 0) ? "-" : String.valueOf(blackRating);
-      TimeControl timeControl = game.getTimeControl();
-
-      DataOutputStream out =
-          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename, true)));
-      writeTag(
-          out,
-          "Event",
-          (game.isRated() ? "rated " : "unrated ") + game.getRatingCategoryString() + " game");
-      writeTag(out, "Site", getUser().getServer().getLongName());
-      writeTag(out, "Date", DATE_FORMAT.format(gameInfo.gameStartDate));
-      writeTag(out, "Round", "-");
-      writeTag(out, "White", game.getWhiteName());
-      writeTag(out, "Black", game.getBlackName());
-      writeTag(out, "WhiteElo", whiteRatingString);
-      writeTag(out, "BlackElo", blackRatingString);
-      writeTag(out, "Result", resultString);
-      writeTag(out, "Time", TIME_FORMAT.format(gameInfo.gameStartDate));
-
-      if (timeControl instanceof FischerTimeControl) {
-        FischerTimeControl tc = (FischerTimeControl) timeControl;
-        writeTag(out, "TimeControl", tc.getInitial() / 1000 + "+" + tc.getIncrement() / 1000);
-      }
-      writeTag(out, "Mode", "ICS");
-      if (!gameInfo.initPos.getFEN().equals(Chess.INITIAL_POSITION_FEN)) {
-        writeTag(out, "SetUp", "1");
-        writeTag(out, "FEN", gameInfo.initPos.getFEN());
-      }
+  /**
+   * Ends the specified logs of an observed game with the specified game termination marker. The
+   * game is added to the database (by the first log) only once.
+   */
+  private static void endObservedGameLogs(ObservedGameLog[] logs, String result) {
+    try {
+      for (int i = 0; i < logs.length; i++) logs[i].end(result, i == 0);
+    } catch (IOException e) {
+      e.printStackTrace(); // ISO-8859-1 is always supported
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IllegalStateException e) {
+      // The plugin was stopped
+    }
+  }
 
-      out.writeBytes("\n");
-
-      Vector movelist = gameInfo.movelist;
-      int moveCount = movelist.size();
-      StringBuffer lineBuf = new StringBuffer();
-      StringBuffer buf = new StringBuffer();
-      for (int i = 0; i < moveCount; i++) {
-        buf.setLength(0);
-        ChessMove move = (ChessMove) movelist.elementAt(i);
-        Player movingPlayer = move.getPlayer();
-        String san = move.getSAN();
-        if ((i == 0) && movingPlayer.isBlack()) {
-          buf.append("1... ");
-          buf.append(san);
-        } else {
-          if (movingPlayer.isWhite()) {
-            buf.append(String.valueOf(1 + i / 2));
-            buf.append(". ");
+  /**
+   * Logs the specified game to all the files it should be logged into.
+   */
+  private void gameEnded(final Game game) {
+    final GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
+    if (gameInfo == null) return; // Already ended
+
+    gameInfo.movelist.compact(); // Kept for the save action, but rarely looked at
+    SwingUtilities.invokeLater(
+        new Runnable() {
+          @Override
+          public void run() {
+            saveGameAction.setLastGame(game, gameInfo);
           }
-          buf.append(san);
-        }
-        if (lineBuf.length() + 1 + buf.length() > 80) { // +1 is for the space between them
-          out.writeBytes(lineBuf.toString());
-          out.writeBytes("\n");
-          lineBuf.setLength(0);
-          lineBuf.append(buf.toString());
-        } else {
-          if (lineBuf.length() != 0) lineBuf.append(" ");
-          lineBuf.append(buf.toString());
-        }
+        });
 
-        buf.setLength(0);
-      }
+    String[] filenames = getFilesToLogInto(game);
+    if (filenames != null) log(game, gameInfo, filenames, true);
+  }
 
-      if (lineBuf.length() + 1 + resultString.length() > 80) { // +1 is for the space between them
-        out.writeBytes(lineBuf.toString());
-        out.writeBytes("\n");
-        out.writeBytes(resultString);
+  /**
+   * Logs the specified game, with the specified game info into the specified files, and adds it
+   * to the database, if specified. The game is formatted on the calling thread and queued to the
+   * log writer, which does the actual writing.
+   */
+  private void log(Game game, GameInfo gameInfo, String[] filenames, boolean addToDatabase) {
+    String resultString = getPgnResult(game.getResultCode());
+
+    StringBuffer out = new StringBuffer();
+    writeTags(
+        out,
+        game,
+        (game.isRated() ? "rated " : "unrated ") + game.getRatingCategoryString() + " game",
+        gameInfo.gameStartDate,
+        resultString,
+        gameInfo.movelist.getInitialPosition().getFEN());
+    out.append("\n");
+
+    MoveList movelist = gameInfo.movelist;
+    int moveCount = movelist.size();
+    Move[] moves = movelist.getMoves(0, moveCount);
+    StringBuffer lineBuf = new StringBuffer();
+    StringBuffer buf = new StringBuffer();
+    for (int i = 0; i < moveCount; i++) {
+      buf.setLength(0);
+      Player movingPlayer = movelist.getPlayer(i);
+      String san = moves[i].toString();
+      if ((i == 0) && movingPlayer.isBlack()) {
+        buf.append("1... ");
+        buf.append(san);
+      } else {
+        if (movingPlayer.isWhite()) {
+          buf.append(String.valueOf(1 + i / 2));
+          buf.append(". ");
+        }
+        buf.append(san);
+      }
+      if (lineBuf.length() + 1 + buf.length() > 80) { // +1 is for the space between them
+        out.append(lineBuf.toString());
+        out.append("\n");
+        lineBuf.setLength(0);
+        lineBuf.append(buf.toString());
       } else {
-        out.writeBytes(lineBuf.toString());
-        out.writeBytes(" ");
-        out.writeBytes(resultString);
+        if (lineBuf.length() != 0) lineBuf.append(" ");
+        lineBuf.append(buf.toString());
       }
 
-      out.writeBytes("\n\n");
+      buf.setLength(0);
+    }
+
+    if (lineBuf.length() + 1 + resultString.length() > 80) { // +1 is for the space between them
+      out.append(lineBuf.toString());
+      out.append("\n");
+      out.append(resultString);
+    } else {
+      out.append(lineBuf.toString());
+      out.append(" ");
+      out.append(resultString);
+    }
 
-      out.close();
+    out.append("\n\n");
+
+    try {
+      byte[] text = out.toString().getBytes("ISO-8859-1");
+      for (int i = 0; i < filenames.length; i++) logWriter.write(filenames[i], text);
+      if (addToDatabase) logWriter.addToDatabase(text);
     } catch (IOException e) {
-      e.printStackTrace();
-      OptionPanel.error("I/O Error", "Unable to log game:\n" + e.getMessage());
+      e.printStackTrace(); // ISO-8859-1 is always supported
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IllegalStateException e) {
+      // The plugin was stopped
     }
   }
 
   /**
-   * Writes the specified pgn tag with the specified value to the specified output stream.
+   * Returns the PGN game termination marker for the specified result code.
    */
-  private static void writeTag(DataOutputStream out, String tagName, String tagValue)
-      throws IOException {
-    out.writeBytes("[" + tagName + " \"" + tagValue + "\"]\n");
+  private static String getPgnResult(int resultCode) {
+    switch (resultCode) {
+      case Game.WHITE_WINS:
+        return "1-0";
+      case Game.BLACK_WINS:
+        return "0-1";
+      case Game.DRAW:
+        return "1/2-1/2";
+      default:
+        return "*";
+    }
   }
 
   /**
-   * Starts logging the moves.
+   * Appends the pgn tags of the specified game, with the specified event, start date, result and
+   * initial position, to the specified buffer.
+   */
+  private void writeTags(
+      StringBuffer out,
+      Game game,
+      String event,
+      Date gameStartDate,
+      String resultString,
+      String initFEN) {
+    int whiteRating = game.getWhiteRating();
+    int blackRating = game.getBlackRating();
+    String whiteRatingString = (whiteRating < 0) ? "-" : String.valueOf(whiteRating);
+    String blackRatingString = (blackRating < 0) ? "-" : String.valueOf(blackRating);
+    TimeControl timeControl = game.getTimeControl();
+
+    writeTag(out, "Event", event);
+    writeTag(out, "Site", getUser().getServer().getLongName());
+    synchronized (DATE_FORMAT) {
+      writeTag(out, "Date", DATE_FORMAT.format(gameStartDate));
+    }
+    writeTag(out, "Round", "-");
+    writeTag(out, "White", game.getWhiteName());
+    writeTag(out, "Black", game.getBlackName());
+    writeTag(out, "WhiteElo", whiteRatingString);
+    writeTag(out, "BlackElo", blackRatingString);
+    writeTag(out, "Result", resultString);
+    synchronized (TIME_FORMAT) {
+      writeTag(out, "Time", TIME_FORMAT.format(gameStartDate));
+    }
+
+    if (timeControl instanceof FischerTimeControl) {
+      FischerTimeControl tc = (FischerTimeControl) timeControl;
+      writeTag(out, "TimeControl", tc.getInitial() / 1000 + "+" + tc.getIncrement() / 1000);
+    }
+    writeTag(out, "Mode", "ICS");
+    if (!(game.getVariant() instanceof Chess))
+      writeTag(out, "Variant", game.getVariant().getName());
+    if (!initFEN.equals(Chess.INITIAL_POSITION_FEN)) {
+      writeTag(out, "SetUp", "1");
+      writeTag(out, "FEN", initFEN);
+    }
+  }
+
+  /**
+   * Appends the specified pgn tag with the specified value to the specified buffer.
+   */
+  private static void writeTag(StringBuffer out, String tagName, String tagValue) {
+    out.append("[" + tagName + " \"" + tagValue + "\"]\n");
+  }
+
+  /**
+   * Starts logging the moves, if the game is one we may log. We start listening to its properties
+   * earlier, on the event dispatching thread (see <code>gameStartListener</code>).
    */
   @Override
   public void gameStarted(GameStartEvent evt) {
     Game game = evt.getGame();
-    Position initPos = game.getInitialPosition();
-    GameInfo gameInfo = new GameInfo(initPos);
-    gamesToGameInfo.put(game, gameInfo);
+    if (canLogObserved(game)) startObservedGameLogs(game);
+    if (!canLog(game)) return;
 
-    game.addPropertyChangeListener(this);
+    GameInfo gameInfo = new GameInfo(game.getInitialPositionSnapshot());
+    gamesToGameInfo.put(game, gameInfo);
   }
 
   /**
@@ -519,20 +795,37 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   @Override
   public void gameEnded(GameEndEvent evt) {
     Game game = evt.getGame();
-    if (canLog(game) && game.isPlayed()) gameEnded(game);
+    ObservedGameLog[] logs = (ObservedGameLog[]) observedGamesToLogs.remove(game);
+    if (logs != null) endObservedGameLogs(logs, getPgnResult(game.getResultCode()));
+    game.removePropertyChangeListener(this);
+    if (!gamesToGameInfo.containsKey(game)) return;
+
+    if (game.isPlayed()) gameEnded(game);
     gamesToGameInfo.remove(game);
   }
 
   /**
-   * Observes changes in the game which we care about.
+   * Observes changes in the game which we care about. Property changes are fired on the event
+   * dispatching thread, so the actual logging is handed over to the background threads, behind the
+   * events of the game already queued there.
    */
   @Override
   public void propertyChange(PropertyChangeEvent evt) {
-    Game game = (Game) evt.getSource();
+    final Game game = (Game) evt.getSource();
     if (canLog(game)) {
       if (evt.getPropertyName().equals("played")
-          && !game.isPlayed()) // The game ended and became examined
-      gameEnded(game);
+          && !game.isPlayed()) { // The game ended and became examined
+        getConn()
+            .getListenerManager()
+            .invokeInBackground(
+                game,
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    gameEnded(game);
+                  }
+                });
+      }
     }
   }
 
@@ -544,7 +837,20 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     Game game = evt.getGame();
     Move move = evt.getMove();
     GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
-    gameInfo.movelist.addElement(move);
+    if (gameInfo != null) gameInfo.movelist.add(move);
+
+    ObservedGameLog[] logs = (ObservedGameLog[]) observedGamesToLogs.get(game);
+    if (logs == null) return;
+
+    try {
+      for (int i = 0; i < logs.length; i++) logs[i].moveMade(move);
+    } catch (IOException e) {
+      e.printStackTrace(); // ISO-8859-1 is always supported
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IllegalStateException e) {
+      // The plugin was stopped
+    }
   }
 
   /**
@@ -554,7 +860,10 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   public void positionChanged(PositionChangedEvent evt) {
     Game game = evt.getGame();
     GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
-    gameInfo.initPos = evt.getPosition();
+    if (gameInfo != null) gameInfo.movelist.reset(evt.getPositionSnapshot());
+
+    ObservedGameLog[] logs = (ObservedGameLog[]) observedGamesToLogs.get(game);
+    if (logs != null) startObservedGameLogs(game, logs, evt.getPositionSnapshot());
   }
 
   /**
@@ -563,11 +872,22 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   @Override
   public void takebackOccurred(TakebackEvent evt) {
     Game game = evt.getGame();
+    ObservedGameLog[] logs = (ObservedGameLog[]) observedGamesToLogs.get(game);
+    if (logs != null) {
+      try {
+        for (int i = 0; i < logs.length; i++) logs[i].takeback(evt.getTakebackCount());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (IllegalStateException e) {
+        // The plugin was stopped
+      }
+    }
+
     GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
-    Vector movelist = gameInfo.movelist;
-    int start = movelist.size() - 1;
-    int stop = Math.max(0, movelist.size() - evt.getTakebackCount());
-    for (int i = start; i >= stop; i--) movelist.removeElementAt(i);
+    if (gameInfo == null) return;
+
+    MoveList movelist = gameInfo.movelist;
+    movelist.removeLast(Math.min(evt.getTakebackCount(), movelist.size()));
   }
 
   /**
@@ -610,19 +930,43 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   }
 
   /**
-   * A small class bundling information about a game.
+   * The <code>GameLogWriter</code> of the plugin, which reports failures to the user.
    */
-  private static class GameInfo {
+  private class LogWriter extends GameLogWriter {
 
     /**
-     * The initial position.
+     * Creates a new <code>LogWriter</code>.
      */
-    public Position initPos;
+    public LogWriter() {
+      super(LOG_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Reports the failure to the user.
+     */
+    @Override
+    protected void writeFailed(final String filename, final IOException e) {
+      e.printStackTrace();
+      SwingUtilities.invokeLater(
+          new Runnable() {
+            @Override
+            public void run() {
+              OptionPanel.error(
+                  "I/O Error", "Unable to log game into " + filename + ":\n" + e.getMessage());
+            }
+          });
+    }
+  }
+
+  /**
+   * A small class bundling information about a game.
+   */
+  private static class GameInfo {
 
     /**
-     * The move list.
+     * The move list, which also holds the initial position.
      */
-    public Vector movelist;
+    public final MoveList movelist;
 
     /**
      * A Date object representing the time when the game started.
@@ -632,13 +976,90 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     /**
      * Creates a new GameInfo with the specified initial position.
      */
-    public GameInfo(Position initPos) {
-      this.initPos = initPos;
-      movelist = new Vector();
+    public GameInfo(PositionSnapshot initPos) {
+      movelist = new MoveList(initPos);
       gameStartDate = new Date();
     }
   }
 
+  /**
+   * Reports the memory we hold for games to the <code>GameMemoryAccountant</code>.
+   */
+  private class GameStateAccounting implements GameStateHolder {
+
+    /**
+     * Returns the name of the plugin.
+     */
+    @Override
+    public String getGameStateHolderName() {
+      return getName();
+    }
+
+    /**
+     * Returns the memory held for the games we may log, for the observed games we're logging and
+     * for the last saveable game.
+     */
+    @Override
+    public GameMemoryUsage[] getGameMemoryUsage() {
+      Vector usage = new Vector();
+
+      Enumeration games = gamesToGameInfo.keys();
+      while (games.hasMoreElements()) {
+        Game game = (Game) games.nextElement();
+        GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
+        if (gameInfo != null)
+          usage.addElement(
+              new GameMemoryUsage(
+                  game.toString(), false, 64 + gameInfo.movelist.getApproximateSize()));
+      }
+
+      Enumeration observedGames = observedGamesToLogs.keys();
+      while (observedGames.hasMoreElements()) {
+        Game game = (Game) observedGames.nextElement();
+        ObservedGameLog[] logs = (ObservedGameLog[]) observedGamesToLogs.get(game);
+        if (logs == null) continue;
+
+        int size = 16;
+        for (int i = 0; i < logs.length; i++) size += logs[i].getApproximateSize();
+        usage.addElement(new GameMemoryUsage(game.toString(), false, size));
+      }
+
+      Game lastGame = saveGameAction.lastGame;
+      GameInfo lastGameInfo = saveGameAction.lastGameInfo;
+      if ((lastGameInfo != null) && !gamesToGameInfo.containsKey(lastGame))
+        usage.addElement(
+            new GameMemoryUsage(
+                lastGame.toString(), true, 64 + lastGameInfo.movelist.getApproximateSize()));
+
+      GameMemoryUsage[] result = new GameMemoryUsage[usage.size()];
+      usage.copyInto(result);
+      return result;
+    }
+
+    /**
+     * Compacts the move lists of the games we may log. Since these are modified on the background
+     * threads, so is the compacting.
+     */
+    @Override
+    public void compactGameState() {
+      Enumeration games = gamesToGameInfo.keys();
+      while (games.hasMoreElements()) {
+        final Game game = (Game) games.nextElement();
+        getConn()
+            .getListenerManager()
+            .invokeInBackground(
+                game,
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    GameInfo gameInfo = (GameInfo) gamesToGameInfo.get(game);
+                    if (gameInfo != null) gameInfo.movelist.compact();
+                  }
+                });
+      }
+    }
+  }
+
   /**
    * A <code>JinAction</code> which lets the user save the last saveable game.
    */
@@ -647,12 +1068,12 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     /**
      * The last saveable game, <code>null</code> if none.
      */
-    private Game lastGame = null;
+    private volatile Game lastGame = null;
 
     /**
      * The <code>GameInfo</code> of the last saveable game, <code>null</code> if none.
      */
-    private GameInfo lastGameInfo = null;
+    private volatile GameInfo lastGameInfo = null;
 
     /**
      * Creates a new <code>SaveGameAction</code>.
@@ -718,7 +1139,19 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
 
       if ((!file.exists()) && (path.lastIndexOf('.') == -1)) path = path + ".pgn";
 
-      log(lastGame, lastGameInfo, path);
+      final Game game = lastGame;
+      final GameInfo gameInfo = lastGameInfo;
+      final String filename = path;
+      getConn()
+          .getListenerManager()
+          .invokeInBackground(
+              game,
+              new Runnable() {
+                @Override
+                public void run() {
+                  log(game, gameInfo, new String[] {filename}, false);
+                }
+              });
 
       prefs.setString("defaultFile", path);
     }
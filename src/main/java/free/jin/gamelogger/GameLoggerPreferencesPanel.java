@@ -32,6 +32,7 @@ import java.util.Vector;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
+import javax.swing.JCheckBox;
 import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
@@ -109,6 +110,11 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
    */
   private JTextField conditionField;
 
+  /**
+   * The checkbox for whether the rule applies to observed games.
+   */
+  private JCheckBox observedGamesCheckBox;
+
   /**
    * The button for deleting rules.
    */
@@ -202,6 +208,7 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
         rulenameField.setText("");
         filenameField.setText("");
         conditionField.setText("");
+        observedGamesCheckBox.setSelected(false);
         setContainerEnabled(rulePropertiesPanel, false);
         deleteRuleButton.setEnabled(false);
       } else {
@@ -217,6 +224,7 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
           rulenameField.setText(selectedRule.getName());
           filenameField.setText(selectedRule.getFilename());
           conditionField.setText(selectedRule.getCondition());
+          observedGamesCheckBox.setSelected(selectedRule.isForObservedGames());
         }
       }
     } finally {
@@ -375,6 +383,7 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
             rulenameField.setText("");
             filenameField.setText("");
             conditionField.setText("");
+            observedGamesCheckBox.setSelected(false);
             rulenameField.requestFocus();
           }
         });
@@ -433,6 +442,15 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
     filenameField.getDocument().addDocumentListener(changeFiringDocumentListener);
     conditionField.getDocument().addDocumentListener(changeFiringDocumentListener);
 
+    observedGamesCheckBox = i18n.createCheckBox("observedGamesCheckBox");
+    observedGamesCheckBox.addActionListener(
+        new ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent evt) {
+            fireStateChanged();
+          }
+        });
+
     rulenameField
         .getDocument()
         .addDocumentListener(
@@ -498,7 +516,7 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
           }
         });
 
-    rulePropertiesPanel = new JPanel(new GridLayout(3, 1, 5, 5));
+    rulePropertiesPanel = new JPanel(new GridLayout(4, 1, 5, 5));
     Box rulenameBox = Box.createHorizontalBox();
     Box filenameBox = Box.createHorizontalBox();
     Box conditionBox = Box.createHorizontalBox();
@@ -533,6 +551,7 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
     rulePropertiesPanel.add(rulenameBox);
     rulePropertiesPanel.add(filenameBox);
     rulePropertiesPanel.add(conditionBox);
+    rulePropertiesPanel.add(observedGamesCheckBox);
 
     useRulesPanel.setBorder(new EmptyBorder(5, 16, 0, 0));
     useRulesPanel.setLayout(new BorderLayout(5, 20));
@@ -607,11 +626,13 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
       filename = interpretLoggingTarget(filename);
       if (rule == null) {
         rule = new LoggingRule(rulename, ruleCondition, filename);
+        rule.setForObservedGames(observedGamesCheckBox.isSelected());
         rulesModel.setElementAt(rule, ruleIndex);
       } else {
         rule.setName(rulename);
         rule.setFilename(filename);
         rule.setCondition(ruleCondition);
+        rule.setForObservedGames(observedGamesCheckBox.isSelected());
         loggingRulesList.repaint();
       }
     } catch (EvalError e) {
@@ -702,6 +723,7 @@ public class GameLoggerPreferencesPanel extends PreferencesPanel {
       prefs.setString("logging.rule-" + (i + 1) + ".condition", rule.getCondition());
       prefs.setString(
           "logging.rule-" + (i + 1) + ".filename", interpretLoggingTarget(rule.getFilename()));
+      prefs.setBool("logging.rule-" + (i + 1) + ".observed", rule.isForObservedGames());
     }
 
     gameLogger.refreshFromProperties();
@@ -0,0 +1,757 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+
+package free.jin.gamelogger;
+
+/**
+ * Compiles logging rule conditions into {@link LoggingCondition}s. The supported language is the
+ * subset of Java expressions conditions are documented to consist of: the variables of
+ * {@link LoggingVariables}, <code>int</code>, <code>double</code>, string and <code>boolean</code>
+ * literals, parentheses, the arithmetic operators <code>+ - * / %</code> on numbers, the
+ * comparison operators <code>== != &lt; &lt;= &gt; &gt;=</code> on numbers and
+ * <code>== !=</code> on booleans, the boolean operators <code>! &amp;&amp; ||</code>, and the
+ * <code>equals</code>, <code>equalsIgnoreCase</code>, <code>startsWith</code> and
+ * <code>endsWith</code> methods of strings. The semantics are those of Java, including integer
+ * arithmetic and numeric promotion. Conditions using anything else (string concatenation or
+ * <code>==</code> on strings, for example) are not compiled, and are left to BeanShell.
+ */
+final class LoggingConditionCompiler {
+
+  /**
+   * The Java operators two characters long.
+   */
+  private static final String[] TWO_CHAR_OPERATORS = {
+    "||", "&&", "==", "!=", "<=", ">=", "<<", ">>", "++", "--", "+=", "-=", "*=", "/=", "%=", "&=",
+    "|=", "^="
+  };
+
+  /**
+   * The expression being compiled.
+   */
+  private final String text;
+
+  /**
+   * The current position in the expression.
+   */
+  private int pos = 0;
+
+  /**
+   * Creates a new <code>LoggingConditionCompiler</code> for the specified expression.
+   */
+  private LoggingConditionCompiler(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Compiles the specified condition. Returns <code>null</code> if the condition is not a boolean
+   * expression in the supported language.
+   */
+  public static LoggingCondition compile(String condition) {
+    try {
+      LoggingConditionCompiler compiler = new LoggingConditionCompiler(condition);
+      final Node root = compiler.parseOr();
+      compiler.skipWhitespace();
+      if ((compiler.pos != condition.length()) || (root.type != LoggingVariables.BOOLEAN))
+        return null;
+
+      return new LoggingCondition() {
+        @Override
+        public boolean evaluate(LoggingVariables vars) {
+          return root.evalBoolean(vars);
+        }
+      };
+    } catch (UnsupportedException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses <code>a || b || ...</code>.
+   */
+  private Node parseOr() throws UnsupportedException {
+    Node node = parseAnd();
+    while (accept("||")) node = new Or(node, parseAnd());
+
+    return node;
+  }
+
+  /**
+   * Parses <code>a &amp;&amp; b &amp;&amp; ...</code>.
+   */
+  private Node parseAnd() throws UnsupportedException {
+    Node node = parseEquality();
+    while (accept("&&")) node = new And(node, parseEquality());
+
+    return node;
+  }
+
+  /**
+   * Parses <code>a == b</code> and <code>a != b</code>.
+   */
+  private Node parseEquality() throws UnsupportedException {
+    Node node = parseRelational();
+    while (true) {
+      if (accept("==")) node = new Comparison(Comparison.EQ, node, parseRelational());
+      else if (accept("!=")) node = new Comparison(Comparison.NE, node, parseRelational());
+      else return node;
+    }
+  }
+
+  /**
+   * Parses <code>a &lt; b</code>, <code>a &lt;= b</code>, <code>a &gt; b</code> and
+   * <code>a &gt;= b</code>.
+   */
+  private Node parseRelational() throws UnsupportedException {
+    Node node = parseAdditive();
+    while (true) {
+      if (accept("<=")) node = new Comparison(Comparison.LE, node, parseAdditive());
+      else if (accept(">=")) node = new Comparison(Comparison.GE, node, parseAdditive());
+      else if (accept("<")) node = new Comparison(Comparison.LT, node, parseAdditive());
+      else if (accept(">")) node = new Comparison(Comparison.GT, node, parseAdditive());
+      else return node;
+    }
+  }
+
+  /**
+   * Parses <code>a + b</code> and <code>a - b</code>.
+   */
+  private Node parseAdditive() throws UnsupportedException {
+    Node node = parseMultiplicative();
+    while (true) {
+      if (accept("+")) node = new Arithmetic('+', node, parseMultiplicative());
+      else if (accept("-")) node = new Arithmetic('-', node, parseMultiplicative());
+      else return node;
+    }
+  }
+
+  /**
+   * Parses <code>a * b</code>, <code>a / b</code> and <code>a % b</code>.
+   */
+  private Node parseMultiplicative() throws UnsupportedException {
+    Node node = parseUnary();
+    while (true) {
+      if (accept("*")) node = new Arithmetic('*', node, parseUnary());
+      else if (accept("/")) node = new Arithmetic('/', node, parseUnary());
+      else if (accept("%")) node = new Arithmetic('%', node, parseUnary());
+      else return node;
+    }
+  }
+
+  /**
+   * Parses <code>!a</code>, <code>-a</code> and <code>+a</code>.
+   */
+  private Node parseUnary() throws UnsupportedException {
+    if (accept("!")) return new Not(parseUnary());
+    else if (accept("-")) return new Arithmetic('-', new Literal(new Integer(0)), parseUnary());
+    else if (accept("+")) return new Arithmetic('+', new Literal(new Integer(0)), parseUnary());
+    else return parsePostfix();
+  }
+
+  /**
+   * Parses a primary expression followed by any amount of string method calls.
+   */
+  private Node parsePostfix() throws UnsupportedException {
+    Node node = parsePrimary();
+    while (accept(".")) {
+      String method = parseIdentifier();
+      expect("(");
+      Node arg = parseOr();
+      expect(")");
+      node = new StringMethod(method, node, arg);
+    }
+
+    return node;
+  }
+
+  /**
+   * Parses a literal, a variable or a parenthesized expression.
+   */
+  private Node parsePrimary() throws UnsupportedException {
+    skipWhitespace();
+    if (pos == text.length()) throw new UnsupportedException();
+
+    char c = text.charAt(pos);
+    if (c == '(') {
+      pos++;
+      Node node = parseOr();
+      expect(")");
+      return node;
+    } else if (c == '"') return parseString();
+    else if (Character.isDigit(c) || (c == '.')) return parseNumber();
+    else if (Character.isJavaIdentifierStart(c)) {
+      String name = parseIdentifier();
+      if ("true".equals(name)) return new Literal(Boolean.TRUE);
+      else if ("false".equals(name)) return new Literal(Boolean.FALSE);
+
+      int index = LoggingVariables.indexOf(name);
+      if (index == -1) throw new UnsupportedException();
+
+      return new Variable(index);
+    } else throw new UnsupportedException();
+  }
+
+  /**
+   * Parses a string literal.
+   */
+  private Node parseString() throws UnsupportedException {
+    StringBuffer buf = new StringBuffer();
+    pos++; // The opening quote
+    while (pos < text.length()) {
+      char c = text.charAt(pos++);
+      if (c == '"') return new Literal(buf.toString());
+      else if (c == '\\') {
+        if (pos == text.length()) break;
+        char escaped = text.charAt(pos++);
+        switch (escaped) {
+          case 'n':
+            buf.append('\n');
+            break;
+          case 't':
+            buf.append('\t');
+            break;
+          case '"':
+          case '\'':
+          case '\\':
+            buf.append(escaped);
+            break;
+          default:
+            throw new UnsupportedException();
+        }
+      } else buf.append(c);
+    }
+
+    throw new UnsupportedException();
+  }
+
+  /**
+   * Parses an <code>int</code> or <code>double</code> literal.
+   */
+  private Node parseNumber() throws UnsupportedException {
+    int start = pos;
+    while ((pos < text.length()) && Character.isDigit(text.charAt(pos))) pos++;
+    boolean isDouble = (pos < text.length()) && (text.charAt(pos) == '.');
+    if (isDouble) {
+      pos++;
+      while ((pos < text.length()) && Character.isDigit(text.charAt(pos))) pos++;
+    }
+
+    // Exponents, suffixes, hexadecimal and octal literals are left to BeanShell
+    if ((pos < text.length()) && Character.isLetterOrDigit(text.charAt(pos)))
+      throw new UnsupportedException();
+    String literal = text.substring(start, pos);
+    if (literal.equals(".")) throw new UnsupportedException();
+    if (!isDouble && (literal.length() > 1) && (literal.charAt(0) == '0'))
+      throw new UnsupportedException();
+
+    try {
+      if (isDouble) return new Literal(Double.valueOf(literal));
+      else return new Literal(Integer.valueOf(literal));
+    } catch (NumberFormatException e) {
+      throw new UnsupportedException();
+    }
+  }
+
+  /**
+   * Parses an identifier.
+   */
+  private String parseIdentifier() throws UnsupportedException {
+    skipWhitespace();
+    int start = pos;
+    if ((pos == text.length()) || !Character.isJavaIdentifierStart(text.charAt(pos)))
+      throw new UnsupportedException();
+
+    pos++;
+    while ((pos < text.length()) && Character.isJavaIdentifierPart(text.charAt(pos))) pos++;
+
+    return text.substring(start, pos);
+  }
+
+  /**
+   * Skips whitespace and, if the text at the current position is the specified token, skips it
+   * too and returns <code>true</code>. A single character operator is not accepted when it's the
+   * first character of a two character one (such as <code>!</code> of <code>!=</code>).
+   */
+  private boolean accept(String token) {
+    skipWhitespace();
+    if (!text.startsWith(token, pos)) return false;
+
+    if (token.length() == 1) {
+      for (int i = 0; i < TWO_CHAR_OPERATORS.length; i++) {
+        String operator = TWO_CHAR_OPERATORS[i];
+        if ((operator.charAt(0) == token.charAt(0)) && text.startsWith(operator, pos))
+          return false;
+      }
+    }
+
+    pos += token.length();
+    return true;
+  }
+
+  /**
+   * Skips the specified token, throwing an <code>UnsupportedException</code> if it isn't at the
+   * current position.
+   */
+  private void expect(String token) throws UnsupportedException {
+    if (!accept(token)) throw new UnsupportedException();
+  }
+
+  /**
+   * Skips whitespace.
+   */
+  private void skipWhitespace() {
+    while ((pos < text.length()) && Character.isWhitespace(text.charAt(pos))) pos++;
+  }
+
+  /**
+   * Returns whether the specified type is numeric.
+   */
+  private static boolean isNumeric(int type) {
+    return (type == LoggingVariables.INT) || (type == LoggingVariables.DOUBLE);
+  }
+
+  /**
+   * Thrown when the expression uses something the compiler doesn't support, or is invalid.
+   */
+  private static class UnsupportedException extends Exception {}
+
+  /**
+   * A node of the expression tree. Each node has a static type, and implements the evaluation
+   * method of that type; <code>int</code> nodes may also be evaluated as <code>double</code>s.
+   */
+  private abstract static class Node {
+
+    /**
+     * The type of the node, one of the types defined in <code>LoggingVariables</code>.
+     */
+    public final int type;
+
+    /**
+     * Creates a new <code>Node</code> of the specified type.
+     */
+    protected Node(int type) {
+      this.type = type;
+    }
+
+    public boolean evalBoolean(LoggingVariables vars) {
+      throw new IllegalStateException();
+    }
+
+    public int evalInt(LoggingVariables vars) {
+      throw new IllegalStateException();
+    }
+
+    public double evalDouble(LoggingVariables vars) {
+      return evalInt(vars);
+    }
+
+    public String evalString(LoggingVariables vars) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * A literal.
+   */
+  private static class Literal extends Node {
+
+    /**
+     * The value.
+     */
+    private final Object value;
+
+    /**
+     * Creates a new <code>Literal</code> with the specified value - a <code>String</code>,
+     * <code>Integer</code>, <code>Double</code> or <code>Boolean</code>.
+     */
+    public Literal(Object value) {
+      super(getType(value));
+      this.value = value;
+    }
+
+    /**
+     * Returns the type of the specified value.
+     */
+    private static int getType(Object value) {
+      if (value instanceof Integer) return LoggingVariables.INT;
+      else if (value instanceof Double) return LoggingVariables.DOUBLE;
+      else if (value instanceof Boolean) return LoggingVariables.BOOLEAN;
+      else return LoggingVariables.STRING;
+    }
+
+    @Override
+    public boolean evalBoolean(LoggingVariables vars) {
+      return ((Boolean) value).booleanValue();
+    }
+
+    @Override
+    public int evalInt(LoggingVariables vars) {
+      return ((Integer) value).intValue();
+    }
+
+    @Override
+    public double evalDouble(LoggingVariables vars) {
+      return ((Number) value).doubleValue();
+    }
+
+    @Override
+    public String evalString(LoggingVariables vars) {
+      return (String) value;
+    }
+  }
+
+  /**
+   * A variable.
+   */
+  private static class Variable extends Node {
+
+    /**
+     * The index of the variable.
+     */
+    private final int index;
+
+    /**
+     * Creates a new <code>Variable</code> for the variable at the specified index.
+     */
+    public Variable(int index) {
+      super(LoggingVariables.getType(index));
+      this.index = index;
+    }
+
+    /**
+     * Checks that the variable is set.
+     */
+    private void checkSet(LoggingVariables vars) {
+      if (!vars.isSet(index)) throw new IllegalStateException("Variable not set");
+    }
+
+    @Override
+    public boolean evalBoolean(LoggingVariables vars) {
+      checkSet(vars);
+      return vars.getBoolean(index);
+    }
+
+    @Override
+    public int evalInt(LoggingVariables vars) {
+      checkSet(vars);
+      return vars.getInt(index);
+    }
+
+    @Override
+    public double evalDouble(LoggingVariables vars) {
+      checkSet(vars);
+      return (type == LoggingVariables.INT) ? vars.getInt(index) : vars.getDouble(index);
+    }
+
+    @Override
+    public String evalString(LoggingVariables vars) {
+      checkSet(vars);
+      return vars.getString(index);
+    }
+  }
+
+  /**
+   * <code>!a</code>.
+   */
+  private static class Not extends Node {
+
+    /**
+     * The operand.
+     */
+    private final Node operand;
+
+    /**
+     * Creates a new <code>Not</code> with the specified operand.
+     */
+    public Not(Node operand) throws UnsupportedException {
+      super(LoggingVariables.BOOLEAN);
+      if (operand.type != LoggingVariables.BOOLEAN) throw new UnsupportedException();
+
+      this.operand = operand;
+    }
+
+    @Override
+    public boolean evalBoolean(LoggingVariables vars) {
+      return !operand.evalBoolean(vars);
+    }
+  }
+
+  /**
+   * <code>a &amp;&amp; b</code>.
+   */
+  private static class And extends Node {
+
+    /**
+     * The operands.
+     */
+    private final Node left, right;
+
+    /**
+     * Creates a new <code>And</code> with the specified operands.
+     */
+    public And(Node left, Node right) throws UnsupportedException {
+      super(LoggingVariables.BOOLEAN);
+      if ((left.type != LoggingVariables.BOOLEAN) || (right.type != LoggingVariables.BOOLEAN))
+        throw new UnsupportedException();
+
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean evalBoolean(LoggingVariables vars) {
+      return left.evalBoolean(vars) && right.evalBoolean(vars);
+    }
+  }
+
+  /**
+   * <code>a || b</code>.
+   */
+  private static class Or extends Node {
+
+    /**
+     * The operands.
+     */
+    private final Node left, right;
+
+    /**
+     * Creates a new <code>Or</code> with the specified operands.
+     */
+    public Or(Node left, Node right) throws UnsupportedException {
+      super(LoggingVariables.BOOLEAN);
+      if ((left.type != LoggingVariables.BOOLEAN) || (right.type != LoggingVariables.BOOLEAN))
+        throw new UnsupportedException();
+
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean evalBoolean(LoggingVariables vars) {
+      return left.evalBoolean(vars) || right.evalBoolean(vars);
+    }
+  }
+
+  /**
+   * An arithmetic operation on two numbers, with Java's binary numeric promotion.
+   */
+  private static class Arithmetic extends Node {
+
+    /**
+     * The operator - one of <code>+ - * / %</code>.
+     */
+    private final char operator;
+
+    /**
+     * The operands.
+     */
+    private final Node left, right;
+
+    /**
+     * Creates a new <code>Arithmetic</code> with the specified operator and operands.
+     */
+    public Arithmetic(char operator, Node left, Node right) throws UnsupportedException {
+      super(
+          (left.type == LoggingVariables.INT) && (right.type == LoggingVariables.INT)
+              ? LoggingVariables.INT
+              : LoggingVariables.DOUBLE);
+      if (!isNumeric(left.type) || !isNumeric(right.type)) throw new UnsupportedException();
+
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public int evalInt(LoggingVariables vars) {
+      int a = left.evalInt(vars);
+      int b = right.evalInt(vars);
+      switch (operator) {
+        case '+':
+          return a + b;
+        case '-':
+          return a - b;
+        case '*':
+          return a * b;
+        case '/':
+          return a / b;
+        default:
+          return a % b;
+      }
+    }
+
+    @Override
+    public double evalDouble(LoggingVariables vars) {
+      if (type == LoggingVariables.INT) return evalInt(vars);
+
+      double a = left.evalDouble(vars);
+      double b = right.evalDouble(vars);
+      switch (operator) {
+        case '+':
+          return a + b;
+        case '-':
+          return a - b;
+        case '*':
+          return a * b;
+        case '/':
+          return a / b;
+        default:
+          return a % b;
+      }
+    }
+  }
+
+  /**
+   * A comparison of two numbers, or an equality test of two booleans.
+   */
+  private static class Comparison extends Node {
+
+    /**
+     * The comparison operators.
+     */
+    public static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5;
+
+    /**
+     * The operator.
+     */
+    private final int operator;
+
+    /**
+     * The operands.
+     */
+    private final Node left, right;
+
+    /**
+     * Creates a new <code>Comparison</code> with the specified operator and operands.
+     */
+    public Comparison(int operator, Node left, Node right) throws UnsupportedException {
+      super(LoggingVariables.BOOLEAN);
+      boolean isBooleanEquality =
+          (operator <= NE)
+              && (left.type == LoggingVariables.BOOLEAN)
+              && (right.type == LoggingVariables.BOOLEAN);
+      if (!isBooleanEquality && (!isNumeric(left.type) || !isNumeric(right.type)))
+        throw new UnsupportedException();
+
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean evalBoolean(LoggingVariables vars) {
+      int cmp;
+      if (left.type == LoggingVariables.BOOLEAN) {
+        boolean equal = left.evalBoolean(vars) == right.evalBoolean(vars);
+        return (operator == EQ) ? equal : !equal;
+      } else if ((left.type == LoggingVariables.INT) && (right.type == LoggingVariables.INT)) {
+        int a = left.evalInt(vars);
+        int b = right.evalInt(vars);
+        cmp = (a < b) ? -1 : ((a == b) ? 0 : 1);
+      } else {
+        // Written so that comparisons with NaN are false, as in Java
+        double a = left.evalDouble(vars);
+        double b = right.evalDouble(vars);
+        switch (operator) {
+          case EQ:
+            return a == b;
+          case NE:
+            return a != b;
+          case LT:
+            return a < b;
+          case LE:
+            return a <= b;
+          case GT:
+            return a > b;
+          default:
+            return a >= b;
+        }
+      }
+
+      switch (operator) {
+        case EQ:
+          return cmp == 0;
+        case NE:
+          return cmp != 0;
+        case LT:
+          return cmp < 0;
+        case LE:
+          return cmp <= 0;
+        case GT:
+          return cmp > 0;
+        default:
+          return cmp >= 0;
+      }
+    }
+  }
+
+  /**
+   * A call of one of the supported <code>String</code> methods.
+   */
+  private static class StringMethod extends Node {
+
+    /**
+     * The supported methods.
+     */
+    private static final String[] METHODS = {
+      "equals", "equalsIgnoreCase", "startsWith", "endsWith"
+    };
+
+    /**
+     * The index of the method in <code>METHODS</code>.
+     */
+    private final int method;
+
+    /**
+     * The string the method is called on, and the argument.
+     */
+    private final Node target, arg;
+
+    /**
+     * Creates a new <code>StringMethod</code> calling the specified method on the specified target
+     * with the specified argument.
+     */
+    public StringMethod(String method, Node target, Node arg) throws UnsupportedException {
+      super(LoggingVariables.BOOLEAN);
+      int index = -1;
+      for (int i = 0; i < METHODS.length; i++) if (METHODS[i].equals(method)) index = i;
+      if ((index == -1)
+          || (target.type != LoggingVariables.STRING)
+          || (arg.type != LoggingVariables.STRING)) throw new UnsupportedException();
+
+      this.method = index;
+      this.target = target;
+      this.arg = arg;
+    }
+
+    @Override
+    public boolean evalBoolean(LoggingVariables vars) {
+      String s = target.evalString(vars);
+      if (s == null) throw new IllegalStateException("Method called on null");
+
+      String argValue = arg.evalString(vars);
+      switch (method) {
+        case 0:
+          return s.equals(argValue);
+        case 1:
+          return s.equalsIgnoreCase(argValue);
+        default:
+          if (argValue == null) throw new IllegalStateException("Null argument");
+          return (method == 2) ? s.startsWith(argValue) : s.endsWith(argValue);
+      }
+    }
+  }
+}
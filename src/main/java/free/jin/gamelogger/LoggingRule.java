@@ -21,7 +21,10 @@ import bsh.Interpreter;
 
 /**
  * A small class encapsulating a logging rule. The rule includes a name, a condition (when to log)
- * and a filename (where to log to).
+ * and a filename (where to log to). The condition is compiled when it's set (see
+ * {@link LoggingConditionCompiler}); conditions which can't be compiled are evaluated with
+ * BeanShell. A rule applies either to the user's own games or to observed games; for the latter,
+ * the name of the rule is also the event the games are logged under.
  */
 class LoggingRule {
 
@@ -35,11 +38,21 @@ class LoggingRule {
    */
   private String condition;
 
+  /**
+   * The compiled condition, <code>null</code> if it couldn't be compiled.
+   */
+  private LoggingCondition compiledCondition;
+
   /**
    * The filename of the file into which to log the game.
    */
   private String filename;
 
+  /**
+   * Whether the rule applies to observed games, rather than to the user's own games.
+   */
+  private boolean isForObservedGames = false;
+
   /**
    * Creates a new <code>LoggingRule</code> with the specified name, condition and filename. An
    * <code>EvalError</code> is thrown if the condition is not parseable.
@@ -56,7 +69,9 @@ class LoggingRule {
   public LoggingRule(LoggingRule rule) {
     this.name = rule.name;
     this.condition = rule.condition;
+    this.compiledCondition = rule.compiledCondition;
     this.filename = rule.filename;
+    this.isForObservedGames = rule.isForObservedGames;
   }
 
   /**
@@ -66,6 +81,13 @@ class LoggingRule {
   public void setCondition(String condition) throws EvalError {
     if ((condition == null) || (condition.length() == 0)) throw new IllegalArgumentException();
 
+    LoggingCondition compiled = LoggingConditionCompiler.compile(condition);
+    if (compiled != null) {
+      this.condition = condition;
+      this.compiledCondition = compiled;
+      return;
+    }
+
     Interpreter bsh = new Interpreter();
     String[][] availableVars = GameLogger.getAvailableVars();
     for (int i = 0; i < availableVars.length; i++)
@@ -75,6 +97,37 @@ class LoggingRule {
     if (!(val instanceof Boolean)) throw new EvalError("Not a boolean expression", null, null);
 
     this.condition = condition;
+    this.compiledCondition = null;
+  }
+
+  /**
+   * Returns whether the condition was compiled, rather than being left to BeanShell.
+   */
+  public boolean isCompiled() {
+    return compiledCondition != null;
+  }
+
+  /**
+   * Evaluates the condition with the specified variables. Returns <code>false</code> if the
+   * condition can't be evaluated, for example because it uses a variable which isn't set.
+   */
+  public boolean matches(LoggingVariables vars) {
+    if (compiledCondition != null) {
+      try {
+        return compiledCondition.evaluate(vars);
+      } catch (IllegalStateException e) {
+        return false;
+      } catch (ArithmeticException e) {
+        return false;
+      }
+    }
+
+    try {
+      return Boolean.TRUE.equals(vars.getInterpreter().eval(condition));
+    } catch (EvalError e) {
+      e.printStackTrace();
+      return false;
+    }
   }
 
   /**
@@ -116,6 +169,20 @@ class LoggingRule {
     return filename;
   }
 
+  /**
+   * Sets whether the rule applies to observed games, rather than to the user's own games.
+   */
+  public void setForObservedGames(boolean isForObservedGames) {
+    this.isForObservedGames = isForObservedGames;
+  }
+
+  /**
+   * Returns whether the rule applies to observed games, rather than to the user's own games.
+   */
+  public boolean isForObservedGames() {
+    return isForObservedGames;
+  }
+
   /**
    * Returns the name of this logging rule.
    */
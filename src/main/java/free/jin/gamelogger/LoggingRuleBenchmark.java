@@ -0,0 +1,155 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+
+package free.jin.gamelogger;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+import java.util.Random;
+
+/**
+ * A commandline benchmark of logging rule evaluation. Measures the cost of deciding which of a set
+ * of rules (with conditions like the examples in the condition help) a finished game matches, with
+ * the compiled conditions, and with a new BeanShell interpreter for each game, as
+ * <code>GameLogger</code> used to do. Usage: <code>LoggingRuleBenchmark [games]</code>; the
+ * default is {@link #DEFAULT_GAME_COUNT}. Since the interpreter is much slower, it is measured
+ * with a hundredth of the games.
+ */
+public class LoggingRuleBenchmark {
+
+  /**
+   * The default amount of games.
+   */
+  private static final int DEFAULT_GAME_COUNT = 1000000;
+
+  /**
+   * The conditions of the rules.
+   */
+  private static final String[] CONDITIONS = {
+    "(inc == 0) || (time > 15)",
+    "(rating < 1800) && (etime >= 10)",
+    "(loss || (moves > 20)) && rated",
+    "category.equalsIgnoreCase(\"blitz\") && blackWins",
+    "opponent.equals(\"AlexTheGreat\") || (rating >= 2400 && !draw)",
+    "userWhite && (time + inc * 2 / 3 < 3)"
+  };
+
+  /**
+   * The amount of matches, so that the JIT can't discard the evaluation.
+   */
+  private static int matchCount = 0;
+
+  /**
+   * The main method.
+   */
+  public static void main(String[] args) throws EvalError {
+    int gameCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_GAME_COUNT;
+
+    long start = System.nanoTime();
+    LoggingRule[] rules = new LoggingRule[CONDITIONS.length];
+    for (int i = 0; i < rules.length; i++)
+      rules[i] = new LoggingRule("Rule " + i, CONDITIONS[i], "rule" + i + ".pgn");
+    long compileTime = System.nanoTime() - start;
+
+    for (int i = 0; i < rules.length; i++) {
+      if (!rules[i].isCompiled())
+        System.out.println("Not compiled, left to BeanShell: " + CONDITIONS[i]);
+    }
+    System.out.println(
+        "Compiled " + rules.length + " rules in " + (compileTime / 1000) + " microseconds");
+
+    // Warm up
+    runCompiled(rules, gameCount / 10);
+
+    start = System.nanoTime();
+    runCompiled(rules, gameCount);
+    long compiledTime = System.nanoTime() - start;
+    print("Compiled rules", compiledTime, gameCount);
+
+    int interpretedGameCount = Math.max(1, gameCount / 100);
+    runInterpreted(Math.max(1, interpretedGameCount / 10));
+    start = System.nanoTime();
+    runInterpreted(interpretedGameCount);
+    long interpretedTime = System.nanoTime() - start;
+    print("Interpreter per game", interpretedTime, interpretedGameCount);
+
+    System.out.println("(" + matchCount + " matches)");
+  }
+
+  /**
+   * Evaluates the rules for the specified amount of games, with the compiled conditions.
+   */
+  private static void runCompiled(LoggingRule[] rules, int gameCount) {
+    Random random = new Random(0);
+    for (int i = 0; i < gameCount; i++) {
+      LoggingVariables vars = createVariables(random);
+      for (int j = 0; j < rules.length; j++) if (rules[j].matches(vars)) matchCount++;
+    }
+  }
+
+  /**
+   * Evaluates the conditions for the specified amount of games, with a new interpreter for each
+   * game.
+   */
+  private static void runInterpreted(int gameCount) throws EvalError {
+    Random random = new Random(0);
+    for (int i = 0; i < gameCount; i++) {
+      Interpreter bsh = createVariables(random).getInterpreter();
+      for (int j = 0; j < CONDITIONS.length; j++)
+        if (Boolean.TRUE.equals(bsh.eval(CONDITIONS[j]))) matchCount++;
+    }
+  }
+
+  /**
+   * Creates the variables of a random game.
+   */
+  private static LoggingVariables createVariables(Random random) {
+    LoggingVariables vars = new LoggingVariables();
+    int time = random.nextInt(30);
+    int inc = random.nextInt(15);
+    String result = new String[] {"win", "loss", "draw"}[random.nextInt(3)];
+
+    vars.setString("category", random.nextBoolean() ? "Blitz" : "Standard");
+    vars.setInt("rating", 1000 + random.nextInt(1800));
+    vars.setInt("time", time);
+    vars.setInt("inc", inc);
+    vars.setDouble("etime", time + inc * 2 / 3.0);
+    vars.setBoolean("rated", random.nextBoolean());
+    vars.setString("opponent", "Player" + random.nextInt(100));
+    vars.setString("title", "");
+    vars.setInt("moves", random.nextInt(100));
+    vars.setBoolean("userWhite", random.nextBoolean());
+    vars.setBoolean("userBlack", !vars.getBoolean(LoggingVariables.indexOf("userWhite")));
+    vars.setString("result", result);
+    vars.setBoolean("win", result.equals("win"));
+    vars.setBoolean("loss", result.equals("loss"));
+    vars.setBoolean("draw", result.equals("draw"));
+    vars.setBoolean("unknownResult", false);
+    vars.setBoolean("whiteWins", random.nextBoolean());
+    vars.setBoolean("blackWins", random.nextBoolean());
+
+    return vars;
+  }
+
+  /**
+   * Prints the time per game of a measurement.
+   */
+  private static void print(String name, long nanos, int gameCount) {
+    System.out.println(
+        name + ": " + (nanos / gameCount) + " nanoseconds per game (" + gameCount + " games)");
+  }
+}
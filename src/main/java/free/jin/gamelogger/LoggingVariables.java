@@ -0,0 +1,205 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+
+package free.jin.gamelogger;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+
+/**
+ * The values of the variables available to logging rule conditions, for a single game. The
+ * variables and their types are the ones documented by {@link GameLogger#getAvailableVars()},
+ * the type of each variable being that of its example value - a string, an <code>int</code>, a
+ * <code>double</code> or a <code>boolean</code>. A variable may also be left unset, in which case
+ * conditions using it can't be evaluated.
+ */
+final class LoggingVariables {
+
+  /**
+   * The type of string variables.
+   */
+  static final int STRING = 0;
+
+  /**
+   * The type of <code>int</code> variables.
+   */
+  static final int INT = 1;
+
+  /**
+   * The type of <code>double</code> variables.
+   */
+  static final int DOUBLE = 2;
+
+  /**
+   * The type of <code>boolean</code> variables.
+   */
+  static final int BOOLEAN = 3;
+
+  /**
+   * The names of the variables.
+   */
+  private static final String[] NAMES;
+
+  /**
+   * The types of the variables.
+   */
+  private static final int[] TYPES;
+
+  static {
+    String[][] availableVars = GameLogger.getAvailableVars();
+    NAMES = new String[availableVars.length];
+    TYPES = new int[availableVars.length];
+    for (int i = 0; i < availableVars.length; i++) {
+      NAMES[i] = availableVars[i][0];
+      TYPES[i] = getLiteralType(availableVars[i][1]);
+    }
+  }
+
+  /**
+   * The values of the variables, <code>null</code> for unset ones.
+   */
+  private final Object[] values = new Object[NAMES.length];
+
+  /**
+   * The interpreter with the variables set into it, created when first needed.
+   */
+  private Interpreter interpreter = null;
+
+  /**
+   * Returns the type of the specified (example) literal.
+   */
+  private static int getLiteralType(String literal) {
+    if (literal.startsWith("\"")) return STRING;
+    else if ("true".equals(literal) || "false".equals(literal)) return BOOLEAN;
+    else if (literal.indexOf('.') != -1) return DOUBLE;
+    else return INT;
+  }
+
+  /**
+   * Returns the index of the variable with the specified name, or <code>-1</code> if there is no
+   * such variable.
+   */
+  static int indexOf(String name) {
+    for (int i = 0; i < NAMES.length; i++) if (NAMES[i].equals(name)) return i;
+
+    return -1;
+  }
+
+  /**
+   * Returns the type of the variable at the specified index.
+   */
+  static int getType(int index) {
+    return TYPES[index];
+  }
+
+  /**
+   * Sets the value of the specified string variable.
+   */
+  public void setString(String name, String value) {
+    values[checkIndex(name, STRING)] = value;
+  }
+
+  /**
+   * Sets the value of the specified <code>int</code> variable.
+   */
+  public void setInt(String name, int value) {
+    values[checkIndex(name, INT)] = new Integer(value);
+  }
+
+  /**
+   * Sets the value of the specified <code>double</code> variable.
+   */
+  public void setDouble(String name, double value) {
+    values[checkIndex(name, DOUBLE)] = new Double(value);
+  }
+
+  /**
+   * Sets the value of the specified <code>boolean</code> variable.
+   */
+  public void setBoolean(String name, boolean value) {
+    values[checkIndex(name, BOOLEAN)] = value ? Boolean.TRUE : Boolean.FALSE;
+  }
+
+  /**
+   * Returns the index of the specified variable, checking that it has the specified type.
+   */
+  private static int checkIndex(String name, int type) {
+    int index = indexOf(name);
+    if (index == -1) throw new IllegalArgumentException("No such variable: " + name);
+    if (TYPES[index] != type) throw new IllegalArgumentException("Wrong type for " + name);
+
+    return index;
+  }
+
+  /**
+   * Returns whether the variable at the specified index is set.
+   */
+  boolean isSet(int index) {
+    return values[index] != null;
+  }
+
+  /**
+   * Returns the value of the variable at the specified index, which must be a set string variable.
+   */
+  String getString(int index) {
+    return (String) values[index];
+  }
+
+  /**
+   * Returns the value of the variable at the specified index, which must be a set
+   * <code>int</code> variable.
+   */
+  int getInt(int index) {
+    return ((Integer) values[index]).intValue();
+  }
+
+  /**
+   * Returns the value of the variable at the specified index, which must be a set
+   * <code>double</code> variable.
+   */
+  double getDouble(int index) {
+    return ((Double) values[index]).doubleValue();
+  }
+
+  /**
+   * Returns the value of the variable at the specified index, which must be a set
+   * <code>boolean</code> variable.
+   */
+  boolean getBoolean(int index) {
+    return ((Boolean) values[index]).booleanValue();
+  }
+
+  /**
+   * Returns a BeanShell interpreter with the set variables set into it, for evaluating conditions
+   * which couldn't be compiled. The interpreter is created once, when first asked for.
+   */
+  Interpreter getInterpreter() throws EvalError {
+    if (interpreter == null) {
+      Interpreter bsh = new Interpreter();
+      for (int i = 0; i < NAMES.length; i++) {
+        Object value = values[i];
+        if (value instanceof Integer) bsh.set(NAMES[i], ((Integer) value).intValue());
+        else if (value instanceof Double) bsh.set(NAMES[i], ((Double) value).doubleValue());
+        else if (value instanceof Boolean) bsh.set(NAMES[i], ((Boolean) value).booleanValue());
+        else if (TYPES[i] == STRING) bsh.set(NAMES[i], value);
+      }
+      interpreter = bsh;
+    }
+
+    return interpreter;
+  }
+}
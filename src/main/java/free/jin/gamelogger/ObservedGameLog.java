@@ -0,0 +1,176 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.gamelogger;
+
+import free.chess.Move;
+import free.chess.Player;
+import java.io.IOException;
+
+/**
+ * Logs an observed game into a file while it's in progress. The text of the game is written to the
+ * {@link GameLogWriter} move by move, as a game in progress, and committed into the log file when
+ * the game ends. Only the offsets of the moves in the text are held in memory, so that takebacks
+ * can be undone by truncating the text.
+ */
+final class ObservedGameLog {
+
+  /**
+   * The writer we write with.
+   */
+  private final GameLogWriter writer;
+
+  /**
+   * The name of the file the game is to be logged into.
+   */
+  private final String filename;
+
+  /**
+   * The key of the game, for the writer.
+   */
+  private final String gameKey;
+
+  /**
+   * The event the game is logged under.
+   */
+  private final String event;
+
+  /**
+   * The length of the text written so far.
+   */
+  private long length = 0;
+
+  /**
+   * The length of the text of the tags.
+   */
+  private long headerLength = 0;
+
+  /**
+   * The length of the text after each of the moves.
+   */
+  private long[] moveEnds = new long[16];
+
+  /**
+   * The amount of moves written.
+   */
+  private int plyCount = 0;
+
+  /**
+   * Whether the first move is white's.
+   */
+  private boolean isWhiteFirst = true;
+
+  /**
+   * Whether the game has ended.
+   */
+  private boolean isEnded = false;
+
+  /**
+   * Creates a new <code>ObservedGameLog</code> which logs a game with the specified key into the
+   * specified file, under the specified event, using the specified writer.
+   */
+  public ObservedGameLog(GameLogWriter writer, String filename, String gameKey, String event) {
+    this.writer = writer;
+    this.filename = filename;
+    this.gameKey = gameKey;
+    this.event = event;
+  }
+
+  /**
+   * Returns the event the game is logged under.
+   */
+  public String getEvent() {
+    return event;
+  }
+
+  /**
+   * (Re)starts the game, with the specified tags (whose <code>Result</code> should be
+   * <code>"*"</code>), where the specified player moves first. Anything written before is
+   * discarded.
+   */
+  public synchronized void start(String tags, Player firstPlayer)
+      throws IOException, InterruptedException {
+    if (isEnded) return;
+
+    if (length != 0) writer.truncateInProgress(filename, gameKey, length = 0);
+    plyCount = 0;
+    isWhiteFirst = firstPlayer.isWhite();
+
+    write(tags + "\n");
+    headerLength = length;
+  }
+
+  /**
+   * Writes the specified move.
+   */
+  public synchronized void moveMade(Move move) throws IOException, InterruptedException {
+    if (isEnded) return;
+
+    int moveNumber = 1 + (plyCount + (isWhiteFirst ? 0 : 1)) / 2;
+    boolean isWhiteMove = (plyCount % 2 == 0) == isWhiteFirst;
+    String san = move.toString();
+    if (isWhiteMove) write((plyCount == 0 ? "" : "\n") + moveNumber + ". " + san);
+    else if (plyCount == 0) write(moveNumber + "... " + san);
+    else write(" " + san);
+
+    if (plyCount == moveEnds.length) {
+      long[] newMoveEnds = new long[2 * moveEnds.length];
+      System.arraycopy(moveEnds, 0, newMoveEnds, 0, plyCount);
+      moveEnds = newMoveEnds;
+    }
+    moveEnds[plyCount++] = length;
+  }
+
+  /**
+   * Undoes the specified amount of moves.
+   */
+  public synchronized void takeback(int count) throws InterruptedException {
+    if (isEnded || (count <= 0) || (plyCount == 0)) return;
+
+    plyCount = Math.max(0, plyCount - count);
+    length = (plyCount == 0) ? headerLength : moveEnds[plyCount - 1];
+    writer.truncateInProgress(filename, gameKey, length);
+  }
+
+  /**
+   * Ends the game with the specified game termination marker, and commits it into the log file,
+   * adding it to the writer's database if specified.
+   */
+  public synchronized void end(String result, boolean addToDatabase)
+      throws IOException, InterruptedException {
+    if (isEnded) return;
+
+    isEnded = true;
+    write((plyCount == 0 ? "" : "\n") + result + "\n\n");
+    writer.commit(filename, gameKey, addToDatabase);
+  }
+
+  /**
+   * Returns the approximate amount of memory held by this log, in bytes.
+   */
+  public synchronized int getApproximateSize() {
+    return 64 + 8 * moveEnds.length;
+  }
+
+  /**
+   * Writes the specified text.
+   */
+  private void write(String text) throws IOException, InterruptedException {
+    byte[] bytes = text.getBytes("ISO-8859-1");
+    writer.writeInProgress(filename, gameKey, bytes);
+    length += bytes.length;
+  }
+}
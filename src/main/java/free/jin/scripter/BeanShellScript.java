@@ -81,7 +81,7 @@ public class BeanShellScript extends Script {
 
     scripter.getConn().sendCommand("Test");
     new free.util.audio.AudioClip(free.util.IOUtilities.fileToURL(new java.io.File("Test"))).play();
-    ((free.jin.console.ConsoleManager) scripter.getPlugin("console")).addSpecialLine("Test");
+    scripter.appendConsoleLine("Test");
   }
 
   /**
@@ -100,11 +100,7 @@ public class BeanShellScript extends Script {
 
     bsh.eval("void exec(String command){\n" + "  Runtime.getRuntime().exec(command);\n" + "}");
 
-    bsh.eval(
-        "void appendLine(String line){\n"
-            + "  free.jin.console.ConsoleManager plugin = scripter.getPlugin(\"console\");\n"
-            + "  plugin.addSpecialLine(line);\n"
-            + "}");
+    bsh.eval("void appendLine(String line){scripter.appendConsoleLine(line);}");
 
     // *************************************************************************
     // IMPORTANT: Whenever modifying this method, modify ensureCorrectness too *
@@ -25,6 +25,7 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Properties;
 import java.util.Vector;
+import javax.swing.SwingUtilities;
 
 import bsh.EvalError;
 import free.chess.Chess;
@@ -42,6 +43,8 @@ import free.jin.Game;
 import free.jin.Preferences;
 import free.jin.Seek;
 import free.jin.SeekConnection;
+import free.jin.console.ConsoleManager;
+import free.jin.event.BackgroundListener;
 import free.jin.event.BoardFlipEvent;
 import free.jin.event.ClockAdjustmentEvent;
 import free.jin.event.ConnectionListener;
@@ -225,6 +228,24 @@ public class Scripter extends Plugin {
     return scriptsArr;
   }
 
+  /**
+   * Adds the specified line to the console, as a special line. Scripts run on the listener
+   * manager's background threads, so the line is actually added later, on the event dispatching
+   * thread.
+   */
+  public void appendConsoleLine(final String line) {
+    final ConsoleManager consoleManager = (ConsoleManager) getPlugin("console");
+    if (consoleManager == null) return;
+
+    SwingUtilities.invokeLater(
+        new Runnable() {
+          @Override
+          public void run() {
+            consoleManager.addSpecialLine(line);
+          }
+        });
+  }
+
   /**
    * Returns <code>true</code> to indicate that we have a preferences UI.
    */
@@ -500,7 +521,10 @@ public class Scripter extends Plugin {
   /**
    * An abstract base class for classes responsible for supporting scripting for a certain event
    * type. It allows registering and unregistering scripts and testing whether the event type is
-   * supported by a specified <code>Connection</code> implementation.
+   * supported by a specified <code>Connection</code> implementation. Dispatchers of events which
+   * are delivered on the listener manager's background threads run their scripts there, so scripts
+   * may be added and removed while they run, and a script may be triggered by the events of two
+   * games concurrently.
    */
   protected abstract class ScriptDispatcher {
 
@@ -561,10 +585,12 @@ public class Scripter extends Plugin {
      * Returns the scripts registered with this <code>ScriptDispatcher</code>.
      */
     public Script[] getScripts() {
-      Script[] scriptsArr = new Script[scripts.size()];
-      scripts.copyInto(scriptsArr);
+      synchronized (scripts) {
+        Script[] scriptsArr = new Script[scripts.size()];
+        scripts.copyInto(scriptsArr);
 
-      return scriptsArr;
+        return scriptsArr;
+      }
     }
 
     /**
@@ -580,16 +606,19 @@ public class Scripter extends Plugin {
 
       if (vars == null) vars = new Object[0][];
 
-      int scriptCount = scripts.size();
-      for (int i = 0; i < scriptCount; i++) {
-        Script script = (Script) scripts.elementAt(i);
+      Script[] scripts = getScripts();
+      for (int i = 0; i < scripts.length; i++) {
+        Script script = scripts[i];
         String[] eventSubtypes = script.getEventSubtypes();
         if (script.isEnabled()
             && ((eventSubtype == null) || Utilities.contains(eventSubtypes, eventSubtype))) {
-          try {
-            script.run(evt, eventSubtype, vars);
-          } catch (RuntimeException e) {
-            e.printStackTrace();
+          // Scripts keep their variables in a single interpreter, which isn't thread safe
+          synchronized (script) {
+            try {
+              script.run(evt, eventSubtype, vars);
+            } catch (RuntimeException e) {
+              e.printStackTrace();
+            }
           }
         }
       }
@@ -683,7 +712,8 @@ public class Scripter extends Plugin {
   /**
    * A <code>ScriptDispatcher</code> for <code>PlainTextEvents</code>.
    */
-  private class PlainTextScriptDispatcher extends ScriptDispatcher implements PlainTextListener {
+  private class PlainTextScriptDispatcher extends ScriptDispatcher
+      implements PlainTextListener, BackgroundListener {
 
     @Override
     protected String[] getEventSubtypesImpl() {
@@ -719,7 +749,8 @@ public class Scripter extends Plugin {
   /**
    * A <code>ScriptDispatcher</code> for <code>GameEvents</code>.
    */
-  private class GameScriptDispatcher extends ScriptDispatcher implements GameListener {
+  private class GameScriptDispatcher extends ScriptDispatcher
+      implements GameListener, BackgroundListener {
 
     private final String[] subtypes =
         new String[] {
@@ -1214,7 +1245,8 @@ public class Scripter extends Plugin {
   /**
    * A <code>ScriptDispatcher</code> for <code>SeekEvents</code>.
    */
-  private class SeekScriptDispatcher extends ScriptDispatcher implements SeekListener {
+  private class SeekScriptDispatcher extends ScriptDispatcher
+      implements SeekListener, BackgroundListener {
 
     private final String[] subtypes = new String[] {"post", "withdraw"};
 
@@ -31,6 +31,7 @@ import free.jin.FriendsConnection;
 import free.jin.Game;
 import free.jin.Preferences;
 import free.jin.ServerUser;
+import free.jin.event.BackgroundListener;
 import free.jin.event.BoardFlipEvent;
 import free.jin.event.ChatEvent;
 import free.jin.event.ChatListener;
@@ -38,6 +39,7 @@ import free.jin.event.ClockAdjustmentEvent;
 import free.jin.event.ConnectionListener;
 import free.jin.event.FriendsEvent;
 import free.jin.event.FriendsListener;
+import free.jin.event.GameAdapter;
 import free.jin.event.GameEndEvent;
 import free.jin.event.GameListener;
 import free.jin.event.GameStartEvent;
@@ -55,11 +57,13 @@ import free.util.models.BooleanModel;
 import free.util.models.Model;
 
 /**
- * The plugin responsible for producing sound on all the relevant events.
+ * The plugin responsible for producing sound on all the relevant events. Game, chat and plain text
+ * events are handled on the listener manager's background threads, so that decoding and playing
+ * sounds doesn't hold up the user interface.
  */
 public class SoundManager extends Plugin
     implements PlainTextListener, ChatListener, ConnectionListener, GameListener, FriendsListener,
-        PropertyChangeListener {
+        PropertyChangeListener, BackgroundListener {
 
   /**
    * Maps sound filenames to AudioClips loaded from those filenames.
@@ -86,6 +90,32 @@ public class SoundManager extends Plugin
    */
   protected BooleanModel soundState;
 
+  /**
+   * Decides, on the event dispatching thread, whether the starts and ends of games are sounded,
+   * and listens to the properties of the games the user plays. Doing it on the background threads
+   * could miss a game becoming examined right after it starts, and would read the state of the game
+   * off the event dispatching thread. Only playing the sounds is left to the background threads.
+   */
+  private final GameAdapter gameStateListener =
+      new GameAdapter() {
+        @Override
+        public void gameStarted(GameStartEvent evt) {
+          Game game = evt.getGame();
+          if ((game.getGameType() == Game.MY_GAME) && game.isPlayed()) {
+            game.addPropertyChangeListener(SoundManager.this);
+            playEventSoundInBackground(game, "GameStart");
+          }
+        }
+
+        @Override
+        public void gameEnded(GameEndEvent evt) {
+          Game game = evt.getGame();
+          if ((game.getGameType() == Game.MY_GAME) && game.isPlayed())
+            playEventSoundInBackground(game, "GameEnd");
+          game.removePropertyChangeListener(SoundManager.this);
+        }
+      };
+
   /**
    * Initializes the state of the plugin from user properties, loads the sounds and registers all
    * the listeners.
@@ -221,6 +251,7 @@ public class SoundManager extends Plugin
     listenerManager.addChatListener(this);
     listenerManager.addConnectionListener(this);
     listenerManager.addGameListener(this);
+    listenerManager.addGameListener(gameStateListener);
 
     if (conn instanceof FriendsConnection)
       ((FriendsConnection) conn).getFriendsListenerManager().addFriendsListener(this);
@@ -237,6 +268,7 @@ public class SoundManager extends Plugin
     listenerManager.removeChatListener(this);
     listenerManager.removeConnectionListener(this);
     listenerManager.removeGameListener(this);
+    listenerManager.removeGameListener(gameStateListener);
   }
 
   /**
@@ -360,20 +392,15 @@ public class SoundManager extends Plugin
   public void loginFailed(Connection conn, String reason) {}
 
   /**
-   * Plays the sound mapped to the "GameStart" event.
+   * The "GameStart" sound is played by <code>gameStateListener</code>.
    */
   @Override
-  public void gameStarted(GameStartEvent evt) {
-    Game game = evt.getGame();
-    if ((game.getGameType() == Game.MY_GAME) && game.isPlayed()) {
-      playEventSound("GameStart");
-      game.addPropertyChangeListener(this);
-    }
-  }
+  public void gameStarted(GameStartEvent evt) {}
 
   /**
    * If a game changes mode from played (by the user) to examined, plays the sound mapped to the
-   * "GameEnd" event.
+   * "GameEnd" event. The sound is played on the background threads, after the sounds of the game's
+   * events already queued there.
    */
   @Override
   public void propertyChange(PropertyChangeEvent evt) {
@@ -384,10 +411,28 @@ public class SoundManager extends Plugin
       if ((game.getGameType() == Game.MY_GAME)
           && "played".equals(propertyName)
           && evt.getOldValue().equals(Boolean.TRUE)
-          && evt.getNewValue().equals(Boolean.FALSE)) playEventSound("GameEnd");
+          && evt.getNewValue().equals(Boolean.FALSE))
+        playEventSoundInBackground(game, "GameEnd");
     }
   }
 
+  /**
+   * Plays the sound mapped to the specified event on the background threads, after the sounds of
+   * the specified game's events already queued there.
+   */
+  private void playEventSoundInBackground(Game game, final String eventName) {
+    getConn()
+        .getListenerManager()
+        .invokeInBackground(
+            game,
+            new Runnable() {
+              @Override
+              public void run() {
+                playEventSound(eventName);
+              }
+            });
+  }
+
   /**
    * Plays the sound mapped to the "IllegalMove" event.
    */
@@ -397,14 +442,10 @@ public class SoundManager extends Plugin
   }
 
   /**
-   * Plays the sound mapped to the "GameEnd" event.
+   * The "GameEnd" sound is played by <code>gameStateListener</code>.
    */
   @Override
-  public void gameEnded(GameEndEvent evt) {
-    Game game = evt.getGame();
-    if ((game.getGameType() == Game.MY_GAME) && (game.isPlayed())) playEventSound("GameEnd");
-    game.removePropertyChangeListener(this);
-  }
+  public void gameEnded(GameEndEvent evt) {}
 
   /**
    * Plays the "DrawOffer", "AbortOffer" or "AdjournOffer" sounds if needed.
@@ -26,7 +26,8 @@ import java.util.NoSuchElementException;
  * This class provides the functionality of storing and retrieving bean properties while
  * automatically notifying any listeners. It can be used to delegate the bean storing, retrieving
  * and notifying work to it from the actual bean. It doesn't, however, support constrained
- * properties. <STRONG>Note:</STRONG>This class is not thread safe.
+ * properties. <STRONG>Note:</STRONG>This class is not thread safe, except that listeners may be
+ * registered and unregistered from any thread.
  */
 public class BeanProperties {
 
@@ -43,7 +44,8 @@ public class BeanProperties {
   /**
    * The property change listeners.
    */
-  private final EventListenerList listenerList = new EventListenerList();
+  private final CopyOnWriteListenerList listenerList =
+      new CopyOnWriteListenerList(PropertyChangeListener.class);
 
   /**
    * Creates a new <code>BeanProperties</code> object with the specified source bean.
@@ -63,14 +65,14 @@ public class BeanProperties {
    * Registers the specified <code>PropertyChangeListener</code>.
    */
   public void addPropertyChangeListener(PropertyChangeListener listener) {
-    listenerList.add(PropertyChangeListener.class, listener);
+    listenerList.add(listener);
   }
 
   /**
    * Unregisters the specified <code>PropertyChangeListener</code>.
    */
   public void removePropertyChangeListener(PropertyChangeListener listener) {
-    listenerList.remove(PropertyChangeListener.class, listener);
+    listenerList.remove(listener);
   }
 
   /**
@@ -79,13 +81,8 @@ public class BeanProperties {
   private void firePropertyChanged(String propertyName, Object oldValue, Object newValue) {
     PropertyChangeEvent evt = new PropertyChangeEvent(source, propertyName, oldValue, newValue);
 
-    Object[] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2) {
-      if (listeners[i] == PropertyChangeListener.class) {
-        PropertyChangeListener listener = (PropertyChangeListener) listeners[i + 1];
-        listener.propertyChange(evt);
-      }
-    }
+    PropertyChangeListener[] listeners = (PropertyChangeListener[]) listenerList.getListeners();
+    for (int i = 0; i < listeners.length; i++) listeners[i].propertyChange(evt);
   }
 
   /**
@@ -0,0 +1,121 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.lang.reflect.Array;
+import java.util.EventListener;
+
+/**
+ * A thread safe list of listeners of a single type. Each modification replaces the backing array
+ * with a modified copy, so firing an event amounts to obtaining the current array, which is already
+ * of the listener type, and walking it - no locking, no type comparisons and no per listener casts.
+ * This makes it a good fit for lists which are traversed much more often than they are modified.
+ * Listeners may be added and removed from any thread, including from a listener which is being
+ * notified; such changes only affect subsequent traversals.
+ */
+public final class CopyOnWriteListenerList {
+
+  /**
+   * The type of the listeners.
+   */
+  private final Class listenerType;
+
+  /**
+   * The current listeners. The array is never modified once it's been assigned.
+   */
+  private volatile EventListener[] listeners;
+
+  /**
+   * Creates a new, empty <code>CopyOnWriteListenerList</code> for listeners of the specified type.
+   */
+  public CopyOnWriteListenerList(Class listenerType) {
+    if (!EventListener.class.isAssignableFrom(listenerType))
+      throw new IllegalArgumentException("Not a listener type: " + listenerType);
+
+    this.listenerType = listenerType;
+    this.listeners = (EventListener[]) Array.newInstance(listenerType, 0);
+  }
+
+  /**
+   * Returns the type of the listeners in this list.
+   */
+  public Class getListenerType() {
+    return listenerType;
+  }
+
+  /**
+   * Adds the specified listener to the end of the list. <code>null</code> is ignored.
+   */
+  public synchronized void add(EventListener listener) {
+    if (listener == null) return;
+    if (!listenerType.isInstance(listener))
+      throw new IllegalArgumentException("The listener is not an instance of the listener class.");
+
+    EventListener[] oldListeners = listeners;
+    EventListener[] newListeners =
+        (EventListener[]) Array.newInstance(listenerType, oldListeners.length + 1);
+    System.arraycopy(oldListeners, 0, newListeners, 0, oldListeners.length);
+    newListeners[oldListeners.length] = listener;
+
+    listeners = newListeners;
+  }
+
+  /**
+   * Removes the first occurrence of the specified listener from the list. Returns whether the
+   * listener was found.
+   */
+  public synchronized boolean remove(EventListener listener) {
+    if (listener == null) return false;
+
+    EventListener[] oldListeners = listeners;
+    for (int i = 0; i < oldListeners.length; i++) {
+      if (oldListeners[i].equals(listener)) {
+        EventListener[] newListeners =
+            (EventListener[]) Array.newInstance(listenerType, oldListeners.length - 1);
+        System.arraycopy(oldListeners, 0, newListeners, 0, i);
+        System.arraycopy(oldListeners, i + 1, newListeners, i, oldListeners.length - i - 1);
+        listeners = newListeners;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the current listeners in an array of the listener type, so it can be cast to an array
+   * of that type once instead of casting each of the listeners. <B>WARNING!!!</B> The returned
+   * array is shared and must not be modified.
+   */
+  public EventListener[] getListeners() {
+    return listeners;
+  }
+
+  /**
+   * Returns the amount of listeners in the list.
+   */
+  public int size() {
+    return listeners.length;
+  }
+
+  /**
+   * Returns whether the list is empty.
+   */
+  public boolean isEmpty() {
+    return listeners.length == 0;
+  }
+}
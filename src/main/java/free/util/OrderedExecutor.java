@@ -0,0 +1,177 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Runs tasks on a small pool of daemon worker threads, such that tasks submitted with the same key
+ * run one at a time, in the order they were submitted, while tasks with different keys may run in
+ * parallel. Worker threads are created on demand, up to a maximum, and exit after being idle for a
+ * while, so an unused executor holds no threads. This class is thread safe.
+ */
+public final class OrderedExecutor {
+
+  /**
+   * The amount of time, in milliseconds, an idle worker waits for a task before exiting.
+   */
+  private static final long IDLE_TIMEOUT = 30 * 1000;
+
+  /**
+   * The name of the executor, used for naming the worker threads.
+   */
+  private final String name;
+
+  /**
+   * The maximum amount of worker threads.
+   */
+  private final int maxThreads;
+
+  /**
+   * Maps keys to <code>Vector</code>s of their pending tasks. A key is present while it has pending
+   * tasks or while one of its tasks is running.
+   */
+  private final Hashtable pendingTasks = new Hashtable();
+
+  /**
+   * The keys which have pending tasks and aren't currently claimed by a worker, in the order they
+   * became ready.
+   */
+  private final Vector readyKeys = new Vector();
+
+  /**
+   * The current amount of worker threads.
+   */
+  private int threadCount = 0;
+
+  /**
+   * The amount of worker threads waiting for a task.
+   */
+  private int idleCount = 0;
+
+  /**
+   * The amount of workers created so far, used for naming them.
+   */
+  private int workerSerial = 0;
+
+  /**
+   * Creates a new <code>OrderedExecutor</code> with the specified name and maximum amount of worker
+   * threads.
+   */
+  public OrderedExecutor(String name, int maxThreads) {
+    if (maxThreads < 1)
+      throw new IllegalArgumentException("maxThreads must be positive: " + maxThreads);
+
+    this.name = name;
+    this.maxThreads = maxThreads;
+  }
+
+  /**
+   * Schedules the specified task to run after all the previously submitted tasks with the same key.
+   */
+  public synchronized void execute(Object key, Runnable task) {
+    if (key == null) throw new IllegalArgumentException("The key may not be null");
+    if (task == null) throw new IllegalArgumentException("The task may not be null");
+
+    Vector tasks = (Vector) pendingTasks.get(key);
+    if (tasks != null) {
+      // The key is either ready or running; either way, its worker will get to this task
+      tasks.addElement(task);
+      return;
+    }
+
+    tasks = new Vector();
+    tasks.addElement(task);
+    pendingTasks.put(key, tasks);
+    readyKeys.addElement(key);
+
+    if (idleCount > 0) notify();
+    else if (threadCount < maxThreads) {
+      threadCount++;
+      Thread worker = new Thread(new Worker(), name + "-" + (++workerSerial));
+      worker.setDaemon(true);
+      worker.start();
+    }
+  }
+
+  /**
+   * Returns the amount of tasks which have been submitted, but haven't started running yet.
+   */
+  public synchronized int getPendingTaskCount() {
+    int count = 0;
+    for (int i = 0; i < readyKeys.size(); i++)
+      count += ((Vector) pendingTasks.get(readyKeys.elementAt(i))).size();
+    return count;
+  }
+
+  /**
+   * The worker threads' code.
+   */
+  private class Worker implements Runnable {
+
+    @Override
+    public void run() {
+      while (true) {
+        Object key;
+        Runnable task;
+        synchronized (OrderedExecutor.this) {
+          long waitStart = System.currentTimeMillis();
+          while (readyKeys.isEmpty()) {
+            long timeLeft = IDLE_TIMEOUT - (System.currentTimeMillis() - waitStart);
+            if (timeLeft <= 0) {
+              threadCount--;
+              return;
+            }
+
+            idleCount++;
+            try {
+              OrderedExecutor.this.wait(timeLeft);
+            } catch (InterruptedException e) {
+              // Treat like a timeout
+              waitStart = 0;
+            } finally {
+              idleCount--;
+            }
+          }
+
+          key = readyKeys.elementAt(0);
+          readyKeys.removeElementAt(0);
+          Vector tasks = (Vector) pendingTasks.get(key);
+          task = (Runnable) tasks.elementAt(0);
+          tasks.removeElementAt(0);
+        }
+
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+        }
+
+        synchronized (OrderedExecutor.this) {
+          Vector tasks = (Vector) pendingTasks.get(key);
+          if (tasks.isEmpty()) pendingTasks.remove(key);
+          else {
+            // Let other keys' tasks run between ours, so a busy key doesn't starve them
+            readyKeys.addElement(key);
+            if (idleCount > 0) OrderedExecutor.this.notify();
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Random access to the decompressed data of a gzip file. The blocks of files written by
+ * {@link BlockGzipOutputStream} (or any other BGZF writer) are located by reading their headers
+ * when the file is opened, and reading a part of the data only decompresses the blocks holding it.
+ * Any other gzip file (or the part of it from the first member which isn't such a block) can't be
+ * read at random, so it's decompressed into memory when the file is opened.
+ *
+ * <p>This class is thread safe.
+ */
+public class BlockGzipFile {
+
+  /**
+   * The file.
+   */
+  private final File file;
+
+  /**
+   * The open file.
+   */
+  private final RandomAccessFile raf;
+
+  /**
+   * The offsets of the blocks in the file.
+   */
+  private long[] blockOffsets = new long[16];
+
+  /**
+   * The offsets of the data of the blocks in the decompressed data.
+   */
+  private long[] dataOffsets = new long[16];
+
+  /**
+   * The amount of blocks.
+   */
+  private int blockCount = 0;
+
+  /**
+   * The decompressed data following the blocks, <code>null</code> if none.
+   */
+  private byte[] tail = null;
+
+  /**
+   * The length of the decompressed data.
+   */
+  private long length;
+
+  /**
+   * The inflater.
+   */
+  private final Inflater inflater = new Inflater(true);
+
+  /**
+   * The buffer of a compressed block.
+   */
+  private final byte[] block = new byte[0x10000];
+
+  /**
+   * The number of the block whose data is in <code>blockData</code>, <code>-1</code> if none.
+   */
+  private int cachedBlock = -1;
+
+  /**
+   * The decompressed data of the last block read.
+   */
+  private final byte[] blockData = new byte[0x10000];
+
+  /**
+   * Opens the specified gzip file.
+   *
+   * @throws IOException if the file can't be read or isn't a valid gzip file.
+   */
+  public BlockGzipFile(File file) throws IOException {
+    this.file = file;
+    this.raf = new RandomAccessFile(file, "r");
+    try {
+      scan();
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns whether the specified file is a gzip file, judging by its first bytes.
+   */
+  public static boolean isGzipFile(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return (in.read() == 31) && (in.read() == 139);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Locates the blocks of the file, and decompresses whatever follows them.
+   */
+  private void scan() throws IOException {
+    long fileLength = raf.length();
+    long offset = 0;
+    long dataOffset = 0;
+    byte[] header = new byte[BlockGzipOutputStream.HEADER_LENGTH];
+    while (offset < fileLength) {
+      int blockLength = -1;
+      if (offset + header.length <= fileLength) {
+        raf.seek(offset);
+        raf.readFully(header);
+        blockLength = getBlockLength(header);
+      }
+      if ((blockLength == -1) || (offset + blockLength > fileLength)) break;
+
+      raf.seek(offset + blockLength - 4);
+      int dataLength = Integer.reverseBytes(raf.readInt());
+      if ((dataLength < 0) || (dataLength > blockData.length))
+        throw new IOException("Corrupt block at " + offset + " in " + file);
+
+      if (dataLength > 0) {
+        if (blockCount == blockOffsets.length) {
+          blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+          dataOffsets = Arrays.copyOf(dataOffsets, blockCount * 2);
+        }
+        blockOffsets[blockCount] = offset;
+        dataOffsets[blockCount] = dataOffset;
+        blockCount++;
+      }
+
+      offset += blockLength;
+      dataOffset += dataLength;
+    }
+
+    if (offset < fileLength) {
+      InputStream fileIn = new FileInputStream(file);
+      try {
+        if (fileIn.skip(offset) != offset) throw new EOFException("Unexpected end of " + file);
+
+        InputStream in = new GZIPInputStream(fileIn, 65536);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[65536];
+        int count;
+        while ((count = in.read(buf)) != -1) out.write(buf, 0, count);
+        tail = out.toByteArray();
+      } finally {
+        fileIn.close();
+      }
+      dataOffset += tail.length;
+    }
+
+    length = dataOffset;
+  }
+
+  /**
+   * Returns the length of the block with the specified header, or <code>-1</code> if the header
+   * isn't that of a block.
+   */
+  private static int getBlockLength(byte[] header) {
+    boolean isBlock =
+        ((header[0] & 0xff) == 31)
+            && ((header[1] & 0xff) == 139)
+            && (header[2] == 8)
+            && (header[3] == 4) // Only FEXTRA
+            && (getShort(header, 10) == 6)
+            && (header[12] == 'B')
+            && (header[13] == 'C')
+            && (getShort(header, 14) == 2);
+
+    return isBlock ? getShort(header, 16) + 1 : -1;
+  }
+
+  /**
+   * Returns the little-endian unsigned short at the specified offset in the specified array.
+   */
+  private static int getShort(byte[] buf, int offset) {
+    return (buf[offset] & 0xff) | ((buf[offset + 1] & 0xff) << 8);
+  }
+
+  /**
+   * Returns the file.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the length of the decompressed data.
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Reads up to the specified amount of decompressed data, starting at the specified position,
+   * into the specified array. Returns the amount of bytes read, which is less than requested only
+   * at the end of the data, and <code>-1</code> if the position is at or past the end.
+   */
+  public synchronized int read(long position, byte[] buf, int offset, int count)
+      throws IOException {
+    if (position < 0) throw new IllegalArgumentException("Bad position: " + position);
+    if (count == 0) return 0;
+    if (position >= length) return -1;
+
+    int total = 0;
+    while ((count > 0) && (position < length)) {
+      int n;
+      long tailOffset = getBlocksEnd();
+      if (position >= tailOffset) {
+        n = (int) Math.min(count, length - position);
+        System.arraycopy(tail, (int) (position - tailOffset), buf, offset, n);
+      } else {
+        int blockIndex = findBlock(position);
+        int blockDataLength = readBlock(blockIndex);
+        int blockPosition = (int) (position - dataOffsets[blockIndex]);
+        n = Math.min(count, blockDataLength - blockPosition);
+        System.arraycopy(blockData, blockPosition, buf, offset, n);
+      }
+
+      position += n;
+      offset += n;
+      count -= n;
+      total += n;
+    }
+
+    return total;
+  }
+
+  /**
+   * Reads the specified amount of decompressed data, starting at the specified position, into the
+   * specified array.
+   *
+   * @throws EOFException if the data ends before the specified amount is read.
+   */
+  public void readFully(long position, byte[] buf, int offset, int count) throws IOException {
+    if (read(position, buf, offset, count) < count)
+      throw new EOFException("Unexpected end of data in " + file);
+  }
+
+  /**
+   * Returns the number of the block holding the decompressed data at the specified position.
+   */
+  private int findBlock(long position) {
+    int low = 0;
+    int high = blockCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (dataOffsets[mid] <= position) low = mid;
+      else high = mid - 1;
+    }
+
+    return low;
+  }
+
+  /**
+   * Decompresses the specified block into <code>blockData</code>, unless it's already there.
+   * Returns the length of its data.
+   */
+  private int readBlock(int blockIndex) throws IOException {
+    long dataEnd = (blockIndex + 1 < blockCount) ? dataOffsets[blockIndex + 1] : getBlocksEnd();
+    int dataLength = (int) (dataEnd - dataOffsets[blockIndex]);
+    if (cachedBlock == blockIndex) return dataLength;
+
+    raf.seek(blockOffsets[blockIndex]);
+    raf.readFully(block, 0, BlockGzipOutputStream.HEADER_LENGTH);
+    int blockLength = getBlockLength(block);
+    raf.readFully(block, 0, blockLength - BlockGzipOutputStream.HEADER_LENGTH);
+
+    cachedBlock = -1;
+    inflater.reset();
+    inflater.setInput(
+        block,
+        0,
+        blockLength - BlockGzipOutputStream.HEADER_LENGTH - BlockGzipOutputStream.TRAILER_LENGTH);
+    try {
+      int count = 0;
+      while ((count < dataLength) && !inflater.finished()) {
+        int n = inflater.inflate(blockData, count, dataLength - count);
+        if ((n == 0) && (inflater.needsInput() || inflater.needsDictionary())) break;
+        count += n;
+      }
+      if (count != dataLength)
+        throw new IOException("Corrupt block at " + blockOffsets[blockIndex] + " in " + file);
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt block at " + blockOffsets[blockIndex] + " in " + file);
+    }
+
+    cachedBlock = blockIndex;
+    return dataLength;
+  }
+
+  /**
+   * Returns the offset, in the decompressed data, of the end of the data of the blocks.
+   */
+  private long getBlocksEnd() {
+    return length - ((tail == null) ? 0 : tail.length);
+  }
+
+  /**
+   * Closes the file.
+   */
+  public synchronized void close() throws IOException {
+    inflater.end();
+    raf.close();
+  }
+}
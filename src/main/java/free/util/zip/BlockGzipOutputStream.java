@@ -0,0 +1,228 @@
+/**
+ * The utillib library. More information is available at http://www.jinchess.com/. Copyright (C)
+ * 2003 Alexander Maryanovsky. All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with utillib
+ * library; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ * MA 02111-1307 USA
+ */
+package free.util.zip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An <code>OutputStream</code> which writes gzip-compressed data as a series of small, independent
+ * gzip members (blocks), each holding at most <code>MAX_BLOCK_SIZE</code> bytes of data, in the
+ * manner of the BGZF format. The size of each block is recorded in the <code>BC</code> extra field
+ * of its header, so the blocks can be located without decompressing them, and any part of the
+ * data read by decompressing only the blocks holding it (see {@link BlockGzipFile}). The output is
+ * a valid gzip file, readable by any gzip implementation.
+ */
+public class BlockGzipOutputStream extends OutputStream {
+
+  /**
+   * The maximum amount of data in a block. This keeps compressed blocks, even of incompressible
+   * data, within the 64KB a block size can express.
+   */
+  public static final int MAX_BLOCK_SIZE = 0xff00;
+
+  /**
+   * The length of the header of a block.
+   */
+  static final int HEADER_LENGTH = 18;
+
+  /**
+   * The length of the trailer of a block - its CRC32 and data size.
+   */
+  static final int TRAILER_LENGTH = 8;
+
+  /**
+   * The underlying stream.
+   */
+  private final OutputStream out;
+
+  /**
+   * The deflater.
+   */
+  private final Deflater deflater;
+
+  /**
+   * The data of the current block.
+   */
+  private final byte[] data = new byte[MAX_BLOCK_SIZE];
+
+  /**
+   * The amount of data in the current block.
+   */
+  private int dataLength = 0;
+
+  /**
+   * The buffer of a compressed block.
+   */
+  private final byte[] block = new byte[0x10000 + 1024];
+
+  /**
+   * The checksum of the data of the current block.
+   */
+  private final CRC32 crc = new CRC32();
+
+  /**
+   * Whether the data has been finished.
+   */
+  private boolean isFinished = false;
+
+  /**
+   * Whether the stream has been closed.
+   */
+  private boolean isClosed = false;
+
+  /**
+   * Creates a new <code>BlockGzipOutputStream</code> writing into the specified stream, with the
+   * default compression level.
+   */
+  public BlockGzipOutputStream(OutputStream out) {
+    this(out, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Creates a new <code>BlockGzipOutputStream</code> writing into the specified stream, with the
+   * specified compression level.
+   */
+  public BlockGzipOutputStream(OutputStream out, int level) {
+    if (out == null) throw new IllegalArgumentException("out may not be null");
+
+    this.out = out;
+    this.deflater = new Deflater(level, true);
+  }
+
+  /**
+   * Writes the specified byte.
+   */
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  /**
+   * Writes the specified part of the specified array.
+   */
+  @Override
+  public void write(byte[] buf, int offset, int length) throws IOException {
+    if (isFinished) throw new IOException("Stream finished");
+
+    while (length > 0) {
+      int count = Math.min(length, data.length - dataLength);
+      System.arraycopy(buf, offset, data, dataLength, count);
+      dataLength += count;
+      offset += count;
+      length -= count;
+
+      if (dataLength == data.length) writeBlock();
+    }
+  }
+
+  /**
+   * Writes the current block, if it isn't empty, and flushes the underlying stream. Flushing
+   * often makes the compression worse, since each block is compressed on its own.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (!isFinished && (dataLength > 0)) writeBlock();
+    out.flush();
+  }
+
+  /**
+   * Writes the current block and an empty block, marking the end of the data, without closing the
+   * underlying stream. Nothing may be written afterwards.
+   */
+  public void finish() throws IOException {
+    if (isFinished) return;
+
+    if (dataLength > 0) writeBlock();
+    writeBlock(); // The empty end-of-file block
+    out.flush();
+    isFinished = true;
+  }
+
+  /**
+   * Finishes the data and closes the underlying stream.
+   */
+  @Override
+  public void close() throws IOException {
+    if (isClosed) return;
+
+    try {
+      finish();
+    } finally {
+      isClosed = true;
+      deflater.end();
+      out.close();
+    }
+  }
+
+  /**
+   * Compresses and writes the current block.
+   */
+  private void writeBlock() throws IOException {
+    crc.reset();
+    crc.update(data, 0, dataLength);
+
+    deflater.reset();
+    deflater.setInput(data, 0, dataLength);
+    deflater.finish();
+    int length = HEADER_LENGTH;
+    while (!deflater.finished()) {
+      if (length == block.length - TRAILER_LENGTH)
+        throw new IOException("Block too large"); // Can't happen with MAX_BLOCK_SIZE
+      length += deflater.deflate(block, length, block.length - TRAILER_LENGTH - length);
+    }
+    length = putInt(block, length, (int) crc.getValue());
+    length = putInt(block, length, dataLength);
+
+    block[0] = 31; // Magic
+    block[1] = (byte) 139;
+    block[2] = 8; // Deflate
+    block[3] = 4; // FEXTRA
+    putInt(block, 4, 0); // Modification time
+    block[8] = 0; // Extra flags
+    block[9] = (byte) 255; // Unknown OS
+    putShort(block, 10, 6); // Length of the extra field
+    block[12] = 'B';
+    block[13] = 'C';
+    putShort(block, 14, 2);
+    putShort(block, 16, length - 1);
+
+    out.write(block, 0, length);
+    dataLength = 0;
+  }
+
+  /**
+   * Puts the specified int, in little-endian order, into the specified array at the specified
+   * offset, returning the offset after it.
+   */
+  private static int putInt(byte[] buf, int offset, int value) {
+    offset = putShort(buf, offset, value & 0xffff);
+    return putShort(buf, offset, value >>> 16);
+  }
+
+  /**
+   * Puts the specified short, in little-endian order, into the specified array at the specified
+   * offset, returning the offset after it.
+   */
+  private static int putShort(byte[] buf, int offset, int value) {
+    buf[offset] = (byte) value;
+    buf[offset + 1] = (byte) (value >> 8);
+    return offset + 2;
+  }
+}
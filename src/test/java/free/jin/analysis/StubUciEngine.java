@@ -0,0 +1,259 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2002 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import free.chess.Chess;
+import free.chess.Move;
+import free.chess.MoveGenerator;
+import free.chess.Piece;
+import free.chess.Position;
+import free.chess.PositionFormatException;
+import free.chess.WildVariant;
+
+/**
+ * <p>
+ * A trivial UCI engine, for testing the analysis plugin during development without a real engine.
+ * It is not part of the distribution. It "searches" by deepening a greedy variation one ply every
+ * 100 milliseconds, each ply capturing the most valuable piece it can (or making the first legal
+ * move), and evaluates positions by material only. Set the engine command preference of the
+ * analysis plugin to something like
+ *
+ * <pre>
+ * java -cp jin.jar:build/classes/java/test free.jin.analysis.StubUciEngine
+ * </pre>
+ *
+ * to use it.
+ * <p>
+ * Only the commands the analysis plugin uses are supported: <code>uci</code>,
+ * <code>isready</code>, <code>position fen</code>, <code>position startpos</code>,
+ * <code>go</code> (with an optional <code>movetime</code>), <code>stop</code> and
+ * <code>quit</code>.
+ */
+public class StubUciEngine {
+
+  /**
+   * The maximum depth the stub searches to.
+   */
+  private static final int MAX_DEPTH = 20;
+
+  /**
+   * The position to search.
+   */
+  private Position position = new Position(Chess.getInstance());
+
+  /**
+   * Whether the current search has been asked to stop.
+   */
+  private volatile boolean isStopped = false;
+
+  /**
+   * The thread running the current search, <code>null</code> if none.
+   */
+  private Thread searchThread = null;
+
+  /**
+   * Runs the stub engine on the standard input and output.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    new StubUciEngine().run(new BufferedReader(new InputStreamReader(System.in)));
+  }
+
+  /**
+   * Reads and executes commands until <code>quit</code> or the end of input.
+   */
+  private void run(BufferedReader in) throws IOException, InterruptedException {
+    String line;
+    while ((line = in.readLine()) != null) {
+      line = line.trim();
+      if ("uci".equals(line)) {
+        send("id name Jin Stub Engine");
+        send("uciok");
+      } else if ("isready".equals(line)) send("readyok");
+      else if (line.startsWith("position ")) {
+        endSearch();
+        setPosition(line.substring("position ".length()));
+      } else if (line.startsWith("go")) {
+        endSearch();
+        startSearch(getMoveTime(line));
+      } else if ("stop".equals(line)) endSearch();
+      else if ("quit".equals(line)) break;
+    }
+
+    endSearch();
+  }
+
+  /**
+   * Sets the position from the arguments of a <code>position</code> command.
+   */
+  private void setPosition(String args) {
+    int movesIndex = args.indexOf(" moves ");
+    String positionArgs = (movesIndex == -1) ? args : args.substring(0, movesIndex);
+    try {
+      position = new Position(Chess.getInstance());
+      if (positionArgs.startsWith("fen ")) position.setFEN(positionArgs.substring(4).trim());
+
+      if (movesIndex != -1) {
+        String[] moves = args.substring(movesIndex + " moves ".length()).trim().split(" +");
+        for (int i = 0; i < moves.length; i++)
+          position.makeMove(UciEngine.parseMove(position, moves[i]));
+      }
+    } catch (PositionFormatException e) {
+      send("info string bad position: " + e.getMessage());
+    } catch (IllegalArgumentException e) {
+      send("info string bad move: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the <code>movetime</code> argument of the specified <code>go</code> command, or
+   * <code>Integer.MAX_VALUE</code> if there is none.
+   */
+  private static int getMoveTime(String command) {
+    String[] tokens = command.split(" +");
+    for (int i = 0; i < tokens.length - 1; i++) {
+      if ("movetime".equals(tokens[i])) {
+        try {
+          return Integer.parseInt(tokens[i + 1]);
+        } catch (NumberFormatException e) {
+          return Integer.MAX_VALUE;
+        }
+      }
+    }
+
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Starts searching the current position in a new thread.
+   */
+  private void startSearch(final int moveTime) {
+    final Position root = new Position(position);
+    isStopped = false;
+    searchThread =
+        new Thread("StubUciEngine search") {
+          @Override
+          public void run() {
+            search(root, moveTime);
+          }
+        };
+    searchThread.start();
+  }
+
+  /**
+   * Stops the current search, if any, and waits for it to report its best move.
+   */
+  private void endSearch() throws InterruptedException {
+    if (searchThread == null) return;
+
+    isStopped = true;
+    searchThread.interrupt();
+    searchThread.join();
+    searchThread = null;
+  }
+
+  /**
+   * Runs the search.
+   */
+  private void search(Position root, int moveTime) {
+    long endTime = System.currentTimeMillis() + moveTime;
+    StringBuffer pv = new StringBuffer();
+    String bestMove = null;
+    Position pos = new Position(root);
+    int sign = 1;
+
+    for (int depth = 1; (depth <= MAX_DEPTH) && !isStopped; depth++) {
+      Move move = pickMove(pos);
+      if (move == null) break;
+
+      String uciMove = UciEngine.formatMove(move);
+      if (bestMove == null) bestMove = uciMove;
+      pv.append(' ').append(uciMove);
+      pos.makeMove(move);
+      sign = -sign;
+
+      int score = sign * evaluate(pos);
+      send("info depth " + depth + " score cp " + score + " nodes " + depth + " pv" + pv);
+
+      try {
+        Thread.sleep(Math.max(0, Math.min(100, endTime - System.currentTimeMillis())));
+      } catch (InterruptedException e) {
+        break;
+      }
+      if (System.currentTimeMillis() >= endTime) break;
+    }
+
+    send("bestmove " + (bestMove == null ? "(none)" : bestMove));
+  }
+
+  /**
+   * Returns the legal move capturing the most valuable piece, or the first legal move if there are
+   * no captures, or <code>null</code> if there are no legal moves.
+   */
+  private static Move pickMove(Position pos) {
+    List moves = MoveGenerator.getLegalMoves(pos);
+    if (moves.isEmpty()) return null;
+
+    WildVariant variant = pos.getVariant();
+    Move best = (Move) moves.get(0);
+    int bestValue = 0;
+    for (int i = 0; i < moves.size(); i++) {
+      Move move = (Move) moves.get(i);
+      Piece captured = pos.getPieceAt(move.getEndingSquare());
+      int value = (captured == null) ? 0 : variant.getApproximateMaterialValue(captured);
+      if (value > bestValue) {
+        best = move;
+        bestValue = value;
+      }
+    }
+
+    return best;
+  }
+
+  /**
+   * Returns the material balance of the specified position, in centipawns, from the point of view
+   * of the player to move.
+   */
+  private static int evaluate(Position pos) {
+    WildVariant variant = pos.getVariant();
+    int color = pos.getCurrentPlayer().getPieceColor();
+    int score = 0;
+    for (int file = 0; file < 8; file++) {
+      for (int rank = 0; rank < 8; rank++) {
+        Piece piece = pos.getPieceAt(file, rank);
+        if (piece == null) continue;
+
+        int value = 100 * variant.getApproximateMaterialValue(piece);
+        score += (piece.getColor() == color) ? value : -value;
+      }
+    }
+
+    return score;
+  }
+
+  /**
+   * Writes the specified line to the standard output.
+   */
+  private static synchronized void send(String line) {
+    System.out.println(line);
+    System.out.flush();
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Jin - a chess client for internet chess servers. More information is available at
+ * http://www.jinchess.com/. Copyright (C) 2007 Alexander Maryanovsky. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if
+ * not, write to the Free Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
+ * 02111-1307, USA.
+ */
+package free.jin.event;
+
+import static org.junit.Assert.assertEquals;
+
+import free.chess.Chess;
+import free.chess.FischerTimeControl;
+import free.chess.Position;
+import free.jin.Connection;
+import free.jin.Game;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.junit.Test;
+
+/**
+ * Tests the dispatching of game events by {@link BasicListenerManager}.
+ */
+public class BasicListenerManagerTest {
+
+  /**
+   * Checks that a listener interested only in a game still gets the event during which a listener
+   * interested in all games removes it, as <code>BoardManager</code> removes a board when its game
+   * ends, and that it gets no events after that.
+   */
+  @Test
+  public void scopedListenerRemovedByGlobalListenerGetsEvent() {
+    Connection conn = createConnection();
+    final Game game = createGame();
+    final BasicListenerManager listenerManager = new BasicListenerManager(conn);
+
+    final CountingGameListener scopedListener = new CountingGameListener();
+    listenerManager.addGameListener(
+        new GameAdapter() {
+          @Override
+          public void gameEnded(GameEndEvent evt) {
+            listenerManager.removeGameListener(evt.getGame(), scopedListener);
+          }
+        });
+    listenerManager.addGameListener(game, scopedListener);
+
+    listenerManager.fireGameEvent(new GameEndEvent(conn, null, game));
+    assertEquals(1, scopedListener.gameEndedCount);
+
+    listenerManager.fireGameEvent(new GameEndEvent(conn, null, game));
+    assertEquals(1, scopedListener.gameEndedCount);
+  }
+
+  /**
+   * Creates a connection which does nothing.
+   */
+  private static Connection createConnection() {
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class[] {Connection.class},
+            new InvocationHandler() {
+              @Override
+              public Object invoke(Object proxy, Method method, Object[] args) {
+                return null;
+              }
+            });
+  }
+
+  /**
+   * Creates an observed game.
+   */
+  private static Game createGame() {
+    return new Game(
+        Game.OBSERVED_GAME,
+        new Position(Chess.getInstance()),
+        0,
+        "White",
+        "Black",
+        new FischerTimeControl(60000, 0),
+        1500,
+        1500,
+        new Integer(1),
+        "Blitz",
+        false,
+        true,
+        "",
+        "",
+        false,
+        null);
+  }
+
+  /**
+   * A <code>GameListener</code> counting the <code>gameEnded</code> notifications it gets.
+   */
+  private static class CountingGameListener extends GameAdapter {
+
+    /**
+     * The amount of <code>gameEnded</code> notifications.
+     */
+    public int gameEndedCount = 0;
+
+    @Override
+    public void gameEnded(GameEndEvent evt) {
+      gameEndedCount++;
+    }
+  }
+}